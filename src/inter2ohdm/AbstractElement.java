@@ -1,5 +1,7 @@
 package inter2ohdm;
 
+import util.TagCodec;
+import util.TagDictionary;
 import util.Util;
 
 import java.util.ArrayList;
@@ -27,6 +29,10 @@ public class AbstractElement {
         return this.attributes.keySet().size() > AbstractElement.relevantAttributeKeys.length;
     }
 
+    /**
+     * @return hstore value of attributes not stored in own columns - to be
+     * bound as parameter, it isn't escaped for sql literals
+     */
     public String getFreeAttributesASHStoreValue() {
         StringBuilder sb = new StringBuilder();
 
@@ -48,9 +54,9 @@ public class AbstractElement {
 
             // produce hstore value string
             sb.append("\"");
-            sb.append(key);
+            sb.append(Util.escapeHStoreValue(key));
             sb.append("\"=>\"");
-            sb.append(Util.escapeSpecialChar4SQL(value));
+            sb.append(Util.escapeHStoreValue(value));
             sb.append("\",");
         }
 
@@ -71,6 +77,15 @@ public class AbstractElement {
 //        this.tags2attributes();
     }
     
+    /**
+     * add tags of binary format (typed schema, see TagCodec)
+     * @param dictionary of the intermediate schema, null if there is none
+     */
+    void setSerializedTags(byte[] serializedTags, TagDictionary dictionary) {
+        TagCodec.decode(serializedTags, this.attributes, dictionary);
+        this.name = null;
+    }
+    
     @Override
     public String toString() {
         return "sTags: " + this.sTags + "\n";
@@ -152,29 +167,7 @@ public class AbstractElement {
         [length]content length is a three digit decimal number (expressed as character)
         OR it is "0000" which indicates empty (null) argument.
         */
-        
-        int index = 0;
-        while(index < serializedAttributes.length()) {
-            if(serializedAttributes.substring(index).startsWith("0000")) {
-                // empty key.. that makes no sense
-                System.err.println("\nAbstractElement.deserializeAttributes: found empty key (makes no sense), stop parsing attributes:" + serializedAttributes);
-                return a;
-            }
-            String key = this.unwrapStringWithLength(serializedAttributes, index);
-            index += this.calculateOffsetFromUnwrappedString(key);
-            
-            if(serializedAttributes.substring(index).startsWith("0000")) {
-                index+=4;
-                //System.err.println("null value for key (when deserializing attributes): " + key);
-                a.put(key, null);
-            } else {
-                String value = this.unwrapStringWithLength(serializedAttributes, index);
-                if(value != null) {
-                    index += this.calculateOffsetFromUnwrappedString(value);
-                }
-                a.put(key, value);
-            }
-        }
+        TagCodec.decodeLegacy(serializedAttributes, a);
         
         return a;
     }
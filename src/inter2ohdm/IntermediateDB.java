@@ -1,16 +1,25 @@
 package inter2ohdm;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
 import static util.InterDB.NODETABLE;
 import static util.InterDB.RELATIONMEMBER;
 import static util.InterDB.RELATIONTABLE;
 import static util.InterDB.WAYMEMBER;
 import static util.InterDB.WAYTABLE;
 import util.DB;
+import util.InterDB;
+import util.NodeLocationStore;
+import util.TagCodec;
+import util.TagDictionary;
 import util.SQLStatementQueue;
 
 /**
@@ -29,11 +38,22 @@ public class IntermediateDB {
     private boolean object_new;
     private Date tstamp;
 
+    // node coordinates by osm id - optional, see NodeLocationStore
+    private NodeLocationStore nodeLocations = null;
+
     IntermediateDB(Connection sourceConnection, String schema) {
         this.sourceConnection = sourceConnection;
         this.schema = schema;
     }
     
+    /**
+     * ways get node coordinates from that store instead of a
+     * join over waynodes and nodes table
+     */
+    void setNodeLocationStore(NodeLocationStore nodeLocations) {
+        this.nodeLocations = nodeLocations;
+    }
+    
     protected String getIntermediateTableName(OSMElement element) {
         if(element instanceof OSMNode) {
             return(DB.getFullTableName(this.schema, NODETABLE));
@@ -84,6 +104,17 @@ public class IntermediateDB {
         sql.append(element.getOSMIDString());
         sql.append(";");
         
+        // ways have to read that node from database
+        if(this.nodeLocations != null && ohdmObjectIDString != null
+                && element instanceof OSMNode) {
+            try {
+                this.nodeLocations.markIdentity(Long.parseLong(element.getOSMIDString()));
+            }
+            catch(IOException | NumberFormatException e) {
+                throw new SQLException("cannot mark node in node location store: " + element.getOSMIDString(), e);
+            }
+        }
+        
 //        sql.forceExecute();
         sql.couldExecute();
     }
@@ -131,7 +162,71 @@ public class IntermediateDB {
         sq.forceExecute();
     }
     
+    /**
+     * Fill way with nodes from node location store. Only nodes which
+     * might have an ohdm object are read from database.
+     * @return false if there is no store or it misses a node - use sql instead
+     */
+    protected boolean addNodesFromLocationStore(OSMWay way) throws SQLException {
+        if(this.nodeLocations == null) return false;
+        
+        long[] ids = way.getNodeIDs();
+        if(ids == null) return false;
+        
+        List<OSMNode> nodes = new ArrayList<>();
+        StringBuilder identityIDs = null;
+        try {
+            for(long id : ids) {
+                long slot = this.nodeLocations.get(id);
+                if(slot == 0) return false; // not in store
+                
+                if(NodeLocationStore.hasIdentity(slot)) {
+                    if(identityIDs == null) {
+                        identityIDs = new StringBuilder();
+                    } else {
+                        identityIDs.append(",");
+                    }
+                    identityIDs.append(id);
+                } else {
+                    nodes.add(new OSMNode(this, Long.toString(id), null, null, null,
+                            InterDB.coordinateToString(NodeLocationStore.getLongitude(slot)),
+                            InterDB.coordinateToString(NodeLocationStore.getLatitude(slot)),
+                            null, null, true, false, false, false, false, 
+                            way.getTimeStamp(), false));
+                }
+            }
+        }
+        catch(IOException | NumberFormatException e) {
+            System.err.println("cannot use node location store for way " + way.getOSMIDString() 
+                    + ": " + e.getLocalizedMessage());
+            return false;
+        }
+        
+        for(OSMNode node : nodes) {
+            way.addNode(node);
+        }
+        
+        if(identityIDs != null) {
+            SQLStatementQueue sql = new SQLStatementQueue(this.sourceConnection);
+            sql.append("select * from ");
+            sql.append(DB.getFullTableName(this.schema, NODETABLE));
+            sql.append(" where osm_id IN (");
+            sql.append(identityIDs.toString());
+            sql.append(");");
+            
+            ResultSet qResultNode = sql.executeWithResult();
+            while(qResultNode.next()) {
+                way.addNode(this.createOSMNode(qResultNode));
+            }
+            qResultNode.close();
+        }
+        
+        return true;
+    }
+    
     OSMWay addNodes2OHDMWay(OSMWay way) throws SQLException {
+        if(this.addNodesFromLocationStore(way)) return way;
+        
         // find all associated nodes and add to that way
         /* SQL Query is like this
             select * from nodes_table where osm_id IN 
@@ -168,11 +263,38 @@ public class IntermediateDB {
     private String classCodeString;
     private String otherClassCodes;
     private String sTags;
+    private byte[] binaryTags;
     private String ohdmObjectIDString;
     private String ohdmGeomIDString;
     private String memberIDs;
     private boolean valid;
     
+    // typed schema (see InterDB.createTables) - found out with first result
+    private Boolean typedTags = null;
+    private TagDictionary tagDictionary = null;
+    private Boolean typedCoordinates = null;
+    private Boolean typedIDLists = null;
+    
+    private boolean isColumnType(ResultSet qResult, String columnName, int sqlType) throws SQLException {
+        return qResult.getMetaData().getColumnType(qResult.findColumn(columnName)) == sqlType;
+    }
+    
+    private long[] extractIDArray(ResultSet qResult, String columnName) throws SQLException {
+        Array array = qResult.getArray(columnName);
+        if(array == null) {
+            return new long[0];
+        }
+        
+        Object[] values = (Object[]) array.getArray();
+        long[] ids = new long[values.length];
+        for(int i = 0; i < values.length; i++) {
+            ids[i] = ((Number) values[i]).longValue();
+        }
+        array.free();
+        
+        return ids;
+    }
+    
     private void readCommonColumns(ResultSet qResult) throws SQLException {
         osmIDString = this.extractBigDecimalAsString(qResult, "osm_id");
         if(this.debug) {
@@ -183,7 +305,16 @@ public class IntermediateDB {
         }
         classCodeString = this.extractBigDecimalAsString(qResult, "classcode");
         
-        sTags = qResult.getString("serializedtags");
+        if(this.typedTags == null) {
+            this.typedTags = this.isColumnType(qResult, "serializedtags", Types.BINARY);
+        }
+        if(this.typedTags) {
+            sTags = null;
+            binaryTags = qResult.getBytes("serializedtags");
+        } else {
+            sTags = qResult.getString("serializedtags");
+            binaryTags = null;
+        }
         ohdmObjectIDString = this.extractBigDecimalAsString(qResult, "ohdm_object_id");
         ohdmGeomIDString = this.extractBigDecimalAsString(qResult, "ohdm_geom_id");
         valid = qResult.getBoolean("valid");
@@ -203,6 +334,29 @@ public class IntermediateDB {
         }
     }
     
+    /**
+     * add tags of typed schema - text tags are already parsed by constructor
+     */
+    private void setBinaryTags(OSMElement element) throws SQLException {
+        if(this.binaryTags == null) return;
+        
+        if(this.tagDictionary == null && this.binaryTags.length > 0 
+                && this.binaryTags[0] == TagCodec.VERSION_DICTIONARY) {
+            // once per schema
+            this.tagDictionary = TagDictionary.load(this.sourceConnection, this.schema);
+            if(this.tagDictionary != null) {
+                System.out.println("loaded tag dictionary with " + this.tagDictionary.size() + " entries");
+            }
+        }
+        
+        try {
+            element.setSerializedTags(this.binaryTags, this.tagDictionary);
+        }
+        catch(IllegalArgumentException e) {
+            throw new SQLException("cannot decode tags of osm element " + osmIDString + ": " + e.getLocalizedMessage());
+        }
+    }
+    
     private String extractBigDecimalAsString(ResultSet qResult, String columnName) throws SQLException {
         BigDecimal bigDecimal = qResult.getBigDecimal(columnName);
         if(bigDecimal != null) {
@@ -214,7 +368,10 @@ public class IntermediateDB {
     protected OSMRelation createOSMRelation(ResultSet qResult) throws SQLException {
         // get all data to create an ohdm way object
         this.readCommonColumns(qResult);
-        memberIDs = qResult.getString("member_ids");
+        if(this.typedIDLists == null) {
+            this.typedIDLists = this.isColumnType(qResult, "member_ids", Types.ARRAY);
+        }
+        memberIDs = this.typedIDLists ? null : qResult.getString("member_ids");
 
         OSMRelation relation = new OSMRelation(this, osmIDString, 
                 classCodeString, otherClassCodes, sTags, memberIDs, ohdmObjectIDString, 
@@ -222,31 +379,57 @@ public class IntermediateDB {
                 this.has_name, this.tstamp, this.object_new
         );
         
+        if(this.typedIDLists) {
+            relation.setMemberIDs(this.extractIDArray(qResult, "member_ids"));
+        }
+        this.setBinaryTags(relation);
+        
         return relation;
     }
     
     protected OSMWay createOSMWay(ResultSet qResult) throws SQLException {
         this.readCommonColumns(qResult);
-        String nodeIDs = qResult.getString("node_ids");
+        if(this.typedIDLists == null) {
+            this.typedIDLists = this.isColumnType(qResult, "node_ids", Types.ARRAY);
+        }
+        String nodeIDs = this.typedIDLists ? null : qResult.getString("node_ids");
 
         OSMWay way = new OSMWay(this, osmIDString, classCodeString, otherClassCodes, sTags, 
                 nodeIDs, ohdmObjectIDString, ohdmGeomIDString, valid, 
                 this.geom_changed, this.object_changed, this.deleted,
                 this.has_name, this.tstamp, this.object_new
         );
+        
+        if(this.typedIDLists) {
+            way.setNodeIDs(this.extractIDArray(qResult, "node_ids"));
+        }
+        this.setBinaryTags(way);
 
         return way;
     }
     
     protected OSMNode createOSMNode(ResultSet qResult) throws SQLException {
         this.readCommonColumns(qResult);
-        String longitude = qResult.getString("longitude");
-        String latitude = qResult.getString("latitude");
+        if(this.typedCoordinates == null) {
+            this.typedCoordinates = this.isColumnType(qResult, "longitude", Types.INTEGER);
+        }
+        
+        String longitude, latitude;
+        if(this.typedCoordinates) {
+            int lon = qResult.getInt("longitude");
+            longitude = qResult.wasNull() ? null : InterDB.coordinateToString(lon);
+            int lat = qResult.getInt("latitude");
+            latitude = qResult.wasNull() ? null : InterDB.coordinateToString(lat);
+        } else {
+            longitude = qResult.getString("longitude");
+            latitude = qResult.getString("latitude");
+        }
         
         OSMNode node = new OSMNode(this, osmIDString, classCodeString, otherClassCodes, sTags, 
                 longitude, latitude, ohdmObjectIDString, ohdmGeomIDString, 
                 valid, this.geom_changed, this.object_changed, this.deleted,
                 this.has_name, this.tstamp, this.object_new);
+        this.setBinaryTags(node);
 
         return node;
     } 
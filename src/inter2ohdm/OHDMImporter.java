@@ -4,8 +4,10 @@ import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -14,10 +16,14 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import util.CommitInterval;
 import util.DB;
 import util.OHDM_DB;
 import util.FileSQLStatementQueue;
 import util.InterDB;
+import util.NodeLocationStore;
+import util.PreparedBatch;
+import util.PreparedStatementCache;
 import util.SQLStatementQueue;
 import util.Parameter;
 import util.Trigger;
@@ -36,6 +42,10 @@ public class OHDMImporter extends Importer {
     private final SQLStatementQueue sourceUpdateQueue;
     private final SQLStatementQueue targetSelectQueue;
     private final SQLStatementQueue targetInsertQueue;
+    // objects, geometries, validities and users - bound parameters
+    private final PreparedStatementCache targetStatements;
+    // transactions of all writes on target connection, null: autocommit
+    private CommitInterval targetCommits = null;
 
 
     private String defaultSince = "1970-01-01";
@@ -56,19 +66,56 @@ public class OHDMImporter extends Importer {
         
         this.targetSelectQueue = new SQLStatementQueue(targetConnection);
         this.targetInsertQueue = new SQLStatementQueue(targetConnection);
+        this.targetStatements = new PreparedStatementCache(targetConnection);
         
         this.defaultSince = "2016-01-01";
         this.defaultUntil = validUntilString;
     }
     
+    /**
+     * sends batched rows and commits - insert queue closes target
+     * connection, so that comes last
+     */
     void close() throws SQLException {
-        this.targetInsertQueue.forceExecute();
-        this.targetInsertQueue.close();
+        try {
+            this.targetInsertQueue.forceExecute();
+            this.targetStatements.close();
+            this.sourceUpdateQueue.commit();
+            if(this.targetCommits != null) this.targetCommits.end();
+        }
+        finally {
+            this.targetInsertQueue.close();
+        }
     }
     
+    /**
+     * executes and commits all statements - next import step can read them
+     */
     void forceExecute() throws SQLException {
         this.sourceUpdateQueue.forceExecute();
         this.targetInsertQueue.forceExecute();
+        this.targetStatements.flush();
+        this.sourceUpdateQueue.commit();
+        if(this.targetCommits != null) this.targetCommits.commit();
+    }
+    
+    /**
+     * writes on target connection are committed in intervals of that
+     * parameter (see CommitInterval) - close commits
+     */
+    void setCommitInterval(Parameter parameter) throws SQLException {
+        this.targetCommits = CommitInterval.start(this.targetConnection, parameter);
+        if(this.targetCommits != null) {
+            this.targetInsertQueue.setCommitInterval(this.targetCommits);
+            this.targetStatements.setCommitInterval(this.targetCommits);
+        }
+    }
+    
+    /**
+     * statement executed on target connection by this importer
+     */
+    private void targetExecuted() throws SQLException {
+        if(this.targetCommits != null) this.targetCommits.executed(1);
     }
     
     private String getTodayString() {
@@ -275,14 +322,14 @@ public class OHDMImporter extends Importer {
                     OSMElement member = relation.getMember(i);
                     
                     targetIDString = member.getOHDMGeomID();
-                    this.addValidity(this.targetSelectQueue, element, targetType, 
+                    this.addValidity(element, targetType, 
                             classCodeString, newOldOHDMID, targetIDString, 
                             externalUserID, oldName.fromYear, oldName.toYear);
                 }
             } else {
                 targetIDString = element.getOHDMGeomID();
                 if(targetIDString != null && targetIDString.length() > 0) {
-                    this.addValidity(this.targetSelectQueue, element, targetType, 
+                    this.addValidity(element, targetType, 
                             classCodeString, newOldOHDMID, targetIDString, 
                             externalUserID, oldName.fromYear, oldName.toYear);
                 }
@@ -292,6 +339,7 @@ public class OHDMImporter extends Importer {
         if(newOldObject_Name_ID.isEmpty()) return false;
         
         this.targetSelectQueue.forceExecute();
+        this.targetStatements.flush();
         
         return true;
     }
@@ -351,44 +399,38 @@ public class OHDMImporter extends Importer {
         int ohdmID = -1; // -1 means failure
         try {
             // search in db
-            // SELECT id from external_users where userid = '43566';
-            StringBuilder sb = new StringBuilder();
-            sb.append("SELECT id from ");
-            sb.append(DB.getFullTableName(this.targetSchema, OHDM_DB.TABLE_EXTERNAL_USERS));
-            sb.append(" where userid = '");
-            sb.append(externalUserID);
-            sb.append("' AND external_system_id = '");
-            sb.append(osm_id);
-            sb.append("';");
-            
-            ResultSet result = this.executeQueryOnTarget(sb.toString());
+            PreparedStatement stmt = this.targetStatements.get("SELECT id from "
+                    + DB.getFullTableName(this.targetSchema, OHDM_DB.TABLE_EXTERNAL_USERS)
+                    + " where userid = ? AND external_system_id = ?;");
+            stmt.setLong(1, Long.parseLong(externalUserID));
+            stmt.setInt(2, osm_id);
             
-            if(result.next()) {
-                // there is an entry
-                ohdmID = result.getInt(1);
+            try(ResultSet result = stmt.executeQuery()) {
+                if(result.next()) {
+                    // there is an entry
+                    ohdmID = result.getInt(1);
 
-                // keep it
-                this.idExternalUsers.put(externalUserID, ohdmID);
-            } else {
+                    // keep it
+                    this.idExternalUsers.put(externalUserID, ohdmID);
+                }
+            }
+            
+            if(ohdmID == -1) {
                 // there is no entry
-                StringBuilder s = new StringBuilder();
-                //SQLStatementQueue s = new SQLStatementQueue(this.targetConnection);
-                s.append("INSERT INTO ");
-                s.append(DB.getFullTableName(this.targetSchema, OHDM_DB.TABLE_EXTERNAL_USERS));
-                s.append(" (userid, username, external_system_id) VALUES ('");
-                s.append(externalUserID);
-                s.append("', '");
-                s.append(externalUserName);
-                s.append("', ");
-                s.append(this.getOHDM_ID_externalSystemOSM());
-                s.append(") RETURNING id;");
-                //s.flush();
+                stmt = this.targetStatements.get("INSERT INTO "
+                        + DB.getFullTableName(this.targetSchema, OHDM_DB.TABLE_EXTERNAL_USERS)
+                        + " (userid, username, external_system_id) VALUES (?, ?, ?) RETURNING id;");
+                stmt.setLong(1, Long.parseLong(externalUserID));
+                stmt.setString(2, externalUserName);
+                stmt.setInt(3, osm_id);
                 
-                ResultSet insertResult = this.executeQueryOnTarget(s.toString());
-                insertResult.next();
-                ohdmID = insertResult.getInt(1);
+                try(ResultSet insertResult = stmt.executeQuery()) {
+                    insertResult.next();
+                    ohdmID = insertResult.getInt(1);
+                }
+                this.targetExecuted();
             }
-        } catch (SQLException ex) {
+        } catch (SQLException | NumberFormatException ex) {
             // TODO serious probleme
             System.err.println("thats a serious problem, cannot insert/select external user id: " + ex.getMessage());
         }
@@ -457,18 +499,20 @@ public class OHDMImporter extends Importer {
     }
     
     String addOHDMObject(String name, int externalUserID) throws SQLException {
-        SQLStatementQueue sql = new SQLStatementQueue(this.targetConnection);
-        sql.append("INSERT INTO ");
-        sql.append(DB.getFullTableName(this.targetSchema, OHDM_DB.TABLE_GEOOBJECT));
-        sql.append(" (name, source_user_id) VALUES ('");
-        sql.append(name);
-        sql.append("', ");
-        sql.append(externalUserID);
-        sql.append(") RETURNING id;");
-        
-        ResultSet result = sql.executeWithResult();
-        result.next();
-        return result.getBigDecimal(1).toString();
+        PreparedStatement stmt = this.targetStatements.get("INSERT INTO "
+                + DB.getFullTableName(this.targetSchema, OHDM_DB.TABLE_GEOOBJECT)
+                + " (name, source_user_id) VALUES (?, ?) RETURNING id;");
+        stmt.setString(1, name);
+        stmt.setInt(2, externalUserID);
+        
+        String idString;
+        try(ResultSet result = stmt.executeQuery()) {
+            result.next();
+            idString = result.getBigDecimal(1).toString();
+        }
+        this.targetExecuted();
+        
+        return idString;
     }
     
     String addGeometry(OSMElement osmElement) throws SQLException {
@@ -481,41 +525,38 @@ public class OHDMImporter extends Importer {
         String wkt = osmElement.getWKTGeometry();
         if(wkt == null || wkt.length() < 1) return null;
         
-//        SQLStatementQueue targetQueue = new SQLStatementQueue(this.targetConnection);
-        
-        targetSelectQueue.append("INSERT INTO ");
-        
-        String fullTableName;
-        
+        String table, column;
         switch(osmElement.getGeometryType()) {
             case OHDM_DB.POINT: 
-                fullTableName = DB.getFullTableName(this.targetSchema, OHDM_DB.TABLE_POINTS);
-                targetSelectQueue.append(fullTableName);
-                targetSelectQueue.append(" (point, ");
+                table = OHDM_DB.TABLE_POINTS;
+                column = "point";
                 break;
             case OHDM_DB.LINESTRING: 
-                fullTableName = DB.getFullTableName(this.targetSchema, OHDM_DB.TABLE_LINES);
-                targetSelectQueue.append(fullTableName);
-                targetSelectQueue.append(" (line, ");
+                table = OHDM_DB.TABLE_LINES;
+                column = "line";
                 break;
             case OHDM_DB.POLYGON: 
-                fullTableName = DB.getFullTableName(this.targetSchema, OHDM_DB.TABLE_POLYGONS);
-                targetSelectQueue.append(fullTableName);
-                targetSelectQueue.append(" (polygon, ");
+                table = OHDM_DB.TABLE_POLYGONS;
+                column = "polygon";
                 break;
+            default:
+                return null;
         }
         
-        targetSelectQueue.append(" source_user_id) VALUES ('");
+        PreparedStatement stmt = this.targetStatements.get("INSERT INTO "
+                + DB.getFullTableName(this.targetSchema, table)
+                + " (" + column + ", source_user_id) VALUES (?::geometry, ?) RETURNING id;");
         
-        targetSelectQueue.append(wkt);
-        targetSelectQueue.append("', ");
-        targetSelectQueue.append(externalUserID);
-        targetSelectQueue.append(") RETURNING id;");
-
         try {
-            ResultSet result = targetSelectQueue.executeWithResult();
-            result.next();
-            String geomIDString = result.getBigDecimal(1).toString();
+            stmt.setString(1, wkt);
+            stmt.setInt(2, externalUserID);
+            
+            String geomIDString;
+            try(ResultSet result = stmt.executeQuery()) {
+                result.next();
+                geomIDString = result.getBigDecimal(1).toString();
+            }
+            this.targetExecuted();
             osmElement.setOHDMGeometryID(this.sourceUpdateQueue, geomIDString);
             return geomIDString;
         }
@@ -545,12 +586,9 @@ public class OHDMImporter extends Importer {
         
         // there can be more than one classcode...
         
-        this.addValidity(this.targetInsertQueue, osmElement, targetType, 
+        this.addValidity(osmElement, targetType, 
                 osmElement.getClassCodeString(), ohdmIDString, 
                 ohdmGeomIDString, externalUserID);
-        
-//        this.targetSelectQueue.forceExecute();
-        this.targetInsertQueue.couldExecute();
     }
     
     private String formatDateString(String sinceValue) {
@@ -564,7 +602,7 @@ public class OHDMImporter extends Importer {
         return null;
     }
     
-    void addValidity(SQLStatementQueue sq, OSMElement osmElement, int targetType, 
+    void addValidity(OSMElement osmElement, int targetType, 
             String classCodeString, String sourceIDString, 
             String targetIDString, int externalUserID) throws SQLException {
         
@@ -588,12 +626,15 @@ public class OHDMImporter extends Importer {
             sinceString = this.defaultSince;
         }
         
-        this.addValidity(sq, osmElement, targetType, classCodeString, 
+        this.addValidity(osmElement, targetType, classCodeString, 
                 sourceIDString, targetIDString, externalUserID, 
                 sinceString, this.defaultUntil);
     }
     
-    void addValidity(SQLStatementQueue sq, OSMElement osmElement, int targetType, 
+    /**
+     * rows are sent in batches - see forceExecute
+     */
+    void addValidity(OSMElement osmElement, int targetType, 
             String classCodeString, String sourceIDString, 
             String targetIDString, int externalUserID, String sinceString, 
             String untilString) throws SQLException {
@@ -606,44 +647,28 @@ public class OHDMImporter extends Importer {
         // some osm elements are tagged with more than one feature class
         Iterator<String> classIDIter = osmElement.getOtherClassIDs();
         
+        PreparedBatch batch = this.targetStatements.getBatch("INSERT INTO "
+                + DB.getFullTableName(this.targetSchema, OHDM_DB.TABLE_GEOOBJECT_GEOMETRY)
+                + " (type_target, classification_id, id_geoobject_source, id_target, valid_since, valid_until, "
+                + " source_user_id, tags) VALUES (?, ?, ?, ?, ?::date, ?::date, ?, ?::hstore);");
+        PreparedStatement stmt = batch.statement();
+        
         boolean again = false;
         do {
             again = false;
-            sq.append("INSERT INTO ");
-            sq.append(DB.getFullTableName(this.targetSchema, OHDM_DB.TABLE_GEOOBJECT_GEOMETRY));
-            sq.append(" (type_target, classification_id, id_geoobject_source, id_target, valid_since, valid_until, ");
-            sq.append(" source_user_id");
+            stmt.setInt(1, targetType);
+            OHDMImporter.setID(stmt, 2, classCodeString);
+            OHDMImporter.setID(stmt, 3, sourceIDString);
+            OHDMImporter.setID(stmt, 4, targetIDString);
+            stmt.setString(5, sinceString);
+            stmt.setString(6, untilString);
+            stmt.setInt(7, externalUserID);
             if(osmElement.hasFreeAttributes()) {
-                sq.append(", tags) VALUES (");
+                stmt.setString(8, osmElement.getFreeAttributesASHStoreValue());
             } else {
-                sq.append(") VALUES (");
+                stmt.setNull(8, Types.VARCHAR);
             }
-            sq.append(targetType);
-            sq.append(", ");
-            sq.append(classCodeString);
-            sq.append(", ");
-            sq.append(sourceIDString);
-            sq.append(", ");
-            sq.append(targetIDString);
-            sq.append(", '");
-            sq.append(sinceString);
-            sq.append("', '"); 
-            sq.append(untilString);
-            sq.append("', "); // until
-            sq.append(externalUserID);
-            if(osmElement.hasFreeAttributes()) {
-                sq.append(", '"); //
-                sq.append(osmElement.getFreeAttributesASHStoreValue());
-                sq.append("'"); //
-            }
-
-            sq.append(");");
-            /*
-            if(osmElement.hasFreeAttributes()) {
-                sq.forceExecute(); // that's for debugging purposes only: TODO
-            } else { */
-                sq.couldExecute();
-            //}
+            batch.addRow();
             
             if(classIDIter.hasNext()) {
                 classCodeString = classIDIter.next();
@@ -651,6 +676,14 @@ public class OHDMImporter extends Importer {
             }
         } while(again);
     }
+    
+    private static void setID(PreparedStatement stmt, int index, String id) throws SQLException {
+        if(id == null) {
+            stmt.setNull(index, Types.BIGINT);
+        } else {
+            stmt.setLong(index, Long.parseLong(id));
+        }
+    }
 
     void addContentAndURL(OSMElement osmElement, String ohdmIDString) {
         SQLStatementQueue sql = this.targetInsertQueue;
@@ -849,6 +882,7 @@ public class OHDMImporter extends Importer {
         
         Trigger trigger = null;
         OSMExtractor extractor = null;
+        NodeLocationStore nodeLocations = null;
         OHDMImporter ohdmImporter = null;
         SQLStatementQueue targetQueue = null;
         
@@ -889,6 +923,7 @@ public class OHDMImporter extends Importer {
             } else {
                 System.out.println("intermediate update queue uses jdbc");
                 updateQueue = new SQLStatementQueue(sourceParameter);
+                updateQueue.setCommitInterval(sourceParameter);
             }
             
             ohdmImporter = new OHDMImporter(iDB, targetParameter.getOsmfilecreationdate(), sourceConnection,
@@ -923,6 +958,14 @@ public class OHDMImporter extends Importer {
 
             extractor = new OSMExtractor(sourceConnection, sourceSchema, ohdmImporter, stepLen);
             
+            File nodeLocationFile = sourceParameter.getNodeLocationStoreFile();
+            if(nodeLocationFile != null) {
+                System.out.println("ways get node locations from " + nodeLocationFile.getAbsolutePath());
+                nodeLocations = NodeLocationStore.open(nodeLocationFile);
+                iDB.setNodeLocationStore(nodeLocations);
+                extractor.setNodeLocationStore(nodeLocations);
+            }
+            
             System.out.println("intermediate select queue uses jdbc");
             sourceQueue = DB.createSQLStatementQueue(sourceConnection, sourceParameter);
             
@@ -939,6 +982,9 @@ public class OHDMImporter extends Importer {
             // set initial max validity
             OHDM_DB.writeInitialImportDate(targetConnection, targetSchema, targetParameter.getOsmfilecreationdate());
             
+            // transactions of ohdm inserts - committed after each import step
+            ohdmImporter.setCommitInterval(targetParameter);
+            
 //            if(targetParameter.importNodes()) {
                 extractor.processNodes(sourceQueue, true);
                 ohdmImporter.forceExecute();
@@ -1034,6 +1080,7 @@ public class OHDMImporter extends Importer {
                 targetQueue.join();
             }
             if(ohdmImporter != null) ohdmImporter.close();
+            if(nodeLocations != null) nodeLocations.close();
             System.out.println("done importing from intermediate DB to ohdm DB");
             System.out.println(extractor.getStatistics());
         }
@@ -1175,6 +1222,7 @@ public class OHDMImporter extends Importer {
             SQLStatementQueue sql = new SQLStatementQueue(this.targetConnection);
             sql.append(sq.toString());
             sql.forceExecute();
+            this.targetExecuted();
             return true;
         }
         return false;
@@ -1255,7 +1303,7 @@ public class OHDMImporter extends Importer {
         
         // void addValidity(int targetType, String classCodeString, String sourceIDString, String targetIDString, int externalUserID) throws SQLException {
         for(String targetIDString : polygonIDs) {
-            this.addValidity(targetSelectQueue, relation, targetType, classCodeString, sourceIDString, targetIDString, externalUserID);
+            this.addValidity(relation, targetType, classCodeString, sourceIDString, targetIDString, externalUserID);
         }
         
         // fill subsequent table if necessary
@@ -1271,6 +1319,7 @@ public class OHDMImporter extends Importer {
         
         try {
             targetSelectQueue.forceExecute(true);
+            this.targetStatements.flush();
         }
         catch(SQLException se) {
             Util.printExceptionMessage(se, targetSelectQueue, "when writing relation tables", false);
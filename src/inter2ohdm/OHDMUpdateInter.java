@@ -1,6 +1,7 @@
 package inter2ohdm;
 
 import java.io.IOException;
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.DateFormat;
@@ -8,8 +9,11 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
+import util.DB;
+import util.InterDB;
 import util.Parameter;
 import util.SQLStatementQueue;
+import util.TagDictionary;
 
 /**
  * Created by thsc on 01.07.2017.
@@ -85,6 +89,23 @@ public class OHDMUpdateInter {
 
         }
 
+        // both intermediate schemas are compared column by column
+        try(Connection connection = DB.createConnection(interDBParameters)) {
+            if(InterDB.isTypedSchema(connection, interDBParameters.getSchema()) 
+                    != InterDB.isTypedSchema(connection, updateDBParameters.getSchema())) {
+                System.err.println("intermediate and update intermediate must both " +
+                        "have typed or untyped columns (see typedSchema)");
+                System.exit(1);
+            }
+            // tags are compared byte by byte - codes of two dictionaries differ
+            if(TagDictionary.exists(connection, interDBParameters.getSchema()) 
+                    || TagDictionary.exists(connection, updateDBParameters.getSchema())) {
+                System.err.println("intermediate and update intermediate cannot be compared " +
+                        "with tag dictionaries (see tagDictionary)");
+                System.exit(1);
+            }
+        }
+
         SQLStatementQueue sqlInterUpdate = new SQLStatementQueue(interDBParameters);
 
         SQLStatementQueue sqlOHDM = new SQLStatementQueue(ohdmParameter);
@@ -18,6 +18,7 @@ public class OSMChunkExtractor {
 
         Trigger trigger = null;
         OSMExtractor extractor = null;
+        NodeLocationStore nodeLocations = null;
         OHDMImporter ohdmImporter = null;
         SQLStatementQueue targetQueue = null;
 
@@ -132,6 +133,12 @@ public class OSMChunkExtractor {
             // extractor from intermediate to importer
             extractor = new OSMExtractor(sourceConnection, sourceSchema, ohdmImporter, stepLen);
             
+            if(sourceParameter.getNodeLocationStoreFile() != null) {
+                nodeLocations = NodeLocationStore.open(sourceParameter.getNodeLocationStoreFile());
+                intermediateDB.setNodeLocationStore(nodeLocations);
+                extractor.setNodeLocationStore(nodeLocations);
+            }
+            
             try {
                 if (reset) {
 /*
@@ -200,6 +207,7 @@ public class OSMChunkExtractor {
                 targetQueue.join();
             }
             if (ohdmImporter != null) ohdmImporter.close();
+            if (nodeLocations != null) nodeLocations.close();
         }
     }
 }
@@ -1,5 +1,6 @@
 package inter2ohdm;
 
+import osm.OSMClassification;
 import util.*;
 
 import java.io.File;
@@ -243,6 +244,15 @@ public class OSMChunkExtractorCommandBuilder {
         // java
         sb.append(this.jvmPath);
 
+        // chunk processes load same classification, e.g. a compiled image
+        String classification = System.getProperty(OSMClassification.CLASSIFICATION_PROPERTY);
+        if(classification != null) {
+            sb.append(" -D");
+            sb.append(OSMClassification.CLASSIFICATION_PROPERTY);
+            sb.append("=");
+            sb.append(classification);
+        }
+
         // -jar
         sb.append(" -jar ");
         sb.append(mainJarFile);
@@ -4,12 +4,14 @@ import java.io.PrintStream;
 import java.sql.Date;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.StringTokenizer;
 import osm.OSMClassification;
 import util.InterDB;
 import util.SQLStatementQueue;
+import util.TagDictionary;
 
 /**
  *
@@ -215,6 +217,18 @@ public abstract class OSMElement extends AbstractElement {
         return this.subClassName;
     }
     
+    /**
+     * tags of typed schema - user id and name are read again
+     */
+    @Override
+    void setSerializedTags(byte[] serializedTags, TagDictionary dictionary) {
+        super.setSerializedTags(serializedTags, dictionary);
+        this.uid = null;
+        this.username = null;
+        this.getUserID();
+        this.getUsername();
+    }
+    
     private String uid = null;
     /**
      * return osm user id
@@ -244,16 +258,31 @@ public abstract class OSMElement extends AbstractElement {
         return this.username;
     }
     
-    protected ArrayList<String> setupIDList(String idString) {
-        ArrayList<String> idList = new ArrayList<>();
-        if (idString != null) {
-            StringTokenizer st = new StringTokenizer(idString, ",");
-            while (st.hasMoreTokens()) {
-                idList.add(st.nextToken().trim());
+    // position of id list that got its member already
+    protected static final long USED_ID = Long.MIN_VALUE;
+    
+    /**
+     * id list from comma separated ids of untyped intermediate schema -
+     * typed schema delivers bigint[] as it is
+     */
+    protected long[] setupIDList(String idString) {
+        if (idString == null) return new long[0];
+        
+        StringTokenizer st = new StringTokenizer(idString, ",");
+        long[] idList = new long[st.countTokens()];
+        int i = 0;
+        while (st.hasMoreTokens()) {
+            String id = st.nextToken().trim();
+            try {
+                idList[i++] = Long.parseLong(id);
+            }
+            catch(NumberFormatException e) {
+                System.err.println("OHDMElement.setupIDList(): skip malformed id: " + id);
+                i--;
             }
         }
         
-        return idList;
+        return i == idList.length ? idList : Arrays.copyOf(idList, i);
     }
     
     boolean isEmpty() {
@@ -280,16 +309,30 @@ public abstract class OSMElement extends AbstractElement {
         return this.tstampDate;
     }
     
-    protected int addMember(OSMElement newElement, ArrayList memberList, ArrayList<String> idList, boolean setall) {
-        String idString = newElement.getOSMIDString();
+    private static int indexOf(long[] idList, long id) {
+        for(int i = 0; i < idList.length; i++) {
+            if(idList[i] == id) return i;
+        }
+        return -1;
+    }
+    
+    protected int addMember(OSMElement newElement, ArrayList memberList, long[] idList, boolean setall) {
+        long id;
+        try {
+            id = Long.parseLong(newElement.getOSMIDString());
+        }
+        catch(NumberFormatException e) {
+            System.err.print("OHDMElement.addMember(): member has no numeric id: " + newElement.getOSMIDString());
+            return -1;
+        }
         
-        int position = idList.indexOf(idString);
+        int position = OSMElement.indexOf(idList, id);
         while(position > -1) {
             /* pay attention! a node can be appeare more than once on a string!
             indexof would produce the smallest index each time. Thus, we have
             to overwrite each entry after its usage
              */
-            idList.set(position, "-1");
+            idList[position] = USED_ID;
 
             if (position > -1) {
                 // add
@@ -307,7 +350,7 @@ public abstract class OSMElement extends AbstractElement {
             // a member can appear more than once.. set all slots?
             if(setall) {
                 // find next position, if any
-                position = idList.indexOf(idString);
+                position = OSMElement.indexOf(idList, id);
             } else {
                 // only one insert, we are done here
                 return position;
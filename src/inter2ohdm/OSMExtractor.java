@@ -459,7 +459,7 @@ public class OSMExtractor extends IntermediateDB implements TriggerRecipient {
                 sql.append(this.upperID.toString());
                 sql.append(" AND classcode != -1 "); // excluding untyped entities 
                 if(namedEntitiesOnly) {
-                    sql.append(" AND (serializedtags like '%004name%' OR classcode != -1)"); // entities with a name OR classcode
+                    sql.append(" AND (has_name OR classcode != -1)"); // entities with a name OR classcode
                 }
                 sql.append(";");
                 ResultSet qResult = sql.executeWithResult();
@@ -538,6 +538,11 @@ public class OSMExtractor extends IntermediateDB implements TriggerRecipient {
 
         long before = System.currentTimeMillis();
         
+        if(this.addNodesFromLocationStore(way)) {
+            this.noteTime(System.currentTimeMillis() - before, TIME_ADD_NODES);
+            return way;
+        }
+        
         // believe it or not but that's faster with index on waynodemember
         // I don't believe it's true for huge data
         SQLStatementQueue sql = new SQLStatementQueue(this.sourceConnection);
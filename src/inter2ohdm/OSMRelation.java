@@ -14,9 +14,10 @@ import util.OHDM_DB;
  */
 public class OSMRelation extends OSMElement {
     private final String memberIDs;
+    private long[] memberIDArray = null; // typed intermediate schema
     private ArrayList<OSMElement> members;
     private ArrayList<String> memberRoles;
-    private ArrayList<String> memberIDList;
+    private long[] memberIDList;
     private ArrayList<String> roleMemberIDList;
     
     OSMRelation(IntermediateDB intermediateDB, String osmIDString, 
@@ -33,6 +34,13 @@ public class OSMRelation extends OSMElement {
         this.memberIDs = memberIDs;
     }
     
+    /**
+     * member ids from typed intermediate schema - replace string from constructor
+     */
+    void setMemberIDs(long[] memberIDs) {
+        this.memberIDArray = memberIDs;
+    }
+    
     OSMElement getMember(int i) {
         return this.members.get(i);
     }
@@ -397,7 +405,7 @@ public class OSMRelation extends OSMElement {
     @Override
     boolean isConsistent(PrintStream p) {
         // all member added?
-        if(this.memberIDList == null || this.memberIDList.isEmpty() ||
+        if(this.memberIDList == null || this.memberIDList.length == 0 ||
             this.members == null || this.members.isEmpty() ||
             this.memberRoles == null || this.memberRoles.isEmpty()) {
             
@@ -412,9 +420,9 @@ public class OSMRelation extends OSMElement {
         }
         
         // all lists must have same size
-        if( this.members.size() != this.memberIDList.size() ||
+        if( this.members.size() != this.memberIDList.length ||
                 this.members.size() != this.memberRoles.size() ||
-                this.memberRoles.size() != this.memberIDList.size()) {
+                this.memberRoles.size() != this.memberIDList.length) {
             p.print("relation #");
             p.print(this.getOSMIDString());
             p.println(" isConsistent: all lists must have same size");
@@ -429,14 +437,16 @@ public class OSMRelation extends OSMElement {
     void addMember(OSMElement element, String roleName) {
         if (this.members == null) {
             // setup position list
-            this.memberIDList = this.setupIDList(this.memberIDs);
+            // used positions are overwritten - array of typed schema is copied
+            this.memberIDList = this.memberIDArray != null ? 
+                    this.memberIDArray.clone() : this.setupIDList(this.memberIDs);
             
             // setup other lists with same size
-            this.memberRoles = new ArrayList<>(this.memberIDList.size());
-            this.members = new ArrayList<>(this.memberIDList.size());
+            this.memberRoles = new ArrayList<>(this.memberIDList.length);
+            this.members = new ArrayList<>(this.memberIDList.length);
             
             // dummys must be added..
-            for(int i = 0; i < this.memberIDList.size(); i++) {
+            for(int i = 0; i < this.memberIDList.length; i++) {
                 this.members.add(null);
                 this.memberRoles.add(null);
             }
@@ -607,7 +617,7 @@ public class OSMRelation extends OSMElement {
         
         sb.append("memberIDList.size()");
         if(this.members != null) {
-            sb.append(this.memberIDList.size());
+            sb.append(this.memberIDList.length);
         } else {
             sb.append("null");
         }
@@ -626,4 +636,4 @@ public class OSMRelation extends OSMElement {
     private void fixUnclosedPolygon(StringBuilder wktBuilder) {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
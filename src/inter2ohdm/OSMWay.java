@@ -3,8 +3,10 @@ package inter2ohdm;
 import java.io.PrintStream;
 import java.sql.Date;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import osm.OSMClassification;
 import util.OHDM_DB;
 
 /**
@@ -13,8 +15,9 @@ import util.OHDM_DB;
  */
 public class OSMWay extends OSMElement {
     private ArrayList<OSMNode> nodes;
-    private ArrayList<String> nodeIDList;
+    private long[] nodeIDList;
     private final String nodeIDs;
+    private long[] nodeIDArray = null; // typed intermediate schema
 
     OSMWay(IntermediateDB intermediateDB, String osmIDString,
            String classCodeString, String otherClassCodes, String sTags, String nodeIDs,
@@ -40,7 +43,7 @@ public class OSMWay extends OSMElement {
         }
         
         int i = this.isPolygon ? 1 : 0;
-        if(this.nodes.size() + i != this.nodeIDList.size()) {
+        if(this.nodes.size() + i != this.nodeIDList.length) {
             p.println("isConsistent: nodes list and nodes id list have different length");
             return false;
         }
@@ -50,7 +53,7 @@ public class OSMWay extends OSMElement {
     
     @Override
     boolean isEmpty() {
-        return(this.nodeIDList == null || this.nodeIDList.isEmpty() 
+        return(this.nodeIDList == null || this.nodeIDList.length == 0 
                 || this.nodes == null || this.nodes.isEmpty());
         
     }
@@ -153,38 +156,44 @@ public class OSMWay extends OSMElement {
     }
     
     /**
-     * return iterator of all nodes which make up that way
-     * @return 
+     * return ids of all nodes which make up that way
+     * @return null if there are none
      */
-    public Iterator<String> getNodeIDs() {
-        if(this.nodeIDs == null | this.nodeIDs.length() < 1) return null;
+    public long[] getNodeIDs() {
+        long[] ids = this.nodeIDArray != null ? this.nodeIDArray : this.setupIDList(this.nodeIDs);
         
-        return this.setupIDList(this.nodeIDs).iterator();
+        return ids.length < 1 ? null : ids;
+    }
+    
+    /**
+     * node ids from typed intermediate schema - replace string from constructor
+     */
+    void setNodeIDs(long[] nodeIDs) {
+        this.nodeIDArray = nodeIDs;
     }
 
     void addNode(OSMNode node) {
         if (this.nodes == null) {
             // setup position list
-            this.nodeIDList = this.setupIDList(this.nodeIDs);
+            // used positions are overwritten - array of typed schema is copied
+            this.nodeIDList = this.nodeIDArray != null ? 
+                    this.nodeIDArray.clone() : this.setupIDList(this.nodeIDs);
 
             // is it a ring?
-            String firstElement = this.nodeIDList.get(0);
-            String lastElement = this.nodeIDList.get(this.nodeIDList.size() - 1);
-            if (firstElement.equalsIgnoreCase(lastElement)) {
+            int last = this.nodeIDList.length - 1;
+            if (last > 0 && this.nodeIDList[0] == this.nodeIDList[last]) {
                 /*
                 there are a number cases in which a way has three (!) nodes and 
                 first and third are identical. It a stroke from first to 
                 second and back. Thats not a polygon.
                 */
-                if(this.nodeIDList.size() == 3) {
-                    ArrayList<String> realList = new ArrayList<>();
-                    realList.add(this.nodeIDList.get(0));
-                    realList.add(this.nodeIDList.get(1));
-                    this.nodeIDList = realList;
-                } else {
+                if(this.nodeIDList.length == 3) {
+                    this.nodeIDList = Arrays.copyOf(this.nodeIDList, 2);
+                } else if(this.isArea()) {
+                    // closed highways, fences etc. stay lines
                     this.isPolygon = true;
                     // remove last entry in idlist
-                    this.nodeIDList.set(this.nodeIDList.size()-1, "-1");
+                    this.nodeIDList[last] = USED_ID;
                 }
             }
             
@@ -192,7 +201,7 @@ public class OSMWay extends OSMElement {
             /* if this is a polygon, one slot can be spared because copy of
             first node is not kept in this list
             */
-            int length = this.isPolygon ? this.nodeIDList.size() - 1 : this.nodeIDList.size();
+            int length = this.isPolygon ? this.nodeIDList.length - 1 : this.nodeIDList.length;
             this.nodes = new ArrayList<>(length);
             
             // dummy must be added..
@@ -204,6 +213,26 @@ public class OSMWay extends OSMElement {
         this.addMember(node, this.nodes, this.nodeIDList, true);
     }
 
+    /**
+     * see OSMClassification.isArea - same rule as in OSMHistoryImport
+     */
+    private boolean isArea() {
+        int[] classIDs = new int[1 + this.otherClassCodeList.size()];
+        int count = 0;
+        try {
+            classIDs[count++] = Integer.parseInt(this.getClassCodeString());
+        }
+        catch(NumberFormatException e) {
+            count = 0;
+        }
+        for(String code : this.otherClassCodeList) {
+            // list has integers only - see InterDB.getIDList
+            classIDs[count++] = Integer.parseInt(code);
+        }
+        
+        return OSMClassification.getOSMClassification().isArea(classIDs, count, this.getValue("area"));
+    }
+
     OSMNode getLastPoint() {
         if(this.nodes == null || this.nodes.size() < 1) return null;
         
@@ -243,7 +272,7 @@ public class OSMWay extends OSMElement {
         sb.append(this.nodes.size());
         sb.append("\t");
         sb.append("nodeIDList.size()");
-        sb.append(this.nodeIDList.size());
+        sb.append(this.nodeIDList.length);
         sb.append("\t");
         
         return sb.toString();
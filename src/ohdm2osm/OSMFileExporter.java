@@ -128,17 +128,18 @@ public class OSMFileExporter {
                 sql.append(this.bboxWKT);
                 sql.append("'), 3857))");
 
-                ResultSet resultSet = sql.executeWithResult();
-
-                while(resultSet.next()) {
-                    this.printNode(
-                            resultSet.getDate("valid_since"),
-                            resultSet.getDouble("st_y"),
-                            resultSet.getDouble("st_x"),
-                            resultSet.getBigDecimal("classid"),
-                            resultSet.getString("name"),
-                            resultSet.getString("tags")
-                    );
+                try(SQLCursor cursor = sql.executeStreaming(this.sourceParameter.getFetchSize())) {
+                    ResultSet resultSet = cursor.getResultSet();
+                    while(cursor.next()) {
+                        this.printNode(
+                                resultSet.getDate("valid_since"),
+                                resultSet.getDouble("st_y"),
+                                resultSet.getDouble("st_x"),
+                                resultSet.getBigDecimal("classid"),
+                                resultSet.getString("name"),
+                                resultSet.getString("tags")
+                        );
+                    }
                 }
             }
         }
@@ -168,16 +169,18 @@ SELECT st_astext(st_transform(line, 4326)), name, classid, valid_since
                 sql.append(this.bboxWKT);
                 sql.append("'), 3857))");
 
-                ResultSet resultSet = sql.executeWithResult();
-                while(resultSet.next()) {
-                    this.printWay(
-                            resultSet.getDate("valid_since"),
-                            resultSet.getString(1),
-                            resultSet.getBigDecimal("classid"),
-                            resultSet.getString("name"),
-                            resultSet.getString("tags"),
-                            false
-                    );
+                try(SQLCursor cursor = sql.executeStreaming(this.sourceParameter.getFetchSize())) {
+                    ResultSet resultSet = cursor.getResultSet();
+                    while(cursor.next()) {
+                        this.printWay(
+                                resultSet.getDate("valid_since"),
+                                resultSet.getString(1),
+                                resultSet.getBigDecimal("classid"),
+                                resultSet.getString("name"),
+                                resultSet.getString("tags"),
+                                false
+                        );
+                    }
                 }
             }
         }
@@ -212,93 +215,95 @@ st_astext(ST_InteriorRingN(polygon, 1)), subclassname, name, valid_since
                 sql.append(this.bboxWKT);
                 sql.append("'), 3857))");
 
-                ResultSet resultSet = sql.executeWithResult();
-                while(resultSet.next()) {
-                    java.sql.Date valid_since = resultSet.getDate("valid_since");
-                    BigDecimal classid = resultSet.getBigDecimal("classid");
-                    String name = resultSet.getString("name");
-                    String tags = resultSet.getString("tags");
-                    int numberInteriorRings = resultSet.getInt(2);
-
-                    if(numberInteriorRings == 0) {
-                        // just a closed way
-                        this.printWay(valid_since, resultSet.getString(1),
-                                classid, name, tags,true);
-                    } else {
-                        // becomes a multipolygon
-                        this.printWay(valid_since, resultSet.getString(1),
-                                null, null, null,true);
-                        // TODO: classid and name null or to be set?!
-
-                        // remember Id out ring
-                        int idOuter = this.ldfID-1;
-
-                        List<Integer> innerIDs = new ArrayList<>();
-
-                        // remember geom_id
-                        BigDecimal geom_id_polygon = resultSet.getBigDecimal("geom_id");
-
-                        for(int indexInterior = 1; indexInterior <= numberInteriorRings; indexInterior++) {
-                        /*
-SELECT st_astext(ST_TRANSFORM(ST_InteriorRingN(polygon, 1), 4326))
- FROM public.building_apartments where geom_id = ;
-                         */
-                            sql.append("SELECT st_astext(ST_TRANSFORM(ST_InteriorRingN(polygon, ");
-                            sql.append(indexInterior);
-                            sql.append("), 4326)) FROM ");
-                            sql.append(util.DB.getFullTableName(this.sourceParameter.getSchema(), tableName));
-                            sql.append(" WHERE geom_id = ");
-                            sql.append(geom_id_polygon.toString());
-
-                            resultSet = sql.executeWithResult();
-                            if(resultSet.next()) {
-                                this.printWay(valid_since, resultSet.getString(1),
-                                        null, null, null,true);
-
-                                innerIDs.add(this.ldfID-1);
+                try(SQLCursor cursor = sql.executeStreaming(this.sourceParameter.getFetchSize())) {
+                    ResultSet resultSet = cursor.getResultSet();
+                    while(cursor.next()) {
+                        java.sql.Date valid_since = resultSet.getDate("valid_since");
+                        BigDecimal classid = resultSet.getBigDecimal("classid");
+                        String name = resultSet.getString("name");
+                        String tags = resultSet.getString("tags");
+                        int numberInteriorRings = resultSet.getInt(2);
+
+                        if(numberInteriorRings == 0) {
+                            // just a closed way
+                            this.printWay(valid_since, resultSet.getString(1),
+                                    classid, name, tags,true);
+                        } else {
+                            // becomes a multipolygon
+                            this.printWay(valid_since, resultSet.getString(1),
+                                    null, null, null,true);
+                            // TODO: classid and name null or to be set?!
+
+                            // remember Id out ring
+                            int idOuter = this.ldfID-1;
+
+                            List<Integer> innerIDs = new ArrayList<>();
+
+                            // remember geom_id
+                            BigDecimal geom_id_polygon = resultSet.getBigDecimal("geom_id");
+
+                            for(int indexInterior = 1; indexInterior <= numberInteriorRings; indexInterior++) {
+                            /*
+    SELECT st_astext(ST_TRANSFORM(ST_InteriorRingN(polygon, 1), 4326))
+     FROM public.building_apartments where geom_id = ;
+                             */
+                                sql.append("SELECT st_astext(ST_TRANSFORM(ST_InteriorRingN(polygon, ");
+                                sql.append(indexInterior);
+                                sql.append("), 4326)) FROM ");
+                                sql.append(util.DB.getFullTableName(this.sourceParameter.getSchema(), tableName));
+                                sql.append(" WHERE geom_id = ");
+                                sql.append(geom_id_polygon.toString());
+
+                                ResultSet ringResult = sql.executeWithResult();
+                                if(ringResult.next()) {
+                                    this.printWay(valid_since, ringResult.getString(1),
+                                            null, null, null,true);
+
+                                    innerIDs.add(this.ldfID-1);
+                                }
                             }
-                        }
 
-                        // wrote inner ways - create relation
-                        /*
-                        <relation id="1">
-                          <tag k="type" v="multipolygon" />
-                          <member type="way" id="1" role="outer" />
-                          <member type="way" id="2" role="inner" />
-                        </relation>
-                         */
-
-                        this.relationStream.print(PADDING);
-                        this.relationStream.print("<relation id='");
-                        this.relationStream.print(this.ldfID++);
-                        this.relationStream.print("' timestamp='");
-                        this.relationStream.print(this.dateFormat.format(valid_since));
-
-                        this.relationStream.print("' uid='1' user='");
-                        this.relationStream.print(DEFAULT_USERNAME);
-                        this.relationStream.print("'");
-
-                        this.relationStream.println(" visible='true' version='1' changeset='1'>");
-
-                        this.relationStream.print(PADDING);
-                        this.relationStream.print(PADDING);
-                        this.relationStream.print("<member type='way' ref='");
-                        this.relationStream.print(idOuter);
-                        this.relationStream.println("' role='outer' />");
-
-                        for(int innerID : innerIDs) {
+                            // wrote inner ways - create relation
+                            /*
+                            <relation id="1">
+                              <tag k="type" v="multipolygon" />
+                              <member type="way" id="1" role="outer" />
+                              <member type="way" id="2" role="inner" />
+                            </relation>
+                             */
+
+                            this.relationStream.print(PADDING);
+                            this.relationStream.print("<relation id='");
+                            this.relationStream.print(this.ldfID++);
+                            this.relationStream.print("' timestamp='");
+                            this.relationStream.print(this.dateFormat.format(valid_since));
+
+                            this.relationStream.print("' uid='1' user='");
+                            this.relationStream.print(DEFAULT_USERNAME);
+                            this.relationStream.print("'");
+
+                            this.relationStream.println(" visible='true' version='1' changeset='1'>");
+
                             this.relationStream.print(PADDING);
                             this.relationStream.print(PADDING);
                             this.relationStream.print("<member type='way' ref='");
-                            this.relationStream.print(innerID);
-                            this.relationStream.println("' role='inner' />");
-                        }
+                            this.relationStream.print(idOuter);
+                            this.relationStream.println("' role='outer' />");
+
+                            for(int innerID : innerIDs) {
+                                this.relationStream.print(PADDING);
+                                this.relationStream.print(PADDING);
+                                this.relationStream.print("<member type='way' ref='");
+                                this.relationStream.print(innerID);
+                                this.relationStream.println("' role='inner' />");
+                            }
 
-                        this.printTag("type", "multipolygon", this.relationStream);
-                        this.printAllTags(classid, name, tags, this.relationStream);
+                            this.printTag("type", "multipolygon", this.relationStream);
+                            this.printAllTags(classid, name, tags, this.relationStream);
 
-                        this.relationStream.print(PADDING);
-                        this.relationStream.println("</relation>");
+                            this.relationStream.print(PADDING);
+                            this.relationStream.println("</relation>");
+                        }
                     }
                 }
             }
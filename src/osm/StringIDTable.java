@@ -0,0 +1,186 @@
+package osm;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Open addressing hash table string -&gt; int. It is filled once and
+ * can be queried with any CharSequence or a char[] / byte[] (utf-8) slice
+ * without creating a String.
+ */
+class StringIDTable {
+    private final char[][] keys;
+    private final int[] ids;
+    private final int mask;
+    private int size = 0;
+
+    /**
+     * @param capacity max number of entries
+     */
+    StringIDTable(int capacity) {
+        // load factor at most 0.5
+        int slots = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) * 2;
+        this.keys = new char[slots][];
+        this.ids = new int[slots];
+        this.mask = slots - 1;
+    }
+
+    private StringIDTable(char[][] keys, int[] ids, int size) {
+        this.keys = keys;
+        this.ids = ids;
+        this.mask = keys.length - 1;
+        this.size = size;
+    }
+
+    /**
+     * write slots as they are - read() needs no hashing
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(this.keys.length);
+        out.writeInt(this.size);
+        for (int slot = 0; slot < this.keys.length; slot++) {
+            char[] key = this.keys[slot];
+            if (key == null) {
+                out.writeInt(-1);
+                continue;
+            }
+            out.writeInt(key.length);
+            for (char c : key) {
+                out.writeChar(c);
+            }
+            out.writeInt(this.ids[slot]);
+        }
+    }
+
+    static StringIDTable read(DataInputStream in) throws IOException {
+        int slots = in.readInt();
+        if (slots < 2 || Integer.bitCount(slots) != 1) {
+            throw new IOException("broken string table: " + slots + " slots");
+        }
+        int size = in.readInt();
+        char[][] keys = new char[slots][];
+        int[] ids = new int[slots];
+        for (int slot = 0; slot < slots; slot++) {
+            int length = in.readInt();
+            if (length < 0) continue;
+
+            char[] key = new char[length];
+            for (int i = 0; i < length; i++) {
+                key[i] = in.readChar();
+            }
+            keys[slot] = key;
+            ids[slot] = in.readInt();
+        }
+        return new StringIDTable(keys, ids, size);
+    }
+
+    /**
+     * @return false if table is full
+     */
+    boolean put(String key, int id) {
+        int slot = StringIDTable.hash(key, 0, key.length()) & this.mask;
+        while (this.keys[slot] != null) {
+            if (Arrays.equals(this.keys[slot], key.toCharArray())) {
+                this.ids[slot] = id;
+                return true;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        if (2 * (this.size + 1) > this.keys.length) return false;
+
+        this.keys[slot] = key.toCharArray();
+        this.ids[slot] = id;
+        this.size++;
+        return true;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * @return id or -1 if unknown
+     */
+    int get(CharSequence key) {
+        if (key == null) return -1;
+
+        int length = key.length();
+        int slot = StringIDTable.hash(key, 0, length) & this.mask;
+        char[] k;
+        while ((k = this.keys[slot]) != null) {
+            if (k.length == length) {
+                int i = 0;
+                while (i < length && k[i] == key.charAt(i)) i++;
+                if (i == length) return this.ids[slot];
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return id or -1 if unknown
+     */
+    int get(char[] chars, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + chars[i];
+        }
+        int slot = StringIDTable.spread(h) & this.mask;
+        char[] k;
+        while ((k = this.keys[slot]) != null) {
+            if (k.length == length) {
+                int i = 0;
+                while (i < length && k[i] == chars[offset + i]) i++;
+                if (i == length) return this.ids[slot];
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @param utf8 key in utf-8
+     * @return id or -1 if unknown
+     */
+    int get(byte[] utf8, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = utf8[i];
+            if (b < 0) {
+                // not ascii - rare, decode
+                return this.get(new String(utf8, offset, length, StandardCharsets.UTF_8));
+            }
+            h = 31 * h + b;
+        }
+        int slot = StringIDTable.spread(h) & this.mask;
+        char[] k;
+        while ((k = this.keys[slot]) != null) {
+            if (k.length == length) {
+                int i = 0;
+                while (i < length && k[i] == utf8[offset + i]) i++;
+                if (i == length) return this.ids[slot];
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    /**
+     * same as String.hashCode() but spread
+     */
+    private static int hash(CharSequence s, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return StringIDTable.spread(h);
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+}
@@ -3,14 +3,19 @@ package osm2inter;
 import org.xml.sax.Attributes;
 import org.xml.sax.Locator;
 import org.xml.sax.helpers.DefaultHandler;
+import util.AsyncCopyConnector;
 import util.CopyConnector;
+import util.Parameter;
 import util.ManagedStringBuilder.ManagedStringBuilder;
+import util.NodeLocationStore;
+import util.TagCodec;
+import util.TagDictionary;
 import util.UtilCopyImport;
 
+import java.io.IOException;
 import java.sql.SQLException;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import osm.OSMClassification;
 
 /**
@@ -23,6 +28,9 @@ import osm.OSMClassification;
  * NODE<br>
  * osm_id|tstamp|classcode|otherclasscodes|serTags|lon|lat|has_name|valid<br>
  * <br>
+ * Im typisierten Schema (typedSchema) sind lon/lat Integer in 1e-7 Grad,
+ * memberIDs bigint[] und serTags bytea (siehe TagCodec)<br>
+ * <br>
  * WAY<br>
  * osm_id|tstamp|classcode|otherclasscodes|serTags|memberIDs|has_name|valid<br>
  * <br>
@@ -39,7 +47,7 @@ import osm.OSMClassification;
  * @author FlorianSauer
  */
 @SuppressWarnings("Duplicates")
-public class COPY_OSMImporter extends DefaultHandler {
+public class COPY_OSMImporter extends DefaultHandler implements OSMRecordHandler {
     private Locator xmlFileLocator;
     private long parsedElements;
     private long gcIndex;
@@ -59,6 +67,7 @@ public class COPY_OSMImporter extends DefaultHandler {
 
     // Organisation
     private HashMap<String, CopyConnector> conns;
+    private final CopyConnector nodeConn, wayConn, relConn, wayMemConn, relMemConn;
     public static final String[] connsNames = {"nodes", "relationmember", "relations", "waynodes", "ways"};
     private String delimiterNode, delimiterWay, delimiterRel, delimiterWayMem, delimiterRelMem;
 
@@ -78,17 +87,37 @@ public class COPY_OSMImporter extends DefaultHandler {
     private long nodes, ways, rels;
 
     // Elements of FinalValues
-    private String curMainElemID, timeStamp;
+    private long curMainElemID;
+    private boolean validMainElemID;
+    private final StringBuilder timeStamp = new StringBuilder();
     private int classCode;
-    private List<Integer> otherClassCodes;
+    // comma separated list
+    private final StringBuilder otherClassCodes = new StringBuilder();
     private int serTagsSize;
 //    remplacing string builder with a ManagedStringBuilder that only operates with one array
 //    private StringBuilder serTags;
     private ManagedStringBuilder serTags;
 
-    private String lon, lat, memberIDs;
+    private final StringBuilder lon = new StringBuilder();
+    private final StringBuilder lat = new StringBuilder();
+    private final StringBuilder memberIDs = new StringBuilder();
+    // typed schema
+    private final boolean typedSchema;
+    private int lonFixed, latFixed;
+    private boolean validCoordinates;
+    private long[] memberIDArray = new long[1024];
+    private int memberIDCount;
+    private final TagCodec tags;
+    // coordinates of all nodes by id, optional
+    private NodeLocationStore nodeLocations = null;
     private boolean hasName;
 
+    private final OSMClassification classification = OSMClassification.getOSMClassification();
+    private final int boundaryAdminClassID = this.classification.getOHDMClassID("boundary", "administrative");
+
+    // SAX attributes are copied into that record
+    private final OSMRecord saxRecord = new OSMRecord();
+
     /**
      * Konstruktor der Klasse<br>
      *
@@ -96,8 +125,25 @@ public class COPY_OSMImporter extends DefaultHandler {
      */
     public COPY_OSMImporter(HashMap<String, CopyConnector> connectors, 
             int serTagsSize) {
+        this(connectors, serTagsSize, false);
+    }
+
+    /**
+     * Konstruktor der Klasse<br>
+     *
+     * @param connectors ist die Hashmap mit Objekten von CopyConnector
+     * @param typedSchema Tabellen mit Integer-Koordinaten und bigint[] Listen
+     */
+    public COPY_OSMImporter(HashMap<String, CopyConnector> connectors, 
+            int serTagsSize, boolean typedSchema) {
         
+        this.typedSchema = typedSchema;
         this.conns = connectors;
+        this.nodeConn = this.conns.get(connsNames[0]);
+        this.relMemConn = this.conns.get(connsNames[1]);
+        this.relConn = this.conns.get(connsNames[2]);
+        this.wayMemConn = this.conns.get(connsNames[3]);
+        this.wayConn = this.conns.get(connsNames[4]);
         this.delimiterNode = this.conns.get(connsNames[0]).getDelimiter();
         this.delimiterWay = this.conns.get(connsNames[4]).getDelimiter();
         this.delimiterRel = this.conns.get(connsNames[2]).getDelimiter();
@@ -107,18 +153,13 @@ public class COPY_OSMImporter extends DefaultHandler {
         this.nodes = 0;
         this.ways = 0;
         this.rels = 0;
-        this.curMainElemID = "";
-        this.timeStamp = "";
-        this.lon = "";
-        this.lat = "";
-        this.memberIDs = "";
-        this.otherClassCodes = new ArrayList<>();
-        
+
 //        this.serTagsSize = 2000000000;
         this.serTagsSize = 200000;
         this.serTagsSize = serTagsSize;
         
         this.serTags = new ManagedStringBuilder(new char[this.serTagsSize]);
+        this.tags = typedSchema ? new TagCodec(4096) : null;
         this.hasName = false;
     }
 
@@ -140,80 +181,118 @@ public class COPY_OSMImporter extends DefaultHandler {
         System.out.println("Nodes: " + this.nodes + " | Ways: " + this.ways + " | Relations: " + this.rels + "\n");
     }
 
+    /**
+     * Methode createConnectors()<br>
+     * erzeugt für jede Tabelle einen CopyConnector - mit eigenem Writer-Thread, falls copyQueueSize gesetzt ist<br>
+     *
+     * @param parameter Verbindungsparameter
+     * @return Hashmap Tabellenname - CopyConnector
+     */
+    public static HashMap<String, CopyConnector> createConnectors(Parameter parameter) throws IOException {
+        HashMap<String, CopyConnector> connectors = new HashMap<>();
+        try {
+            for (String tablename : connsNames) {
+                if (parameter.getCopyQueueSize() > 0) {
+                    connectors.put(tablename, new AsyncCopyConnector(parameter, tablename, parameter.getCopyQueueSize()));
+                } else {
+                    connectors.put(tablename, new CopyConnector(parameter, tablename));
+                }
+            }
+        } catch (IOException e) {
+            // connectors of other tables are already copying
+            for (CopyConnector connector : connectors.values()) {
+                connector.abort();
+            }
+            throw e;
+        }
+        return connectors;
+    }
+
+    /**
+     * Methode setNodeLocationStore()<br>
+     * Koordinaten aller Knoten werden zusätzlich in den Store geschrieben<br>
+     *
+     * @param nodeLocations Store oder null
+     */
+    public void setNodeLocationStore(NodeLocationStore nodeLocations) {
+        this.nodeLocations = nodeLocations;
+    }
+
+    /**
+     * Methode setTagDictionary()<br>
+     * Schlüssel und häufige Werte werden als Codes geschrieben, nur im typisierten Schema<br>
+     *
+     * @param dictionary gemeinsames Wörterbuch aller Importer
+     */
+    public void setTagDictionary(TagDictionary dictionary) {
+        if (this.tags != null) {
+            this.tags.setDictionary(dictionary);
+        }
+    }
+
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    public long getWays() {
+        return this.ways;
+    }
+
+    public long getRelations() {
+        return this.rels;
+    }
+
     /* (non-Javadoc)
      * @see org.xml.sax.helpers.DefaultHandler#startElement(java.lang.String, java.lang.String, java.lang.String, org.xml.sax.Attributes)
      */
     @Override
     public void startElement(String uri, String localName, String qName, Attributes attributes) {
-//        if (qName != "changeset") {
-//            System.out.println("uri" + uri);
-//            System.out.println("localName" + localName);
-//            System.out.println("qName" + qName);
-//        }
-        switch (qName) {
-            case "node": {
-                if (this.status != this.STATUS_OUTSIDE) {
-                    System.out.println("node found but not outside, currently pseudo @ " + this.xmlFileLocator.getLineNumber());
-                    System.out.println("this means a node element is declared inside a node element");
-                    System.exit(1);
-                }
-                startMainElement(attributes, qName);
-            }
-            break;
-            case "way": {
-                if (this.status != this.STATUS_OUTSIDE) {
-                    System.out.println("way found but not outside, currently pseudo @ " + this.xmlFileLocator.getLineNumber());
-                    System.out.println("this means a way element is declared inside a way element");
-                    System.exit(1);
-                }
-                startMainElement(attributes, qName);
-            }
-            break;
-            case "relation": {
-                if (this.status != this.STATUS_OUTSIDE) {
-                    System.out.println("relation found but not outside, currently pseudo @ " + this.xmlFileLocator.getLineNumber());
-                    System.out.println("this means a relation element is declared inside a relation element");
-                    System.exit(1);
-                }
-                startMainElement(attributes, qName);
-            }
-            break;
+        if(this.saxRecord.fill(qName, attributes)) {
+            this.startElement(this.saxRecord);
+        }
+    }
 
-            case "tag": {
-                if (this.status != this.STATUS_OUTSIDE) {
-                    startInnerElement(attributes, qName);
-                } else {
-//                    System.out.println("tag found but outside, currently pseudo @ " + this.xmlFileLocator.getLineNumber());
-//                    System.out.println("this means a tag element is declared outside");
-//                    System.exit(1);
+    /* (non-Javadoc)
+     * @see org.xml.sax.helpers.DefaultHandler#endElement(java.lang.String, java.lang.String, java.lang.String)
+     */
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        this.saxRecord.clear();
+        this.saxRecord.element = OSMRecord.getElement(qName);
+        if(this.saxRecord.isMainElement()) {
+            this.endElement(this.saxRecord);
+        }
+    }
 
-                }
-            }
-            break;
-            case "nd": {
+    /**
+     * Methode startElement()<br>
+     * wird für jedes Element aufgerufen - vom SAX-Parser über startElement(String, String, String, Attributes)
+     * oder direkt vom OSMXMLScanner<br>
+     *
+     * @param record ist das Element mit seinen Attributen
+     */
+    @Override
+    public void startElement(OSMRecord record) {
+        switch (record.element) {
+            case OSMRecord.NODE:
+            case OSMRecord.WAY:
+            case OSMRecord.RELATION: {
                 if (this.status != this.STATUS_OUTSIDE) {
-                    startInnerElement(attributes, qName);
-                } else {
-//                    System.out.println("nd found but outside, currently pseudo @ " + this.xmlFileLocator.getLineNumber());
-//                    System.out.println("this means a nd element is declared outside");
-//                    System.exit(1);
+                    String name = OSMRecord.getElementName(record.element);
+                    System.out.println(name + " found but not outside, currently pseudo @ " + this.xmlFileLocator.getLineNumber());
+                    System.out.println("this means a " + name + " element is declared inside a " + name + " element");
+                    System.exit(1);
                 }
+                startMainElement(record);
             }
             break;
-            case "member": {
+
+            case OSMRecord.TAG:
+            case OSMRecord.ND:
+            case OSMRecord.MEMBER: {
                 if (this.status != this.STATUS_OUTSIDE) {
-                    startInnerElement(attributes, qName);
-                } else {
-//                    System.out.println("member found but outside, currently pseudo @ " + this.xmlFileLocator.getLineNumber());
-//                    System.out.println("this means a member element is declared outside");
-//                    System.exit(1);
+                    startInnerElement(record);
                 }
-
-//                if (this.status == this)
-//				if (this.status != this.STATUS_OUTSIDE) {
-//				} else {
-//					System.out.println("XML-Error: Opening InnerElement at Line " + this.xmlFileLocator.getLineNumber() + " is outside of a MainElement.");
-//				}
             }
             break;
             default:
@@ -223,41 +302,28 @@ public class COPY_OSMImporter extends DefaultHandler {
             System.gc();
             this.gcIndex = 0;
             System.out.println("reached mark 1.000.000 in COPY_OSMImporter @ time " + System.currentTimeMillis()+" @ pseudoline "+this.xmlFileLocator.getLineNumber());
+            for (CopyConnector connector : this.conns.values()) {
+                if (connector instanceof AsyncCopyConnector) {
+                    System.out.println(connector.getTablename() + " queue: " + ((AsyncCopyConnector) connector).getQueueStatus());
+                }
+            }
         }
     }
 
-    /* (non-Javadoc)
-     * @see org.xml.sax.helpers.DefaultHandler#endElement(java.lang.String, java.lang.String, java.lang.String)
+    /**
+     * Methode endElement()<br>
+     * wird aufgerufen wenn ein Hauptelement geschlossen wird<br>
+     *
+     * @param record enthält nur den Typ des Elementes
      */
     @Override
-    public void endElement(String uri, String localName, String qName) {
-        switch (qName) {
-            case "node":
-                endMainElement(qName);
-                break;
-            case "way":
-                endMainElement(qName);
-                break;
-            case "relation":
-                endMainElement(qName);
-
-//				if (this.status != this.STATUS_OUTSIDE) {
-//				} else {
-//					System.out.println("XML-Error: Single closing MainElement at Line " + this.xmlFileLocator.getLineNumber());
-//				}
+    public void endElement(OSMRecord record) {
+        switch (record.element) {
+            case OSMRecord.NODE:
+            case OSMRecord.WAY:
+            case OSMRecord.RELATION:
+                endMainElement(record.element);
                 break;
-
-            case "tag":
-                break;
-            case "nd":
-                break;
-            case "member":
-                break;
-
-//				if (this.status == this.STATUS_OUTSIDE) {
-//					System.out.println("XML-Error: Closing InnerElement at Line " + this.xmlFileLocator.getLineNumber() + " is outside of a MainElement.");
-//				}
-
         }
     }
 
@@ -265,51 +331,70 @@ public class COPY_OSMImporter extends DefaultHandler {
      * Methode startMainElement()<br>
      * wird aufgerufen wenn in der XML-Datei ein öffnendes Tag eines der Hauptelemente vorkommt<br>
      *
-     * @param attr sind die Attribute des Elementes
-     * @param name ist der Name des Elementes
+     * @param record ist das Element mit seinen Attributen
      */
-    private void startMainElement(Attributes attr, String name) {
+    private void startMainElement(OSMRecord record) {
         this.adminLevel = 0;
         this.classCode = 0;
-        this.curMainElemID = "";
-        this.timeStamp = "";
-        this.lon = "";
-        this.lat = "";
-        this.memberIDs = "";
-        this.otherClassCodes = new ArrayList<>();
+        this.curMainElemID = 0;
+        this.validMainElemID = false;
+        this.timeStamp.setLength(0);
+        this.lon.setLength(0);
+        this.lat.setLength(0);
+        this.memberIDs.setLength(0);
+        this.memberIDCount = 0;
+        this.validCoordinates = false;
+        this.otherClassCodes.setLength(0);
         if (this.serTags == null){
             this.serTags = new ManagedStringBuilder(new char[this.serTagsSize]);
         } else {
             this.serTags.empty();
         }
+        if (this.tags != null) {
+            this.tags.reset();
+        }
         this.hasName = false;
 
-        if (attr.getValue("id") != null) {
-            this.curMainElemID = attr.getValue("id");
-            switch (name) {
-                case "node":
+        if (record.id != null) {
+            try {
+                this.curMainElemID = OSMRecord.parseLong(record.id);
+                this.validMainElemID = true;
+            } catch (NumberFormatException e) {
+                System.out.println("XML-Error: MainElement at Line " + this.xmlFileLocator.getLineNumber() + " has no valid id value >" + record.id + "< - element is skipped.");
+            }
+            switch (record.element) {
+                case OSMRecord.NODE:
                     this.status = this.STATUS_NODE;
-                    if (attr.getValue("lon") != null && attr.getValue("lat") != null) {
-                        this.lon = attr.getValue("lon");
-                        this.lat = attr.getValue("lat");
+                    if (record.lon != null && record.lat != null) {
+                        this.lon.append(record.lon);
+                        this.lat.append(record.lat);
+                        if (this.typedSchema || this.nodeLocations != null) {
+                            try {
+                                this.lonFixed = OSMRecord.parseFixed7(record.lon);
+                                this.latFixed = OSMRecord.parseFixed7(record.lat);
+                                this.validCoordinates = true;
+                            } catch (NumberFormatException e) {
+                                System.out.println("XML-Error: MainElement at Line " + this.xmlFileLocator.getLineNumber() + " has no valid lon and/or lat value.");
+                            }
+                        }
                     } else {
                         System.out.println("XML-Error: MainElement at Line " + this.xmlFileLocator.getLineNumber() + " has no lon and/or lat value.");
                     }
                     break;
 
-                case "way":
+                case OSMRecord.WAY:
                     this.status = this.STATUS_WAY;
                     break;
 
-                case "relation":
+                case OSMRecord.RELATION:
                     this.status = this.STATUS_RELATION;
                     break;
 
             }
-            if (attr.getValue("timestamp") != null) {
-                this.timeStamp = attr.getValue("timestamp");
-                UtilCopyImport.serializeTags(this.serTags, "uid", attr.getValue("uid"));
-                UtilCopyImport.serializeTags(this.serTags, "user", attr.getValue("user"));
+            if (record.timestamp != null) {
+                this.timeStamp.append(record.timestamp);
+                this.addTag("uid", record.uid);
+                this.addTag("user", record.user);
             } else {
                 System.out.println("XML-Error: MainElement at Line " + this.xmlFileLocator.getLineNumber() + " has no timestamp value.");
             }
@@ -322,32 +407,48 @@ public class COPY_OSMImporter extends DefaultHandler {
      * Methode endMainElement()<br>
      * wird aufgerufen wenn in der XML-Datei ein schließendes Tag eines der Hauptelemente vorkommt<br>
      *
-     * @param name ist der Name des Elementes
+     * @param element ist der Typ des Elementes
      */
-    private void endMainElement(String name) {
+    private void endMainElement(int element) {
         if (this.classCode > 0) {
-            if (this.classCode == OSMClassification.getOSMClassification().getOHDMClassID("boundary", "administrative")) {
+            if (this.classCode == this.boundaryAdminClassID) {
                 if (this.adminLevel > 0) {
-                    this.classCode = OSMClassification.getOSMClassification().getOHDMClassID("ohdm_boundary", "adminlevel_" + this.adminLevel);
+                    this.classCode = this.classification.getOHDMClassID("ohdm_boundary", "adminlevel_" + this.adminLevel);
                 }
             }
         }
-        switch (name) {
-            case "node":
+        switch (element) {
+            case OSMRecord.NODE:
                 this.nodes++;
+                if (!this.validMainElemID) break;
+                if (this.nodeLocations != null && this.validCoordinates) {
+                    try {
+                        this.nodeLocations.put(this.curMainElemID, this.lonFixed, this.latFixed);
+                    } catch (IOException e) {
+                        System.out.println("IO-Error: Couldn't write node " + this.curMainElemID + " to node location store.");
+                        e.printStackTrace();
+                        System.exit(1);
+                    }
+                }
                 try {
                     // NULL|osm_id|tstamp|classcode|otherclasscodes|serTags|lon|lat|NULL|NULL|NULL|NULL|NULL|has_name|valid
-                    this.conns.get(this.connsNames[0]).write(new String[]{
-                            this.curMainElemID,
-                            this.timeStamp,
-                            "" + this.classCode,
-                            UtilCopyImport.getString(this.otherClassCodes),
-                            this.serTags.toString(),
-                            this.lon,
-                            this.lat,
-                            Boolean.toString(this.hasName),
-                            "true"
-                    });
+                    this.nodeConn
+                            .field(this.curMainElemID)
+                            .dateField(this.timeStamp)
+                            .field(this.classCode)
+                            .field(this.otherClassCodes);
+                    this.writeTags(this.nodeConn);
+                    if (!this.typedSchema) {
+                        this.nodeConn.field(this.lon).field(this.lat);
+                    } else if (this.validCoordinates) {
+                        this.nodeConn.intField(this.lonFixed).intField(this.latFixed);
+                    } else {
+                        this.nodeConn.nullField().nullField();
+                    }
+                    this.nodeConn
+                            .field(this.hasName)
+                            .field(true)
+                            .endRow();
                 } catch (SQLException e) {
                     System.out.println("SQL-Error: Couldn't write final String to Node-Table.");
                     System.out.println("MainElements: " + (this.nodes + this.ways + this.rels));
@@ -356,19 +457,21 @@ public class COPY_OSMImporter extends DefaultHandler {
                 }
                 break;
 
-            case "way":
+            case OSMRecord.WAY:
                 this.ways++;
+                if (!this.validMainElemID) break;
                 try {
                     // NULL|osm_id|tstamp|classcode|otherclasscodes|serTags|NULL|NULL|memberIDs|NULL|NULL|NULL|has_name|valid
-                    this.conns.get(this.connsNames[4]).write(new String[]{
-                            this.curMainElemID,
-                            this.timeStamp,
-                            "" + this.classCode,
-                            UtilCopyImport.getString(this.otherClassCodes),
-                            this.serTags.toString(),
-                            this.memberIDs,
-                            Boolean.toString(this.hasName),
-                            "true"});
+                    this.wayConn
+                            .field(this.curMainElemID)
+                            .dateField(this.timeStamp)
+                            .field(this.classCode)
+                            .field(this.otherClassCodes);
+                    this.writeTags(this.wayConn);
+                    this.writeMemberIDs(this.wayConn)
+                            .field(this.hasName)
+                            .field(true)
+                            .endRow();
                 } catch (SQLException e) {
                     System.out.println("SQL-Error: Couldn't write final String to Way-Table.");
                     System.out.println("MainElements: " + (this.nodes + this.ways + this.rels));
@@ -377,19 +480,21 @@ public class COPY_OSMImporter extends DefaultHandler {
                 }
                 break;
 
-            case "relation":
+            case OSMRecord.RELATION:
                 this.rels++;
+                if (!this.validMainElemID) break;
                 try {
                     // NULL|osm_id|tstamp|classcode|otherclasscodes|serTags|NULL|NULL|memberIDs|NULL|NULL|NULL|has_name|valid
-                    this.conns.get(this.connsNames[2]).write(new String[]{
-                            this.curMainElemID,
-                            this.timeStamp,
-                            "" + this.classCode,
-                            UtilCopyImport.getString(this.otherClassCodes),
-                            this.serTags.toString(),
-                            this.memberIDs,
-                            Boolean.toString(this.hasName),
-                            "true"});
+                    this.relConn
+                            .field(this.curMainElemID)
+                            .dateField(this.timeStamp)
+                            .field(this.classCode)
+                            .field(this.otherClassCodes);
+                    this.writeTags(this.relConn);
+                    this.writeMemberIDs(this.relConn)
+                            .field(this.hasName)
+                            .field(true)
+                            .endRow();
                 } catch (SQLException e) {
                     System.out.println("SQL-Error: Couldn't write final String to Rel-Table.");
                     System.out.println("MainElements: " + (this.nodes + this.ways + this.rels));
@@ -400,85 +505,116 @@ public class COPY_OSMImporter extends DefaultHandler {
 
         }
         this.status = this.STATUS_OUTSIDE;
-        this.curMainElemID = null;
-        this.timeStamp = null;
-        this.lon = null;
-        this.lat = null;
-        this.memberIDs = null;
-        this.otherClassCodes = null;
 
 //        instead of deleting string builder and making a new one, we empty it
-//        this.serTags = null;
         this.serTags.empty();
-//        System.out.println("breakpoint1 "+this.serTags.length());
-//        this.serTags.setLength(0);
-//        this.serTags.setLength(this.serTagsSize);
 
         this.parsedElements++;
 
     }
 
+    private void addMemberID(CharSequence ref) {
+        if (this.typedSchema) {
+            try {
+                long id = OSMRecord.parseLong(ref);
+                if (this.memberIDCount == this.memberIDArray.length) {
+                    this.memberIDArray = Arrays.copyOf(this.memberIDArray, 2 * this.memberIDCount);
+                }
+                this.memberIDArray[this.memberIDCount++] = id;
+            } catch (NumberFormatException e) {
+                // reported when member row is written
+            }
+        } else {
+            if (this.memberIDs.length() > 0) {
+                this.memberIDs.append(',');
+            }
+            this.memberIDs.append(ref);
+        }
+    }
+
+    private void addTag(CharSequence key, CharSequence value) {
+        if (this.tags != null) {
+            this.tags.add(key, value);
+        } else {
+            UtilCopyImport.serializeTags(this.serTags, key, value);
+        }
+    }
+
+    private CopyConnector writeTags(CopyConnector connector) {
+        if (this.tags != null) {
+            return connector.field(this.tags.getBuffer(), this.tags.length());
+        }
+        return connector.field(this.serTags);
+    }
+
+    private CopyConnector writeMemberIDs(CopyConnector connector) {
+        if (this.typedSchema) {
+            return connector.field(this.memberIDArray, this.memberIDCount);
+        }
+        return connector.field(this.memberIDs);
+    }
+
     /**
      * Methode startInnerElement()<br>
      * wird aufgerufen wenn in der XML-Datei ein öffnendes Tag eines der inneren Elemente vorkommt<br>
      *
-     * @param attr sind die Attribute des Elementes
-     * @param name ist der Name des Elementes
+     * @param record ist das Element mit seinen Attributen
      */
-    private void startInnerElement(Attributes attr, String name) {
-        switch (name) {
-            case "tag":
-                // key and value --> size 2
-                if (attr.getLength() == 2) {
-                    if (attr.getValue(0) != null && attr.getValue(1) != null) {
-                        if (attr.getValue(1).equalsIgnoreCase("yes") || attr.getValue(1).equalsIgnoreCase("no")) {
-                            // this values describe if sth is present / given or not
-                            // at first in "if" before selecting the osm_classes
-                            // because of pairs like "building-yes" would trigger
-                            // the osm-main-class "building" with the default value
-                            // "undefined" for a subclass
-                            UtilCopyImport.serializeTags(this.serTags, attr.getValue(0), attr.getValue(1));
-                        } else if (OSMClassification.getOSMClassification().classExists(attr.getValue(0))) {
-                            if (this.classCode == 0) {
-                                this.classCode = OSMClassification.getOSMClassification().getOHDMClassID(attr.getValue(0), attr.getValue(1));
-                            } else {
-                                this.otherClassCodes.add(OSMClassification.getOSMClassification().getOHDMClassID(attr.getValue(0), attr.getValue(1)));
-                            }
-                        } else if (attr.getValue(0).equalsIgnoreCase("admin_level")) {
-                            try {
-                                this.adminLevel = Integer.parseInt(attr.getValue(1));
-                            } catch (NumberFormatException e) {
-                                System.out.println("XML-Error: InnerElement 'tag' at Line " + this.xmlFileLocator.getLineNumber() + " does contain a not parsable Integer value >"+attr.getValue(1)+"<.");
-                                this.adminLevel = 0;
-                                e.printStackTrace();
-                            }
+    private void startInnerElement(OSMRecord record) {
+        switch (record.element) {
+            case OSMRecord.TAG:
+                if (record.k != null && record.v != null) {
+                    String key = record.k.toString(); // scanner delivers keys as (cached) strings
+                    int classKey = this.classification.getClassKey(key);
+                    if (OSMRecord.equalsIgnoreCase(record.v, "yes") || OSMRecord.equalsIgnoreCase(record.v, "no")) {
+                        // this values describe if sth is present / given or not
+                        // at first in "if" before selecting the osm_classes
+                        // because of pairs like "building-yes" would trigger
+                        // the osm-main-class "building" with the default value
+                        // "undefined" for a subclass
+                        this.addTag(key, record.v);
+                    } else if (classKey != -1) {
+                        // lookup without building strings
+                        if (this.classCode == 0) {
+                            this.classCode = this.classification.getOHDMClassID(classKey, record.v);
                         } else {
-                            UtilCopyImport.serializeTags(this.serTags, attr.getValue(0), attr.getValue(1));
-                            if (attr.getValue(0).equalsIgnoreCase("name")) {
-                                this.hasName = true;
+                            if (this.otherClassCodes.length() > 0) {
+                                this.otherClassCodes.append(',');
                             }
+                            this.otherClassCodes.append(this.classification.getOHDMClassID(classKey, record.v));
+                        }
+                    } else if (key.equalsIgnoreCase("admin_level")) {
+                        try {
+                            this.adminLevel = OSMRecord.parseInt(record.v);
+                        } catch (NumberFormatException e) {
+                            System.out.println("XML-Error: InnerElement 'tag' at Line " + this.xmlFileLocator.getLineNumber() + " does contain a not parsable Integer value >"+record.v+"<.");
+                            this.adminLevel = 0;
+                            e.printStackTrace();
                         }
                     } else {
-                        System.out.println("XML-Error: InnerElement 'tag' at Line " + this.xmlFileLocator.getLineNumber() + " has one or two null-values.");
+                        this.addTag(key, record.v);
+                        if (key.equalsIgnoreCase("name")) {
+                            this.hasName = true;
+                        }
                     }
                 } else {
-                    System.out.println("XML-Error: InnerElement 'tag' at Line " + this.xmlFileLocator.getLineNumber() + " has more/less than 2 attributes.");
+                    System.out.println("XML-Error: InnerElement 'tag' at Line " + this.xmlFileLocator.getLineNumber() + " has one or two null-values.");
                 }
                 break;
 
-            case "nd":
+            case OSMRecord.ND:
                 if (this.status == this.STATUS_WAY) {
-                    if (attr.getValue("ref") != null) {
-                        if (this.memberIDs.isEmpty()) {
-                            this.memberIDs = attr.getValue("ref");
-                        } else {
-                            this.memberIDs = this.memberIDs + "," + attr.getValue("ref");
-                        }
+                    if (record.ref != null) {
+                        this.addMemberID(record.ref);
+                        if (!this.validMainElemID) break;
                         try {
                             // NULL|way_id|node_id
-                            this.conns.get(this.connsNames[3]).write(
-                                    new String[]{
-                                            this.curMainElemID, attr.getValue("ref")});
+                            this.wayMemConn
+                                    .field(this.curMainElemID)
+                                    .field(OSMRecord.parseLong(record.ref))
+                                    .endRow();
+                        } catch (NumberFormatException e) {
+                            System.out.println("XML-Error: InnerElement 'nd' at Line " + this.xmlFileLocator.getLineNumber() + " has no valid 'ref' >" + record.ref + "<.");
                         } catch (SQLException e) {
                             System.out.println("SQL-Error: Couldn't write final String to WayMem-Table.");
                             System.out.println("MainElements: " + (this.nodes + this.ways + this.rels));
@@ -493,39 +629,40 @@ public class COPY_OSMImporter extends DefaultHandler {
                 }
                 break;
 
-            case "member":
+            case OSMRecord.MEMBER:
                 if (this.status == this.STATUS_RELATION) {
-                    if (attr.getValue("ref") != null) {
-                        if (this.memberIDs.isEmpty()) {
-                            this.memberIDs = attr.getValue("ref");
-                        } else {
-                            this.memberIDs = this.memberIDs + "," + attr.getValue("ref");
-                        }
-                        if (attr.getValue("type") != null) {
-                            // empty skeleton
-                            String[] relIDs;
-                            switch (attr.getValue("type").toLowerCase()) {
-                                case "node": // 1st place
-                                    relIDs = new String[]{attr.getValue("ref"), "NULL", "NULL"};
-                                    break;
-                                case "way": // 2nd place
-                                    relIDs = new String[]{"NULL", attr.getValue("ref"), "NULL"};
-                                    break;
-                                case "relation": // 3rd place
-                                    relIDs = new String[]{"NULL", "NULL", attr.getValue("ref")};
-                                    break;
-                                default:
-                                    relIDs = new String[]{"NULL", "NULL", "NULL"};
-                                    System.out.println("XML-Error: InnerElement 'member' at Line " + this.xmlFileLocator.getLineNumber() + " has no correct value at 'type'.");
+                    if (record.ref != null) {
+                        this.addMemberID(record.ref);
+                        if (record.type != null) {
+                            if (record.role != null) {
+                                if (!this.validMainElemID) break;
+                                long ref;
+                                try {
+                                    ref = OSMRecord.parseLong(record.ref);
+                                } catch (NumberFormatException e) {
+                                    System.out.println("XML-Error: InnerElement 'member' at Line " + this.xmlFileLocator.getLineNumber() + " has no valid 'ref' >" + record.ref + "<.");
                                     break;
-                            }
-                            if (attr.getValue("role") != null) {
+                                }
                                 try {
                                     // NULL|rel_id|member_node_id|member_way_id|member_rel_id|role
                                     // -> relation_id|node_id|way_id|member_rel_id|role
-                                    this.conns.get(this.connsNames[1]).write(new String[]{
-                                            this.curMainElemID, relIDs[0], relIDs[1], relIDs[2], UtilCopyImport.escapeSpecialChar(attr.getValue("role"))}
-                                    );
+                                    this.relMemConn.field(this.curMainElemID);
+                                    if (OSMRecord.equalsIgnoreCase(record.type, "node")) { // 1st place
+                                        this.relMemConn.field(ref).nullField().nullField();
+                                    } else if (OSMRecord.equalsIgnoreCase(record.type, "way")) { // 2nd place
+                                        this.relMemConn.nullField().field(ref).nullField();
+                                    } else if (OSMRecord.equalsIgnoreCase(record.type, "relation")) { // 3rd place
+                                        this.relMemConn.nullField().nullField().field(ref);
+                                    } else {
+                                        this.relMemConn.nullField().nullField().nullField();
+                                        System.out.println("XML-Error: InnerElement 'member' at Line " + this.xmlFileLocator.getLineNumber() + " has no correct value at 'type'.");
+                                    }
+                                    if (OSMRecord.indexOf(record.role, '\'') >= 0) {
+                                        this.relMemConn.field(UtilCopyImport.escapeSpecialChar(record.role.toString()));
+                                    } else {
+                                        this.relMemConn.field(record.role);
+                                    }
+                                    this.relMemConn.endRow();
                                 } catch (SQLException e) {
                                     System.out.println("SQL-Error: Couldn't write final String to RelMem-Table.");
                                     System.out.println("MainElements: " + (this.nodes + this.ways + this.rels));
@@ -0,0 +1,461 @@
+package osm2inter;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
+import org.xml.sax.helpers.DefaultHandler;
+import util.*;
+
+import javax.xml.parsers.SAXParserFactory;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Applies an osmChange file (.osc or .osc.gz, e.g. a daily diff) to an
+ * existing intermediate schema - no second import and no comparison of
+ * two schemas like OHDMUpdateInter.
+ *
+ * Created and modified elements are written by COPY_OSMImporter into
+ * the intermediate tables of a staging schema (schema of parameter file
+ * + STAGING_SUFFIX), ids of deleted elements into table deletions.
+ * Only the last version of an element in the file is staged. Afterwards
+ * staged rows are merged in one transaction:
+ * <pre>
+ * - existing rows are updated: geom_changed if coordinates, node or member
+ *   ids differ, object_changed if tags differ
+ * - new rows are inserted with object_new
+ * - waynodes and relationmember rows of staged ways and relations are replaced
+ * - deleted elements are marked deleted, rows are kept
+ * - geom_changed is propagated from nodes to ways and relations, from ways
+ *   to relations and from relations to their parent relations
+ * </pre>
+ * Flags are not reset - they accumulate until OHDM is updated. The staging
+ * schema is rebuilt with each run.
+ */
+public class OSMChangeImport {
+    public static final String STAGING_SUFFIX = "_osc";
+
+    private static final String[] ELEMENT_TABLES = {InterDB.NODETABLE, InterDB.WAYTABLE, InterDB.RELATIONTABLE};
+    private static final String[][] GEOMETRY_COLUMNS = {{"longitude", "latitude"}, {"node_ids"}, {"member_ids"}};
+    private static final String[] OBJECT_COLUMNS = {"tstamp", "classcode", "otherclasscodes", "serializedtags", "has_name", "valid"};
+
+    public static void main(String[] args) {
+        System.out.println("Started with arguments: " + Arrays.toString(args));
+        if(args.length != 2) {
+            System.err.println("parameter required: osm change file (.osc or .osc.gz), intermediate parameter file");
+            System.exit(0);
+        }
+
+        long past = System.currentTimeMillis();
+        Parameter interParameter = null;
+        try {
+            File oscFile = new File(args[0]);
+            interParameter = new Parameter(args[1]);
+            String interSchema = interParameter.getSchema();
+            Parameter stagingParameter = interParameter.forSchema(interSchema + STAGING_SUFFIX);
+            String stagingSchema = stagingParameter.getSchema();
+
+            boolean typedSchema;
+            TagDictionary tagDictionary;
+            try(Connection connection = DB.createConnection(interParameter)) {
+                typedSchema = InterDB.isTypedSchema(connection, interSchema);
+                // staged tags must be encoded with codes of intermediate schema
+                tagDictionary = TagDictionary.load(connection, interSchema);
+
+                try(Statement stmt = connection.createStatement()) {
+                    stmt.execute("CREATE SCHEMA IF NOT EXISTS " + stagingSchema);
+                }
+            }
+
+            System.out.println("create staging tables in " + stagingSchema);
+            SQLStatementQueue sq = new SQLStatementQueue(stagingParameter);
+            InterDB.createTables(sq, stagingSchema, false, typedSchema);
+            sq.append("DROP TABLE IF EXISTS " + DB.getFullTableName(stagingSchema, InterDB.DELETIONS) + ";");
+            sq.append("CREATE TABLE " + DB.getFullTableName(stagingSchema, InterDB.DELETIONS)
+                    + " (element integer, osm_id bigint);");
+            sq.forceExecute();
+            sq.close();
+
+            // pass 1: last version of each element
+            ChangeHandler handler = new ChangeHandler();
+            System.out.println("find last versions in " + oscFile.getName());
+            OSMChangeImport.parse(oscFile, handler);
+
+            // pass 2: stage them
+            HashMap<String, CopyConnector> connectors = COPY_OSMImporter.createConnectors(stagingParameter);
+            COPY_OSMImporter importer = new COPY_OSMImporter(connectors, stagingParameter.getSerTagsSize(), typedSchema);
+            importer.setTagDictionary(tagDictionary);
+            File nodeLocationFile = interParameter.getNodeLocationStoreFile();
+            NodeLocationStore nodeLocations = null;
+            if(nodeLocationFile != null) {
+                nodeLocations = NodeLocationStore.open(nodeLocationFile);
+                importer.setNodeLocationStore(nodeLocations);
+            }
+            CopyConnector deletions = new CopyConnector(stagingParameter, InterDB.DELETIONS);
+
+            System.out.println("stage changes in " + stagingSchema);
+            handler.stage(importer, deletions);
+            OSMChangeImport.parse(oscFile, handler);
+
+            for(CopyConnector connector : connectors.values()) {
+                System.out.println("wrote " + connector.endCopy() + " lines to " + connector.getTablename());
+                connector.close();
+            }
+            System.out.println("wrote " + deletions.endCopy() + " lines to " + deletions.getTablename());
+            deletions.close();
+
+            if(nodeLocations != null) {
+                nodeLocations.close();
+            }
+            InterDB.createIndexes(stagingParameter);
+
+            OSMChangeImport.merge(interParameter, interSchema, stagingSchema, tagDictionary);
+        } catch (Exception t) {
+            PrintStream err = System.err;
+            // maybe another stream was defined and could be opened
+            try {
+                err = interParameter.getErrStream();
+            }
+            catch(Exception tt) {
+            }
+
+            Util.printExceptionMessage(err, t, null, "in main OSMChangeImport", false);
+        }
+        System.out.println("That took " + (System.currentTimeMillis() - past) + " ms");
+    }
+
+    private static void parse(File oscFile, DefaultHandler handler) throws Exception {
+        try(InputStream in = oscFile.getName().toLowerCase().endsWith(".gz")
+                ? new GZIPInputStream(new FileInputStream(oscFile), 1024 * 1024)
+                : new FileInputStream(oscFile)) {
+            SAXParserFactory.newInstance().newSAXParser().parse(in, handler);
+        }
+    }
+
+    /**
+     * merge staged rows and new tag dictionary codes into intermediate tables - one transaction
+     */
+    private static void merge(Parameter parameter, String interSchema, String stagingSchema,
+            TagDictionary tagDictionary) throws SQLException {
+        try(Connection connection = DB.createConnection(parameter)) {
+            connection.setAutoCommit(false);
+            try(Statement stmt = connection.createStatement()) {
+                for(int element = 0; element < ELEMENT_TABLES.length; element++) {
+                    String i = DB.getFullTableName(interSchema, ELEMENT_TABLES[element]);
+                    String s = DB.getFullTableName(stagingSchema, ELEMENT_TABLES[element]);
+
+                    // changed elements
+                    StringBuilder sql = new StringBuilder("UPDATE " + i + " AS i SET ");
+                    sql.append("geom_changed = i.geom_changed");
+                    for(String column : GEOMETRY_COLUMNS[element]) {
+                        sql.append(" OR i.").append(column).append(" IS DISTINCT FROM s.").append(column);
+                    }
+                    sql.append(", object_changed = i.object_changed OR i.serializedtags IS DISTINCT FROM s.serializedtags");
+                    sql.append(", deleted = false");
+                    for(String column : OSMChangeImport.columns(element)) {
+                        sql.append(", ").append(column).append(" = s.").append(column);
+                    }
+                    sql.append(" FROM ").append(s).append(" AS s WHERE i.osm_id = s.osm_id");
+                    OSMChangeImport.execute(stmt, "update changed " + ELEMENT_TABLES[element], sql.toString());
+
+                    // new elements
+                    String columns = String.join(", ", OSMChangeImport.columns(element));
+                    OSMChangeImport.execute(stmt, "insert new " + ELEMENT_TABLES[element],
+                            "INSERT INTO " + i + " (osm_id, " + columns + ", object_new) SELECT osm_id, "
+                            + columns + ", true FROM " + s + " AS s WHERE NOT EXISTS (SELECT 1 FROM "
+                            + i + " AS i WHERE i.osm_id = s.osm_id)");
+
+                    // deleted elements
+                    OSMChangeImport.execute(stmt, "mark deleted " + ELEMENT_TABLES[element],
+                            "UPDATE " + i + " SET deleted = true WHERE osm_id IN (SELECT osm_id FROM "
+                            + DB.getFullTableName(stagingSchema, InterDB.DELETIONS) + " WHERE element = " + element + ")");
+                }
+
+                // member rows of staged ways and relations
+                String waynodes = DB.getFullTableName(interSchema, InterDB.WAYMEMBER);
+                String relationmember = DB.getFullTableName(interSchema, InterDB.RELATIONMEMBER);
+                OSMChangeImport.execute(stmt, "remove waynodes of changed ways",
+                        "DELETE FROM " + waynodes + " WHERE way_id IN (SELECT osm_id FROM "
+                        + DB.getFullTableName(stagingSchema, InterDB.WAYTABLE) + ")");
+                OSMChangeImport.execute(stmt, "insert waynodes",
+                        "INSERT INTO " + waynodes + " (way_id, node_id) SELECT way_id, node_id FROM "
+                        + DB.getFullTableName(stagingSchema, InterDB.WAYMEMBER));
+                OSMChangeImport.execute(stmt, "remove relationmember of changed relations",
+                        "DELETE FROM " + relationmember + " WHERE relation_id IN (SELECT osm_id FROM "
+                        + DB.getFullTableName(stagingSchema, InterDB.RELATIONTABLE) + ")");
+                OSMChangeImport.execute(stmt, "insert relationmember",
+                        "INSERT INTO " + relationmember + " (relation_id, node_id, way_id, member_rel_id, role) "
+                        + "SELECT relation_id, node_id, way_id, member_rel_id, role FROM "
+                        + DB.getFullTableName(stagingSchema, InterDB.RELATIONMEMBER));
+
+                // propagate geometry changes of elements in this file
+                String nodes = DB.getFullTableName(interSchema, InterDB.NODETABLE);
+                String ways = DB.getFullTableName(interSchema, InterDB.WAYTABLE);
+                String relations = DB.getFullTableName(interSchema, InterDB.RELATIONTABLE);
+                String changedNodes = OSMChangeImport.stagedIDs(stagingSchema, 0);
+                String changedWays = OSMChangeImport.stagedIDs(stagingSchema, 1)
+                        + " UNION SELECT way_id FROM " + waynodes + " WHERE node_id IN (" + changedNodes + ")";
+                String changedRelations = OSMChangeImport.stagedIDs(stagingSchema, 2)
+                        + " UNION SELECT relation_id FROM " + relationmember + " WHERE node_id IN ("
+                        + changedNodes + ") OR way_id IN (" + changedWays + ")";
+
+                OSMChangeImport.execute(stmt, "propagate geom_changed from nodes to ways",
+                        "UPDATE " + ways + " SET geom_changed = true WHERE NOT geom_changed AND osm_id IN ("
+                        + "SELECT wn.way_id FROM " + waynodes + " AS wn, " + nodes + " AS n"
+                        + " WHERE wn.node_id = n.osm_id AND (n.geom_changed OR n.deleted)"
+                        + " AND n.osm_id IN (" + changedNodes + "))");
+                OSMChangeImport.execute(stmt, "propagate geom_changed from nodes to relations",
+                        "UPDATE " + relations + " SET geom_changed = true WHERE NOT geom_changed AND osm_id IN ("
+                        + "SELECT rm.relation_id FROM " + relationmember + " AS rm, " + nodes + " AS n"
+                        + " WHERE rm.node_id = n.osm_id AND (n.geom_changed OR n.deleted)"
+                        + " AND n.osm_id IN (" + changedNodes + "))");
+                OSMChangeImport.execute(stmt, "propagate geom_changed from ways to relations",
+                        "UPDATE " + relations + " SET geom_changed = true WHERE NOT geom_changed AND osm_id IN ("
+                        + "SELECT rm.relation_id FROM " + relationmember + " AS rm, " + ways + " AS w"
+                        + " WHERE rm.way_id = w.osm_id AND (w.geom_changed OR w.deleted)"
+                        + " AND w.osm_id IN (" + changedWays + "))");
+                OSMChangeImport.execute(stmt, "propagate geom_changed from relations to relations",
+                        "UPDATE " + relations + " SET geom_changed = true WHERE NOT geom_changed AND osm_id IN ("
+                        + "SELECT rm.relation_id FROM " + relationmember + " AS rm, " + relations + " AS r"
+                        + " WHERE rm.member_rel_id = r.osm_id AND (r.geom_changed OR r.deleted)"
+                        + " AND r.osm_id IN (" + changedRelations + "))");
+
+                // codes of staged tags are committed with the rows using them
+                if(tagDictionary != null) {
+                    tagDictionary.save(connection, interSchema);
+                }
+
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static String[] columns(int element) {
+        String[] columns = Arrays.copyOf(OBJECT_COLUMNS, OBJECT_COLUMNS.length + GEOMETRY_COLUMNS[element].length);
+        System.arraycopy(GEOMETRY_COLUMNS[element], 0, columns, OBJECT_COLUMNS.length, GEOMETRY_COLUMNS[element].length);
+        return columns;
+    }
+
+    /**
+     * @return select of ids of staged and deleted elements
+     */
+    private static String stagedIDs(String stagingSchema, int element) {
+        return "SELECT osm_id FROM " + DB.getFullTableName(stagingSchema, ELEMENT_TABLES[element])
+                + " UNION SELECT osm_id FROM " + DB.getFullTableName(stagingSchema, InterDB.DELETIONS)
+                + " WHERE element = " + element;
+    }
+
+    private static void execute(Statement stmt, String description, String sql) throws SQLException {
+        long start = System.currentTimeMillis();
+        System.out.print(description);
+        int rows = stmt.executeUpdate(sql);
+        System.out.println("...ok: " + rows + " rows in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Reads osmChange: create, modify and delete blocks with osm elements.
+     * First pass remembers position of last version of each element,
+     * second pass hands those to importer or deletions.
+     */
+    static class ChangeHandler extends DefaultHandler {
+        final LongIntMap lastVersions = new LongIntMap();
+        private final OSMRecord record = new OSMRecord();
+        private OSMRecordHandler importer = null;
+        private CopyConnector deletions = null;
+        private Locator locator = null;
+
+        private boolean create = false;
+        private boolean delete = false;
+        private int position = 0;
+        private boolean forward = false;
+        long created = 0, modified = 0, deleted = 0, skipped = 0;
+
+        void stage(OSMRecordHandler importer, CopyConnector deletions) {
+            this.importer = importer;
+            this.deletions = deletions;
+            if(this.locator != null) {
+                this.importer.setDocumentLocator(this.locator);
+            }
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            this.locator = locator;
+            if(this.importer != null) {
+                this.importer.setDocumentLocator(locator);
+            }
+        }
+
+        @Override
+        public void startDocument() {
+            this.position = 0;
+            if(this.importer != null) {
+                this.importer.startDocument();
+            }
+        }
+
+        @Override
+        public void endDocument() {
+            if(this.importer == null) {
+                System.out.println("elements: " + this.position + " | different elements: " + this.lastVersions.size());
+            } else {
+                this.importer.endDocument();
+                System.out.println("created: " + this.created + " | modified: " + this.modified
+                        + " | deleted: " + this.deleted + " | older versions skipped: " + this.skipped);
+            }
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch(qName) {
+                case "create":
+                case "modify":
+                case "delete":
+                    this.create = qName.equals("create");
+                    this.delete = qName.equals("delete");
+                    return;
+            }
+            if(!this.record.fill(qName, attributes)) return;
+
+            if(!this.record.isMainElement()) {
+                if(this.forward) {
+                    this.importer.startElement(this.record);
+                }
+                return;
+            }
+
+            long id;
+            try {
+                id = OSMRecord.parseLong(this.record.id);
+            }
+            catch(NumberFormatException e) {
+                System.out.println("XML-Error: " + qName + " has no valid id value >" + this.record.id + "< - element is skipped.");
+                return;
+            }
+            long key = id << 2 | this.record.element;
+            int position = this.position++;
+
+            if(this.importer == null) {
+                this.lastVersions.put(key, position);
+                return;
+            }
+
+            if(this.lastVersions.get(key) != position) {
+                this.skipped++;
+                return;
+            }
+            if(this.delete) {
+                this.deleted++;
+                try {
+                    this.writeDeletion(this.record.element, id);
+                } catch (SQLException e) {
+                    System.out.println("SQL-Error: Couldn't write deleted " + qName + " " + id);
+                    e.printStackTrace();
+                    System.exit(1);
+                }
+                return;
+            }
+            if(this.create) {
+                this.created++;
+            } else {
+                this.modified++;
+            }
+            this.forward = true;
+            this.importer.startElement(this.record);
+        }
+
+        void writeDeletion(int element, long id) throws SQLException {
+            this.deletions.intField(element).field(id).endRow();
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            int element = OSMRecord.getElement(qName);
+            if(this.forward && (element == OSMRecord.NODE || element == OSMRecord.WAY || element == OSMRecord.RELATION)) {
+                this.record.clear();
+                this.record.element = element;
+                this.importer.endElement(this.record);
+                this.forward = false;
+            }
+        }
+    }
+
+    /**
+     * Open addressing hash map long -&gt; int. A daily diff has some million
+     * elements - boxed keys in a HashMap would need several times more memory.
+     */
+    static class LongIntMap {
+        private static final long EMPTY = -1;
+
+        private long[] keys = new long[1 << 16];
+        private int[] values = new int[1 << 16];
+        private int size = 0;
+
+        LongIntMap() {
+            Arrays.fill(this.keys, EMPTY);
+        }
+
+        /**
+         * @param key must not be negative
+         */
+        void put(long key, int value) {
+            if(2 * (this.size + 1) > this.keys.length) {
+                this.grow();
+            }
+            int slot = this.slot(key);
+            if(this.keys[slot] == EMPTY) {
+                this.keys[slot] = key;
+                this.size++;
+            }
+            this.values[slot] = value;
+        }
+
+        /**
+         * @return value or -1 if key is unknown
+         */
+        int get(long key) {
+            int slot = this.slot(key);
+            return this.keys[slot] == EMPTY ? -1 : this.values[slot];
+        }
+
+        int size() {
+            return this.size;
+        }
+
+        private int slot(long key) {
+            int mask = this.keys.length - 1;
+            long h = key * 0x9E3779B97F4A7C15L;
+            int slot = (int) (h ^ (h >>> 32)) & mask;
+            while(this.keys[slot] != EMPTY && this.keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = this.keys;
+            int[] oldValues = this.values;
+            this.keys = new long[2 * oldKeys.length];
+            this.values = new int[2 * oldKeys.length];
+            Arrays.fill(this.keys, EMPTY);
+            for(int i = 0; i < oldKeys.length; i++) {
+                if(oldKeys[i] != EMPTY) {
+                    int slot = this.slot(oldKeys[i]);
+                    this.keys[slot] = oldKeys[i];
+                    this.values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package osm2inter;
+
+import org.xml.sax.Locator;
+import util.CopyConnector;
+import util.DB;
+import util.InterDB;
+import util.NodeLocationStore;
+import util.Parameter;
+import util.SQLStatementQueue;
+import util.TagDictionary;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Properties;
+
+/**
+ * Periodic checkpoints of a copy import with OSMXMLScanner. Sits between
+ * scanner and importer. Before a node, way or relation starts and the
+ * interval has passed, all COPY streams are committed (see
+ * CopyConnector.commit), node location store and tag dictionary are
+ * saved and byte offset of that element and the last id of each element
+ * type are written to the record file (recordFileName).
+ *
+ * OSMImport --resume deletes rows with greater ids - they were written
+ * after the checkpoint, maybe only partly - and scans the file from that
+ * offset. That requires osm files sorted by type and id like planet
+ * files and extracts.
+ */
+class OSMCheckpoint implements OSMRecordHandler {
+    static final String RESUME_FLAG = "--resume";
+
+    private static final String OSM_FILE = "osmFile";
+    private static final String OSM_FILE_LENGTH = "osmFileLength";
+    private static final String OFFSET = "offset";
+    private static final String[] LAST_IDS = {"lastNodeID", "lastWayID", "lastRelationID"};
+
+    private final File recordFile;
+    private final File osmFile;
+    private final long intervalMillis;
+
+    private long offset = 0;
+    private final long[] lastIDs = {-1, -1, -1};
+
+    private OSMRecordHandler importer;
+    private Collection<CopyConnector> connectors;
+    private NodeLocationStore nodeLocations = null;
+    private TagDictionary tagDictionary = null;
+    private final Parameter parameter;
+    private OSMXMLScanner scanner;
+    private long scannerOffset;
+
+    private long lastCheckpoint = System.currentTimeMillis();
+    private long id = -1;
+
+    OSMCheckpoint(Parameter parameter, File osmFile) {
+        this.parameter = parameter;
+        this.recordFile = new File(parameter.getRecordFileName());
+        this.osmFile = osmFile;
+        this.intervalMillis = parameter.getCheckpointInterval() * 60000L;
+    }
+
+    /**
+     * read record file of a previous run
+     * @return false if there is none
+     * @throws IOException broken record file or it belongs to another osm file
+     */
+    boolean load() throws IOException {
+        if(!this.recordFile.exists()) return false;
+
+        Properties p = new Properties();
+        try(InputStream in = new FileInputStream(this.recordFile)) {
+            p.load(in);
+        }
+        try {
+            long length = Long.parseLong(p.getProperty(OSM_FILE_LENGTH));
+            if(length != this.osmFile.length() || !this.osmFile.getName().equals(p.getProperty(OSM_FILE))) {
+                throw new IOException("checkpoint in " + this.recordFile + " belongs to "
+                        + p.getProperty(OSM_FILE) + " with " + length + " bytes, not to " + this.osmFile);
+            }
+            this.offset = Long.parseLong(p.getProperty(OFFSET));
+            for(int i = 0; i < LAST_IDS.length; i++) {
+                this.lastIDs[i] = Long.parseLong(p.getProperty(LAST_IDS[i]));
+            }
+        }
+        catch(NumberFormatException | NullPointerException e) {
+            throw new IOException("broken checkpoint in " + this.recordFile.getAbsolutePath());
+        }
+        return true;
+    }
+
+    /**
+     * @return byte offset to continue at
+     */
+    long getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * delete rows written after checkpoint
+     */
+    void rollback() throws SQLException, IOException {
+        String[] tables = {InterDB.NODETABLE, InterDB.WAYTABLE, InterDB.WAYMEMBER,
+                InterDB.RELATIONTABLE, InterDB.RELATIONMEMBER};
+        String[] columns = {"osm_id", "osm_id", "way_id", "osm_id", "relation_id"};
+        int[] elements = {OSMRecord.NODE, OSMRecord.WAY, OSMRecord.WAY, OSMRecord.RELATION, OSMRecord.RELATION};
+
+        SQLStatementQueue sql = new SQLStatementQueue(this.parameter);
+        for(int i = 0; i < tables.length; i++) {
+            long lastID = this.lastIDs[elements[i]];
+            System.out.println("remove rows after checkpoint: " + tables[i] + "." + columns[i] + " > " + lastID);
+            sql.append("DELETE FROM " + DB.getFullTableName(this.parameter.getSchema(), tables[i])
+                    + " WHERE " + columns[i] + " > " + lastID + ";");
+            sql.forceExecute();
+        }
+        sql.close();
+    }
+
+    /**
+     * @param importer receives all elements
+     * @param connectors are committed at each checkpoint
+     */
+    void setImporter(OSMRecordHandler importer, Collection<CopyConnector> connectors) {
+        this.importer = importer;
+        this.connectors = connectors;
+    }
+
+    void setNodeLocationStore(NodeLocationStore nodeLocations) {
+        this.nodeLocations = nodeLocations;
+    }
+
+    void setTagDictionary(TagDictionary tagDictionary) {
+        this.tagDictionary = tagDictionary;
+    }
+
+    /**
+     * @param scannerOffset position of scanners stream in osm file
+     */
+    void setScanner(OSMXMLScanner scanner, long scannerOffset) {
+        this.scanner = scanner;
+        this.scannerOffset = scannerOffset;
+    }
+
+    /**
+     * import is complete - nothing to resume
+     */
+    void remove() {
+        if(this.recordFile.exists() && !this.recordFile.delete()) {
+            System.err.println("cannot remove checkpoint " + this.recordFile.getAbsolutePath());
+        }
+    }
+
+    private void write() throws SQLException, IOException {
+        long start = System.currentTimeMillis();
+        // position of element that starts now
+        long position = this.scannerOffset + this.scanner.getPosition();
+
+        for(CopyConnector connector : this.connectors) {
+            connector.commit();
+        }
+        if(this.nodeLocations != null) {
+            this.nodeLocations.force();
+        }
+        if(this.tagDictionary != null) {
+            this.tagDictionary.save(this.parameter);
+        }
+
+        Properties p = new Properties();
+        p.setProperty(OSM_FILE, this.osmFile.getName());
+        p.setProperty(OSM_FILE_LENGTH, Long.toString(this.osmFile.length()));
+        p.setProperty(OFFSET, Long.toString(position));
+        for(int i = 0; i < LAST_IDS.length; i++) {
+            p.setProperty(LAST_IDS[i], Long.toString(this.lastIDs[i]));
+        }
+
+        // old checkpoint stays valid until new one is complete
+        File tmpFile = new File(this.recordFile.getAbsolutePath() + ".tmp");
+        try(OutputStream out = new FileOutputStream(tmpFile)) {
+            p.store(out, "OSMImport checkpoint - continue with " + RESUME_FLAG);
+        }
+        Files.move(tmpFile.toPath(), this.recordFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        System.out.println("checkpoint @ byte " + position + " (last node " + this.lastIDs[0] + ", way "
+                + this.lastIDs[1] + ", relation " + this.lastIDs[2] + ") took "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    @Override
+    public void setDocumentLocator(Locator locator) {
+        this.importer.setDocumentLocator(locator);
+    }
+
+    @Override
+    public void startDocument() {
+        this.importer.startDocument();
+    }
+
+    @Override
+    public void startElement(OSMRecord record) {
+        if(record.isMainElement()) {
+            if(this.intervalMillis > 0 && System.currentTimeMillis() - this.lastCheckpoint >= this.intervalMillis) {
+                try {
+                    this.write();
+                } catch (SQLException | IOException e) {
+                    System.out.println("Error: Couldn't write checkpoint - restart with " + RESUME_FLAG
+                            + " continues at previous one.");
+                    e.printStackTrace();
+                    System.exit(1);
+                }
+                this.lastCheckpoint = System.currentTimeMillis();
+            }
+            try {
+                this.id = OSMRecord.parseLong(record.id);
+            }
+            catch(NumberFormatException e) {
+                // importer reports that
+                this.id = -1;
+            }
+        }
+        this.importer.startElement(record);
+    }
+
+    @Override
+    public void endElement(OSMRecord record) {
+        this.importer.endElement(record);
+        if(record.isMainElement() && this.id >= 0) {
+            this.lastIDs[record.element] = this.id;
+        }
+    }
+
+    @Override
+    public void endDocument() {
+        this.importer.endDocument();
+    }
+}
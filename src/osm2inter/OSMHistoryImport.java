@@ -0,0 +1,665 @@
+package osm2inter;
+
+import org.xml.sax.Locator;
+import osm.OSMClassification;
+import util.CopyConnector;
+import util.DB;
+import util.OHDM_DB;
+import util.Parameter;
+import util.Util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Imports an osm full-history file (.osh or .osh.gz, xml) straight into
+ * ohdm tables - one pass instead of a snapshot import and diff for each
+ * point in time.
+ *
+ * The file must be sorted like planet history files: nodes, ways and
+ * relations by id, versions of each element in ascending order. All
+ * versions of an element are collected, then validity intervals are
+ * derived: a version is valid from its date until the date of the next
+ * version, the last one until the given date (default: today). Versions
+ * with visible="false" end the previous interval. Consecutive versions
+ * with same geometry, classification and tags are merged into one interval.
+ *
+ * Each interval gets its own point, line or polygon and a geoobject_geometry
+ * row per class code. Named elements get one geoobject (name of the first
+ * named interval), others are linked to the osm dummy object 0 like in
+ * OHDMImporter. Rows are written by COPY, ids are taken from the importer
+ * and sequences are set at the end - no other import may write into the
+ * ohdm schema meanwhile.
+ *
+ * Way geometries are built from node versions valid at the date of the
+ * way version, so all node versions are kept in memory (24 byte each)
+ * - fine for regional history extracts. Node moves between two way
+ * versions do not create intervals of their own. Relations are skipped.
+ */
+public class OSMHistoryImport implements OSMRecordHandler {
+    private static final int OSM_DUMMY_OBJECT_ID = 0;
+    private static final int EWKB_SRID_FLAG = 0x20000000;
+    private static final int SRID = 4326;
+    // tables with ids set by this importer
+    private static final String[] ID_TABLES = {OHDM_DB.TABLE_EXTERNAL_USERS, OHDM_DB.TABLE_GEOOBJECT,
+            OHDM_DB.TABLE_POINTS, OHDM_DB.TABLE_LINES, OHDM_DB.TABLE_POLYGONS};
+
+    private final OSMClassification classification = OSMClassification.getOSMClassification();
+    private final int boundaryAdminClassID = this.classification.getOHDMClassID("boundary", "administrative");
+    private final String validUntil;
+
+    private final CopyConnector users, geoobjects, geoobjectGeometries;
+    private final CopyConnector[] geometries = new CopyConnector[4]; // by OHDM_DB geometry type
+    private final long[] lastGeometryIDs = new long[4];
+    private long lastGeoobjectID;
+    private int lastUserID;
+    private final int osmSystemID;
+    private final HashMap<Long, Integer> userIDs;
+
+    private final NodeHistory nodeHistory = new NodeHistory();
+
+    // element whose versions are collected
+    private int element = OSMRecord.NONE;
+    private long id = -1;
+    private final ArrayList<Version> versions = new ArrayList<>();
+    private Version version = null;
+    private int adminLevel = 0;
+
+    private long elements = 0, intervals = 0, skippedRelations = 0;
+    private ByteBuffer ewkb = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+
+    OSMHistoryImport(Parameter parameter, String validUntil, int osmSystemID, HashMap<Long, Integer> userIDs,
+            long[] lastIDs) throws Exception {
+        this.validUntil = validUntil;
+        this.osmSystemID = osmSystemID;
+        this.userIDs = userIDs;
+
+        this.users = new CopyConnector(parameter, OHDM_DB.TABLE_EXTERNAL_USERS);
+        this.geoobjects = new CopyConnector(parameter, OHDM_DB.TABLE_GEOOBJECT);
+        this.geoobjectGeometries = new CopyConnector(parameter, OHDM_DB.TABLE_GEOOBJECT_GEOMETRY);
+        this.geometries[OHDM_DB.OHDM_POINT_GEOMTYPE] = new CopyConnector(parameter, OHDM_DB.TABLE_POINTS);
+        this.geometries[OHDM_DB.OHDM_LINESTRING_GEOMTYPE] = new CopyConnector(parameter, OHDM_DB.TABLE_LINES);
+        this.geometries[OHDM_DB.OHDM_POLYGON_GEOMTYPE] = new CopyConnector(parameter, OHDM_DB.TABLE_POLYGONS);
+
+        this.lastUserID = (int) lastIDs[0];
+        this.lastGeoobjectID = lastIDs[1];
+        System.arraycopy(lastIDs, 2, this.lastGeometryIDs, 1, 3);
+    }
+
+    public static void main(String[] args) {
+        System.out.println("Started with arguments: " + Arrays.toString(args));
+        if(args.length < 2 || args.length > 3) {
+            System.err.println("parameter required: osm history file (.osh or .osh.gz), ohdm parameter file [, valid until yyyy-mm-dd]");
+            System.exit(0);
+        }
+
+        long past = System.currentTimeMillis();
+        Parameter parameter = null;
+        try {
+            File oshFile = new File(args[0]);
+            parameter = new Parameter(args[1]);
+            String validUntil = args.length == 3 ? args[2] : LocalDate.now().toString();
+            String schema = parameter.getSchema();
+
+            long[] lastIDs = new long[ID_TABLES.length];
+            int osmSystemID;
+            HashMap<Long, Integer> userIDs = new HashMap<>();
+            try(Connection connection = DB.createConnection(parameter);
+                    Statement stmt = connection.createStatement()) {
+                try(ResultSet result = stmt.executeQuery("SELECT id FROM "
+                        + DB.getFullTableName(schema, OHDM_DB.TABLE_EXTERNAL_SYSTEMS)
+                        + " WHERE name = 'OSM' OR name = 'osm'")) {
+                    if(!result.next()) {
+                        throw new SQLException("no external system osm in schema " + schema);
+                    }
+                    osmSystemID = result.getInt(1);
+                }
+                for(int i = 0; i < ID_TABLES.length; i++) {
+                    try(ResultSet result = stmt.executeQuery("SELECT COALESCE(max(id), 0) FROM "
+                            + DB.getFullTableName(schema, ID_TABLES[i]))) {
+                        result.next();
+                        lastIDs[i] = result.getLong(1);
+                    }
+                }
+                try(ResultSet result = stmt.executeQuery("SELECT userid, id FROM "
+                        + DB.getFullTableName(schema, OHDM_DB.TABLE_EXTERNAL_USERS)
+                        + " WHERE external_system_id = " + osmSystemID)) {
+                    while(result.next()) {
+                        userIDs.put(result.getLong(1), result.getInt(2));
+                    }
+                }
+            }
+
+            OSMHistoryImport importer = new OSMHistoryImport(parameter, validUntil, osmSystemID, userIDs, lastIDs);
+            try(InputStream in = oshFile.getName().toLowerCase().endsWith(".gz")
+                    ? new GZIPInputStream(new FileInputStream(oshFile), 1024 * 1024)
+                    : new FileInputStream(oshFile)) {
+                new OSMXMLScanner(in).parse(importer);
+            }
+            long[] newLastIDs = importer.close();
+
+            // next ids of sequences
+            try(Connection connection = DB.createConnection(parameter);
+                    Statement stmt = connection.createStatement()) {
+                for(int i = 0; i < ID_TABLES.length; i++) {
+                    if(newLastIDs[i] > lastIDs[i]) {
+                        stmt.execute("SELECT setval('" + DB.getSequenceName(DB.getFullTableName(schema, ID_TABLES[i]))
+                                + "', " + newLastIDs[i] + ")");
+                    }
+                }
+            }
+        } catch (Exception t) {
+            PrintStream err = System.err;
+            // maybe another stream was defined and could be opened
+            try {
+                err = parameter.getErrStream();
+            }
+            catch(Exception tt) {
+            }
+
+            Util.printExceptionMessage(err, t, null, "in main OSMHistoryImport", false);
+        }
+        System.out.println("That took " + (System.currentTimeMillis() - past) + " ms");
+    }
+
+    /**
+     * finish copy
+     * @return last ids in order of ID_TABLES
+     */
+    private long[] close() throws SQLException {
+        CopyConnector[] connectors = {this.users, this.geoobjects, this.geoobjectGeometries,
+                this.geometries[OHDM_DB.OHDM_POINT_GEOMTYPE], this.geometries[OHDM_DB.OHDM_LINESTRING_GEOMTYPE],
+                this.geometries[OHDM_DB.OHDM_POLYGON_GEOMTYPE]};
+        for(CopyConnector connector : connectors) {
+            System.out.println("wrote " + connector.endCopy() + " lines to " + connector.getTablename());
+            connector.close();
+        }
+        return new long[] {this.lastUserID, this.lastGeoobjectID, this.lastGeometryIDs[1],
+                this.lastGeometryIDs[2], this.lastGeometryIDs[3]};
+    }
+
+    @Override
+    public void setDocumentLocator(Locator locator) {
+    }
+
+    @Override
+    public void startDocument() {
+        System.out.println("...start... valid until " + this.validUntil);
+    }
+
+    @Override
+    public void endDocument() {
+        this.finishElement();
+        System.out.println("...end...");
+        System.out.println("elements: " + this.elements + " | node versions: " + this.nodeHistory.size()
+                + " | intervals: " + this.intervals + " | skipped relations: " + this.skippedRelations);
+    }
+
+    @Override
+    public void startElement(OSMRecord record) {
+        switch(record.element) {
+            case OSMRecord.NODE:
+            case OSMRecord.WAY:
+            case OSMRecord.RELATION:
+                this.startVersion(record);
+                break;
+
+            case OSMRecord.TAG:
+                if(this.version != null && record.k != null && record.v != null) {
+                    this.addTag(record);
+                }
+                break;
+
+            case OSMRecord.ND:
+                if(this.version != null && this.element == OSMRecord.WAY && record.ref != null) {
+                    try {
+                        this.version.addRef(OSMRecord.parseLong(record.ref));
+                    }
+                    catch(NumberFormatException e) {
+                        System.out.println("XML-Error: way " + this.id + " has an invalid nd ref >" + record.ref + "<");
+                    }
+                }
+                break;
+        }
+    }
+
+    private void startVersion(OSMRecord record) {
+        long id;
+        try {
+            id = OSMRecord.parseLong(record.id);
+        }
+        catch(NumberFormatException e) {
+            System.out.println("XML-Error: " + OSMRecord.getElementName(record.element)
+                    + " has no valid id value >" + record.id + "< - element is skipped.");
+            this.version = null;
+            return;
+        }
+
+        if(record.element != this.element || id != this.id) {
+            if(record.element < this.element || (record.element == this.element && id < this.id)) {
+                System.err.println("history file is not sorted by type and id: "
+                        + OSMRecord.getElementName(record.element) + " " + id + " follows "
+                        + OSMRecord.getElementName(this.element) + " " + this.id);
+                System.exit(1);
+            }
+            this.finishElement();
+            this.element = record.element;
+            this.id = id;
+        }
+
+        if(record.element == OSMRecord.RELATION) {
+            this.version = null;
+            return;
+        }
+
+        Version v = new Version();
+        v.visible = !OSMRecord.equals(record.visible, "false");
+        v.timestamp = record.timestamp == null ? "" : record.timestamp.toString();
+        v.time = Version.timeKey(v.timestamp);
+        v.userID = OSMHistoryImport.parseID(record.uid);
+        v.userName = record.user == null ? null : record.user.toString();
+        if(record.element == OSMRecord.NODE && v.visible) {
+            try {
+                v.lon = OSMRecord.parseFixed7(record.lon);
+                v.lat = OSMRecord.parseFixed7(record.lat);
+            }
+            catch(NumberFormatException e) {
+                System.out.println("XML-Error: node " + id + " has no valid coordinates - version is skipped.");
+                this.version = null;
+                return;
+            }
+        }
+        this.version = v;
+        this.adminLevel = 0;
+    }
+
+    private void addTag(OSMRecord record) {
+        Version v = this.version;
+        String key = record.k.toString();
+        int classKey = this.classification.getClassKey(key);
+        // like COPY_OSMImporter: yes / no don't make a feature class
+        if(classKey != -1 && !OSMRecord.equalsIgnoreCase(record.v, "yes")
+                && !OSMRecord.equalsIgnoreCase(record.v, "no")) {
+            v.addClassCode(this.classification.getOHDMClassID(classKey, record.v));
+        } else if(key.equalsIgnoreCase("admin_level")) {
+            try {
+                this.adminLevel = OSMRecord.parseInt(record.v);
+            }
+            catch(NumberFormatException e) {
+                this.adminLevel = 0;
+            }
+        } else if(key.equalsIgnoreCase("name")) {
+            v.name = record.v.toString();
+        } else if(!key.equalsIgnoreCase("type")) {
+            // like AbstractElement.getFreeAttributesASHStoreValue
+            v.addTag(key, record.v.toString());
+        }
+    }
+
+    @Override
+    public void endElement(OSMRecord record) {
+        Version v = this.version;
+        this.version = null;
+        if(record.element == OSMRecord.RELATION) {
+            return;
+        }
+        if(v == null) return;
+
+        if(v.classCodeCount > 0 && v.classCodes[0] == this.boundaryAdminClassID && this.adminLevel > 0) {
+            v.classCodes[0] = this.classification.getOHDMClassID("ohdm_boundary", "adminlevel_" + this.adminLevel);
+        }
+
+        if(record.element == OSMRecord.NODE) {
+            this.nodeHistory.add(this.id, v.time, v.visible, v.lon, v.lat);
+            if(v.visible) {
+                v.geometryType = OHDM_DB.OHDM_POINT_GEOMTYPE;
+                v.geometry = this.pointEWKB(v.lon, v.lat);
+            }
+        } else if(v.visible) {
+            this.wayGeometry(v);
+        }
+        this.versions.add(v);
+    }
+
+    /**
+     * all versions of current element are read - write its intervals
+     */
+    private void finishElement() {
+        if(this.element == OSMRecord.RELATION) {
+            this.skippedRelations++;
+        }
+        if(this.versions.isEmpty()) return;
+        this.elements++;
+
+        long objectID = -1;
+        try {
+            int n = this.versions.size();
+            for(int i = 0; i < n; i++) {
+                Version first = this.versions.get(i);
+                if(!first.visible || first.geometry == null) continue;
+
+                int last = OSMHistoryImport.lastUnchanged(this.versions, i);
+                String since = first.date();
+                String until = last + 1 < n ? this.versions.get(last + 1).date() : this.validUntil;
+                i = last;
+
+                // changed more than once a day or after valid until
+                if(since.compareTo(until) >= 0) continue;
+                // no identity
+                if(first.classCodeCount == 0 && first.name == null) continue;
+
+                int userID = this.getUserID(first);
+                long sourceID = OSM_DUMMY_OBJECT_ID;
+                if(first.name != null) {
+                    if(objectID == -1) {
+                        objectID = ++this.lastGeoobjectID;
+                        this.geoobjects.field(objectID).field(first.name).field(userID).endRow();
+                    }
+                    sourceID = objectID;
+                }
+
+                long geometryID = ++this.lastGeometryIDs[first.geometryType];
+                this.geometries[first.geometryType].field(geometryID)
+                        .geometryField(first.geometry, first.geometry.length).field(userID).endRow();
+
+                int classes = Math.max(1, first.classCodeCount);
+                for(int c = 0; c < classes; c++) {
+                    this.geoobjectGeometries.field(geometryID).intField(first.geometryType).field(sourceID)
+                            .field(first.classCodeCount == 0 ? -1 : first.classCodes[c]);
+                    if(first.tagCount > 0) {
+                        this.geoobjectGeometries.hstoreField(first.tags, first.tagCount);
+                    } else {
+                        this.geoobjectGeometries.nullField();
+                    }
+                    this.geoobjectGeometries.dateField(since).dateField(until).field(userID).endRow();
+                }
+                this.intervals++;
+            }
+        } catch (SQLException e) {
+            System.err.println("SQL-Error: cannot write history of " + OSMRecord.getElementName(this.element)
+                    + " " + this.id);
+            e.printStackTrace();
+            System.exit(1);
+        }
+        this.versions.clear();
+    }
+
+    /**
+     * Unchanged successors are merged into one validity interval.
+     * @return index of last version with same content as version first
+     */
+    static int lastUnchanged(List<Version> versions, int first) {
+        Version v = versions.get(first);
+        int last = first;
+        while(last + 1 < versions.size() && v.sameContent(versions.get(last + 1))) {
+            last++;
+        }
+        return last;
+    }
+
+    /**
+     * @return ohdm id of osm user - new users are written to external users
+     */
+    private int getUserID(Version v) throws SQLException {
+        if(v.userID < 0) return OHDM_DB.UNKNOWN_USER_ID;
+
+        Integer known = this.userIDs.get(v.userID);
+        if(known != null) return known;
+
+        int userID = ++this.lastUserID;
+        this.userIDs.put(v.userID, userID);
+        this.users.field(userID).field(v.userID);
+        if(v.userName != null) {
+            this.users.field(v.userName);
+        } else {
+            this.users.nullField();
+        }
+        this.users.field(this.osmSystemID).endRow();
+        return userID;
+    }
+
+    private void wayGeometry(Version v) {
+        int n = v.refCount;
+        // closed highways, fences etc. stay lines - like OSMWay in OHDMImporter
+        boolean polygon = n > 3 && v.refs[0] == v.refs[n - 1]
+                && this.classification.isArea(v.classCodes, v.classCodeCount, v.tag("area"));
+        if(polygon) {
+            // polygon with one ring: first node is written again as last point
+            n--;
+        }
+
+        ByteBuffer b = this.ewkb;
+        b.clear();
+        b.put((byte) 1);
+        b.putInt(EWKB_SRID_FLAG | (polygon ? 3 : 2)).putInt(SRID);
+        if(polygon) b.putInt(1);
+        int countPos = b.position();
+        b.putInt(0);
+
+        int points = 0;
+        int first = -1;
+        for(int i = 0; i < n; i++) {
+            int node = this.nodeHistory.find(v.refs[i], v.time);
+            // node deleted or not in file (extract) - leave out
+            if(node < 0) continue;
+            if(first < 0) first = node;
+            this.ensureRoom(16);
+            this.putCoordinate(this.nodeHistory.lon(node), this.nodeHistory.lat(node));
+            points++;
+        }
+        if(polygon && first >= 0) {
+            this.ensureRoom(16);
+            this.putCoordinate(this.nodeHistory.lon(first), this.nodeHistory.lat(first));
+            points++;
+        }
+
+        if(points < (polygon ? 4 : 2)) return;
+        this.ewkb.putInt(countPos, points);
+        v.geometryType = polygon ? OHDM_DB.OHDM_POLYGON_GEOMTYPE : OHDM_DB.OHDM_LINESTRING_GEOMTYPE;
+        v.geometry = Arrays.copyOf(this.ewkb.array(), this.ewkb.position());
+    }
+
+    private byte[] pointEWKB(int lon, int lat) {
+        this.ewkb.clear();
+        this.ewkb.put((byte) 1);
+        this.ewkb.putInt(EWKB_SRID_FLAG | 1).putInt(SRID);
+        this.putCoordinate(lon, lat);
+        return Arrays.copyOf(this.ewkb.array(), this.ewkb.position());
+    }
+
+    private void putCoordinate(int lon, int lat) {
+        this.ewkb.putDouble(lon / 1e7).putDouble(lat / 1e7);
+    }
+
+    private void ensureRoom(int n) {
+        if(this.ewkb.remaining() < n) {
+            int position = this.ewkb.position();
+            ByteBuffer b = ByteBuffer.allocate(2 * this.ewkb.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+            b.put(this.ewkb.array(), 0, position);
+            this.ewkb = b;
+        }
+    }
+
+    private static long parseID(CharSequence s) {
+        if(s == null) return -1;
+        try {
+            return OSMRecord.parseLong(s);
+        }
+        catch(NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * one version of a node or way
+     */
+    static class Version {
+        boolean visible;
+        String timestamp;
+        long time;
+        long userID;
+        String userName;
+        String name;
+        int lon, lat;
+
+        int[] classCodes = new int[2];
+        int classCodeCount = 0;
+        String[] tags = new String[8]; // k, v
+        int tagCount = 0;
+        long[] refs = new long[16];
+        int refCount = 0;
+
+        int geometryType;
+        byte[] geometry;
+
+        void addClassCode(int code) {
+            if(this.classCodeCount == this.classCodes.length) {
+                this.classCodes = Arrays.copyOf(this.classCodes, 2 * this.classCodes.length);
+            }
+            this.classCodes[this.classCodeCount++] = code;
+        }
+
+        void addTag(String k, String v) {
+            if(2 * this.tagCount + 2 > this.tags.length) {
+                this.tags = Arrays.copyOf(this.tags, 2 * this.tags.length);
+            }
+            this.tags[2 * this.tagCount] = k;
+            this.tags[2 * this.tagCount + 1] = v;
+            this.tagCount++;
+        }
+
+        /**
+         * @return value of tag k or null
+         */
+        String tag(String k) {
+            for(int i = 0; i < this.tagCount; i++) {
+                if(this.tags[2 * i].equalsIgnoreCase(k)) return this.tags[2 * i + 1];
+            }
+            return null;
+        }
+
+        void addRef(long ref) {
+            if(this.refCount == this.refs.length) {
+                this.refs = Arrays.copyOf(this.refs, 2 * this.refs.length);
+            }
+            this.refs[this.refCount++] = ref;
+        }
+
+        /**
+         * @return yyyy-mm-dd
+         */
+        String date() {
+            return this.timestamp.length() >= 10 ? this.timestamp.substring(0, 10) : this.timestamp;
+        }
+
+        /**
+         * same interval if geometry, classification, name and tags are unchanged
+         */
+        boolean sameContent(Version other) {
+            if(!other.visible || other.geometry == null) return false;
+            if(this.geometryType != other.geometryType || !Arrays.equals(this.geometry, other.geometry)) return false;
+            if(this.classCodeCount != other.classCodeCount || this.tagCount != other.tagCount) return false;
+            for(int i = 0; i < this.classCodeCount; i++) {
+                if(this.classCodes[i] != other.classCodes[i]) return false;
+            }
+            for(int i = 0; i < 2 * this.tagCount; i++) {
+                if(!this.tags[i].equals(other.tags[i])) return false;
+            }
+            return this.name == null ? other.name == null : this.name.equals(other.name);
+        }
+
+        /**
+         * @return digits of yyyy-mm-ddThh:mm:ss as number - ordered like timestamps
+         */
+        static long timeKey(String timestamp) {
+            long key = 0;
+            int digits = 0;
+            for(int i = 0; i < timestamp.length() && digits < 14; i++) {
+                char c = timestamp.charAt(i);
+                if(c >= '0' && c <= '9') {
+                    key = 10 * key + (c - '0');
+                    digits++;
+                }
+            }
+            for(; digits < 14; digits++) key *= 10;
+            return key;
+        }
+    }
+
+    /**
+     * All node versions in file order (id, then version) - parallel arrays
+     * instead of objects.
+     */
+    static class NodeHistory {
+        private static final int DELETED = Integer.MIN_VALUE;
+
+        private long[] ids = new long[1 << 16];
+        private long[] times = new long[1 << 16];
+        private int[] lons = new int[1 << 16];
+        private int[] lats = new int[1 << 16];
+        private int size = 0;
+
+        void add(long id, long time, boolean visible, int lon, int lat) {
+            if(this.size == this.ids.length) {
+                int length = this.ids.length + (this.ids.length >> 1);
+                this.ids = Arrays.copyOf(this.ids, length);
+                this.times = Arrays.copyOf(this.times, length);
+                this.lons = Arrays.copyOf(this.lons, length);
+                this.lats = Arrays.copyOf(this.lats, length);
+            }
+            this.ids[this.size] = id;
+            this.times[this.size] = time;
+            this.lons[this.size] = visible ? lon : DELETED;
+            this.lats[this.size] = lat;
+            this.size++;
+        }
+
+        /**
+         * @return index of node version valid at time or -1 if node is unknown
+         * or deleted then. A way version that is a bit older than its nodes
+         * (clock of editor) gets the first node version.
+         */
+        int find(long id, long time) {
+            // first version of id
+            int low = 0, high = this.size;
+            while(low < high) {
+                int mid = (low + high) >>> 1;
+                if(this.ids[mid] < id) low = mid + 1;
+                else high = mid;
+            }
+            if(low == this.size || this.ids[low] != id) return -1;
+
+            int found = low;
+            for(int i = low + 1; i < this.size && this.ids[i] == id && this.times[i] <= time; i++) {
+                found = i;
+            }
+            return this.lons[found] == DELETED ? -1 : found;
+        }
+
+        int lon(int index) {
+            return this.lons[index];
+        }
+
+        int lat(int index) {
+            return this.lats[index];
+        }
+
+        int size() {
+            return this.size;
+        }
+    }
+}
@@ -7,10 +7,15 @@ import util.*;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.io.PrintStream;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 
 /**
  *
@@ -25,11 +30,24 @@ public class OSMImport {
     public static void main(String[] args) throws SQLException {
         System.out.println("Started with arguments: "+Arrays.toString(args));
         HashMap<String, CopyConnector> connectors = null;
+        NodeLocationStore nodeLocations = null;
+        TagDictionary tagDictionary = null;
         Parameter dbConnectionSettings = null;
         long past = System.currentTimeMillis();
+
+        // flag can be anywhere, file names are positional
+        boolean resume = false;
+        List<String> arguments = new ArrayList<>();
+        for(String arg : args) {
+            if(OSMCheckpoint.RESUME_FLAG.equals(arg)) {
+                resume = true;
+            } else {
+                arguments.add(arg);
+            }
+        }
+        args = arguments.toArray(new String[0]);
+
         try {
-            SAXParserFactory spf = SAXParserFactory.newInstance();
-            SAXParser newSAXParser = spf.newSAXParser();
             String osmFileName = DEFAULT_OSM_FILENAME;
             if(args.length > 0) {
                 osmFileName = args[0];
@@ -51,26 +69,105 @@ public class OSMImport {
 
             dbConnectionSettings = new Parameter(parameterFile);
             
+            String connectionType = dbConnectionSettings.getConnectionType();
+            // sql importer creates tables on its own
+            boolean bulkLoad = dbConnectionSettings.bulkLoad() && !connectionType.equalsIgnoreCase("insert");
+            boolean typedSchema = dbConnectionSettings.typedSchema() && !connectionType.equalsIgnoreCase("insert");
+            boolean pbf = osmFileName.toLowerCase().endsWith(".pbf");
+
+            // sequential copy import with osm xml scanner writes checkpoints and can resume at last one
+            OSMCheckpoint checkpoint = null;
+            if(dbConnectionSettings.getCheckpointInterval() > 0 || resume) {
+                if(connectionType.equalsIgnoreCase("insert") || pbf || !dbConnectionSettings.useXMLScanner()
+                        || dbConnectionSettings.parallelXMLImport()) {
+                    System.err.println("checkpoints need copy import of an osm xml file with useXMLScanner and without parallelXMLImport");
+                    if(resume) System.exit(1);
+                } else if(resume && bulkLoad) {
+                    // unlogged tables are truncated after a crash, rows before checkpoint are gone
+                    System.err.println("cannot resume a bulk load - unlogged tables lose their rows after a crash, start again without --resume");
+                    System.exit(1);
+                } else {
+                    checkpoint = new OSMCheckpoint(dbConnectionSettings, osmFile);
+                    if(resume && !checkpoint.load()) {
+                        System.out.println("no checkpoint in " + dbConnectionSettings.getRecordFileName() + " - start from the beginning");
+                        resume = false;
+                    }
+                }
+            }
+
             SQLStatementQueue sq = new SQLStatementQueue(dbConnectionSettings);
-            // drop database
-            System.out.println("drop and recreate intermediate tables");
-            InterDB.createTables(sq, dbConnectionSettings.getSchema());
+            if(resume) {
+                System.out.println("resume import at byte " + checkpoint.getOffset());
+                checkpoint.rollback();
+            } else {
+                // drop database
+                System.out.println("drop and recreate intermediate tables" + (bulkLoad ? " (bulk load)" : ""));
+                InterDB.createTables(sq, dbConnectionSettings.getSchema(), bulkLoad, typedSchema);
+            }
 
             // set up xml handler - class that actually does the importing
             DefaultHandler osmImporter = null;
 
-            String connectionType = dbConnectionSettings.getConnectionType();
-            if(!connectionType.equalsIgnoreCase("insert")) {
+            // copy importer can write node coordinates into a file for the extractor
+            File nodeLocationFile = dbConnectionSettings.getNodeLocationStoreFile();
+            if(nodeLocationFile != null && !connectionType.equalsIgnoreCase("insert")) {
+                System.out.println("write node locations to " + nodeLocationFile.getAbsolutePath());
+                nodeLocations = resume ? NodeLocationStore.open(nodeLocationFile) : NodeLocationStore.create(nodeLocationFile);
+            }
+
+            // shared by all copy importers, saved after import
+            if(typedSchema && dbConnectionSettings.tagDictionary()) {
+                System.out.println("encode tags with tag dictionary");
+                if(resume) {
+                    // codes of rows before checkpoint are in dictionary saved with checkpoint
+                    try(Connection connection = DB.createConnection(dbConnectionSettings)) {
+                        tagDictionary = TagDictionary.load(connection, dbConnectionSettings.getSchema());
+                    }
+                }
+                if(tagDictionary == null) {
+                    tagDictionary = new TagDictionary();
+                }
+            }
+
+            // regional import: collect ids of kept elements before anything is written
+            OSMRegionFilter filter = OSMRegionFilter.create(dbConnectionSettings);
+            if(filter != null && connectionType.equalsIgnoreCase("insert")) {
+                System.out.println("filter is not supported by sql-insert - import all elements");
+                filter = null;
+            }
+            if(filter != null) {
+                System.out.println("filter osm file - " + filter);
+                OSMImport.parse(osmFile, pbf, filter.collector(), dbConnectionSettings);
+                if(filter.needsCompletion()) {
+                    OSMImport.parse(osmFile, pbf, filter.completer(), dbConnectionSettings);
+                }
+            }
+
+            if(!connectionType.equalsIgnoreCase("insert") && !pbf
+                    && dbConnectionSettings.parallelXMLImport()) {
+                System.out.println("use copy insert - parallel import of byte ranges");
+                OSMXMLRangeImporter rangeImporter = new OSMXMLRangeImporter(dbConnectionSettings, osmFile,
+                        dbConnectionSettings.getParserThreads());
+                rangeImporter.setNodeLocationStore(nodeLocations);
+                rangeImporter.setTagDictionary(tagDictionary);
+                rangeImporter.setFilter(filter);
+                rangeImporter.importFile();
+            }
+            else if(!connectionType.equalsIgnoreCase("insert")) {
                 System.out.println("use copy insert - fast version");
 
                 System.out.println("creating connections");
-                connectors = new HashMap<>();
-                String[] tablenames = COPY_OSMImporter.connsNames;
-                for (String tablename : tablenames){
-                    connectors.put(tablename, new CopyConnector(dbConnectionSettings, tablename));
-                }
+                connectors = COPY_OSMImporter.createConnectors(dbConnectionSettings);
 
-                osmImporter = new COPY_OSMImporter(connectors, dbConnectionSettings.getSerTagsSize());
+                COPY_OSMImporter copyImporter = new COPY_OSMImporter(connectors, dbConnectionSettings.getSerTagsSize(), typedSchema);
+                copyImporter.setNodeLocationStore(nodeLocations);
+                copyImporter.setTagDictionary(tagDictionary);
+                osmImporter = filter == null ? copyImporter : filter.writer(copyImporter);
+                if(checkpoint != null) {
+                    checkpoint.setImporter((OSMRecordHandler) osmImporter, connectors.values());
+                    checkpoint.setNodeLocationStore(nodeLocations);
+                    checkpoint.setTagDictionary(tagDictionary);
+                }
             } else {
                 // do inserts
                 System.out.println("use sql-insert - copy is much faster!");
@@ -80,15 +177,47 @@ public class OSMImport {
                         OSMClassification.getOSMClassification());
             }
 
-            System.out.println("starting parser");
-            newSAXParser.parse(osmFile, osmImporter);
+            // osmImporter is null if parallel import is already done
+            if(checkpoint != null) {
+                long offset = resume ? checkpoint.getOffset() : 0;
+                System.out.println("starting osm xml scanner" + (offset > 0 ? " at byte " + offset : "")
+                        + " - checkpoint every " + dbConnectionSettings.getCheckpointInterval() + " minutes");
+                try(FileInputStream in = new FileInputStream(osmFile)) {
+                    in.getChannel().position(offset);
+                    OSMXMLScanner scanner = new OSMXMLScanner(in);
+                    checkpoint.setScanner(scanner, offset);
+                    scanner.parse(checkpoint);
+                }
+            } else if(osmImporter != null) {
+                OSMImport.parse(osmFile, pbf, osmImporter, dbConnectionSettings);
+            }
 
-            if(!connectionType.equalsIgnoreCase("insert")) {
+            if(connectors != null) {
                 for (CopyConnector connector : connectors.values()) {
                     System.out.println("wrote " + connector.endCopy() + " lines to " + connector.getTablename());
                     connector.close();
                 }
             }
+
+            if(nodeLocations != null) {
+                nodeLocations.close();
+            }
+
+            if(tagDictionary != null) {
+                tagDictionary.save(dbConnectionSettings);
+            }
+
+            // sql importer creates its indexes at end of document
+            if(!connectionType.equalsIgnoreCase("insert")) {
+                if(bulkLoad) {
+                    InterDB.finishBulkLoad(dbConnectionSettings);
+                }
+                InterDB.createIndexes(dbConnectionSettings);
+            }
+
+            if(checkpoint != null) {
+                checkpoint.remove();
+            }
         } catch (Exception t) {
             PrintStream err = System.err;
             // maybe another stream was defined and could be opened
@@ -103,4 +232,24 @@ public class OSMImport {
         long present = System.currentTimeMillis();
         System.out.println("That took "+(present-past)+" ms");
     }
+
+    /**
+     * read whole osm file with pbf parser, osm xml scanner or sax parser
+     */
+    private static void parse(File osmFile, boolean pbf, DefaultHandler handler, Parameter parameter)
+            throws Exception {
+        if(pbf) {
+            System.out.println("starting pbf parser with " + parameter.getParserThreads() + " decoder threads");
+            new PBFParser(parameter.getParserThreads()).parse(osmFile, handler);
+        } else if(parameter.useXMLScanner() && handler instanceof OSMRecordHandler) {
+            System.out.println("starting osm xml scanner");
+            try(InputStream in = new FileInputStream(osmFile)) {
+                new OSMXMLScanner(in).parse((OSMRecordHandler) handler);
+            }
+        } else {
+            System.out.println("starting parser");
+            SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
+            saxParser.parse(osmFile, handler);
+        }
+    }
 }
@@ -0,0 +1,305 @@
+package osm2inter;
+
+import org.xml.sax.Attributes;
+
+/**
+ * One element of an osm file - node, way, relation or one of their
+ * tag, nd and member children - with the attributes the importer needs.
+ *
+ * OSMXMLScanner refills the very same instance for each element and
+ * delivers values as views on its internal char buffer. Handlers must
+ * therefore not keep references to a record or its values beyond
+ * the call they got it in. Call toString() on a value to keep it.
+ */
+class OSMRecord {
+    static final int NONE = -1;
+    static final int NODE = 0;
+    static final int WAY = 1;
+    static final int RELATION = 2;
+    static final int TAG = 3;
+    static final int ND = 4;
+    static final int MEMBER = 5;
+
+    int element = NONE;
+
+    CharSequence id;
+    CharSequence lat;
+    CharSequence lon;
+    CharSequence timestamp;
+    CharSequence uid;
+    CharSequence user;
+    CharSequence k;
+    CharSequence v;
+    CharSequence ref;
+    CharSequence type;
+    CharSequence role;
+    CharSequence visible; // history files only
+
+    // value storage for scanner
+    char[] chars = new char[1024];
+    int charCount = 0;
+
+    boolean isMainElement() {
+        return this.element == NODE || this.element == WAY || this.element == RELATION;
+    }
+
+    void clear() {
+        this.element = NONE;
+        this.id = this.lat = this.lon = this.timestamp = this.uid = this.user = null;
+        this.k = this.v = this.ref = this.type = this.role = this.visible = null;
+        this.charCount = 0;
+    }
+
+    /**
+     * Fill record from SAX element. Values are the parsers strings.
+     * @return false if element is not of interest for the import
+     */
+    boolean fill(String qName, Attributes attr) {
+        this.clear();
+        this.element = OSMRecord.getElement(qName);
+
+        switch(this.element) {
+            case NODE:
+                this.fillMainElement(attr);
+                this.lat = attr.getValue("lat");
+                this.lon = attr.getValue("lon");
+                return true;
+            case WAY:
+            case RELATION:
+                this.fillMainElement(attr);
+                return true;
+            case TAG:
+                this.k = attr.getValue("k");
+                this.v = attr.getValue("v");
+                return true;
+            case ND:
+                this.ref = attr.getValue("ref");
+                return true;
+            case MEMBER:
+                this.type = attr.getValue("type");
+                this.ref = attr.getValue("ref");
+                this.role = attr.getValue("role");
+                return true;
+        }
+
+        return false;
+    }
+
+    private void fillMainElement(Attributes attr) {
+        this.id = attr.getValue("id");
+        this.timestamp = attr.getValue("timestamp");
+        this.uid = attr.getValue("uid");
+        this.user = attr.getValue("user");
+        this.visible = attr.getValue("visible");
+    }
+
+    static int getElement(String name) {
+        switch(name) {
+            case "node": return NODE;
+            case "way": return WAY;
+            case "relation": return RELATION;
+            case "tag": return TAG;
+            case "nd": return ND;
+            case "member": return MEMBER;
+            default: return NONE;
+        }
+    }
+
+    static String getElementName(int element) {
+        switch(element) {
+            case NODE: return "node";
+            case WAY: return "way";
+            case RELATION: return "relation";
+            case TAG: return "tag";
+            case ND: return "nd";
+            case MEMBER: return "member";
+            default: return "";
+        }
+    }
+
+    /**
+     * Ensure room for another n chars in value buffer
+     */
+    void ensureCapacity(int n) {
+        if(this.charCount + n > this.chars.length) {
+            char[] newChars = new char[Math.max(this.chars.length * 2, this.charCount + n)];
+            System.arraycopy(this.chars, 0, newChars, 0, this.charCount);
+            this.chars = newChars;
+        }
+    }
+
+    static boolean equals(CharSequence a, String b) {
+        if(a == null) return false;
+        int length = a.length();
+        if(length != b.length()) return false;
+        for(int i = 0; i < length; i++) {
+            if(a.charAt(i) != b.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    static boolean equalsIgnoreCase(CharSequence a, String b) {
+        if(a == null) return false;
+        int length = a.length();
+        if(length != b.length()) return false;
+        for(int i = 0; i < length; i++) {
+            char c1 = a.charAt(i);
+            char c2 = b.charAt(i);
+            if(c1 != c2 && Character.toLowerCase(c1) != Character.toLowerCase(c2)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Parse a decimal int without creating a string.
+     * @throws NumberFormatException like Integer.parseInt
+     */
+    static int parseInt(CharSequence s) {
+        if(s == null || s.length() == 0) {
+            throw new NumberFormatException("empty value");
+        }
+
+        int i = 0;
+        boolean negative = false;
+        if(s.charAt(0) == '-' || s.charAt(0) == '+') {
+            negative = s.charAt(0) == '-';
+            i++;
+            if(s.length() == 1) throw new NumberFormatException("For input string: \"" + s + "\"");
+        }
+
+        long result = 0;
+        for(; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if(c < '0' || c > '9') {
+                throw new NumberFormatException("For input string: \"" + s + "\"");
+            }
+            result = result * 10 + (c - '0');
+            if(result > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException("For input string: \"" + s + "\"");
+            }
+        }
+
+        result = negative ? -result : result;
+        if(result > Integer.MAX_VALUE) {
+            throw new NumberFormatException("For input string: \"" + s + "\"");
+        }
+        return (int) result;
+    }
+
+    /**
+     * Parse a decimal long (osm ids) without creating a string.
+     * @throws NumberFormatException like Long.parseLong
+     */
+    static long parseLong(CharSequence s) {
+        if(s == null || s.length() == 0) {
+            throw new NumberFormatException("empty value");
+        }
+
+        int i = 0;
+        boolean negative = false;
+        if(s.charAt(0) == '-' || s.charAt(0) == '+') {
+            negative = s.charAt(0) == '-';
+            i++;
+            if(s.length() == 1) throw new NumberFormatException("For input string: \"" + s + "\"");
+        }
+
+        // accumulate negative - reaches Long.MIN_VALUE
+        long result = 0;
+        for(; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if(c < '0' || c > '9' || result < (Long.MIN_VALUE + (c - '0')) / 10) {
+                throw new NumberFormatException("For input string: \"" + s + "\"");
+            }
+            result = result * 10 - (c - '0');
+        }
+
+        if(!negative) {
+            if(result == Long.MIN_VALUE) throw new NumberFormatException("For input string: \"" + s + "\"");
+            result = -result;
+        }
+        return result;
+    }
+
+    /**
+     * Parse a decimal degree value into an int of 1e-7 degree (osm
+     * precision), further fraction digits are cut.
+     * @throws NumberFormatException if there is no such number
+     */
+    static int parseFixed7(CharSequence s) {
+        if(s == null || s.length() == 0) {
+            throw new NumberFormatException("empty value");
+        }
+
+        int i = 0;
+        boolean negative = false;
+        if(s.charAt(0) == '-' || s.charAt(0) == '+') {
+            negative = s.charAt(0) == '-';
+            i++;
+        }
+
+        long result = 0;
+        int fractionDigits = -1; // no point yet
+        boolean digits = false;
+        for(; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if(c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if(c >= '0' && c <= '9') {
+                digits = true;
+                if(fractionDigits < 0) {
+                    result = result * 10 + (c - '0');
+                    if(result > Integer.MAX_VALUE) break; // too large anyway
+                } else if(fractionDigits < 7) {
+                    result = result * 10 + (c - '0');
+                    fractionDigits++;
+                }
+            } else {
+                throw new NumberFormatException("For input string: \"" + s + "\"");
+            }
+        }
+
+        for(int f = Math.max(fractionDigits, 0); f < 7; f++) {
+            result *= 10;
+        }
+        if(!digits || result > Integer.MAX_VALUE) {
+            throw new NumberFormatException("For input string: \"" + s + "\"");
+        }
+        return (int) (negative ? -result : result);
+    }
+
+    static int indexOf(CharSequence s, char c) {
+        for(int i = 0; i < s.length(); i++) {
+            if(s.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * View on a range of the records value buffer. Instances are
+     * reused by the scanner.
+     */
+    class Slice implements CharSequence {
+        int start;
+        int length;
+
+        @Override
+        public int length() {
+            return this.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return OSMRecord.this.chars[this.start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(OSMRecord.this.chars, this.start + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(OSMRecord.this.chars, this.start, this.length);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package osm2inter;
+
+import org.xml.sax.Locator;
+
+/**
+ * Receives the elements of an osm file from OSMXMLScanner. The record
+ * is reused for each call - see OSMRecord.
+ */
+interface OSMRecordHandler {
+    void setDocumentLocator(Locator locator);
+
+    void startDocument();
+
+    /**
+     * Called for each node, way, relation, tag, nd and member.
+     */
+    void startElement(OSMRecord record);
+
+    /**
+     * Called when a node, way or relation is closed. Only
+     * record.element is set.
+     */
+    void endElement(OSMRecord record);
+
+    void endDocument();
+}
@@ -0,0 +1,406 @@
+package osm2inter;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
+import org.xml.sax.helpers.DefaultHandler;
+import util.IDSet;
+import util.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Keeps the elements of a region and / or with certain tags, like osmium
+ * extract (strategy complete_ways) and osmium tags-filter do. The osm file
+ * is streamed more than once, only ids are kept in memory (see IDSet):
+ * <pre>
+ * 1. collector(): remember ids of
+ *    - nodes inside the area,
+ *    - ways with at least one node inside and all nodes of those ways,
+ *    - relations with a node, way or (previous) relation member inside
+ *    Elements must match the tag filter, nodes of kept ways are kept anyway.
+ *    Whether a member is inside does not depend on its tags - a tagged
+ *    multipolygon with untagged ways is found. Without an area relations
+ *    are chosen by their tags alone.
+ * 2. completer(): only if kept multipolygon relations have member ways
+ *    which are not kept - those ways and their nodes are added.
+ * 3. writer(importer): forwards kept elements to the importer.
+ * </pre>
+ * Member references of relations to elements outside are written as they
+ * are. Area is a polygon file (filterPolygon) or a bounding box (filterBBox),
+ * tag filter (filterTags) is a comma separated list of key or key=value.
+ */
+class OSMRegionFilter {
+    private final RegionPolygon region;
+    private final String[] keys;
+    private final String[] values; // null: any value
+
+    private final IDSet insideNodes = new IDSet();
+    private final IDSet nodes;
+    private final IDSet insideWays;
+    private final IDSet ways = new IDSet();
+    private final IDSet insideRelations;
+    private final IDSet relations = new IDSet();
+    private final IDSet missingWays = new IDSet();
+
+    /**
+     * @param region null: whole file
+     * @param tagFilter null: all tags
+     */
+    OSMRegionFilter(RegionPolygon region, String tagFilter) {
+        this.region = region;
+
+        if(tagFilter == null || tagFilter.trim().isEmpty()) {
+            this.keys = null;
+            this.values = null;
+            // each element inside is kept
+            this.nodes = this.insideNodes;
+            this.insideWays = this.ways;
+            this.insideRelations = this.relations;
+        } else {
+            String[] filters = tagFilter.split(",");
+            this.keys = new String[filters.length];
+            this.values = new String[filters.length];
+            for(int i = 0; i < filters.length; i++) {
+                String filter = filters[i].trim();
+                int eq = filter.indexOf('=');
+                if(eq < 0) {
+                    this.keys[i] = filter;
+                } else {
+                    this.keys[i] = filter.substring(0, eq).trim();
+                    this.values[i] = filter.substring(eq + 1).trim();
+                }
+            }
+            this.nodes = new IDSet();
+            this.insideWays = new IDSet();
+            this.insideRelations = new IDSet();
+        }
+    }
+
+    /**
+     * @return filter of parameter or null if none is defined
+     */
+    static OSMRegionFilter create(Parameter parameter) throws IOException {
+        RegionPolygon region = null;
+        File polygonFile = parameter.getFilterPolygonFile();
+        if(polygonFile != null) {
+            region = RegionPolygon.read(polygonFile);
+        } else if(parameter.getFilterBBox() != null) {
+            region = RegionPolygon.fromBBox(parameter.getFilterBBox());
+        }
+
+        if(region == null && parameter.getFilterTags() == null) {
+            return null;
+        }
+        return new OSMRegionFilter(region, parameter.getFilterTags());
+    }
+
+    /**
+     * pass 1 - collects ids
+     */
+    Handler collector() {
+        return new CollectPass(false);
+    }
+
+    /**
+     * @return true if completer() must read the file before writer() can be used
+     */
+    boolean needsCompletion() {
+        return this.missingWays.size() > 0;
+    }
+
+    /**
+     * pass 2 - adds member ways of multipolygons
+     */
+    Handler completer() {
+        return new CollectPass(true);
+    }
+
+    /**
+     * last pass - each thread needs its own writer, sets are only read
+     */
+    Handler writer(OSMRecordHandler importer) {
+        return new WritePass(importer);
+    }
+
+    long getNodes() {
+        return this.nodes.size();
+    }
+
+    long getWays() {
+        return this.ways.size();
+    }
+
+    long getRelations() {
+        return this.relations.size();
+    }
+
+    @Override
+    public String toString() {
+        return "area: " + (this.region == null ? "all" : this.region.toString())
+                + " | tags: " + (this.keys == null ? "all" : this.describeTags());
+    }
+
+    private String describeTags() {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < this.keys.length; i++) {
+            if(i > 0) sb.append(",");
+            sb.append(this.keys[i]);
+            if(this.values[i] != null) sb.append("=").append(this.values[i]);
+        }
+        return sb.toString();
+    }
+
+    private boolean matches(OSMRecord tag) {
+        for(int i = 0; i < this.keys.length; i++) {
+            if(OSMRecord.equals(tag.k, this.keys[i])
+                    && (this.values[i] == null || OSMRecord.equals(tag.v, this.values[i]))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isInside(OSMRecord node) {
+        if(this.region == null) return true;
+
+        try {
+            return this.region.contains(OSMRecord.parseFixed7(node.lon), OSMRecord.parseFixed7(node.lat));
+        }
+        catch(NumberFormatException e) {
+            // importer reports that
+            return false;
+        }
+    }
+
+    /**
+     * @return id or -1 if there is no valid one
+     */
+    private static long parseID(CharSequence id) {
+        try {
+            return OSMRecord.parseLong(id);
+        }
+        catch(NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Passes can be used by OSMXMLScanner, SAX and PBFParser - like COPY_OSMImporter.
+     */
+    abstract static class Handler extends DefaultHandler implements OSMRecordHandler {
+        private final OSMRecord saxRecord = new OSMRecord();
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+        }
+
+        @Override
+        public void startDocument() {
+        }
+
+        @Override
+        public void endDocument() {
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if(this.saxRecord.fill(qName, attributes)) {
+                this.startElement(this.saxRecord);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            this.saxRecord.clear();
+            this.saxRecord.element = OSMRecord.getElement(qName);
+            if(this.saxRecord.isMainElement()) {
+                this.endElement(this.saxRecord);
+            }
+        }
+    }
+
+    private class CollectPass extends Handler {
+        private final boolean completion;
+
+        private int element = OSMRecord.NONE;
+        private long id;
+        private boolean inside; // node or member inside, anything without area
+        private boolean tagsMatch;
+        private boolean multipolygon;
+        // nd refs of ways, way members of relations
+        private long[] refs = new long[256];
+        private int refCount;
+
+        CollectPass(boolean completion) {
+            this.completion = completion;
+        }
+
+        @Override
+        public void startElement(OSMRecord record) {
+            OSMRegionFilter filter = OSMRegionFilter.this;
+            switch(record.element) {
+                case OSMRecord.NODE:
+                case OSMRecord.WAY:
+                case OSMRecord.RELATION:
+                    this.element = record.element;
+                    this.id = OSMRegionFilter.parseID(record.id);
+                    this.tagsMatch = filter.keys == null;
+                    this.multipolygon = false;
+                    this.refCount = 0;
+                    this.inside = !this.completion
+                            && (filter.region == null || record.element == OSMRecord.NODE && filter.isInside(record));
+                    break;
+
+                case OSMRecord.TAG:
+                    if(!this.tagsMatch && filter.matches(record)) {
+                        this.tagsMatch = true;
+                    }
+                    if(this.element == OSMRecord.RELATION && OSMRecord.equals(record.k, "type")
+                            && OSMRecord.equals(record.v, "multipolygon")) {
+                        this.multipolygon = true;
+                    }
+                    break;
+
+                case OSMRecord.ND:
+                    if(this.element != OSMRecord.WAY) break;
+                    long nodeID = OSMRegionFilter.parseID(record.ref);
+                    this.addRef(nodeID);
+                    if(!this.inside && filter.insideNodes.contains(nodeID)) {
+                        this.inside = true;
+                    }
+                    break;
+
+                case OSMRecord.MEMBER:
+                    if(this.element != OSMRecord.RELATION || this.completion) break;
+                    long memberID = OSMRegionFilter.parseID(record.ref);
+                    if(OSMRecord.equals(record.type, "way")) {
+                        this.addRef(memberID);
+                        this.inside |= filter.insideWays.contains(memberID);
+                    } else if(OSMRecord.equals(record.type, "node")) {
+                        this.inside |= filter.insideNodes.contains(memberID);
+                    } else if(OSMRecord.equals(record.type, "relation")) {
+                        this.inside |= filter.insideRelations.contains(memberID);
+                    }
+                    break;
+            }
+        }
+
+        private void addRef(long ref) {
+            if(this.refCount == this.refs.length) {
+                this.refs = Arrays.copyOf(this.refs, 2 * this.refs.length);
+            }
+            this.refs[this.refCount++] = ref;
+        }
+
+        @Override
+        public void endElement(OSMRecord record) {
+            OSMRegionFilter filter = OSMRegionFilter.this;
+            if(this.completion) {
+                if(this.element == OSMRecord.WAY && filter.missingWays.contains(this.id)) {
+                    filter.ways.add(this.id);
+                    this.addNodes();
+                }
+            } else if(this.id >= 0) {
+                switch(this.element) {
+                    case OSMRecord.NODE:
+                        if(this.inside) {
+                            filter.insideNodes.add(this.id);
+                            if(this.tagsMatch) filter.nodes.add(this.id);
+                        }
+                        break;
+                    case OSMRecord.WAY:
+                        if(this.inside && filter.region != null) {
+                            filter.insideWays.add(this.id);
+                        }
+                        if(this.inside && this.tagsMatch) {
+                            filter.ways.add(this.id);
+                            this.addNodes();
+                        }
+                        break;
+                    case OSMRecord.RELATION:
+                        if(this.inside && filter.region != null) {
+                            filter.insideRelations.add(this.id);
+                        }
+                        if(this.inside && this.tagsMatch) {
+                            filter.relations.add(this.id);
+                            // multipolygons need all their ways
+                            for(int i = 0; this.multipolygon && i < this.refCount; i++) {
+                                if(!filter.ways.contains(this.refs[i])) {
+                                    filter.missingWays.add(this.refs[i]);
+                                }
+                            }
+                        }
+                        break;
+                }
+            }
+            this.element = OSMRecord.NONE;
+        }
+
+        private void addNodes() {
+            for(int i = 0; i < this.refCount; i++) {
+                OSMRegionFilter.this.nodes.add(this.refs[i]);
+            }
+        }
+
+        @Override
+        public void endDocument() {
+            OSMRegionFilter filter = OSMRegionFilter.this;
+            System.out.println("filter " + (this.completion ? "completed multipolygons" : "collected")
+                    + ": Nodes: " + filter.getNodes() + " | Ways: " + filter.getWays()
+                    + " | Relations: " + filter.getRelations()
+                    + (this.completion ? "" : " | missing multipolygon ways: " + filter.missingWays.size()));
+        }
+    }
+
+    private class WritePass extends Handler {
+        private final OSMRecordHandler importer;
+        private boolean keep = false;
+
+        WritePass(OSMRecordHandler importer) {
+            this.importer = importer;
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            this.importer.setDocumentLocator(locator);
+        }
+
+        @Override
+        public void startDocument() {
+            this.importer.startDocument();
+        }
+
+        @Override
+        public void endDocument() {
+            this.importer.endDocument();
+        }
+
+        @Override
+        public void startElement(OSMRecord record) {
+            switch(record.element) {
+                case OSMRecord.NODE:
+                    this.keep = OSMRegionFilter.this.nodes.contains(OSMRegionFilter.parseID(record.id));
+                    break;
+                case OSMRecord.WAY:
+                    this.keep = OSMRegionFilter.this.ways.contains(OSMRegionFilter.parseID(record.id));
+                    break;
+                case OSMRecord.RELATION:
+                    this.keep = OSMRegionFilter.this.relations.contains(OSMRegionFilter.parseID(record.id));
+                    break;
+            }
+            if(this.keep) {
+                this.importer.startElement(record);
+            }
+        }
+
+        @Override
+        public void endElement(OSMRecord record) {
+            if(this.keep) {
+                this.importer.endElement(record);
+            }
+            this.keep = false;
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package osm2inter;
+
+import util.InterDB;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Computes the changes between two snapshots of the same area as
+ * osmChange file - for updates without a diff from the osm servers.
+ * OSMChangeImport applies it to the intermediate tables.
+ *
+ * Both files (osm xml or pbf) are read side by side in own threads and
+ * merge-joined by type and id. Files must be sorted like planet files and
+ * extracts: nodes, ways, relations, each by ascending id. Memory does not
+ * depend on file size - only some thousand elements are queued per file.
+ *
+ * Elements with other tags (in any order), coordinates, node or member
+ * lists are written as modify. Ways whose nodes only moved are not written:
+ * OSMChangeImport propagates geom_changed from modified nodes to their ways
+ * and relations - no node location store is needed here.
+ */
+public class OSMSnapshotDiff {
+    private static final int QUEUE_SIZE = 10000;
+
+    private static final int UNCHANGED = 0;
+    private static final int CREATE = 1;
+    private static final int MODIFY = 2;
+    private static final int DELETE = 3;
+    private static final String[] BLOCKS = {null, "create", "modify", "delete"};
+
+    private final Writer out;
+    private int block = UNCHANGED;
+
+    private long unchanged = 0, created = 0, deleted = 0, tagsChanged = 0, geometryChanged = 0;
+
+    private OSMSnapshotDiff(Writer out) {
+        this.out = out;
+    }
+
+    public static void main(String[] args) {
+        System.out.println("Started with arguments: " + Arrays.toString(args));
+        if(args.length != 3) {
+            System.err.println("parameter required: old osm file, new osm file, osm change file (.osc or .osc.gz)");
+            System.exit(0);
+        }
+
+        long past = System.currentTimeMillis();
+        try {
+            OSMSnapshotDiff diff = OSMSnapshotDiff.diff(new File(args[0]), new File(args[1]), new File(args[2]));
+            System.out.println(diff);
+        } catch (Exception e) {
+            System.err.println("snapshot diff failed: " + e.getLocalizedMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+        System.out.println("That took " + (System.currentTimeMillis() - past) + " ms");
+    }
+
+    /**
+     * writes changes from old to new snapshot into oscFile, gzipped if its
+     * name ends with .gz
+     * @return diff with its counters
+     */
+    static OSMSnapshotDiff diff(File oldFile, File newFile, File oscFile) throws IOException {
+        boolean gzip = oscFile.getName().toLowerCase().endsWith(".gz");
+        try(OutputStream fileOut = new FileOutputStream(oscFile);
+                OutputStream os = gzip ? new GZIPOutputStream(fileOut, 1024 * 1024) : fileOut;
+                Writer out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 1024 * 1024)) {
+            ElementReader oldElements = new ElementReader(oldFile);
+            ElementReader newElements = new ElementReader(newFile);
+            oldElements.start();
+            newElements.start();
+
+            OSMSnapshotDiff diff = new OSMSnapshotDiff(out);
+            diff.merge(oldElements, newElements);
+            return diff;
+        }
+    }
+
+    private void merge(ElementReader oldElements, ElementReader newElements) throws IOException {
+        this.out.write("<?xml version='1.0' encoding='UTF-8'?>\n");
+        this.out.write("<osmChange version=\"0.6\" generator=\"OSMSnapshotDiff\">\n");
+
+        Element o = oldElements.next();
+        Element n = newElements.next();
+        while(o != null || n != null) {
+            int c = o == null ? 1 : (n == null ? -1 : o.compareTo(n));
+            if(c < 0) {
+                this.write(DELETE, o);
+                this.deleted++;
+                o = oldElements.next();
+            } else if(c > 0) {
+                this.write(CREATE, n);
+                this.created++;
+                n = newElements.next();
+            } else {
+                boolean tags = !Arrays.equals(o.tags, n.tags);
+                boolean geometry = !o.sameGeometry(n);
+                if(tags || geometry) {
+                    this.write(MODIFY, n);
+                    if(tags) this.tagsChanged++;
+                    if(geometry) this.geometryChanged++;
+                } else {
+                    this.unchanged++;
+                }
+                o = oldElements.next();
+                n = newElements.next();
+            }
+        }
+
+        if(this.block != UNCHANGED) {
+            this.out.write("</" + BLOCKS[this.block] + ">\n");
+        }
+        this.out.write("</osmChange>\n");
+    }
+
+    private void write(int block, Element e) throws IOException {
+        Writer out = this.out;
+        if(block != this.block) {
+            if(this.block != UNCHANGED) {
+                out.write("</" + BLOCKS[this.block] + ">\n");
+            }
+            out.write("<" + BLOCKS[block] + ">\n");
+            this.block = block;
+        }
+
+        String name = OSMRecord.getElementName(e.element);
+        out.write("  <" + name + " id=\"" + e.id + "\"");
+        if(block == DELETE) {
+            // id is enough
+            out.write("/>\n");
+            return;
+        }
+        if(e.element == OSMRecord.NODE) {
+            out.write(" lat=\"" + InterDB.coordinateToString(e.lat) + "\" lon=\"" + InterDB.coordinateToString(e.lon) + "\"");
+        }
+        OSMSnapshotDiff.attribute(out, "timestamp", e.timestamp);
+        OSMSnapshotDiff.attribute(out, "uid", e.uid);
+        OSMSnapshotDiff.attribute(out, "user", e.user);
+        out.write(">\n");
+
+        for(int i = 0; i < e.tags.length; i += 2) {
+            out.write("    <tag");
+            OSMSnapshotDiff.attribute(out, "k", e.tags[i]);
+            OSMSnapshotDiff.attribute(out, "v", e.tags[i + 1]);
+            out.write("/>\n");
+        }
+        for(int i = 0; i < e.refs.length; i++) {
+            if(e.element == OSMRecord.WAY) {
+                out.write("    <nd ref=\"" + e.refs[i] + "\"/>\n");
+            } else {
+                out.write("    <member type=\"" + e.memberTypes[i] + "\" ref=\"" + e.refs[i] + "\"");
+                OSMSnapshotDiff.attribute(out, "role", e.roles[i]);
+                out.write("/>\n");
+            }
+        }
+        out.write("  </" + name + ">\n");
+    }
+
+    private static void attribute(Writer out, String name, String value) throws IOException {
+        if(value == null) return;
+
+        out.write(' ');
+        out.write(name);
+        out.write("=\"");
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch(c) {
+                case '&': out.write("&amp;"); break;
+                case '<': out.write("&lt;"); break;
+                case '>': out.write("&gt;"); break;
+                case '"': out.write("&quot;"); break;
+                case '\n': out.write("&#10;"); break;
+                case '\r': out.write("&#13;"); break;
+                case '\t': out.write("&#9;"); break;
+                default: out.write(c);
+            }
+        }
+        out.write('"');
+    }
+
+    @Override
+    public String toString() {
+        return "unchanged: " + this.unchanged + " | created: " + this.created + " | deleted: " + this.deleted
+                + " | tags changed: " + this.tagsChanged + " | geometry changed: " + this.geometryChanged;
+    }
+
+    /**
+     * complete element - unlike OSMRecord it can be kept
+     */
+    private static class Element implements Comparable<Element> {
+        private static final String[] NO_STRINGS = new String[0];
+        private static final long[] NO_REFS = new long[0];
+
+        int element;
+        long id;
+        int lat, lon;
+        String timestamp, uid, user;
+        String[] tags = NO_STRINGS; // k, v - sorted by k
+        long[] refs = NO_REFS;
+        String[] memberTypes = NO_STRINGS;
+        String[] roles = NO_STRINGS;
+
+        @Override
+        public int compareTo(Element other) {
+            if(this.element != other.element) {
+                return this.element < other.element ? -1 : 1;
+            }
+            return Long.compare(this.id, other.id);
+        }
+
+        boolean sameGeometry(Element other) {
+            return this.lat == other.lat && this.lon == other.lon
+                    && Arrays.equals(this.refs, other.refs)
+                    && Arrays.equals(this.memberTypes, other.memberTypes)
+                    && Arrays.equals(this.roles, other.roles);
+        }
+    }
+
+    /**
+     * Parses one file in its own thread and queues its elements.
+     */
+    private static class ElementReader extends OSMRegionFilter.Handler implements Runnable {
+        private static final Element END = new Element();
+
+        private final File osmFile;
+        private final BlockingQueue<Element> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        private volatile Exception failure = null;
+
+        private Element current = null;
+        private Element previous = null;
+        private final ArrayList<String> tags = new ArrayList<>();
+        private final ArrayList<String> memberTypes = new ArrayList<>();
+        private final ArrayList<String> roles = new ArrayList<>();
+        private long[] refs = new long[256];
+        private int refCount = 0;
+
+        ElementReader(File osmFile) {
+            this.osmFile = osmFile;
+        }
+
+        void start() {
+            Thread thread = new Thread(this, "read " + this.osmFile.getName());
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * @return next element or null at end of file
+         * @throws IOException if file cannot be read or is not sorted
+         */
+        Element next() throws IOException {
+            Element e;
+            try {
+                e = this.queue.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while reading " + this.osmFile, ex);
+            }
+            if(e != END) return e;
+
+            if(this.failure != null) {
+                throw new IOException("cannot read " + this.osmFile + ": " + this.failure.getLocalizedMessage(), this.failure);
+            }
+            // stay at end
+            this.queue.add(END);
+            return null;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if(this.osmFile.getName().toLowerCase().endsWith(".pbf")) {
+                    int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+                    new PBFParser(threads).parse(this.osmFile, this);
+                } else {
+                    try(InputStream in = new FileInputStream(this.osmFile)) {
+                        new OSMXMLScanner(in).parse(this);
+                    }
+                }
+            } catch (Exception e) {
+                this.failure = e;
+            }
+            try {
+                this.queue.put(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void startElement(OSMRecord record) {
+            switch(record.element) {
+                case OSMRecord.NODE:
+                case OSMRecord.WAY:
+                case OSMRecord.RELATION:
+                    Element e = new Element();
+                    e.element = record.element;
+                    e.id = OSMRecord.parseLong(record.id);
+                    if(record.element == OSMRecord.NODE) {
+                        e.lat = OSMRecord.parseFixed7(record.lat);
+                        e.lon = OSMRecord.parseFixed7(record.lon);
+                    }
+                    e.timestamp = ElementReader.string(record.timestamp);
+                    e.uid = ElementReader.string(record.uid);
+                    e.user = ElementReader.string(record.user);
+                    this.current = e;
+                    this.tags.clear();
+                    this.memberTypes.clear();
+                    this.roles.clear();
+                    this.refCount = 0;
+                    break;
+
+                case OSMRecord.TAG:
+                    if(this.current == null) break;
+                    this.tags.add(ElementReader.string(record.k));
+                    this.tags.add(ElementReader.string(record.v));
+                    break;
+
+                case OSMRecord.ND:
+                case OSMRecord.MEMBER:
+                    if(this.current == null) break;
+                    if(this.refCount == this.refs.length) {
+                        this.refs = Arrays.copyOf(this.refs, 2 * this.refs.length);
+                    }
+                    this.refs[this.refCount++] = OSMRecord.parseLong(record.ref);
+                    if(record.element == OSMRecord.MEMBER) {
+                        this.memberTypes.add(ElementReader.string(record.type));
+                        this.roles.add(ElementReader.string(record.role));
+                    }
+                    break;
+            }
+        }
+
+        @Override
+        public void endElement(OSMRecord record) {
+            Element e = this.current;
+            if(e == null) return;
+            this.current = null;
+
+            if(!this.tags.isEmpty()) {
+                e.tags = ElementReader.sortTags(this.tags);
+            }
+            if(this.refCount > 0) {
+                e.refs = Arrays.copyOf(this.refs, this.refCount);
+            }
+            if(!this.memberTypes.isEmpty()) {
+                e.memberTypes = this.memberTypes.toArray(new String[0]);
+                e.roles = this.roles.toArray(new String[0]);
+            }
+
+            if(this.previous != null && this.previous.compareTo(e) >= 0) {
+                throw new IllegalStateException(this.osmFile.getName() + " is not sorted by type and id: "
+                        + OSMRecord.getElementName(e.element) + " " + e.id + " follows "
+                        + OSMRecord.getElementName(this.previous.element) + " " + this.previous.id);
+            }
+            this.previous = e;
+
+            try {
+                this.queue.put(e);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted", ex);
+            }
+        }
+
+        /**
+         * tag order is no change
+         */
+        private static String[] sortTags(ArrayList<String> kv) {
+            Integer[] order = new Integer[kv.size() / 2];
+            for(int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> kv.get(2 * a).compareTo(kv.get(2 * b)));
+
+            String[] tags = new String[kv.size()];
+            for(int i = 0; i < order.length; i++) {
+                tags[2 * i] = kv.get(2 * order[i]);
+                tags[2 * i + 1] = kv.get(2 * order[i] + 1);
+            }
+            return tags;
+        }
+
+        private static String string(CharSequence s) {
+            return s == null ? null : s.toString();
+        }
+    }
+}
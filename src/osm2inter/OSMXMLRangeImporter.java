@@ -0,0 +1,260 @@
+package osm2inter;
+
+import osm.OSMClassification;
+import util.CopyConnector;
+import util.NodeLocationStore;
+import util.Parameter;
+import util.TagDictionary;
+import util.Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Imports a single osm xml file with several threads. The file is split
+ * into byte ranges which start at a node, way or relation element. Each
+ * range is scanned by its own OSMXMLScanner and written by its own
+ * COPY_OSMImporter with its own set of CopyConnectors.
+ *
+ * Note: range borders are found by searching the next &lt;node, &lt;way or
+ * &lt;relation. Comments containing such markup in the middle of a file
+ * would confuse that - osm files don't have those.
+ */
+public class OSMXMLRangeImporter {
+    private static final int SEARCH_BUFFER_SIZE = 64 * 1024;
+    private static final byte[][] MAIN_ELEMENTS = {
+            "node".getBytes(), "way".getBytes(), "relation".getBytes()
+    };
+
+    private final Parameter parameter;
+    private final File osmFile;
+    private final int threads;
+    private NodeLocationStore nodeLocations = null;
+    private TagDictionary tagDictionary = null;
+    private OSMRegionFilter filter = null;
+
+    public OSMXMLRangeImporter(Parameter parameter, File osmFile, int threads) {
+        this.parameter = parameter;
+        this.osmFile = osmFile;
+        this.threads = threads < 1 ? 1 : threads;
+    }
+
+    /**
+     * all ranges write node coordinates into that store, null: none
+     */
+    public void setNodeLocationStore(NodeLocationStore nodeLocations) {
+        this.nodeLocations = nodeLocations;
+    }
+
+    /**
+     * all ranges encode tags with that dictionary, null: none
+     */
+    public void setTagDictionary(TagDictionary tagDictionary) {
+        this.tagDictionary = tagDictionary;
+    }
+
+    /**
+     * ranges write kept elements only, ids must be collected before, null: none
+     */
+    void setFilter(OSMRegionFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Result of one range
+     */
+    private static class RangeResult {
+        long start, end;
+        long nodes, ways, relations;
+    }
+
+    public void importFile() throws IOException {
+        long[] borders = OSMXMLRangeImporter.split(this.osmFile, this.threads);
+        int ranges = borders.length - 1;
+        System.out.println("split " + this.osmFile.getName() + " into " + ranges + " ranges");
+
+        // classification is a lazy singleton - create it before threads start
+        OSMClassification.getOSMClassification();
+
+        ExecutorService executor = Executors.newFixedThreadPool(ranges);
+        List<Future<RangeResult>> results = new ArrayList<>();
+        try {
+            for(int i = 0; i < ranges; i++) {
+                final long start = borders[i];
+                final long end = borders[i + 1];
+                results.add(executor.submit(() -> this.importRange(start, end)));
+            }
+
+            long nodes = 0, ways = 0, relations = 0;
+            for(int i = 0; i < ranges; i++) {
+                RangeResult r;
+                try {
+                    r = results.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted while waiting for range import", e);
+                } catch (ExecutionException e) {
+                    throw new IOException("import of range " + i + " failed", e.getCause());
+                }
+
+                System.out.println("range " + i + " [" + Util.getValueWithDots(r.start) + ", "
+                        + Util.getValueWithDots(r.end) + "): Nodes: " + r.nodes
+                        + " | Ways: " + r.ways + " | Relations: " + r.relations);
+                nodes += r.nodes;
+                ways += r.ways;
+                relations += r.relations;
+            }
+            System.out.println("all ranges: Nodes: " + nodes + " | Ways: " + ways + " | Relations: " + relations + "\n");
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private RangeResult importRange(long start, long end) throws Exception {
+        HashMap<String, CopyConnector> connectors = COPY_OSMImporter.createConnectors(this.parameter);
+
+        COPY_OSMImporter importer = new COPY_OSMImporter(connectors, this.parameter.getSerTagsSize(),
+                this.parameter.typedSchema());
+        importer.setNodeLocationStore(this.nodeLocations);
+        importer.setTagDictionary(this.tagDictionary);
+
+        boolean ended = false;
+        try (RandomAccessFile file = new RandomAccessFile(this.osmFile, "r")) {
+            FileChannel channel = file.getChannel();
+            channel.position(start);
+            InputStream in = new RangeInputStream(Channels.newInputStream(channel), end - start);
+            new OSMXMLScanner(in).parse(this.filter == null ? importer : this.filter.writer(importer));
+
+            for (CopyConnector connector : connectors.values()) {
+                connector.endCopy();
+            }
+            ended = true;
+        }
+        finally {
+            // failed range: streams and writer threads of all tables end
+            for (CopyConnector connector : connectors.values()) {
+                if (ended) {
+                    connector.close();
+                } else {
+                    connector.abort();
+                }
+            }
+        }
+
+        RangeResult result = new RangeResult();
+        result.start = start;
+        result.end = end;
+        result.nodes = importer.getNodes();
+        result.ways = importer.getWays();
+        result.relations = importer.getRelations();
+        return result;
+    }
+
+    /**
+     * Split file into at most n ranges.
+     * @return borders: range i is [borders[i], borders[i+1])
+     */
+    static long[] split(File osmFile, int n) throws IOException {
+        long length = osmFile.length();
+        List<Long> borders = new ArrayList<>();
+        borders.add(0L);
+
+        try (RandomAccessFile file = new RandomAccessFile(osmFile, "r")) {
+            for(int i = 1; i < n; i++) {
+                long border = OSMXMLRangeImporter.nextMainElement(file, length * i / n, length);
+                if(border > borders.get(borders.size() - 1) && border < length) {
+                    borders.add(border);
+                }
+            }
+        }
+
+        borders.add(length);
+
+        long[] result = new long[borders.size()];
+        for(int i = 0; i < result.length; i++) {
+            result[i] = borders.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return offset of next node, way or relation opening tag at or after
+     * offset or length if there is none
+     */
+    static long nextMainElement(RandomAccessFile file, long offset, long length) throws IOException {
+        byte[] buf = new byte[SEARCH_BUFFER_SIZE];
+        // longest pattern: <relation + delimiter
+        int overlap = 10;
+
+        while(offset < length) {
+            file.seek(offset);
+            int n = file.read(buf);
+            if(n <= 0) break;
+
+            for(int i = 0; i < n; i++) {
+                if(buf[i] != '<') continue;
+                for(byte[] name : MAIN_ELEMENTS) {
+                    int next = i + 1 + name.length;
+                    if(next >= n) continue;
+                    int j = 0;
+                    while(j < name.length && buf[i + 1 + j] == name[j]) j++;
+                    byte delimiter = buf[next];
+                    if(j == name.length && (delimiter <= ' ' || delimiter == '>' || delimiter == '/')) {
+                        return offset + i;
+                    }
+                }
+            }
+
+            if(offset + n >= length) break;
+            offset += n - overlap;
+        }
+
+        return length;
+    }
+
+    /**
+     * Reads at most limit bytes from underlying stream.
+     */
+    private static class RangeInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        RangeInputStream(InputStream in, long limit) {
+            this.in = in;
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if(this.remaining <= 0) return -1;
+            int b = this.in.read();
+            if(b >= 0) this.remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if(this.remaining <= 0) return -1;
+            int n = this.in.read(b, off, (int) Math.min(len, this.remaining));
+            if(n > 0) this.remaining -= n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.in.close();
+        }
+    }
+}
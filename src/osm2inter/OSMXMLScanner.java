@@ -0,0 +1,452 @@
+package osm2inter;
+
+import org.xml.sax.helpers.LocatorImpl;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Byte level scanner for osm xml files. It is no general xml parser but
+ * understands exactly what osm files contain: elements with attributes,
+ * comments, processing instructions and ignorable text or cdata.
+ *
+ * Attribute values are utf-8 decoded and entity resolved straight from
+ * the read buffer into one reused OSMRecord. Tag keys are taken from a
+ * small cache, keys repeat a lot. Apart from that, scanning allocates
+ * nothing per element which keeps the garbage collector quiet on
+ * planet size files.
+ */
+public class OSMXMLScanner {
+    private static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    private static final int KEY_CACHE_SIZE = 4096; // power of 2
+
+    // attributes we are interested in
+    private static final int ATTR_UNKNOWN = -1;
+    private static final int ATTR_ID = 0;
+    private static final int ATTR_LAT = 1;
+    private static final int ATTR_LON = 2;
+    private static final int ATTR_TIMESTAMP = 3;
+    private static final int ATTR_UID = 4;
+    private static final int ATTR_USER = 5;
+    private static final int ATTR_K = 6;
+    private static final int ATTR_V = 7;
+    private static final int ATTR_REF = 8;
+    private static final int ATTR_TYPE = 9;
+    private static final int ATTR_ROLE = 10;
+    private static final int ATTR_VISIBLE = 11;
+
+    private static final byte[][] ATTRIBUTE_NAMES = {
+            "id".getBytes(), "lat".getBytes(), "lon".getBytes(), "timestamp".getBytes(),
+            "uid".getBytes(), "user".getBytes(), "k".getBytes(), "v".getBytes(),
+            "ref".getBytes(), "type".getBytes(), "role".getBytes(), "visible".getBytes()
+    };
+
+    private static final byte[] CDATA_START = "<![CDATA[".getBytes();
+
+    private static final byte[][] ELEMENT_NAMES = {
+            "node".getBytes(), "way".getBytes(), "relation".getBytes(),
+            "tag".getBytes(), "nd".getBytes(), "member".getBytes()
+    };
+
+    private final InputStream in;
+    private byte[] buf;
+    private int pos = 0;
+    private int limit = 0;
+    private boolean eof = false;
+
+    // position of buf[0] in stream
+    private long bufferOffset = 0;
+    private int line = 1;
+
+    private final OSMRecord record = new OSMRecord();
+    private final OSMRecord.Slice[] slices = new OSMRecord.Slice[ATTRIBUTE_NAMES.length];
+    private final String[] keyCache = new String[KEY_CACHE_SIZE];
+    private final LocatorImpl locator = new LocatorImpl();
+
+    public OSMXMLScanner(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    public OSMXMLScanner(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buf = new byte[bufferSize];
+        for(int i = 0; i < this.slices.length; i++) {
+            this.slices[i] = this.record.new Slice();
+        }
+    }
+
+    /**
+     * @return position in stream of the element currently delivered
+     * to the handler, or of the next unread byte between elements.
+     */
+    public long getPosition() {
+        return this.bufferOffset + this.pos;
+    }
+
+    void parse(OSMRecordHandler handler) throws IOException {
+        handler.setDocumentLocator(this.locator);
+        handler.startDocument();
+
+        while(this.nextMarkup()) {
+            int end = this.findMarkupEnd();
+            if(end < 0) {
+                throw new IOException("unexpected end of osm file in line " + this.line);
+            }
+
+            byte b = this.buf[this.pos + 1];
+            if(b == '/') {
+                this.closingTag(end, handler);
+            } else if(b != '?' && b != '!') {
+                this.openingTag(end, handler);
+            }
+            // else: processing instruction, comment or doctype - skip
+
+            this.pos = end + 1;
+        }
+
+        handler.endDocument();
+    }
+
+    /**
+     * Move to next '&lt;'.
+     * @return false at end of stream
+     */
+    private boolean nextMarkup() throws IOException {
+        for(;;) {
+            byte[] b = this.buf;
+            for(int i = this.pos; i < this.limit; i++) {
+                if(b[i] == '<') {
+                    this.pos = i;
+                    return true;
+                } else if(b[i] == '\n') {
+                    this.line++;
+                }
+            }
+            this.pos = this.limit;
+            if(!this.fill()) return false;
+        }
+    }
+
+    /**
+     * Find end of markup starting at pos, reading more data if required.
+     * Comments end with --&gt; and cdata sections with ]]&gt; - both can
+     * contain &gt; and quotes.
+     * @return index of closing '&gt;' or -1 at end of stream
+     */
+    private int findMarkupEnd() throws IOException {
+        byte section = 0; // '-' in comment, ']' in cdata
+        int minEnd = 0;
+        int scanned = 1;
+        byte quote = 0;
+
+        for(;;) {
+            byte[] b = this.buf;
+            if(section == 0 && this.pos + 4 <= this.limit && b[this.pos + 1] == '!') {
+                if(b[this.pos + 2] == '-' && b[this.pos + 3] == '-') {
+                    section = '-';
+                    minEnd = 6; // <!---->
+                } else if(this.startsWith(CDATA_START)) {
+                    section = ']';
+                    minEnd = 11; // <![CDATA[]]>
+                }
+            }
+
+            for(int i = this.pos + scanned; i < this.limit; i++) {
+                byte c = b[i];
+                if(section != 0) {
+                    if(c == '>' && i - this.pos >= minEnd && b[i - 1] == section && b[i - 2] == section) {
+                        return i;
+                    }
+                } else if(quote != 0) {
+                    if(c == quote) quote = 0;
+                } else if(c == '"' || c == '\'') {
+                    quote = c;
+                } else if(c == '>') {
+                    return i;
+                }
+            }
+
+            scanned = this.limit - this.pos;
+            if(!this.fill()) return -1;
+        }
+    }
+
+    /**
+     * @return true if buffer holds prefix at pos
+     */
+    private boolean startsWith(byte[] prefix) {
+        if(this.pos + prefix.length > this.limit) return false;
+        for(int i = 0; i < prefix.length; i++) {
+            if(this.buf[this.pos + i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Read more data. Bytes from pos on are kept.
+     * @return false if nothing could be read
+     */
+    private boolean fill() throws IOException {
+        if(this.eof) return false;
+
+        int remaining = this.limit - this.pos;
+        if(this.pos > 0) {
+            System.arraycopy(this.buf, this.pos, this.buf, 0, remaining);
+            this.bufferOffset += this.pos;
+            this.pos = 0;
+            this.limit = remaining;
+        }
+
+        if(this.limit == this.buf.length) {
+            // a single element exceeds buffer
+            byte[] newBuf = new byte[this.buf.length * 2];
+            System.arraycopy(this.buf, 0, newBuf, 0, this.limit);
+            this.buf = newBuf;
+        }
+
+        int n = this.in.read(this.buf, this.limit, this.buf.length - this.limit);
+        if(n < 0) {
+            this.eof = true;
+            return false;
+        }
+        this.limit += n;
+        return true;
+    }
+
+    private void closingTag(int end, OSMRecordHandler handler) {
+        int nameStart = this.pos + 2;
+        int nameEnd = this.nameEnd(nameStart, end);
+        int element = this.match(ELEMENT_NAMES, nameStart, nameEnd - nameStart);
+
+        if(element == OSMRecord.NODE || element == OSMRecord.WAY || element == OSMRecord.RELATION) {
+            this.record.clear();
+            this.record.element = element;
+            this.locator.setLineNumber(this.line);
+            handler.endElement(this.record);
+        }
+    }
+
+    private void openingTag(int end, OSMRecordHandler handler) throws IOException {
+        int nameStart = this.pos + 1;
+        int nameEnd = this.nameEnd(nameStart, end);
+        int element = this.match(ELEMENT_NAMES, nameStart, nameEnd - nameStart);
+
+        if(element == OSMRecord.NONE) return; // osm, bounds, changeset..
+
+        OSMRecord r = this.record;
+        r.clear();
+        r.element = element;
+
+        byte[] b = this.buf;
+        boolean selfClosing = b[end - 1] == '/';
+        int i = nameEnd;
+        for(;;) {
+            // skip white space
+            while(i < end && b[i] <= ' ') i++;
+            if(i >= end || b[i] == '/') break;
+
+            int attrStart = i;
+            while(i < end && b[i] != '=' && b[i] > ' ') i++;
+            int attribute = this.match(ATTRIBUTE_NAMES, attrStart, i - attrStart);
+
+            while(i < end && b[i] != '\'' && b[i] != '"') i++;
+            if(i >= end) {
+                throw new IOException("malformed attribute in line " + this.line);
+            }
+
+            byte quote = b[i++];
+            int valueStart = i;
+            while(i < end && b[i] != quote) i++;
+
+            if(attribute != ATTR_UNKNOWN) {
+                this.setAttribute(attribute, valueStart, i);
+            }
+            i++; // closing quote
+        }
+
+        this.locator.setLineNumber(this.line);
+        handler.startElement(r);
+
+        if(selfClosing && r.isMainElement()) {
+            r.clear();
+            r.element = element;
+            handler.endElement(r);
+        }
+    }
+
+    private int nameEnd(int i, int end) {
+        byte[] b = this.buf;
+        while(i < end && b[i] > ' ' && b[i] != '/' && b[i] != '>') i++;
+        return i;
+    }
+
+    private int match(byte[][] names, int start, int length) {
+        byte[] b = this.buf;
+        for(int n = 0; n < names.length; n++) {
+            byte[] name = names[n];
+            if(name.length != length) continue;
+            int j = 0;
+            while(j < length && b[start + j] == name[j]) j++;
+            if(j == length) return n;
+        }
+        return -1;
+    }
+
+    private void setAttribute(int attribute, int start, int end) {
+        OSMRecord r = this.record;
+        OSMRecord.Slice slice = this.slices[attribute];
+        slice.start = r.charCount;
+        this.decode(start, end);
+        slice.length = r.charCount - slice.start;
+
+        switch(attribute) {
+            case ATTR_ID: r.id = slice; break;
+            case ATTR_LAT: r.lat = slice; break;
+            case ATTR_LON: r.lon = slice; break;
+            case ATTR_TIMESTAMP: r.timestamp = slice; break;
+            case ATTR_UID: r.uid = slice; break;
+            case ATTR_USER: r.user = slice; break;
+            case ATTR_K: r.k = this.cachedKey(slice); break;
+            case ATTR_V: r.v = slice; break;
+            case ATTR_REF: r.ref = slice; break;
+            case ATTR_TYPE: r.type = slice; break;
+            case ATTR_ROLE: r.role = slice; break;
+            case ATTR_VISIBLE: r.visible = slice; break;
+        }
+    }
+
+    /**
+     * Keys like highway, name, building.. are used over and over again
+     * - keep their strings.
+     */
+    private String cachedKey(OSMRecord.Slice slice) {
+        char[] c = this.record.chars;
+        int hash = 0;
+        for(int i = slice.start; i < slice.start + slice.length; i++) {
+            hash = 31 * hash + c[i];
+        }
+
+        int index = (hash ^ (hash >>> 16)) & (KEY_CACHE_SIZE - 1);
+        String key = this.keyCache[index];
+        if(key != null && key.length() == slice.length) {
+            int i = 0;
+            while(i < slice.length && key.charAt(i) == c[slice.start + i]) i++;
+            if(i == slice.length) return key;
+        }
+
+        key = slice.toString();
+        this.keyCache[index] = key;
+        return key;
+    }
+
+    /**
+     * Decode utf-8 bytes of an attribute value into record chars.
+     * Entities are resolved, white space is normalized like xml parsers do.
+     */
+    private void decode(int start, int end) {
+        OSMRecord r = this.record;
+        // never more chars than bytes
+        r.ensureCapacity(end - start);
+        char[] c = r.chars;
+        int n = r.charCount;
+        byte[] b = this.buf;
+
+        int i = start;
+        while(i < end) {
+            int x = b[i++];
+            if(x >= 0) {
+                if(x == '&') {
+                    int semicolon = i;
+                    while(semicolon < end && semicolon - i < 10 && b[semicolon] != ';') semicolon++;
+                    int cp = semicolon < end && b[semicolon] == ';' ? this.entity(i, semicolon) : -1;
+                    if(cp < 0) {
+                        c[n++] = '&';
+                    } else {
+                        if(cp >= 0x10000) {
+                            c[n++] = Character.highSurrogate(cp);
+                            c[n++] = Character.lowSurrogate(cp);
+                        } else {
+                            c[n++] = (char) cp;
+                        }
+                        i = semicolon + 1;
+                    }
+                } else if(x == '\t' || x == '\n' || x == '\r') {
+                    c[n++] = ' ';
+                } else {
+                    c[n++] = (char) x;
+                }
+            } else {
+                int cp;
+                int following;
+                if((x & 0xE0) == 0xC0) { cp = x & 0x1F; following = 1; }
+                else if((x & 0xF0) == 0xE0) { cp = x & 0x0F; following = 2; }
+                else if((x & 0xF8) == 0xF0) { cp = x & 0x07; following = 3; }
+                else { c[n++] = '\uFFFD'; continue; }
+
+                if(i + following > end) {
+                    c[n++] = '\uFFFD';
+                    i = end;
+                    continue;
+                }
+
+                boolean valid = true;
+                for(int j = 0; j < following; j++) {
+                    int y = b[i + j];
+                    if((y & 0xC0) != 0x80) { valid = false; break; }
+                    cp = (cp << 6) | (y & 0x3F);
+                }
+
+                if(!valid) {
+                    c[n++] = '\uFFFD';
+                } else {
+                    i += following;
+                    if(cp >= 0x10000) {
+                        c[n++] = Character.highSurrogate(cp);
+                        c[n++] = Character.lowSurrogate(cp);
+                    } else {
+                        c[n++] = (char) cp;
+                    }
+                }
+            }
+        }
+
+        r.charCount = n;
+    }
+
+    /**
+     * @return code point of entity between &amp; and ; or -1 if unknown
+     */
+    private int entity(int start, int end) {
+        byte[] b = this.buf;
+        int length = end - start;
+        if(length < 2) return -1;
+
+        if(b[start] == '#') {
+            int radix = 10;
+            int i = start + 1;
+            if(b[i] == 'x') {
+                radix = 16;
+                i++;
+            }
+            if(i >= end) return -1;
+            int cp = 0;
+            for(; i < end; i++) {
+                int d = Character.digit(b[i], radix);
+                if(d < 0) return -1;
+                cp = cp * radix + d;
+            }
+            return cp <= Character.MAX_CODE_POINT ? cp : -1;
+        }
+
+        if(length == 2 && b[start + 1] == 't') {
+            if(b[start] == 'l') return '<';
+            if(b[start] == 'g') return '>';
+        } else if(length == 3 && b[start] == 'a' && b[start + 1] == 'm' && b[start + 2] == 'p') {
+            return '&';
+        } else if(length == 4) {
+            if(b[start] == 'q' && b[start + 1] == 'u' && b[start + 2] == 'o' && b[start + 3] == 't') return '"';
+            if(b[start] == 'a' && b[start + 1] == 'p' && b[start + 2] == 'o' && b[start + 3] == 's') return '\'';
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,578 @@
+package osm2inter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decoded content of a single OSMData blob of an .osm.pbf file.
+ * Decoding (inflate + protobuf parsing) has no shared state and can
+ * therefore run on any thread. The resulting elements keep file order
+ * and carry their values already formatted like in the XML format.
+ *
+ * Only the messages of the OSM PBF format we actually need are read,
+ * anything else is skipped on wire level.
+ */
+class PBFBlock {
+    static final int NODE = 0;
+    static final int WAY = 1;
+    static final int RELATION = 2;
+
+    static final String[] MEMBER_TYPES = {"node", "way", "relation"};
+
+    final List<Element> elements = new ArrayList<>();
+
+    /**
+     * One node, way or relation of a block.
+     */
+    static class Element {
+        int type;
+        String id;
+        String timestamp;
+        String uid;
+        String user;
+        String lon;
+        String lat;
+
+        // tags: key, value, key, value..
+        String[] tags;
+
+        // way: node refs
+        long[] refs;
+
+        // relation: member types (index in MEMBER_TYPES), refs and roles
+        int[] memberTypes;
+        String[] memberRoles;
+    }
+
+    private PBFBlock() {
+    }
+
+    /**
+     * Decode the bytes of a Blob message (raw or zlib compressed) into
+     * its PrimitiveBlock elements.
+     */
+    static PBFBlock decode(byte[] blob) throws IOException {
+        return decodePrimitiveBlock(PBFBlock.unpackBlob(blob));
+    }
+
+    /**
+     * Returns uncompressed content of a Blob message.
+     */
+    static byte[] unpackBlob(byte[] blob) throws IOException {
+        ProtobufReader r = new ProtobufReader(blob, 0, blob.length);
+
+        byte[] raw = null;
+        int rawSize = -1;
+        int zlibOffset = -1, zlibLength = 0;
+
+        while(r.hasMore()) {
+            int tag = r.readTag();
+            switch(tag >>> 3) {
+                case 1: // raw
+                    raw = r.readBytes();
+                    break;
+                case 2: // raw_size
+                    rawSize = (int) r.readVarint();
+                    break;
+                case 3: // zlib_data
+                    zlibLength = r.readLength();
+                    zlibOffset = r.pos;
+                    r.pos += zlibLength;
+                    break;
+                case 4: // lzma_data
+                case 6: // lz4_data
+                case 7: // zstd_data
+                    throw new IOException("unsupported pbf blob compression (field " + (tag >>> 3) + ")");
+                default:
+                    r.skip(tag);
+            }
+        }
+
+        if(raw != null) return raw;
+
+        if(zlibOffset < 0 || rawSize < 0) {
+            throw new IOException("pbf blob contains neither raw nor zlib data");
+        }
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(blob, zlibOffset, zlibLength);
+            byte[] data = new byte[rawSize];
+            int n = 0;
+            while(n < rawSize && !inflater.finished()) {
+                int inflated = inflater.inflate(data, n, rawSize - n);
+                if(inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += inflated;
+            }
+            if(n != rawSize) {
+                throw new IOException("pbf blob inflated to " + n + " bytes, expected " + rawSize);
+            }
+            return data;
+        }
+        catch(DataFormatException e) {
+            throw new IOException("corrupt zlib data in pbf blob", e);
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Check HeaderBlock for required features we cannot handle.
+     */
+    static void checkHeaderBlock(byte[] data) throws IOException {
+        ProtobufReader r = new ProtobufReader(data, 0, data.length);
+        while(r.hasMore()) {
+            int tag = r.readTag();
+            if((tag >>> 3) == 4) { // required_features
+                String feature = new String(r.readBytes(), StandardCharsets.UTF_8);
+                if(!feature.equals("OsmSchema-V0.6") && !feature.equals("DenseNodes")) {
+                    throw new IOException("pbf file requires unsupported feature: " + feature);
+                }
+            } else {
+                r.skip(tag);
+            }
+        }
+    }
+
+    private static PBFBlock decodePrimitiveBlock(byte[] data) throws IOException {
+        PBFBlock block = new PBFBlock();
+        ProtobufReader r = new ProtobufReader(data, 0, data.length);
+
+        String[] strings = null;
+        long granularity = 100;
+        long latOffset = 0, lonOffset = 0;
+        long dateGranularity = 1000;
+
+        // groups can only be decoded after string table and granularity are known
+        List<int[]> groups = new ArrayList<>();
+
+        while(r.hasMore()) {
+            int tag = r.readTag();
+            switch(tag >>> 3) {
+                case 1:
+                    strings = PBFBlock.decodeStringTable(r);
+                    break;
+                case 2: {
+                    int length = r.readLength();
+                    groups.add(new int[] {r.pos, r.pos + length});
+                    r.pos += length;
+                }
+                break;
+                case 17: granularity = r.readVarint(); break;
+                case 18: dateGranularity = r.readVarint(); break;
+                case 19: latOffset = r.readVarint(); break;
+                case 20: lonOffset = r.readVarint(); break;
+                default: r.skip(tag);
+            }
+        }
+
+        if(strings == null) strings = new String[] {""};
+
+        Context c = new Context(strings, granularity, latOffset, lonOffset, dateGranularity);
+        for(int[] group : groups) {
+            block.decodeGroup(new ProtobufReader(data, group[0], group[1]), c);
+        }
+
+        return block;
+    }
+
+    private static String[] decodeStringTable(ProtobufReader outer) throws IOException {
+        int length = outer.readLength();
+        ProtobufReader r = new ProtobufReader(outer.buf, outer.pos, outer.pos + length);
+        outer.pos += length;
+
+        List<String> strings = new ArrayList<>();
+        while(r.hasMore()) {
+            int tag = r.readTag();
+            if((tag >>> 3) == 1) {
+                int l = r.readLength();
+                strings.add(new String(r.buf, r.pos, l, StandardCharsets.UTF_8));
+                r.pos += l;
+            } else {
+                r.skip(tag);
+            }
+        }
+        return strings.toArray(new String[strings.size()]);
+    }
+
+    /**
+     * Values valid for a whole PrimitiveBlock
+     */
+    private static class Context {
+        final String[] strings;
+        final long granularity;
+        final long latOffset;
+        final long lonOffset;
+        final long dateGranularity;
+
+        Context(String[] strings, long granularity, long latOffset, long lonOffset, long dateGranularity) {
+            this.strings = strings;
+            this.granularity = granularity;
+            this.latOffset = latOffset;
+            this.lonOffset = lonOffset;
+            this.dateGranularity = dateGranularity;
+        }
+
+        String lat(long lat) { return PBFBlock.formatNanoDegrees(this.latOffset + this.granularity * lat); }
+        String lon(long lon) { return PBFBlock.formatNanoDegrees(this.lonOffset + this.granularity * lon); }
+        String timestamp(long t) { return Instant.ofEpochMilli(t * this.dateGranularity).toString(); }
+    }
+
+    private void decodeGroup(ProtobufReader r, Context c) throws IOException {
+        while(r.hasMore()) {
+            int tag = r.readTag();
+            int field = tag >>> 3;
+            if(field < 1 || field > 4) {
+                r.skip(tag);
+                continue;
+            }
+
+            int length = r.readLength();
+            ProtobufReader m = new ProtobufReader(r.buf, r.pos, r.pos + length);
+            r.pos += length;
+
+            switch(field) {
+                case 1: this.decodeNode(m, c); break;
+                case 2: this.decodeDenseNodes(m, c); break;
+                case 3: this.decodeWayOrRelation(m, c, WAY); break;
+                case 4: this.decodeWayOrRelation(m, c, RELATION); break;
+            }
+        }
+    }
+
+    private void decodeNode(ProtobufReader r, Context c) throws IOException {
+        Element e = new Element();
+        e.type = NODE;
+        long[] keys = null, vals = null;
+        long lat = 0, lon = 0;
+
+        while(r.hasMore()) {
+            int tag = r.readTag();
+            switch(tag >>> 3) {
+                case 1: e.id = Long.toString(ProtobufReader.zigzag(r.readVarint())); break;
+                case 2: keys = r.readPackedVarints(tag); break;
+                case 3: vals = r.readPackedVarints(tag); break;
+                case 4: this.decodeInfo(r, c, e); break;
+                case 8: lat = ProtobufReader.zigzag(r.readVarint()); break;
+                case 9: lon = ProtobufReader.zigzag(r.readVarint()); break;
+                default: r.skip(tag);
+            }
+        }
+
+        e.lat = c.lat(lat);
+        e.lon = c.lon(lon);
+        e.tags = PBFBlock.tags(keys, vals, c);
+        this.elements.add(e);
+    }
+
+    private void decodeDenseNodes(ProtobufReader r, Context c) throws IOException {
+        long[] ids = null, lats = null, lons = null, keysVals = null;
+        long[] timestamps = null, uids = null, userSids = null;
+
+        while(r.hasMore()) {
+            int tag = r.readTag();
+            switch(tag >>> 3) {
+                case 1: ids = r.readPackedVarints(tag); break;
+                case 5: {
+                    // DenseInfo
+                    int length = r.readLength();
+                    ProtobufReader info = new ProtobufReader(r.buf, r.pos, r.pos + length);
+                    r.pos += length;
+                    while(info.hasMore()) {
+                        int infoTag = info.readTag();
+                        switch(infoTag >>> 3) {
+                            case 2: timestamps = info.readPackedVarints(infoTag); break;
+                            case 4: uids = info.readPackedVarints(infoTag); break;
+                            case 5: userSids = info.readPackedVarints(infoTag); break;
+                            default: info.skip(infoTag);
+                        }
+                    }
+                }
+                break;
+                case 8: lats = r.readPackedVarints(tag); break;
+                case 9: lons = r.readPackedVarints(tag); break;
+                case 10: keysVals = r.readPackedVarints(tag); break;
+                default: r.skip(tag);
+            }
+        }
+
+        if(ids == null) return;
+        if(lats == null || lons == null || lats.length != ids.length || lons.length != ids.length) {
+            throw new IOException("malformed dense nodes in pbf block");
+        }
+
+        long id = 0, lat = 0, lon = 0, timestamp = 0, uid = 0, userSid = 0;
+        int kvIndex = 0;
+        for(int i = 0; i < ids.length; i++) {
+            Element e = new Element();
+            e.type = NODE;
+
+            id += ProtobufReader.zigzag(ids[i]);
+            lat += ProtobufReader.zigzag(lats[i]);
+            lon += ProtobufReader.zigzag(lons[i]);
+
+            e.id = Long.toString(id);
+            e.lat = c.lat(lat);
+            e.lon = c.lon(lon);
+
+            if(timestamps != null && i < timestamps.length) {
+                timestamp += ProtobufReader.zigzag(timestamps[i]);
+                e.timestamp = c.timestamp(timestamp);
+            }
+            if(uids != null && i < uids.length) {
+                uid += ProtobufReader.zigzag(uids[i]);
+                e.uid = Long.toString(uid);
+            }
+            if(userSids != null && i < userSids.length) {
+                userSid += ProtobufReader.zigzag(userSids[i]);
+                e.user = c.strings[(int) userSid];
+            }
+
+            // keys_vals: k, v, k, v, .. 0 ends one node
+            if(keysVals != null) {
+                int start = kvIndex;
+                while(kvIndex < keysVals.length && keysVals[kvIndex] != 0) {
+                    kvIndex += 2;
+                }
+                int n = kvIndex - start;
+                if(n > 0) {
+                    e.tags = new String[n];
+                    for(int j = 0; j < n; j++) {
+                        e.tags[j] = c.strings[(int) keysVals[start + j]];
+                    }
+                }
+                kvIndex++; // skip delimiter
+            }
+
+            this.elements.add(e);
+        }
+    }
+
+    private void decodeWayOrRelation(ProtobufReader r, Context c, int type) throws IOException {
+        Element e = new Element();
+        e.type = type;
+        long[] keys = null, vals = null, refs = null, roles = null, memberTypes = null;
+
+        while(r.hasMore()) {
+            int tag = r.readTag();
+            switch(tag >>> 3) {
+                case 1: e.id = Long.toString(r.readVarint()); break;
+                case 2: keys = r.readPackedVarints(tag); break;
+                case 3: vals = r.readPackedVarints(tag); break;
+                case 4: this.decodeInfo(r, c, e); break;
+                case 8:
+                    if(type == WAY) refs = r.readPackedVarints(tag);
+                    else roles = r.readPackedVarints(tag);
+                    break;
+                case 9:
+                    if(type == RELATION) refs = r.readPackedVarints(tag);
+                    else r.skip(tag);
+                    break;
+                case 10:
+                    if(type == RELATION) memberTypes = r.readPackedVarints(tag);
+                    else r.skip(tag);
+                    break;
+                default: r.skip(tag);
+            }
+        }
+
+        e.tags = PBFBlock.tags(keys, vals, c);
+
+        // refs are delta coded
+        int n = refs == null ? 0 : refs.length;
+        e.refs = new long[n];
+        long ref = 0;
+        for(int i = 0; i < n; i++) {
+            ref += ProtobufReader.zigzag(refs[i]);
+            e.refs[i] = ref;
+        }
+
+        if(type == RELATION) {
+            if((roles != null && roles.length != n) || (memberTypes != null && memberTypes.length != n)) {
+                throw new IOException("malformed relation " + e.id + " in pbf block");
+            }
+            e.memberTypes = new int[n];
+            e.memberRoles = new String[n];
+            for(int i = 0; i < n; i++) {
+                e.memberTypes[i] = memberTypes == null ? NODE : (int) memberTypes[i];
+                if(e.memberTypes[i] < NODE || e.memberTypes[i] > RELATION) {
+                    throw new IOException("unknown member type in relation " + e.id + " in pbf block");
+                }
+                e.memberRoles[i] = roles == null ? "" : c.strings[(int) roles[i]];
+            }
+        }
+
+        this.elements.add(e);
+    }
+
+    private void decodeInfo(ProtobufReader outer, Context c, Element e) throws IOException {
+        int length = outer.readLength();
+        ProtobufReader r = new ProtobufReader(outer.buf, outer.pos, outer.pos + length);
+        outer.pos += length;
+
+        while(r.hasMore()) {
+            int tag = r.readTag();
+            switch(tag >>> 3) {
+                case 2: e.timestamp = c.timestamp(r.readVarint()); break;
+                case 4: e.uid = Long.toString((int) r.readVarint()); break;
+                case 5: e.user = c.strings[(int) r.readVarint()]; break;
+                default: r.skip(tag);
+            }
+        }
+    }
+
+    private static String[] tags(long[] keys, long[] vals, Context c) throws IOException {
+        if(keys == null || keys.length == 0) return null;
+        if(vals == null || vals.length != keys.length) {
+            throw new IOException("number of keys and values differs in pbf block");
+        }
+
+        String[] tags = new String[keys.length * 2];
+        for(int i = 0; i < keys.length; i++) {
+            tags[2 * i] = c.strings[(int) keys[i]];
+            tags[2 * i + 1] = c.strings[(int) vals[i]];
+        }
+        return tags;
+    }
+
+    /**
+     * Format a coordinate given in nanodegrees like in osm xml files:
+     * decimal point and no trailing zeros, e.g. 52.5170365
+     */
+    static String formatNanoDegrees(long nano) {
+        StringBuilder sb = new StringBuilder(16);
+        if(nano < 0) {
+            sb.append('-');
+            nano = -nano;
+        }
+        sb.append(nano / 1000000000L);
+
+        long fraction = nano % 1000000000L;
+        if(fraction != 0) {
+            int digits = 9;
+            while(fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            sb.append('.');
+            String f = Long.toString(fraction);
+            for(int i = f.length(); i < digits; i++) {
+                sb.append('0');
+            }
+            sb.append(f);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Minimal protocol buffers wire format reader on a byte array range.
+     */
+    static class ProtobufReader {
+        final byte[] buf;
+        int pos;
+        final int limit;
+
+        ProtobufReader(byte[] buf, int pos, int limit) {
+            this.buf = buf;
+            this.pos = pos;
+            this.limit = limit;
+        }
+
+        boolean hasMore() {
+            return this.pos < this.limit;
+        }
+
+        int readTag() throws IOException {
+            return (int) this.readVarint();
+        }
+
+        long readVarint() throws IOException {
+            long result = 0;
+            for(int shift = 0; shift < 64; shift += 7) {
+                if(this.pos >= this.limit) {
+                    throw new IOException("truncated varint in pbf data");
+                }
+                byte b = this.buf[this.pos++];
+                result |= (long) (b & 0x7F) << shift;
+                if((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IOException("malformed varint in pbf data");
+        }
+
+        static long zigzag(long n) {
+            return (n >>> 1) ^ -(n & 1);
+        }
+
+        int readLength() throws IOException {
+            long length = this.readVarint();
+            if(length < 0 || this.pos + length > this.limit) {
+                throw new IOException("length exceeds pbf message bounds");
+            }
+            return (int) length;
+        }
+
+        byte[] readBytes() throws IOException {
+            int length = this.readLength();
+            byte[] bytes = new byte[length];
+            System.arraycopy(this.buf, this.pos, bytes, 0, length);
+            this.pos += length;
+            return bytes;
+        }
+
+        /**
+         * Read a repeated varint field - packed (wire type 2) or a
+         * single unpacked value.
+         */
+        long[] readPackedVarints(int tag) throws IOException {
+            if((tag & 7) != 2) {
+                return new long[] {this.readVarint()};
+            }
+
+            int end = this.readLength() + this.pos;
+            // each value takes at least one byte
+            long[] values = new long[end - this.pos];
+            int n = 0;
+            while(this.pos < end) {
+                long value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = this.buf[this.pos++];
+                    value |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while((b & 0x80) != 0 && this.pos < end);
+                values[n++] = value;
+            }
+
+            if(n == values.length) return values;
+            long[] result = new long[n];
+            System.arraycopy(values, 0, result, 0, n);
+            return result;
+        }
+
+        void skip(int tag) throws IOException {
+            switch(tag & 7) {
+                case 0: this.readVarint(); break;
+                case 1: this.pos += 8; break;
+                case 2: {
+                    int length = this.readLength();
+                    this.pos += length;
+                }
+                break;
+                case 5: this.pos += 4; break;
+                default: throw new IOException("unsupported wire type " + (tag & 7) + " in pbf data");
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package osm2inter;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.LocatorImpl;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads .osm.pbf files and feeds the same events into a handler as
+ * the SAX parser does for .osm xml files (node, way, relation with their
+ * tag, nd and member children). Importers can stay as they are.
+ *
+ * Blobs are read sequentially but inflated and decoded on a pool
+ * of worker threads. Decoded blocks are handed to the handler in
+ * file order from the calling thread.
+ */
+public class PBFParser {
+    // osm pbf spec: header 64 KB, blob 32 MB max
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+    private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+
+    private final int threads;
+    private final int maxPendingBlocks;
+
+    private final AttributesImpl attributes = new AttributesImpl();
+    private final LocatorImpl locator = new LocatorImpl();
+    private long elementNumber = 0;
+
+    public PBFParser(int threads) {
+        this.threads = threads < 1 ? 1 : threads;
+        // keep workers busy but don't read whole file into memory
+        this.maxPendingBlocks = 2 * this.threads;
+    }
+
+    public void parse(File pbfFile, DefaultHandler handler) throws IOException, SAXException {
+        ExecutorService decoder = Executors.newFixedThreadPool(this.threads);
+        ArrayDeque<Future<PBFBlock>> pending = new ArrayDeque<>();
+
+        this.locator.setSystemId(pbfFile.getAbsolutePath());
+        handler.setDocumentLocator(this.locator);
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(pbfFile), 1024 * 1024))) {
+
+            handler.startDocument();
+            this.attributes.clear();
+            this.attributes.addAttribute("", "", "version", "CDATA", "0.6");
+            handler.startElement("", "", "osm", this.attributes);
+
+            for(;;) {
+                int headerSize;
+                try {
+                    headerSize = in.readInt();
+                } catch (EOFException e) {
+                    break; // regular end of file
+                }
+
+                if(headerSize < 0 || headerSize > MAX_HEADER_SIZE) {
+                    throw new IOException("invalid pbf blob header size: " + headerSize);
+                }
+
+                byte[] header = new byte[headerSize];
+                in.readFully(header);
+
+                String type = null;
+                int dataSize = -1;
+                PBFBlock.ProtobufReader r = new PBFBlock.ProtobufReader(header, 0, header.length);
+                while(r.hasMore()) {
+                    int tag = r.readTag();
+                    switch(tag >>> 3) {
+                        case 1: type = new String(r.readBytes(), StandardCharsets.UTF_8); break;
+                        case 3: dataSize = (int) r.readVarint(); break;
+                        default: r.skip(tag);
+                    }
+                }
+
+                if(dataSize < 0 || dataSize > MAX_BLOB_SIZE) {
+                    throw new IOException("invalid pbf blob size: " + dataSize);
+                }
+
+                byte[] blob = new byte[dataSize];
+                in.readFully(blob);
+
+                if("OSMHeader".equals(type)) {
+                    PBFBlock.checkHeaderBlock(PBFBlock.unpackBlob(blob));
+                } else if("OSMData".equals(type)) {
+                    pending.add(decoder.submit(() -> PBFBlock.decode(blob)));
+                    if(pending.size() >= this.maxPendingBlocks) {
+                        this.emit(pending.poll(), handler);
+                    }
+                }
+                // unknown blob types are to be skipped
+            }
+
+            while(!pending.isEmpty()) {
+                this.emit(pending.poll(), handler);
+            }
+
+            handler.endElement("", "", "osm");
+            handler.endDocument();
+        }
+        finally {
+            for(Future<PBFBlock> f : pending) {
+                f.cancel(true);
+            }
+            decoder.shutdownNow();
+        }
+    }
+
+    private void emit(Future<PBFBlock> future, DefaultHandler handler) throws IOException, SAXException {
+        PBFBlock block;
+        try {
+            block = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while decoding pbf blocks", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("cannot decode pbf block", e.getCause());
+        }
+
+        for(PBFBlock.Element e : block.elements) {
+            this.emit(e, handler);
+        }
+    }
+
+    private void emit(PBFBlock.Element e, DefaultHandler handler) throws SAXException {
+        // there are no lines - number elements instead
+        this.locator.setLineNumber((int) ++this.elementNumber);
+
+        String name;
+        switch(e.type) {
+            case PBFBlock.NODE: name = "node"; break;
+            case PBFBlock.WAY: name = "way"; break;
+            default: name = "relation";
+        }
+
+        AttributesImpl attr = this.attributes;
+        attr.clear();
+        this.addAttribute("id", e.id);
+        if(e.type == PBFBlock.NODE) {
+            this.addAttribute("lat", e.lat);
+            this.addAttribute("lon", e.lon);
+        }
+        this.addAttribute("timestamp", e.timestamp);
+        this.addAttribute("uid", e.uid);
+        this.addAttribute("user", e.user);
+        handler.startElement("", "", name, attr);
+
+        if(e.tags != null) {
+            for(int i = 0; i < e.tags.length; i += 2) {
+                attr.clear();
+                this.addAttribute("k", e.tags[i]);
+                this.addAttribute("v", e.tags[i + 1]);
+                handler.startElement("", "", "tag", attr);
+                handler.endElement("", "", "tag");
+            }
+        }
+
+        if(e.type == PBFBlock.WAY) {
+            for(long ref : e.refs) {
+                attr.clear();
+                this.addAttribute("ref", Long.toString(ref));
+                handler.startElement("", "", "nd", attr);
+                handler.endElement("", "", "nd");
+            }
+        } else if(e.type == PBFBlock.RELATION) {
+            for(int i = 0; i < e.refs.length; i++) {
+                attr.clear();
+                this.addAttribute("type", PBFBlock.MEMBER_TYPES[e.memberTypes[i]]);
+                this.addAttribute("ref", Long.toString(e.refs[i]));
+                this.addAttribute("role", e.memberRoles[i]);
+                handler.startElement("", "", "member", attr);
+                handler.endElement("", "", "member");
+            }
+        }
+
+        handler.endElement("", "", name);
+    }
+
+    private void addAttribute(String name, String value) {
+        if(value != null) {
+            this.attributes.addAttribute("", "", name, "CDATA", value);
+        }
+    }
+}
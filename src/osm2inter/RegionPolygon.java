@@ -0,0 +1,194 @@
+package osm2inter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Area of a regional import. It is read from an osmosis polygon file
+ * (.poly, as used by osmium extract) or made of a bounding box. Rings are
+ * evaluated with the even-odd rule - holes (sections starting with !)
+ * and several outer rings need no special treatment.
+ *
+ * Edges are sorted into horizontal stripes - a point is tested against
+ * the edges of its stripe only, not against all edges of a country border.
+ *
+ * Coordinates are in 1e-7 degree like OSMRecord.parseFixed7.
+ */
+class RegionPolygon {
+    private static final int MAX_STRIPES = 4096;
+    private static final double SCALE = 1e7;
+
+    private final String name;
+    private final double[] edges; // x1, y1, x2, y2 per edge
+    private final double minX, minY, maxX, maxY;
+    private final double stripeHeight;
+    private final int[][] stripes; // edge indices
+
+    private RegionPolygon(String name, List<double[]> rings) {
+        this.name = name;
+
+        int n = 0;
+        for(double[] ring : rings) n += ring.length / 2;
+        this.edges = new double[4 * n];
+
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        int e = 0;
+        for(double[] ring : rings) {
+            int points = ring.length / 2;
+            for(int i = 0; i < points; i++) {
+                // last point is connected to first point
+                int j = (i + 1) % points;
+                this.edges[e++] = ring[2 * i];
+                this.edges[e++] = ring[2 * i + 1];
+                this.edges[e++] = ring[2 * j];
+                this.edges[e++] = ring[2 * j + 1];
+
+                minX = Math.min(minX, ring[2 * i]);
+                maxX = Math.max(maxX, ring[2 * i]);
+                minY = Math.min(minY, ring[2 * i + 1]);
+                maxY = Math.max(maxY, ring[2 * i + 1]);
+            }
+        }
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+
+        int stripeCount = maxY > minY ? Math.max(1, Math.min(MAX_STRIPES, n / 4)) : 1;
+        this.stripeHeight = maxY > minY ? (maxY - minY) / stripeCount : 1;
+
+        // count first, then fill
+        int[] sizes = new int[stripeCount];
+        for(int i = 0; i < n; i++) {
+            int last = this.stripe(Math.max(this.edges[4 * i + 1], this.edges[4 * i + 3]), stripeCount);
+            for(int s = this.stripe(Math.min(this.edges[4 * i + 1], this.edges[4 * i + 3]), stripeCount); s <= last; s++) {
+                sizes[s]++;
+            }
+        }
+        this.stripes = new int[stripeCount][];
+        for(int s = 0; s < stripeCount; s++) {
+            this.stripes[s] = new int[sizes[s]];
+            sizes[s] = 0;
+        }
+        for(int i = 0; i < n; i++) {
+            int last = this.stripe(Math.max(this.edges[4 * i + 1], this.edges[4 * i + 3]), stripeCount);
+            for(int s = this.stripe(Math.min(this.edges[4 * i + 1], this.edges[4 * i + 3]), stripeCount); s <= last; s++) {
+                this.stripes[s][sizes[s]++] = i;
+            }
+        }
+    }
+
+    private int stripe(double y, int stripeCount) {
+        int s = (int) ((y - this.minY) / this.stripeHeight);
+        return s < 0 ? 0 : (s >= stripeCount ? stripeCount - 1 : s);
+    }
+
+    /**
+     * @param longitude in 1e-7 degree
+     * @param latitude in 1e-7 degree
+     */
+    boolean contains(int longitude, int latitude) {
+        double x = longitude;
+        double y = latitude;
+        if(x < this.minX || x > this.maxX || y < this.minY || y > this.maxY) return false;
+
+        boolean inside = false;
+        for(int i : this.stripes[this.stripe(y, this.stripes.length)]) {
+            double x1 = this.edges[4 * i];
+            double y1 = this.edges[4 * i + 1];
+            double x2 = this.edges[4 * i + 2];
+            double y2 = this.edges[4 * i + 3];
+            if((y1 > y) != (y2 > y) && x < x1 + (y - y1) * (x2 - x1) / (y2 - y1)) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * read osmosis polygon file: name, then sections of "lon lat" lines
+     * each closed by END, file is closed by END
+     */
+    static RegionPolygon read(File polyFile) throws IOException {
+        List<double[]> rings = new ArrayList<>();
+        String name;
+        try(BufferedReader br = new BufferedReader(
+                new InputStreamReader(new FileInputStream(polyFile), StandardCharsets.UTF_8))) {
+            name = br.readLine();
+            if(name == null) {
+                throw new IOException("empty polygon file: " + polyFile.getAbsolutePath());
+            }
+            name = name.trim();
+
+            String line;
+            while((line = br.readLine()) != null) {
+                line = line.trim();
+                if(line.isEmpty()) continue;
+                if(line.equals("END")) break;
+
+                // section - name is not needed, holes are handled by even-odd rule
+                List<Double> points = new ArrayList<>();
+                while((line = br.readLine()) != null && !line.trim().equals("END")) {
+                    String[] coordinates = line.trim().split("\\s+");
+                    if(coordinates.length == 1 && coordinates[0].isEmpty()) continue;
+                    if(coordinates.length != 2) {
+                        throw new IOException("polygon file " + polyFile.getName() + ": expected lon lat, found: " + line);
+                    }
+                    try {
+                        points.add(Double.parseDouble(coordinates[0]) * SCALE);
+                        points.add(Double.parseDouble(coordinates[1]) * SCALE);
+                    }
+                    catch(NumberFormatException e) {
+                        throw new IOException("polygon file " + polyFile.getName() + ": no coordinate: " + line);
+                    }
+                }
+                if(line == null) {
+                    throw new IOException("polygon file " + polyFile.getName() + ": section is not closed by END");
+                }
+                if(points.size() >= 6) {
+                    double[] ring = new double[points.size()];
+                    for(int i = 0; i < ring.length; i++) ring[i] = points.get(i);
+                    rings.add(ring);
+                }
+            }
+        }
+
+        if(rings.isEmpty()) {
+            throw new IOException("polygon file " + polyFile.getName() + " has no ring");
+        }
+        return new RegionPolygon(name, rings);
+    }
+
+    /**
+     * @param bbox minlon,minlat,maxlon,maxlat in degree
+     * @throws IllegalArgumentException if bbox is malformed
+     */
+    static RegionPolygon fromBBox(String bbox) {
+        String[] values = bbox.split(",");
+        if(values.length != 4) {
+            throw new IllegalArgumentException("bounding box needs minlon,minlat,maxlon,maxlat: " + bbox);
+        }
+        double[] v = new double[4];
+        for(int i = 0; i < 4; i++) {
+            v[i] = Double.parseDouble(values[i].trim()) * SCALE;
+        }
+        if(v[0] >= v[2] || v[1] >= v[3]) {
+            throw new IllegalArgumentException("empty bounding box: " + bbox);
+        }
+        List<double[]> rings = new ArrayList<>();
+        rings.add(new double[] {v[0], v[1], v[2], v[1], v[2], v[3], v[0], v[3]});
+        return new RegionPolygon("bbox " + bbox, rings);
+    }
+
+    @Override
+    public String toString() {
+        return this.name + " (" + this.edges.length / 4 + " edges)";
+    }
+}
@@ -3,7 +3,9 @@ package osm2inter;
 import util.InterDB;
 import java.io.File;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Types;
 import org.xml.sax.Attributes;
 import org.xml.sax.helpers.DefaultHandler;
 import osm.OSMClassification;
@@ -16,6 +18,8 @@ import java.util.List;
 import util.DB;
 import util.ManagedFileSQLStatementQueue;
 import util.Parameter;
+import util.PooledSQLStatementQueue;
+import util.PreparedBatch;
 import util.SQLStatementQueue;
 import util.Util;
 
@@ -69,6 +73,13 @@ public class SQL_OSMImporter extends DefaultHandler {
     private int currentClassID = -1;
     private int boundaryAdminClassID = -1;
     private List<Integer> otherClassIDs;
+
+    // batchSize > 0: prepared statement batches instead of sql strings
+    private final int batchSize;
+    private Connection batchConnection;
+    private PreparedBatch nodeBatch, wayBatch, relationBatch, wayMemberBatch, relationMemberBatch;
+    private long currentOSMID;
+    private String currentLongitude, currentLatitude, currentTimestamp;
     
     public SQL_OSMImporter(Parameter parameter, OSMClassification osmClassification) throws Exception {
         this.parameter = parameter;
@@ -101,11 +112,23 @@ public class SQL_OSMImporter extends DefaultHandler {
         System.out.println("intermediate management queue uses jdbc");
         this.managementQueue = new SQLStatementQueue(this.parameter, this.maxThreads);
         
-        if(parameter.usePSQL()) {
+        this.batchSize = parameter.getBatchSize();
+        if(this.batchSize > 0) {
+            System.out.println("intermediate inserts use prepared statement batches of " + this.batchSize + " rows");
+        }
+
+        if(parameter.usePSQL() && parameter.spoolSQLFiles()) {
             System.out.println("intermediate insert-osm-element queue uses psql and sql files.");
             this.insertQueue = new ManagedFileSQLStatementQueue("sql_O2I_insertOSM2Inter", parameter);
             System.out.println("intermediate insert-member queue uses psql and sql files.");
             this.memberQueue = new ManagedFileSQLStatementQueue("sql_O2I_memberOSM2Inter", parameter);
+        } else if(parameter.usePSQL()) {
+            System.out.println("intermediate insert-osm-element queue uses pool of "
+                    + parameter.getMaxPSQLProcesses() + " jdbc connections.");
+            this.insertQueue = new PooledSQLStatementQueue("sql_O2I_insertOSM2Inter", parameter);
+            System.out.println("intermediate insert-member queue uses pool of "
+                    + parameter.getMaxPSQLProcesses() + " jdbc connections.");
+            this.memberQueue = new PooledSQLStatementQueue("sql_O2I_memberOSM2Inter", parameter);
         } else {
             System.out.println("intermediate insert-osm-element queue uses jdbc");
             this.insertQueue = new SQLStatementQueue(this.parameter, this.maxThreads);
@@ -117,6 +140,10 @@ public class SQL_OSMImporter extends DefaultHandler {
         
         this.managementQueue.join();
         this.managementQueue.close();
+
+        if(this.batchSize > 0) {
+            this.prepareBatches();
+        }
         
         this.startTime = System.currentTimeMillis();
         this.lastReconnect = this.startTime;
@@ -168,6 +195,11 @@ public class SQL_OSMImporter extends DefaultHandler {
         // serialize uid and user into this.sAttributes
         Util.serializeAttributes(this.sAttributes, "uid", attributes.getValue("uid"));
         Util.serializeAttributes(this.sAttributes, "user", attributes.getValue("user"));
+
+        if(this.batchSize > 0) {
+            this.newBatchElement(attributes);
+            return;
+        }
         
         this.insertQueue.append("INSERT INTO ");
         switch(this.status) {
@@ -225,6 +257,90 @@ public class SQL_OSMImporter extends DefaultHandler {
         this.insertQueue.append(attributes.getValue("timestamp"));
         this.insertQueue.append("', ");
     }
+
+    /**
+     * values of element row are bound when element ends
+     */
+    private void newBatchElement(Attributes attributes) {
+        try {
+            this.currentOSMID = Long.parseLong(this.currentElementID);
+        }
+        catch(NumberFormatException e) {
+            this.errStream.println("element without valid id is skipped: " + this.currentElementID);
+            this.currentOSMID = -1;
+        }
+        this.currentTimestamp = attributes.getValue("timestamp");
+        switch(this.status) {
+            case STATUS_NODE:
+                this.currentLongitude = attributes.getValue("lon");
+                this.currentLatitude = attributes.getValue("lat");
+                break;
+            case STATUS_WAY:
+                this.nodeIDs = new StringBuilder();
+                break;
+            case STATUS_RELATION:
+                this.memberIDs = new StringBuilder();
+                break;
+        }
+    }
+
+    private void prepareBatches() throws SQLException {
+        this.batchConnection = DB.createConnection(this.parameter);
+        String columns = "osm_id, tstamp, classcode, otherclasscodes, serializedtags, has_name";
+        String values = "?, ?::date, ?, ?, ?, ?";
+
+        this.nodeBatch = new PreparedBatch(this.batchConnection, "INSERT INTO "
+                + DB.getFullTableName(schema, InterDB.NODETABLE) + " (valid, longitude, latitude, " + columns
+                + ") VALUES (true, ?, ?, " + values + ")", this.batchSize);
+        this.wayBatch = new PreparedBatch(this.batchConnection, "INSERT INTO "
+                + DB.getFullTableName(schema, InterDB.WAYTABLE) + " (valid, " + columns
+                + ", node_ids) VALUES (true, " + values + ", ?)", this.batchSize);
+        this.relationBatch = new PreparedBatch(this.batchConnection, "INSERT INTO "
+                + DB.getFullTableName(schema, InterDB.RELATIONTABLE) + " (valid, " + columns
+                + ", member_ids) VALUES (true, " + values + ", ?)", this.batchSize);
+        this.wayMemberBatch = new PreparedBatch(this.batchConnection, "INSERT INTO "
+                + DB.getFullTableName(schema, InterDB.WAYMEMBER) + " (way_id, node_id) VALUES (?, ?)", this.batchSize);
+        // one statement for all member types - otherwise rows could not be batched
+        this.relationMemberBatch = new PreparedBatch(this.batchConnection, "INSERT INTO "
+                + DB.getFullTableName(schema, InterDB.RELATIONMEMBER)
+                + " (relation_id, role, node_id, way_id, member_rel_id) VALUES (?, ?, ?, ?, ?)", this.batchSize);
+    }
+
+    private void addElementRow(PreparedBatch batch, String idList) throws SQLException {
+        this.adjustClasscode();
+        if(this.currentOSMID < 0) return;
+
+        PreparedStatement stmt = batch.statement();
+        int i = 1;
+        if(this.status == STATUS_NODE) {
+            stmt.setString(i++, this.currentLongitude);
+            stmt.setString(i++, this.currentLatitude);
+        }
+        stmt.setLong(i++, this.currentOSMID);
+        stmt.setString(i++, this.currentTimestamp);
+        stmt.setLong(i++, this.currentClassID);
+        stmt.setString(i++, InterDB.getString(this.otherClassIDs));
+        stmt.setString(i++, this.sAttributes.toString());
+        stmt.setBoolean(i++, this.hasName);
+        if(idList != null) {
+            stmt.setString(i, idList);
+        }
+        batch.addRow();
+    }
+
+    private void closeBatches() throws SQLException {
+        PreparedBatch[] batches = {this.nodeBatch, this.wayBatch, this.relationBatch,
+                this.wayMemberBatch, this.relationMemberBatch};
+        for(PreparedBatch batch : batches) {
+            batch.close();
+        }
+        this.outStream.println("batch inserts: nodes: " + this.nodeBatch.getWrittenRows()
+                + " | ways: " + this.wayBatch.getWrittenRows()
+                + " | relations: " + this.relationBatch.getWrittenRows()
+                + " | waynodes: " + this.wayMemberBatch.getWrittenRows()
+                + " | relationmember: " + this.relationMemberBatch.getWrittenRows());
+        this.batchConnection.close();
+    }
     
     OSMClassification osmClassification = OSMClassification.getOSMClassification();
 
@@ -290,7 +406,7 @@ public class SQL_OSMImporter extends DefaultHandler {
     }
 
     boolean ndFound = false;
-    private void addND(Attributes attributes) {
+    private void addND(Attributes attributes) throws SQLException {
         // a new node reference like this: <nd ref='4406823158' />
         // only be found inside way
         
@@ -298,6 +414,16 @@ public class SQL_OSMImporter extends DefaultHandler {
         add to node_ids builder
         add to member queue
         */
+        long ref;
+        try {
+            ref = Long.parseLong(attributes.getValue("ref"));
+        }
+        catch(NumberFormatException e) {
+            this.errStream.println("node reference without valid id is skipped in way " 
+                    + this.currentElementID + ": " + attributes.getValue("ref"));
+            return;
+        }
+        
         if(!this.ndFound) {
             this.ndFound = true;
             // init update queue
@@ -305,12 +431,22 @@ public class SQL_OSMImporter extends DefaultHandler {
 //            this.updateNodesQueue.append(DB.getFullTableName(schema, InterDB.NODETABLE));
 //            this.updateNodesQueue.append(" SET is_part=true WHERE ");
         } else {
-            this.memberQueue.append(", ");
+            if(this.batchSize == 0) {
+                this.memberQueue.append(", ");
+            }
 //            this.updateNodesQueue.append(" OR ");
             
             this.nodeIDs.append(",");
         }
         this.nodeIDs.append(attributes.getValue("ref"));
+
+        if(this.batchSize > 0) {
+            if(this.currentOSMID < 0) return;
+            this.wayMemberBatch.statement().setLong(1, this.currentOSMID);
+            this.wayMemberBatch.statement().setLong(2, ref);
+            this.wayMemberBatch.addRow();
+            return;
+        }
         
         this.memberQueue.append("(");
         this.memberQueue.append(this.currentElementID);
@@ -339,6 +475,11 @@ public class SQL_OSMImporter extends DefaultHandler {
             }
             this.memberIDs.append(attributes.getValue("ref")); 
 //        }
+
+        if(this.batchSize > 0) {
+            this.addRelationMemberRow(attributes);
+            return;
+        }
         
         this.memberQueue.append("INSERT INTO ");
         this.memberQueue.append(DB.getFullTableName(schema, InterDB.RELATIONMEMBER));
@@ -396,6 +537,43 @@ public class SQL_OSMImporter extends DefaultHandler {
 
     }
 
+    private void addRelationMemberRow(Attributes attributes) throws SQLException {
+        long ref;
+        try {
+            ref = Long.parseLong(attributes.getValue("ref"));
+        }
+        catch(NumberFormatException e) {
+            this.errStream.println("member without valid id is skipped in relation " 
+                    + this.currentElementID + ": " + attributes.getValue("ref"));
+            return;
+        }
+        PreparedStatement stmt = this.relationMemberBatch.statement();
+        stmt.setLong(1, this.currentOSMID);
+        stmt.setString(2, attributes.getValue("role"));
+        stmt.setNull(3, Types.BIGINT);
+        stmt.setNull(4, Types.BIGINT);
+        stmt.setNull(5, Types.BIGINT);
+        switch(attributes.getValue("type")) {
+            case "node":
+                this.ndFound = true;
+                stmt.setLong(3, ref);
+                break;
+            case "way":
+                this.wayFound = true;
+                stmt.setLong(4, ref);
+                break;
+            case "relation":
+                this.relationMemberFound = true;
+                stmt.setLong(5, ref);
+                break;
+            default:
+                return;
+        }
+        if(this.currentOSMID >= 0) {
+            this.relationMemberBatch.addRow();
+        }
+    }
+
     private AbstractElement dummyElement = new AbstractElement();
     
     private void beginEnd() {
@@ -410,21 +588,29 @@ public class SQL_OSMImporter extends DefaultHandler {
         this.insertQueue.append(Boolean.toString(this.hasName));
     }
     
-    private void endNode() {
+    private void endNode() throws SQLException {
         /*
         insert into nodes (osm_id, longitude, latitude, classcode, serializedtags, valid) VALUES (..);
         */
+        if(this.batchSize > 0) {
+            this.addElementRow(this.nodeBatch, null);
+            return;
+        }
         this.beginEnd();
         this.insertQueue.append(");");
     }
 
-    private void endWay() {
+    private void endWay() throws SQLException {
         /*
         insert into ways (valid, osm_id, classcode, serializedtags, node_ids) VALUES ();
 
         INSERT INTO WAYMEMBER (way_id, node_id) VALUES ();
         UPDATE nodes SET is_part=true WHERE id = id_nodes OR ...
         */
+        if(this.batchSize > 0) {
+            this.addElementRow(this.wayBatch, this.nodeIDs.toString());
+            return;
+        }
         
 //        try {
             // add remaining parameter; 
@@ -437,7 +623,7 @@ public class SQL_OSMImporter extends DefaultHandler {
             this.memberQueue.append(";");
     }
 
-    private void endRelation() {
+    private void endRelation() throws SQLException {
         /*
         insert into relations (valid, osm_id, classcode, serializedtags, member_ids) VALUES ();
 
@@ -445,6 +631,10 @@ public class SQL_OSMImporter extends DefaultHandler {
         UPDATE nodes SET is_part=true WHERE osm_id = ?? OR osm_id = ??;
         UPDATE ways SET is_part=true WHERE osm_id = ?? OR osm_id = ??;
         */
+        if(this.batchSize > 0) {
+            this.addElementRow(this.relationBatch, this.memberIDs.toString());
+            return;
+        }
         
 //        try {
             this.beginEnd();
@@ -472,8 +662,17 @@ public class SQL_OSMImporter extends DefaultHandler {
         try {
 //            this.outStream.println("last member queue sql query");
 //            this.outStream.println(this.memberQueue);
-            this.memberQueue.close(); // executes psql process
-            this.insertQueue.close();
+            if(this.batchSize > 0) {
+                this.closeBatches();
+            }
+            try {
+                this.memberQueue.close(); // executes psql process or waits for pool
+                this.insertQueue.close();
+            }
+            catch(SQLException se) {
+                Util.printExceptionMessage(this.errStream, se, this.insertQueue, 
+                        "statements of import failed - rows are missing", false);
+            }
     
             // do the rest with jdbc
             this.managementQueue = new SQLStatementQueue(this.parameter, this.maxThreads);
@@ -723,8 +922,8 @@ public class SQL_OSMImporter extends DefaultHandler {
                 } 
             }
         } catch (SQLException sqlE) {
-            this.errStream.println("while saving element: " + sqlE.getMessage() + "\n" + this.insertQueue.toString());
-            sqlE.printStackTrace(this.errStream);
+            // a block of statements is lost
+            Util.printExceptionMessage(this.errStream, sqlE, this.insertQueue, "while saving element", false);
         } catch (Throwable eE) {
             this.errStream.println("while saving element: " + eE.getClass().getName() + "\n" + eE.getMessage());
             eE.printStackTrace(this.errStream);
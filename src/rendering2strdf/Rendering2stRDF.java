@@ -3,6 +3,7 @@ package rendering2strdf;
 import util.DB;
 import util.OHDM_DB;
 import util.Parameter;
+import util.SQLCursor;
 import util.SQLStatementQueue;
 
 import java.io.*;
@@ -85,17 +86,18 @@ from landuse_gardeningandfarm;
         this.sqlQueue.append(DB.getFullTableName(this.sourceParameter.getSchema(), tableName));
         this.sqlQueue.append(";");
 
-        ResultSet qResult = this.sqlQueue.executeWithResult();
-
-        while(qResult.next()) {
-            this.writeTurtleEntry(
-                    qResult.getBigDecimal(1),
-                    qResult.getBigDecimal(2),
-                    qResult.getBigDecimal(3),
-                    qResult.getString(4),
-                    qResult.getDate(5),
-                    qResult.getDate(6),
-                    qResult.getString(7));
+        try(SQLCursor cursor = this.sqlQueue.executeStreaming(this.sourceParameter.getFetchSize())) {
+            ResultSet qResult = cursor.getResultSet();
+            while(cursor.next()) {
+                this.writeTurtleEntry(
+                        qResult.getBigDecimal(1),
+                        qResult.getBigDecimal(2),
+                        qResult.getBigDecimal(3),
+                        qResult.getString(4),
+                        qResult.getDate(5),
+                        qResult.getDate(6),
+                        qResult.getString(7));
+            }
         }
 
 
@@ -0,0 +1,218 @@
+package util;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CopyConnector which does not write on the callers thread. Filled row
+ * buffers are put into a bounded ring buffer and written to COPY by a
+ * writer thread of its own. The writer hands empty buffers back, so
+ * there is a fixed number of buffers and no allocation while importing.
+ * A slow COPY stream does not stall the parser until all buffers are
+ * in the queue.
+ */
+public class AsyncCopyConnector extends CopyConnector {
+    private static final int MAX_DRAIN = 16;
+
+    /**
+     * filled part of a buffer
+     */
+    private static class Chunk {
+        byte[] data;
+        int length;
+    }
+
+    private final RingBuffer<Chunk> queue;
+    private final RingBuffer<Chunk> free;
+    private final List<Chunk> emptyChunks = new ArrayList<>(1);
+    private final Thread writer;
+    private volatile SQLException writeError = null;
+
+    // chunks handed to writer (parser thread only) and written so far (guarded by drained)
+    private long queuedChunks = 0;
+    private long writtenChunks = 0;
+    private final Object drained = new Object();
+
+    /**
+     * @param queueSize number of row buffers (of copyFlushSize) that can wait for the writer
+     */
+    public AsyncCopyConnector(Parameter parameter, String tablename, int queueSize) throws IOException {
+        super(parameter, tablename);
+
+        this.queue = new RingBuffer<>(queueSize);
+        // one more buffer is always filled by the parser
+        this.free = new RingBuffer<>(queueSize + 1);
+        try {
+            for(int i = 0; i < queueSize; i++) {
+                Chunk chunk = new Chunk();
+                chunk.data = new byte[this.buffer.length];
+                this.free.put(chunk);
+            }
+        } catch (InterruptedException e) {
+            throw new IOException("interrupted while allocating copy buffers", e);
+        }
+
+        this.writer = new Thread(this::writeChunks, "copy writer " + tablename);
+        // a failed import must not keep the program alive - endCopy waits for it
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queue current buffer and continue with an empty one.
+     */
+    @Override
+    protected void flushBuffer() throws SQLException {
+        if(this.bufferLength == 0) return;
+
+        this.checkWriteError();
+        try {
+            // waits if writer still has all buffers (backpressure)
+            this.emptyChunks.clear();
+            this.free.drainTo(this.emptyChunks, 1);
+            if(this.emptyChunks.isEmpty()) {
+                // writer gave up - error tells why
+                this.checkWriteError();
+                throw new SQLException("copy writer of " + this.getTablename() + " already closed");
+            }
+
+            Chunk filled = this.emptyChunks.get(0);
+            byte[] emptyData = filled.data;
+            filled.data = this.buffer;
+            filled.length = this.bufferLength;
+            this.queue.put(filled);
+            this.queuedChunks++;
+
+            // buffer might have grown for a huge row
+            if(emptyData.length < this.buffer.length) {
+                emptyData = new byte[this.buffer.length];
+            }
+            this.buffer = emptyData;
+            this.bufferLength = 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for copy writer of " + this.getTablename(), e);
+        } catch (IllegalStateException e) {
+            this.checkWriteError();
+            throw new SQLException("copy writer of " + this.getTablename() + " already closed", e);
+        }
+    }
+
+    /**
+     * writer thread
+     */
+    private void writeChunks() {
+        List<Chunk> chunks = new ArrayList<>(MAX_DRAIN);
+        try {
+            while(this.queue.drainTo(chunks, MAX_DRAIN) > 0) {
+                for(Chunk chunk : chunks) {
+                    this.writeToCopy(chunk.data, chunk.length);
+                    chunk.length = 0;
+                    this.free.put(chunk);
+                }
+                synchronized(this.drained) {
+                    this.writtenChunks += chunks.size();
+                    this.drained.notifyAll();
+                }
+                chunks.clear();
+            }
+        } catch (SQLException e) {
+            this.writeError = e;
+            this.release();
+        } catch (InterruptedException e) {
+            this.writeError = new SQLException("copy writer of " + this.getTablename() + " interrupted", e);
+            this.release();
+        } catch (IllegalStateException e) {
+            // aborted - buffers are closed
+        }
+    }
+
+    /**
+     * release parser after writer failed
+     */
+    private void release() {
+        this.queue.close();
+        this.free.close();
+        synchronized(this.drained) {
+            this.drained.notifyAll();
+        }
+    }
+
+    private void checkWriteError() throws SQLException {
+        if(this.writeError != null) {
+            throw this.writeError;
+        }
+    }
+
+    /**
+     * Waits until writer has written all queued buffers, then COPY is ended
+     * and a new one is started - see CopyConnector.commit().
+     */
+    @Override
+    public long commit() throws SQLException {
+        this.endData();
+        this.flushBuffer();
+
+        // writer signals each drained batch
+        synchronized(this.drained) {
+            while(this.writtenChunks < this.queuedChunks && this.writeError == null) {
+                try {
+                    this.drained.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("interrupted while waiting for copy writer of " + this.getTablename(), e);
+                }
+            }
+        }
+        this.checkWriteError();
+
+        return super.commit();
+    }
+
+    @Override
+    public long endCopy() throws SQLException {
+        // last filled buffer
+        this.endData();
+        this.flushBuffer();
+
+        this.queue.close();
+        try {
+            this.writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for copy writer of " + this.getTablename(), e);
+        }
+        this.checkWriteError();
+
+        System.out.println(this.getTablename() + " queue: " + this.getQueueStatus());
+        return super.endCopy();
+    }
+
+    /**
+     * Writer stops with the next chunk, then COPY is cancelled.
+     */
+    @Override
+    public void abort() {
+        this.release();
+        this.writer.interrupt();
+        // closed connection also ends a write that hangs on the socket
+        super.abort();
+        try {
+            this.writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return depth of ring buffer and time the parser waited for writer
+     */
+    public String getQueueStatus() {
+        return "depth " + this.queue.depth() + "/" + this.queue.capacity()
+                + " (max " + this.queue.getMaxDepth() + "), parser waited "
+                + this.free.getEmptyWaits() + " times for "
+                + this.free.getEmptyWaitMillis() + " ms";
+    }
+}
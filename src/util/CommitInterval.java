@@ -0,0 +1,121 @@
+package util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.postgresql.core.BaseConnection;
+import org.postgresql.jdbc.AutoSave;
+
+/**
+ * Explicit transactions on a connection that are committed every
+ * commitInterval statements or every commitIntervalMillis milliseconds
+ * (see Parameter). The interval is kept by whoever writes on that
+ * connection - SQLStatementQueue, PreparedBatch and PreparedStatementCache
+ * count their statements, other callers use executed.
+ *
+ * With commitAutosave a failing statement only rolls back itself, like in
+ * autocommit mode - that costs a savepoint per statement. Otherwise a
+ * failure aborts the whole transaction. Intervals must be ended before
+ * their connection is closed - a transaction that is still open is lost
+ * otherwise.
+ */
+public class CommitInterval {
+    private final Connection connection;
+    private final int maxStatements;
+    private final long maxMillis;
+
+    private int statements = 0;
+    private long lastCommit = System.currentTimeMillis();
+    private boolean ended = false;
+
+    private CommitInterval(Connection connection, int maxStatements, long maxMillis) {
+        this.connection = connection;
+        this.maxStatements = maxStatements;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * start transactions on that connection if parameter has a commit
+     * interval
+     * @return null if there is none - connection stays in autocommit mode
+     */
+    public static CommitInterval start(Connection connection, Parameter parameter) throws SQLException {
+        if(connection == null) return null;
+        if(parameter.getCommitInterval() < 1 && parameter.getCommitIntervalMillis() < 1) return null;
+
+        if(parameter.commitAutosave() && connection.isWrapperFor(BaseConnection.class)) {
+            connection.unwrap(BaseConnection.class).setAutosave(AutoSave.ALWAYS);
+        }
+        connection.setAutoCommit(false);
+
+        return new CommitInterval(connection,
+                parameter.getCommitInterval(), parameter.getCommitIntervalMillis());
+    }
+
+    public Connection getConnection() {
+        return this.connection;
+    }
+
+    /**
+     * commits if interval is reached
+     */
+    public synchronized void executed(int statements) throws SQLException {
+        if(this.ended) return;
+
+        this.statements += statements;
+        if((this.maxStatements > 0 && this.statements >= this.maxStatements)
+                || (this.maxMillis > 0 && System.currentTimeMillis() - this.lastCommit >= this.maxMillis)) {
+            this.commit();
+        }
+    }
+
+    /**
+     * commit now - e.g. before other connections read written data
+     */
+    public synchronized void commit() throws SQLException {
+        if(this.ended) return;
+
+        this.connection.commit();
+        this.statements = 0;
+        this.lastCommit = System.currentTimeMillis();
+    }
+
+    /**
+     * commit and go back to autocommit mode - further calls do nothing
+     */
+    public synchronized void end() throws SQLException {
+        if(this.ended) return;
+
+        this.commit();
+        this.ended = true;
+        this.connection.setAutoCommit(true);
+    }
+
+    /**
+     * @return number of statements in sql - semicolons outside of quotes
+     * and comments, text after the last one is a statement as well
+     */
+    static int countStatements(String sql) {
+        int count = 0;
+        boolean open = false; // statement text since last semicolon
+        int length = sql.length();
+        for(int i = 0; i < length; i++) {
+            char c = sql.charAt(i);
+            if(c == '\'' || c == '"') {
+                // doubled quotes inside are just two quoted parts
+                int end = sql.indexOf(c, i + 1);
+                i = end < 0 ? length : end;
+                open = true;
+            } else if(c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? length : end;
+            } else if(c == ';') {
+                if(open) count++;
+                open = false;
+            } else if(!Character.isWhitespace(c)) {
+                open = true;
+            }
+        }
+        return open ? count + 1 : count;
+    }
+}
@@ -11,13 +11,47 @@ import java.util.Arrays;
 import java.util.List;
 
 /**
+ * Rows are escaped and utf-8 encoded straight into one reused byte
+ * buffer. Buffer is handed to COPY when it exceeds copyFlushSize.
+ * Write a row like this:
+ * <pre>
+ * connector.field(id).field(name).nullField().field(true).endRow();
+ * </pre>
+ * With connectionType 'binarycopy' rows are written in binary COPY
+ * format: long fields become bigint, intField() integer, long arrays
+ * bigint[], boolean fields boolean, dateField() date and CharSequence
+ * fields utf-8 text. Postgres does not parse numbers out of text in
+ * that case - column types must match, though.
+ *
  * @author FlorianSauer
  */
 public class CopyConnector {
     private String tablename;
     private String delimiter;
+    private byte delimiterByte;
     private CopyManager copyManager;
     private CopyIn copyIn;
+    private String copySQL;
+    private final boolean binary;
+    private boolean dataEnded = false;
+
+    // binary format: signature, flags, header extension length
+    private static final byte[] BINARY_HEADER = {
+            'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0,
+            0, 0, 0, 0,
+            0, 0, 0, 0
+    };
+    // days from 1970-01-01 to 2000-01-01 - binary dates count from there
+    private static final int POSTGRES_EPOCH_DAY = 10957;
+    private static final int INT8_OID = 20;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+
+    // row buffer
+    protected byte[] buffer;
+    protected int bufferLength = 0;
+    protected final int flushSize;
+    private int fieldsInRow = 0;
+    private int rowStart = 0;
 
     public String getTablename() {
         return tablename;
@@ -32,9 +66,9 @@ public class CopyConnector {
 
 
     public CopyConnector(Parameter parameter, String tablename) throws IOException {
+        this(tablename, parameter.getDelimiter(), parameter.useBinaryCopy(), parameter.getCopyFlushSize());
+
         String[] selectedColumns = null;
-        this.tablename = tablename;
-        this.delimiter = parameter.getDelimiter();
         switch (tablename) {
             case "nodes": {
 //                System.out.println("nodes");
@@ -61,14 +95,52 @@ public class CopyConnector {
                 selectedColumns = parameter.getWaysColumnNames();
                 break;
             }
+            case TagDictionary.TABLE: {
+                selectedColumns = new String[] {"code", "value"};
+                break;
+            }
+            case InterDB.DELETIONS: {
+                selectedColumns = new String[] {"element", "osm_id"};
+                break;
+            }
+            // ohdm tables written by history import - ids are set by importer
+            case OHDM_DB.TABLE_EXTERNAL_USERS: {
+                selectedColumns = new String[] {"id", "userid", "username", "external_system_id"};
+                break;
+            }
+            case OHDM_DB.TABLE_GEOOBJECT: {
+                selectedColumns = new String[] {"id", "name", "source_user_id"};
+                break;
+            }
+            case OHDM_DB.TABLE_POINTS: {
+                selectedColumns = new String[] {"id", "point", "source_user_id"};
+                break;
+            }
+            case OHDM_DB.TABLE_LINES: {
+                selectedColumns = new String[] {"id", "line", "source_user_id"};
+                break;
+            }
+            case OHDM_DB.TABLE_POLYGONS: {
+                selectedColumns = new String[] {"id", "polygon", "source_user_id"};
+                break;
+            }
+            case OHDM_DB.TABLE_GEOOBJECT_GEOMETRY: {
+                selectedColumns = new String[] {"id_target", "type_target", "id_geoobject_source",
+                        "classification_id", "tags", "valid_since", "valid_until", "source_user_id"};
+                break;
+            }
         }
         System.out.println("selectedColumns "+Arrays.toString(selectedColumns));
         try {
             this.connection = DB.createConnection(parameter);
             this.copyManager = new CopyManager((BaseConnection) connection);
-            String sql = "COPY "+tablename+"("+String.join(", ", selectedColumns)+") FROM STDIN DELIMITER '"+delimiter+"' NULL 'NULL'";
+            if (this.binary) {
+                this.copySQL = "COPY "+tablename+"("+String.join(", ", selectedColumns)+") FROM STDIN (FORMAT binary)";
+            } else {
+                this.copySQL = "COPY "+tablename+"("+String.join(", ", selectedColumns)+") FROM STDIN DELIMITER '"+delimiter+"' NULL 'NULL'";
+            }
 //            System.out.println("SQL: "+sql);
-            this.copyIn = this.copyManager.copyIn(sql);
+            this.startCopy();
         } catch (SQLException ex) {
             System.err.println("cannot connect to database - fatal - exit\n" + ex.getMessage());
             ex.printStackTrace(System.err);
@@ -76,69 +148,545 @@ public class CopyConnector {
         }
     }
 
-    public void write(String csv) throws SQLException {
-        //write csv string to stdin/stream of psql COPY
-//        System.out.println("writing >"+csv+"< to "+this.tablename);
-        csv += "\n";
-        byte[] bytes = csv.getBytes();
-        try {
-            this.copyIn.writeToCopy(bytes, 0, bytes.length);
-            this.copyIn.flushCopy();
-        } catch (Exception e){
-            // TODO: 07.12.2017 remove try catch, only for debugging
-            System.out.println("could not write >"+csv.replaceAll("(\\r|\\n)", "")+"< to "+this.tablename);
-            e.printStackTrace();
-            throw e;
+    /**
+     * Rows are only encoded, there is no connection - flushed buffers go
+     * to writeToCopy which must be overwritten.
+     */
+    CopyConnector(String tablename, String delimiter, boolean binary, int flushSize) throws IOException {
+        this.tablename = tablename;
+        this.delimiter = delimiter;
+        if (this.delimiter.length() != 1 || this.delimiter.charAt(0) > 127) {
+            throw new IOException("copy delimiter must be a single ascii character: " + this.delimiter);
         }
-        this.writtenLines += 1;
+        this.delimiterByte = (byte) this.delimiter.charAt(0);
+
+        this.flushSize = flushSize;
+        // a bit more than flush size: usually no row exceeds that
+        this.buffer = new byte[this.flushSize + 64 * 1024];
 
+        this.binary = binary;
+    }
+
+    /**
+     * write an already escaped line
+     */
+    public void write(String csv) throws SQLException {
+        if (this.binary) {
+            throw new SQLException("cannot write text line to binary copy of " + this.tablename);
+        }
+        this.ensureCapacity(3 * csv.length());
+        this.encode(csv, false);
+        this.fieldsInRow = 1;
+        this.endRow();
     }
 
     public void write(List<String> csv) throws SQLException {
-        this.write(this.escapeStrings((String[]) csv.toArray()));
+        this.write(csv.toArray(new String[csv.size()]));
     }
+
     public void write(String[] csv) throws SQLException {
-        this.write(this.escapeStrings(csv));
+        for (String s : csv) {
+            this.field(s);
+        }
+        this.endRow();
     }
 
-    private String escapeStrings(String[] list){
-        String finalString = "";
-        String tmp;
-        for (String s : list){
-            tmp = s;
-            tmp = tmp.replace("\\", "\\\\");
-            tmp = tmp.replace(this.delimiter, "\\"+this.delimiter);
-            tmp = tmp.replace("\"", "\\\"");
-            tmp = tmp.replace("\r", "\\\r");
-            tmp = tmp.replace("\n", "\\\n");
+    /**
+     * append escaped value as next field of current row
+     */
+    public CopyConnector field(CharSequence value) {
+        this.nextField();
+        // worst case: each char escaped or three bytes utf-8
+        this.ensureCapacity(4 + 3 * value.length());
+        if (this.binary) {
+            int lengthPos = this.bufferLength;
+            this.bufferLength += 4;
+            this.encode(value, false);
+            this.putInt(lengthPos, this.bufferLength - lengthPos - 4);
+        } else {
+            this.encode(value, true);
+        }
+        return this;
+    }
 
-//            if (tmp.contains(" ")){
-//                tmp = "\""+tmp+"\"";
-//            }
+    /**
+     * date field from an osm timestamp like 2017-03-01T12:00:00Z - only
+     * the date part is used. Binary copy writes NULL if it cannot be parsed.
+     */
+    public CopyConnector dateField(CharSequence timestamp) {
+        if (!this.binary) {
+            return this.field(timestamp);
+        }
+
+        int epochDay;
+        try {
+            epochDay = CopyConnector.parseEpochDay(timestamp);
+        } catch (NumberFormatException e) {
+            return this.nullField();
+        }
+        this.nextField();
+        this.ensureCapacity(8);
+        this.putInt(this.bufferLength, 4);
+        this.putInt(this.bufferLength + 4, epochDay - POSTGRES_EPOCH_DAY);
+        this.bufferLength += 8;
+        return this;
+    }
+
+    public CopyConnector field(long value) {
+        this.nextField();
+        if (this.binary) {
+            this.ensureCapacity(12);
+            this.putInt(this.bufferLength, 8);
+            this.putLong(this.bufferLength + 4, value);
+            this.bufferLength += 12;
+            return this;
+        }
+        this.appendDigits(value);
+        return this;
+    }
+
+    /**
+     * field of an integer (not bigint) column
+     */
+    public CopyConnector intField(int value) {
+        this.nextField();
+        if (this.binary) {
+            this.ensureCapacity(8);
+            this.putInt(this.bufferLength, 4);
+            this.putInt(this.bufferLength + 4, value);
+            this.bufferLength += 8;
+            return this;
+        }
+        this.appendDigits(value);
+        return this;
+    }
+
+    /**
+     * bigint[] field made of first count values
+     */
+    public CopyConnector field(long[] values, int count) {
+        this.nextField();
+        if (this.binary) {
+            // dimensions, has nulls, element type, [size, lower bound], elements
+            int length = count == 0 ? 12 : 20 + 12 * count;
+            this.ensureCapacity(4 + length);
+            int pos = this.bufferLength;
+            this.putInt(pos, length);
+            this.putInt(pos + 4, count == 0 ? 0 : 1);
+            this.putInt(pos + 8, 0);
+            this.putInt(pos + 12, INT8_OID);
+            pos += 16;
+            if (count > 0) {
+                this.putInt(pos, count);
+                this.putInt(pos + 4, 1);
+                pos += 8;
+                for (int i = 0; i < count; i++) {
+                    this.putInt(pos, 8);
+                    this.putLong(pos + 4, values[i]);
+                    pos += 12;
+                }
+            }
+            this.bufferLength = pos;
+            return this;
+        }
+
+        this.ensureCapacity(2);
+        this.buffer[this.bufferLength++] = '{';
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                this.ensureCapacity(2);
+                if (this.delimiterByte == ',') {
+                    this.buffer[this.bufferLength++] = '\\';
+                }
+                this.buffer[this.bufferLength++] = ',';
+            }
+            this.appendDigits(values[i]);
+        }
+        this.ensureCapacity(1);
+        this.buffer[this.bufferLength++] = '}';
+        return this;
+    }
 
+    /**
+     * bytea field made of first length bytes of data
+     */
+    public CopyConnector field(byte[] data, int length) {
+        this.nextField();
+        if (this.binary) {
+            return this.putBytes(data, length);
+        }
 
+        // hex format, backslash escaped for COPY: \\x0a1b..
+        this.ensureCapacity(3 + 2 * length);
+        byte[] b = this.buffer;
+        int n = this.bufferLength;
+        b[n++] = '\\';
+        b[n++] = '\\';
+        b[n++] = 'x';
+        for (int i = 0; i < length; i++) {
+            b[n++] = HEX_DIGITS[(data[i] >> 4) & 0x0F];
+            b[n++] = HEX_DIGITS[data[i] & 0x0F];
+        }
+        this.bufferLength = n;
+        return this;
+    }
 
+    /**
+     * geometry field made of first length bytes of an ewkb - binary copy
+     * takes it as it is, text copy as hex string, postgis parses both
+     */
+    public CopyConnector geometryField(byte[] ewkb, int length) {
+        this.nextField();
+        if (this.binary) {
+            return this.putBytes(ewkb, length);
+        }
 
-            finalString = finalString+tmp+this.delimiter;
+        this.ensureCapacity(2 * length);
+        byte[] b = this.buffer;
+        int n = this.bufferLength;
+        for (int i = 0; i < length; i++) {
+            b[n++] = HEX_DIGITS[(ewkb[i] >> 4) & 0x0F];
+            b[n++] = HEX_DIGITS[ewkb[i] & 0x0F];
+        }
+        this.bufferLength = n;
+        return this;
+    }
+
+    /**
+     * hstore field of count key value pairs: kv = k0, v0, k1, v1..
+     */
+    public CopyConnector hstoreField(String[] kv, int count) {
+        this.nextField();
+        if (this.binary) {
+            // pair count, then length and utf-8 bytes of each key and value
+            this.ensureCapacity(8);
+            int lengthPos = this.bufferLength;
+            this.putInt(lengthPos + 4, count);
+            this.bufferLength += 8;
+            for (int i = 0; i < 2 * count; i++) {
+                this.ensureCapacity(4 + 3 * kv[i].length());
+                int pos = this.bufferLength;
+                this.bufferLength += 4;
+                this.encode(kv[i], false);
+                this.putInt(pos, this.bufferLength - pos - 4);
+            }
+            this.putInt(lengthPos, this.bufferLength - lengthPos - 4);
+            return this;
+        }
+
+        // "k"=>"v", .. - quotes and backslashes escaped for hstore, then for COPY
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2 * count; i++) {
+            if (i > 0) {
+                sb.append(i % 2 == 0 ? ", " : "=>");
+            }
+            sb.append('"');
+            String s = kv[i];
+            for (int j = 0; j < s.length(); j++) {
+                char c = s.charAt(j);
+                if (c == '"' || c == '\\') {
+                    sb.append('\\');
+                }
+                sb.append(c);
+            }
+            sb.append('"');
+        }
+        this.ensureCapacity(3 * sb.length());
+        this.encode(sb, true);
+        return this;
+    }
+
+    private CopyConnector putBytes(byte[] data, int length) {
+        this.ensureCapacity(4 + length);
+        this.putInt(this.bufferLength, length);
+        System.arraycopy(data, 0, this.buffer, this.bufferLength + 4, length);
+        this.bufferLength += 4 + length;
+        return this;
+    }
+
+    private void appendDigits(long value) {
+        this.ensureCapacity(20);
+        if (value == Long.MIN_VALUE) {
+            this.encode(Long.toString(value), false);
+            return;
+        }
+        if (value < 0) {
+            this.buffer[this.bufferLength++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long x = value; x >= 10; x /= 10) {
+            digits++;
+        }
+        for (int pos = this.bufferLength + digits - 1; pos >= this.bufferLength; pos--) {
+            this.buffer[pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        this.bufferLength += digits;
+    }
+
+    public CopyConnector field(boolean value) {
+        this.nextField();
+        if (this.binary) {
+            this.ensureCapacity(5);
+            this.putInt(this.bufferLength, 1);
+            this.buffer[this.bufferLength + 4] = (byte) (value ? 1 : 0);
+            this.bufferLength += 5;
+            return this;
+        }
+        this.ensureCapacity(1);
+        this.buffer[this.bufferLength++] = (byte) (value ? 't' : 'f');
+        return this;
+    }
+
+    public CopyConnector nullField() {
+        this.nextField();
+        this.ensureCapacity(4);
+        if (this.binary) {
+            this.putInt(this.bufferLength, -1);
+            this.bufferLength += 4;
+            return this;
+        }
+        this.buffer[this.bufferLength++] = 'N';
+        this.buffer[this.bufferLength++] = 'U';
+        this.buffer[this.bufferLength++] = 'L';
+        this.buffer[this.bufferLength++] = 'L';
+        return this;
+    }
+
+    /**
+     * finish current row - buffer goes to COPY if it is full enough
+     */
+    public void endRow() throws SQLException {
+        if (this.binary) {
+            if (this.fieldsInRow == 0) {
+                this.startBinaryRow();
+            }
+            // field count was reserved in front of the row
+            this.buffer[this.rowStart] = (byte) (this.fieldsInRow >>> 8);
+            this.buffer[this.rowStart + 1] = (byte) this.fieldsInRow;
+        } else {
+            this.ensureCapacity(1);
+            this.buffer[this.bufferLength++] = '\n';
+        }
+        this.fieldsInRow = 0;
+        this.writtenLines++;
+
+        if (this.bufferLength >= this.flushSize) {
+            this.flushBuffer();
+        }
+    }
+
+    private void nextField() {
+        if (this.binary) {
+            if (this.fieldsInRow == 0) {
+                this.startBinaryRow();
+            }
+            this.fieldsInRow++;
+        } else if (this.fieldsInRow++ > 0) {
+            this.ensureCapacity(1);
+            this.buffer[this.bufferLength++] = this.delimiterByte;
+        }
+    }
+
+    private void startBinaryRow() {
+        this.ensureCapacity(2);
+        this.rowStart = this.bufferLength;
+        this.bufferLength += 2;
+    }
+
+    private void putLong(int pos, long value) {
+        this.putInt(pos, (int) (value >>> 32));
+        this.putInt(pos + 4, (int) value);
+    }
+
+    private void putInt(int pos, int value) {
+        this.buffer[pos] = (byte) (value >>> 24);
+        this.buffer[pos + 1] = (byte) (value >>> 16);
+        this.buffer[pos + 2] = (byte) (value >>> 8);
+        this.buffer[pos + 3] = (byte) value;
+    }
+
+    /**
+     * @return days since 1970-01-01 of a yyyy-mm-dd... value
+     */
+    static int parseEpochDay(CharSequence s) {
+        if (s == null || s.length() < 10 || s.charAt(4) != '-' || s.charAt(7) != '-') {
+            throw new NumberFormatException("no date: " + s);
+        }
+        int y = CopyConnector.digits(s, 0, 4);
+        int m = CopyConnector.digits(s, 5, 7);
+        int d = CopyConnector.digits(s, 8, 10);
+        if (m < 1 || m > 12 || d < 1 || d > 31) {
+            throw new NumberFormatException("no date: " + s);
+        }
+
+        // days from civil, proleptic gregorian calendar
+        y -= m <= 2 ? 1 : 0;
+        int era = y / 400;
+        int yoe = y - era * 400;
+        int doy = (153 * (m + (m > 2 ? -3 : 9)) + 2) / 5 + d - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    private static int digits(CharSequence s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("no date: " + s);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private void ensureCapacity(int n) {
+        if (this.bufferLength + n > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(2 * this.buffer.length, this.bufferLength + n));
+        }
+    }
+
+    /**
+     * utf-8 encode chars into buffer, escape special chars of COPY text format if wanted
+     */
+    private void encode(CharSequence s, boolean escape) {
+        byte[] b = this.buffer;
+        int n = this.bufferLength;
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (escape) {
+                    if (c == '\\' || c == this.delimiterByte) {
+                        b[n++] = '\\';
+                    } else if (c == '\n') {
+                        b[n++] = '\\';
+                        c = 'n';
+                    } else if (c == '\r') {
+                        b[n++] = '\\';
+                        c = 'r';
+                    }
+                }
+                b[n++] = (byte) c;
+            } else if (c < 0x800) {
+                b[n++] = (byte) (0xC0 | (c >> 6));
+                b[n++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b[n++] = (byte) (0xF0 | (cp >> 18));
+                b[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                b[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                b[n++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                b[n++] = '?'; // like String.getBytes()
+            } else {
+                b[n++] = (byte) (0xE0 | (c >> 12));
+                b[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                b[n++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        this.bufferLength = n;
+    }
+
+    /**
+     * hand buffered rows to COPY
+     */
+    protected void flushBuffer() throws SQLException {
+        if (this.bufferLength == 0) return;
+
+        this.writeToCopy(this.buffer, this.bufferLength);
+        this.bufferLength = 0;
+    }
+
+    protected void writeToCopy(byte[] data, int length) throws SQLException {
+        try {
+            this.copyIn.writeToCopy(data, 0, length);
+        } catch (SQLException e){
+            System.out.println("could not write " + length + " bytes to "+this.tablename);
+            e.printStackTrace();
+            throw e;
         }
-        return finalString.substring(0, finalString.length() - 1);
     }
 
     public String getDelimiter() {
         return this.delimiter;
     }
 
+    /**
+     * append binary trailer - no more rows after that
+     */
+    protected void endData() {
+        if (this.dataEnded) return;
+        this.dataEnded = true;
+
+        if (this.binary) {
+            this.ensureCapacity(2);
+            this.buffer[this.bufferLength++] = (byte) 0xFF;
+            this.buffer[this.bufferLength++] = (byte) 0xFF;
+        }
+    }
+
+    private void startCopy() throws SQLException {
+        this.copyIn = this.copyManager.copyIn(this.copySQL);
+        this.dataEnded = false;
+        if (this.binary) {
+            this.ensureCapacity(BINARY_HEADER.length);
+            System.arraycopy(BINARY_HEADER, 0, this.buffer, this.bufferLength, BINARY_HEADER.length);
+            this.bufferLength += BINARY_HEADER.length;
+        }
+    }
+
     public long endCopy() throws SQLException {
         //close connection+stdin/stream of COPY
+        this.endData();
+        this.flushBuffer();
         long postgres_writtenrows = 0;
         postgres_writtenrows = this.copyIn.endCopy();
         return postgres_writtenrows;
     }
+
+    /**
+     * End current COPY - connection is in auto commit mode, rows written so
+     * far are committed - and start a new one on the same connection.
+     *
+     * @return rows written by ended COPY
+     */
+    public long commit() throws SQLException {
+        this.endData();
+        this.flushBuffer();
+        long rows = this.copyIn.endCopy();
+        this.startCopy();
+        return rows;
+    }
     public void close() throws SQLException {
         //close connection+stdin/stream of COPY
         this.connection.close();
     }
 
+    /**
+     * Give up after a failure: a running COPY is cancelled - none of its
+     * rows are kept - and connection is closed. Errors are ignored, caller
+     * reports the failure.
+     */
+    public void abort() {
+        try {
+            if (this.copyIn != null && this.copyIn.isActive()) {
+                this.copyIn.cancelCopy();
+            }
+        } catch (SQLException e) {
+            // connection might be broken already
+        }
+        try {
+            if (this.connection != null) {
+                this.connection.close();
+            }
+        } catch (SQLException e) {
+            // nothing left to do
+        }
+    }
+
     public long getWrittenLines() {
         return writtenLines;
     }
@@ -9,6 +9,7 @@ import java.text.DateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Properties;
+import java.util.regex.Pattern;
 
 /**
  *
@@ -16,6 +17,8 @@ import java.util.Properties;
  */
 public class DB {
     private static final String TIME_STAMP_TABLE = "creationInformation";
+    // name of a run-time parameter, custom ones have a prefix: myapp.option
+    private static final Pattern SETTING_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
 
     ////////////////////////////////////////////////////////////////////////
     //                          CREATE STRUCTURES                         //
@@ -33,6 +36,29 @@ public class DB {
         return sb.toString();
     }
     
+    /**
+     * bulk load: unlogged table, id without primary key - add key 
+     * with DB.getAddPrimaryKey() and switch to logged after loading
+     */
+    static public String getCreateBulkLoadTableBegin(String schema, String tableName) {
+        StringBuilder sb = new StringBuilder();
+        
+        sb.append("CREATE UNLOGGED TABLE ");
+        sb.append(DB.getFullTableName(schema, tableName));
+        sb.append(" (");
+        sb.append("id bigint NOT NULL DEFAULT nextval('");
+        sb.append(DB.getSequenceName(DB.getFullTableName(schema, tableName)));
+        sb.append("'::regclass)");
+        
+        return sb.toString();
+    }
+    
+    static public String getFinishBulkLoad(String schema, String tableName) {
+        String fullTableName = DB.getFullTableName(schema, tableName);
+        return "ALTER TABLE " + fullTableName + " SET LOGGED; "
+                + "ALTER TABLE " + fullTableName + " ADD PRIMARY KEY (id);";
+    }
+    
     // primary key are created identically
     static public String getCreatePrimaryKeyDescription(String schema, String tableName) {
         return "id bigint PRIMARY KEY DEFAULT nextval('"
@@ -55,10 +81,16 @@ public class DB {
     }
     
     static public void createSequence(SQLStatementQueue targetQueue, String schema, String tableName) throws SQLException {
+        DB.createSequence(targetQueue, schema, tableName, 1);
+    }
+    
+    static public void createSequence(SQLStatementQueue targetQueue, String schema, String tableName, int cache) throws SQLException {
         
         targetQueue.append("CREATE SEQUENCE "); 
         targetQueue.append(DB.getSequenceName(DB.getFullTableName(schema, tableName)));
-        targetQueue.append(" INCREMENT 1 MINVALUE 1 MAXVALUE 9223372036854775807 START 1 CACHE 1;");
+        targetQueue.append(" INCREMENT 1 MINVALUE 1 MAXVALUE 9223372036854775807 START 1 CACHE ");
+        targetQueue.append(Integer.toString(cache));
+        targetQueue.append(";");
         targetQueue.forceExecute();
     }
     
@@ -116,6 +148,8 @@ public class DB {
         connProps.put("password", parameter.getPWD());
         
         connProps.put("tcpKeepAlive", "true");
+        // executeBatch() of inserts sends multi-row inserts (see PreparedBatch)
+        connProps.put("reWriteBatchedInserts", "true");
         
         Driver d = null;
 //        System.out.println("debugging: find jdbc driver by class name: org.postgresql.Driver");
@@ -152,7 +186,33 @@ public class DB {
                 PreparedStatement stmt = connection.prepareStatement(sql.toString());
                 stmt.execute();
             }
+            
+            // e.g. synchronous_commit=off
+            for(String setting : parameter.getSessionSettings()) {
+                int i = setting.indexOf('=');
+                if(i < 1) {
+                    System.err.println("ignore session setting, expected name=value: " + setting);
+                    continue;
+                }
+                String name = setting.substring(0, i).trim();
+                String value = setting.substring(i+1).trim();
+                if(!SETTING_NAME.matcher(name).matches()) {
+                    System.err.println("ignore session setting, not a parameter name: " + name);
+                    continue;
+                }
+                // SET accepted quoted values
+                if(value.length() > 1 && value.startsWith("'") && value.endsWith("'")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                // bound values, no sql from parameter file
+                PreparedStatement stmt = connection.prepareStatement("SELECT set_config(?, ?, false)");
+                stmt.setString(1, name);
+                stmt.setString(2, value);
+                stmt.execute();
+                stmt.close();
+            }
         
+            // explicit transactions: see CommitInterval
 //            connection.setAutoCommit(false);
             return connection;
         
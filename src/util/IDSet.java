@@ -0,0 +1,64 @@
+package util;
+
+/**
+ * Set of osm ids as a bitset. It is split into pages of 2^18 ids which
+ * are allocated when the first id of that range is added - regional
+ * sets of a planet file need some MByte, not one bit per possible id.
+ * Negative ids are never contained.
+ */
+public class IDSet {
+    private static final int PAGE_BITS = 18;
+    private static final int PAGE_WORDS = 1 << (PAGE_BITS - 6);
+
+    private long[][] pages = new long[16][];
+    private long size = 0;
+
+    /**
+     * @return false if id was already in set or is negative
+     */
+    public boolean add(long id) {
+        if(id < 0) return false;
+
+        long[] page = this.getPage(id, true);
+        int word = (int) (id >>> 6) & (PAGE_WORDS - 1);
+        long bit = 1L << id;
+        if((page[word] & bit) != 0) return false;
+
+        page[word] |= bit;
+        this.size++;
+        return true;
+    }
+
+    public boolean contains(long id) {
+        if(id < 0) return false;
+
+        long[] page = this.getPage(id, false);
+        if(page == null) return false;
+
+        return (page[(int) (id >>> 6) & (PAGE_WORDS - 1)] & (1L << id)) != 0;
+    }
+
+    public long size() {
+        return this.size;
+    }
+
+    private long[] getPage(long id, boolean create) {
+        long index = id >>> PAGE_BITS;
+        if(index >= this.pages.length) {
+            if(!create) return null;
+
+            long length = this.pages.length;
+            while(length <= index) length *= 2;
+            long[][] newPages = new long[(int) length][];
+            System.arraycopy(this.pages, 0, newPages, 0, this.pages.length);
+            this.pages = newPages;
+        }
+
+        long[] page = this.pages[(int) index];
+        if(page == null && create) {
+            page = new long[PAGE_WORDS];
+            this.pages[(int) index] = page;
+        }
+        return page;
+    }
+}
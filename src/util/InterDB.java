@@ -1,9 +1,17 @@
 package util;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  *
@@ -15,8 +23,15 @@ public class InterDB {
     public static final String RELATIONTABLE = "relations";
     public static final String WAYMEMBER = "waynodes";
     public static final String WAYTABLE = "ways";
+    public static final String DELETIONS = "deletions"; // staging table of osm change import
     public static final String STRING_DELIMITER = ",";
     
+    /**
+     * typed schema: coordinates are stored as integer in 1e-7 degree
+     * (osm precision), node_ids / member_ids as bigint[], tags as bytea (see TagCodec)
+     */
+    public static final int COORDINATE_SCALE = 10000000;
+    
     public static void dropTables(SQLStatementQueue sql, String targetSchema) throws SQLException {
         // drop
         DB.drop(sql, targetSchema, NODETABLE);
@@ -24,9 +39,35 @@ public class InterDB {
         DB.drop(sql, targetSchema, RELATIONTABLE);
         DB.drop(sql, targetSchema, WAYMEMBER);
         DB.drop(sql, targetSchema, WAYTABLE);
+        // written at end of import if there is one
+        sql.append("DROP TABLE IF EXISTS " + DB.getFullTableName(targetSchema, TagDictionary.TABLE) + ";");
+        sql.forceExecute();
     }
     
+    // ids of bulk loaded tables are taken from sequence in larger steps
+    private static final int BULK_LOAD_SEQUENCE_CACHE = 10000;
+
     public static void createTables(SQLStatementQueue sql, String schema) throws SQLException {
+        InterDB.createTables(sql, schema, false);
+    }
+
+    /**
+     * @param bulkLoad create unlogged tables without primary key, 
+     * finishBulkLoad() must be called after loading
+     */
+    public static void createTables(SQLStatementQueue sql, String schema, boolean bulkLoad) throws SQLException {
+        InterDB.createTables(sql, schema, bulkLoad, false);
+    }
+
+    /**
+     * @param typed coordinates as integer (see COORDINATE_SCALE) and
+     * member lists as bigint[] and tags as bytea instead of character varying
+     */
+    public static void createTables(SQLStatementQueue sql, String schema, boolean bulkLoad, boolean typed) throws SQLException {
+        String coordinateType = typed ? "integer" : "character varying";
+        String idListType = typed ? "bigint[]" : "character varying";
+        String tagsType = typed ? "bytea" : "character varying";
+        int sequenceCache = bulkLoad ? BULK_LOAD_SEQUENCE_CACHE : 1;
         try {
             InterDB.dropTables(sql, schema);
         } catch (SQLException e) {
@@ -43,18 +84,18 @@ public class InterDB {
 //            System.out.println("start tables creation for intermediate database");
             // NODETABLE
             // sequence
-            DB.createSequence(sql, schema, NODETABLE);
+            DB.createSequence(sql, schema, NODETABLE, sequenceCache);
             // table
-            sql.append(DB.getCreateTableBegin(schema, NODETABLE));
+            sql.append(InterDB.getCreateTableBegin(schema, NODETABLE, bulkLoad));
             // add table specifics
             sql.append(",");
             sql.append("osm_id bigint,");
             sql.append("tstamp date,");
             sql.append("classcode bigint,");
             sql.append("otherclasscodes character varying,");
-            sql.append("serializedTags character varying,");
-            sql.append("longitude character varying,");
-            sql.append("latitude character varying,");
+            sql.append("serializedTags " + tagsType + ",");
+            sql.append("longitude " + coordinateType + ",");
+            sql.append("latitude " + coordinateType + ",");
             sql.append("ohdm_geom_id bigint,");
             sql.append("ohdm_geom_type int,");
             sql.append("ohdm_object_id bigint,");
@@ -69,20 +110,20 @@ public class InterDB {
 
             // WAYTABLE
             // sequence
-            DB.createSequence(sql, schema, WAYTABLE);
+            DB.createSequence(sql, schema, WAYTABLE, sequenceCache);
             // table
-            sql.append(DB.getCreateTableBegin(schema, WAYTABLE));
+            sql.append(InterDB.getCreateTableBegin(schema, WAYTABLE, bulkLoad));
             // add table specifics
             sql.append(",");
             sql.append("osm_id bigint,");
             sql.append("tstamp date,");
             sql.append("classcode bigint,");
             sql.append("otherclasscodes character varying,");
-            sql.append("serializedTags character varying,");
+            sql.append("serializedTags " + tagsType + ",");
             sql.append("ohdm_geom_id bigint,");
             sql.append("ohdm_geom_type int,");
             sql.append("ohdm_object_id bigint,");
-            sql.append("node_ids character varying,");
+            sql.append("node_ids " + idListType + ",");
 //            sql.append("is_part boolean DEFAULT false,");
             /*
             sql.append("new boolean DEFAULT false,");
@@ -100,20 +141,20 @@ public class InterDB {
 
             // RELATIONTABLE
             // sequence
-            DB.createSequence(sql, schema, RELATIONTABLE);
+            DB.createSequence(sql, schema, RELATIONTABLE, sequenceCache);
             // table
-            sql.append(DB.getCreateTableBegin(schema, RELATIONTABLE));
+            sql.append(InterDB.getCreateTableBegin(schema, RELATIONTABLE, bulkLoad));
             // add table specifics
             sql.append(",");
             sql.append("osm_id bigint,");
             sql.append("tstamp date,");
             sql.append("classcode bigint,");
             sql.append("otherclasscodes character varying,");
-            sql.append("serializedTags character varying,");
+            sql.append("serializedTags " + tagsType + ",");
             sql.append("ohdm_geom_id bigint,");
             sql.append("ohdm_geom_type int,");
             sql.append("ohdm_object_id bigint,");
-            sql.append("member_ids character varying,");
+            sql.append("member_ids " + idListType + ",");
             /*
             sql.append("new boolean DEFAULT false,");
             sql.append("changed boolean DEFAULT false,");
@@ -130,9 +171,9 @@ public class InterDB {
 
             // WAYMEMBER
             // sequence
-            DB.createSequence(sql, schema, WAYMEMBER);
+            DB.createSequence(sql, schema, WAYMEMBER, sequenceCache);
             // table
-            sql.append(DB.getCreateTableBegin(schema, WAYMEMBER));
+            sql.append(InterDB.getCreateTableBegin(schema, WAYMEMBER, bulkLoad));
             // add table specifics
             sql.append(",");
             sql.append("way_id bigint, ");
@@ -142,9 +183,9 @@ public class InterDB {
 
             // RELATIONMEMBER
             // sequence
-            DB.createSequence(sql, schema, RELATIONMEMBER);
+            DB.createSequence(sql, schema, RELATIONMEMBER, sequenceCache);
             // table
-            sql.append(DB.getCreateTableBegin(schema, RELATIONMEMBER));
+            sql.append(InterDB.getCreateTableBegin(schema, RELATIONMEMBER, bulkLoad));
             // add table specifics
             sql.append(",");
             sql.append("relation_id bigint NOT NULL, ");
@@ -161,6 +202,181 @@ public class InterDB {
         }
     }
 
+    private static String getCreateTableBegin(String schema, String tableName, boolean bulkLoad) {
+        return bulkLoad ? DB.getCreateBulkLoadTableBegin(schema, tableName)
+                : DB.getCreateTableBegin(schema, tableName);
+    }
+
+    /**
+     * index name, table, columns - largest tables first so that
+     * they do not end up alone at the end
+     */
+    private static final String[][] INDEXES = {
+        {"waynodes_way_id", WAYMEMBER, "way_id"},
+        {"waynodes_node_id", WAYMEMBER, "node_id"},
+        {"relationmember_ids", RELATIONMEMBER, "relation_id, node_id, way_id, member_rel_id"},
+        {"relationmember_member_rel_id", RELATIONMEMBER, "member_rel_id"},
+        {"node_osm_id", NODETABLE, "osm_id"},
+        {"way_osm_id", WAYTABLE, "osm_id"},
+        {"relation_osm_id", RELATIONTABLE, "osm_id"}
+    };
+
+    // largest first
+    private static final String[] TABLES = {
+        WAYMEMBER, NODETABLE, RELATIONMEMBER, WAYTABLE, RELATIONTABLE
+    };
+
+    /**
+     * Post load stage after a copy import: builds indexes of intermediate
+     * tables on maxThreads connections concurrently and analyzes tables
+     * afterwards. A failed statement is reported, the others go ahead.
+     * @throws SQLException after all statements if one of them failed
+     */
+    public static void createIndexes(Parameter parameter) throws SQLException {
+        int threads = InterDB.getThreads(parameter);
+        String schema = parameter.getSchema();
+        long start = System.currentTimeMillis();
+        System.out.println("create " + INDEXES.length + " indexes with " + threads + " connections");
+
+        List<String> statements = new ArrayList<>();
+        for(String[] index : INDEXES) {
+            statements.add("CREATE INDEX " + index[0] + " ON "
+                    + DB.getFullTableName(schema, index[1]) + " (" + index[2] + ");");
+        }
+        InterDB.executeConcurrently(parameter, statements, threads);
+
+        statements.clear();
+        for(String table : TABLES) {
+            statements.add("ANALYZE " + DB.getFullTableName(schema, table) + ";");
+        }
+        InterDB.executeConcurrently(parameter, statements, threads);
+
+        System.out.println("indexes and analyze done after " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Switch tables created for bulk load to logged and add primary keys,
+     * tables are processed concurrently.
+     * @throws SQLException after all tables if one of them failed, e.g.
+     * with duplicate ids
+     */
+    public static void finishBulkLoad(Parameter parameter) throws SQLException {
+        int threads = InterDB.getThreads(parameter);
+        long start = System.currentTimeMillis();
+        System.out.println("bulk load: switch tables to logged and add primary keys");
+
+        List<String> statements = new ArrayList<>();
+        for(String table : TABLES) {
+            statements.add(DB.getFinishBulkLoad(parameter.getSchema(), table));
+        }
+        InterDB.executeConcurrently(parameter, statements, threads);
+
+        System.out.println("bulk load finished after " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private static int getThreads(Parameter parameter) {
+        try {
+            int threads = Integer.parseInt(parameter.getMaxThread().trim());
+            return threads > 0 ? threads : 1;
+        }
+        catch(NumberFormatException e) {
+            System.err.println("no integer value (run single threaded instead): " + parameter.getMaxThread());
+            return 1;
+        }
+    }
+
+    /**
+     * @throws SQLException when all statements are done - failures are
+     * suppressed exceptions of it
+     */
+    private static void executeConcurrently(Parameter parameter, List<String> statements, int threads)
+            throws SQLException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, statements.size()));
+        List<Future<?>> futures = new ArrayList<>();
+        for(String statement : statements) {
+            futures.add(executor.submit(() -> {
+                long start = System.currentTimeMillis();
+                try(Connection connection = DB.createConnection(parameter);
+                        Statement stmt = connection.createStatement()) {
+                    stmt.execute(statement);
+                    System.out.println((System.currentTimeMillis() - start) + " ms: " + statement);
+                }
+                catch(SQLException e) {
+                    Util.printExceptionMessage(e, null, "failed after " + (System.currentTimeMillis() - start) + " ms: " + statement);
+                    throw e;
+                }
+                return null;
+            }));
+        }
+        executor.shutdown();
+
+        List<Throwable> failures = new ArrayList<>();
+        for(Future<?> future : futures) {
+            try {
+                future.get();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                failures.add(e);
+                break;
+            }
+            catch(ExecutionException e) {
+                failures.add(e.getCause());
+            }
+        }
+
+        if(!failures.isEmpty()) {
+            SQLException e = new SQLException(failures.size() + " of " + statements.size() + " statements failed");
+            for(Throwable failure : failures) {
+                e.addSuppressed(failure);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return true if intermediate tables in schema are typed (see createTables)
+     */
+    public static boolean isTypedSchema(Connection connection, String schema) throws SQLException {
+        try(PreparedStatement stmt = connection.prepareStatement(
+                "SELECT data_type FROM information_schema.columns WHERE table_schema = ? AND table_name = ? AND column_name = 'longitude'")) {
+            stmt.setString(1, schema);
+            stmt.setString(2, NODETABLE);
+            try(ResultSet result = stmt.executeQuery()) {
+                return result.next() && result.getString(1).equalsIgnoreCase("integer");
+            }
+        }
+    }
+
+    /**
+     * @return coordinate of typed schema as decimal string, no trailing zeros
+     */
+    public static String coordinateToString(int value) {
+        StringBuilder sb = new StringBuilder(12);
+        long v = value;
+        if(v < 0) {
+            sb.append('-');
+            v = -v;
+        }
+        sb.append(v / COORDINATE_SCALE);
+        int fraction = (int) (v % COORDINATE_SCALE);
+        if(fraction > 0) {
+            sb.append('.');
+            int digits = 7;
+            while(fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            String f = Integer.toString(fraction);
+            for(int i = f.length(); i < digits; i++) {
+                sb.append('0');
+            }
+            sb.append(f);
+        }
+        return sb.toString();
+    }
+
     public static List<String> getIDList(String commaSeparatedStrings) {
         List<String> l = new ArrayList<>();
         if (commaSeparatedStrings == null) {
@@ -138,7 +138,8 @@ public class ManagedFileSQLStatementQueue extends FileSQLStatementQueue {
     private final int sleepTime = 10*100; // 1 seconds
     @Override
     public void join() {
-        while(this.psqlProcessses.isEmpty()) {
+        this.clearPSQLProcessList();
+        while(!this.psqlProcessses.isEmpty()) {
             try {
                 Thread.sleep(this.sleepTime);
                 this.clearPSQLProcessList();
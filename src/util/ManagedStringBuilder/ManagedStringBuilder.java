@@ -7,7 +7,7 @@ package util.ManagedStringBuilder;
  *
  * @author FlorianSauer
  */
-public class ManagedStringBuilder {
+public class ManagedStringBuilder implements CharSequence {
     private char NULLCHAR;
     private int count;
     private char[] value;
@@ -15,6 +15,7 @@ public class ManagedStringBuilder {
         this.count = 0;
         this.value = initArray;
     }
+    @Override
     public int length() {
         return this.count;
     }
@@ -39,12 +40,47 @@ public class ManagedStringBuilder {
 //        System.out.println(this.toString());
         return this;
     }
+    public ManagedStringBuilder append(char c){
+        if (this.count + 1 >= this.value.length){
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        this.value[this.count++] = c;
+        return this;
+    }
     public ManagedStringBuilder append(int i) {
         if (i == Integer.MIN_VALUE) {
             append("-2147483648");
             return this;
         }
-        return this.append(""+i);
+        if (i < 0) {
+            append('-');
+            i = -i;
+        }
+        // write digits without creating a string
+        int digits = 1;
+        for (int x = i; x >= 10; x /= 10) {
+            digits++;
+        }
+        if (digits + this.count >= this.value.length){
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        for (int pos = this.count + digits - 1; pos >= this.count; pos--) {
+            this.value[pos] = (char) ('0' + i % 10);
+            i /= 10;
+        }
+        this.count += digits;
+        return this;
+    }
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= this.count) {
+            throw new StringIndexOutOfBoundsException(index);
+        }
+        return this.value[index];
+    }
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new String(this.value, start, end - start);
     }
     @Override
     public String toString() {
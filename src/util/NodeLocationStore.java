@@ -0,0 +1,180 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Coordinates of all nodes in a memory mapped file, indexed by osm id.
+ * It is a dense array: slot of node n is at byte 8 * n. File systems
+ * keep unused ranges as holes, thus file size on disk is about
+ * 8 byte times number of nodes. Data are outside java heap and persist
+ * between runs: OSMImport writes it, the extractor reads coordinates
+ * of way nodes from it instead of joining waynodes and nodes.
+ *
+ * A slot keeps longitude and latitude in 1e-7 degree (see
+ * InterDB.COORDINATE_SCALE) and a flag. Extractor sets the flag when a
+ * node gets an ohdm object - only those nodes have to be read from
+ * database when a way is built. Slot 0 means unknown node.
+ */
+public class NodeLocationStore {
+    private static final int SLOT_SIZE = 8;
+    private static final int SEGMENT_BITS = 27; // 2^27 slots = 1 GByte per mapping
+    private static final long SEGMENT_SLOTS = 1L << SEGMENT_BITS;
+    private static final long SEGMENT_BYTES = SEGMENT_SLOTS * SLOT_SIZE;
+
+    private static final long LONGITUDE_OFFSET = 1800000000L;
+    private static final long LATITUDE_OFFSET = 900000001L; // slot never becomes 0
+    private static final long IDENTITY_FLAG = 1L << 31;
+    private static final long LATITUDE_MASK = IDENTITY_FLAG - 1;
+
+    private final File file;
+    private final RandomAccessFile raFile;
+    private final FileChannel channel;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    private NodeLocationStore(File file, boolean truncate) throws IOException {
+        this.file = file;
+        this.raFile = new RandomAccessFile(file, "rw");
+        if(truncate) {
+            this.raFile.setLength(0);
+        }
+        this.channel = this.raFile.getChannel();
+    }
+
+    /**
+     * create a new empty store, an existing file is truncated
+     */
+    public static NodeLocationStore create(File file) throws IOException {
+        return new NodeLocationStore(file, true);
+    }
+
+    /**
+     * open store of a previous import
+     */
+    public static NodeLocationStore open(File file) throws IOException {
+        if(!file.exists()) {
+            throw new IOException("node location store does not exist: " + file.getAbsolutePath());
+        }
+        return new NodeLocationStore(file, false);
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * @param longitude in 1e-7 degree
+     * @param latitude in 1e-7 degree
+     * @return false if id cannot be stored (negative)
+     */
+    public boolean put(long osmID, int longitude, int latitude) throws IOException {
+        if(osmID < 0) return false;
+
+        long slot = ((longitude + LONGITUDE_OFFSET) << 32) | (latitude + LATITUDE_OFFSET);
+        MappedByteBuffer segment = this.getSegment(osmID, true);
+        int position = this.position(osmID);
+        // moved node keeps its ohdm object
+        if(NodeLocationStore.hasIdentity(segment.getLong(position))) {
+            slot |= IDENTITY_FLAG;
+        }
+        segment.putLong(position, slot);
+        return true;
+    }
+
+    /**
+     * @return slot of that node, 0 if unknown
+     */
+    public long get(long osmID) throws IOException {
+        if(osmID < 0) return 0;
+
+        MappedByteBuffer segment = this.getSegment(osmID, false);
+        if(segment == null) return 0;
+
+        return segment.getLong(this.position(osmID));
+    }
+
+    /**
+     * remember that node has an ohdm object
+     */
+    public void markIdentity(long osmID) throws IOException {
+        long slot = this.get(osmID);
+        if(slot == 0 || NodeLocationStore.hasIdentity(slot)) return;
+
+        this.getSegment(osmID, true).putLong(this.position(osmID), slot | IDENTITY_FLAG);
+    }
+
+    public static int getLongitude(long slot) {
+        return (int) ((slot >>> 32) - LONGITUDE_OFFSET);
+    }
+
+    public static int getLatitude(long slot) {
+        return (int) ((slot & LATITUDE_MASK) - LATITUDE_OFFSET);
+    }
+
+    public static boolean hasIdentity(long slot) {
+        return (slot & IDENTITY_FLAG) != 0;
+    }
+
+    private int position(long osmID) {
+        return (int) ((osmID & (SEGMENT_SLOTS - 1)) * SLOT_SIZE);
+    }
+
+    /**
+     * @param create map segment even if it is behind end of file
+     * @return null if not create and segment is not in file
+     */
+    private MappedByteBuffer getSegment(long osmID, boolean create) throws IOException {
+        int index = (int) (osmID >>> SEGMENT_BITS);
+
+        MappedByteBuffer[] s = this.segments;
+        if(index < s.length && s[index] != null) {
+            return s[index];
+        }
+
+        synchronized(this) {
+            s = this.segments;
+            if(index < s.length && s[index] != null) {
+                return s[index];
+            }
+
+            if(!create && index * SEGMENT_BYTES >= this.channel.size()) {
+                return null;
+            }
+
+            if(index >= s.length) {
+                MappedByteBuffer[] newSegments = new MappedByteBuffer[index + 1];
+                System.arraycopy(s, 0, newSegments, 0, s.length);
+                s = newSegments;
+            }
+            // file grows to end of segment - unwritten parts are holes
+            s[index] = this.channel.map(FileChannel.MapMode.READ_WRITE, index * SEGMENT_BYTES, SEGMENT_BYTES);
+            this.segments = s;
+
+            return s[index];
+        }
+    }
+
+    /**
+     * write mapped segments to disk, store stays open
+     */
+    public synchronized void force() {
+        for(MappedByteBuffer segment : this.segments) {
+            if(segment != null) {
+                segment.force();
+            }
+        }
+    }
+
+    /**
+     * write mapped segments to disk
+     */
+    public synchronized void close() throws IOException {
+        this.force();
+        this.segments = new MappedByteBuffer[0];
+        this.channel.close();
+        this.raFile.close();
+    }
+}
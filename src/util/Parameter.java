@@ -14,7 +14,7 @@ import java.util.logging.Logger;
  * @author thsc
  */
 //todo add parameter description
-public class Parameter {
+public class Parameter implements Cloneable {
     private String servername;
     private String portnumber;
     private String username;
@@ -48,17 +48,44 @@ public class Parameter {
     private int logMessageInterval = 5;
     private int SerTagsSize = 200000;
     private String osmfilecreationdatestring;
+    private int parserThreads = Runtime.getRuntime().availableProcessors();
+    private boolean useXMLScanner = false; // osm2inter.OSMXMLScanner instead of SAX for copy import
+    private boolean parallelXMLImport = false; // split xml file in parserThreads byte ranges
+    private int copyQueueSize = 0; // buffers queued per copy writer thread, 0: write on parser thread
+    private int copyFlushSize = 4; // MByte encoded rows are collected before they go to COPY
+    private boolean bulkLoad = false; // copy into unlogged tables, keys are added after import
+    private boolean typedSchema = false; // integer coordinates and bigint[] id lists in intermediate tables
+    private String nodeLocationStore = null; // file with node coordinates by osm id (copy import writes, extractor reads)
+    private boolean tagDictionary = false; // tag keys and frequent values as codes, needs typedSchema
+    private String filterPolygon = null; // osmosis .poly file - import only elements of that area
+    private String filterBBox = null; // minlon,minlat,maxlon,maxlat - used if there is no filterPolygon
+    private String filterTags = null; // key or key=value, comma separated - import only matching elements
+    private int checkpointInterval = 0; // minutes between checkpoints of copy import in recordFileName, 0: none
+    private int batchSize = 0; // rows per prepared statement batch of insert import, 0: sql statement strings
+    private boolean spoolSQLFiles = false; // usePSQL: sql files fed to psql processes instead of jdbc connection pool
+    private int fetchSize = 10000; // rows per round trip of streaming selects (exports)
+    private int commitInterval = 0; // statements per transaction of inter2ohdm writes, 0: autocommit
+    private int commitIntervalMillis = 0; // milliseconds per transaction of inter2ohdm writes, 0: autocommit
+    private boolean commitAutosave = false; // savepoint per statement of those transactions - a failure only rolls back itself
+    private String sessionSettings = null; // name=value|name=value - SET on each connection, e.g. synchronous_commit=off
 
     public String getConnectionType() {
         return connectionType;
     }
 
+    /**
+     * @return true if copy connectors use COPY ... (FORMAT binary)
+     */
+    public boolean useBinaryCopy() {
+        return "binarycopy".equalsIgnoreCase(this.connectionType);
+    }
+
     public String getDelimiter() {
         return delimiter;
     }
 
     // added parameters for 'COPY' support
-    private String connectionType = "insert"; // use 'copy' to init connectors as Copy Connectors
+    private String connectionType = "insert"; // use 'copy' to init connectors as Copy Connectors, 'binarycopy' for COPY in binary format
     private String delimiter = "|";
     private String[] nodesColumnNames;
     private String[] relationmemberColumnNames;
@@ -166,6 +193,26 @@ public class Parameter {
                             case "waysColumnNames": this.waysColumnNames = value.split("\\|"); break;
                             case "serTagsSize": this.SerTagsSize = Integer.parseInt(value); break;
                             case "osmfilecreationdate": this.checkDateFormat(value); break;
+                            case "parserThreads": this.parserThreads = Integer.parseInt(value); break;
+                            case "useXMLScanner": this.useXMLScanner = this.getTrueOrFalse(value); break;
+                            case "parallelXMLImport": this.parallelXMLImport = this.getTrueOrFalse(value); break;
+                            case "copyQueueSize": this.copyQueueSize = Integer.parseInt(value); break;
+                            case "copyFlushSize": this.copyFlushSize = Integer.parseInt(value); break;
+                            case "bulkLoad": this.bulkLoad = this.getTrueOrFalse(value); break;
+                            case "typedSchema": this.typedSchema = this.getTrueOrFalse(value); break;
+                            case "nodeLocationStore": this.nodeLocationStore = value; break;
+                            case "tagDictionary": this.tagDictionary = this.getTrueOrFalse(value); break;
+                            case "filterPolygon": this.filterPolygon = value; break;
+                            case "filterBBox": this.filterBBox = value; break;
+                            case "filterTags": this.filterTags = value; break;
+                            case "checkpointInterval": this.checkpointInterval = Integer.parseInt(value); break;
+                            case "batchSize": this.batchSize = Integer.parseInt(value); break;
+                            case "spoolSQLFiles": this.spoolSQLFiles = this.getTrueOrFalse(value); break;
+                            case "fetchSize": this.fetchSize = Integer.parseInt(value); break;
+                            case "commitInterval": this.commitInterval = Integer.parseInt(value); break;
+                            case "commitIntervalMillis": this.commitIntervalMillis = Integer.parseInt(value); break;
+                            case "commitAutosave": this.commitAutosave = this.getTrueOrFalse(value); break;
+                            case "sessionSettings": this.sessionSettings = value; break;
                         }
                     }
                 }
@@ -186,6 +233,19 @@ public class Parameter {
     public String getPWD() { return this.pwd ;}
     public String getdbName() { return this.dbname ;}
     public String getSchema() { return this.schema ;}
+
+    /**
+     * @return same settings for another schema
+     */
+    public Parameter forSchema(String schema) {
+        try {
+            Parameter parameter = (Parameter) this.clone();
+            parameter.schema = schema;
+            return parameter;
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
     public String getMaxThread() { return this.maxThreads ;}
     public String getRecordFileName() { return this.recordFileName; }
     public String getReadStepLen() { return this.readStepLen; }
@@ -242,6 +302,103 @@ public class Parameter {
     
     public int getSerTagsSize() { return this.SerTagsSize;  }
 
+    public int getParserThreads() { return this.parserThreads;  }
+
+    public boolean useXMLScanner() { return this.useXMLScanner;  }
+
+    public boolean parallelXMLImport() { return this.parallelXMLImport;  }
+
+    public int getCopyQueueSize() { return this.copyQueueSize;  }
+
+    public boolean bulkLoad() { return this.bulkLoad;  }
+
+    public boolean typedSchema() { return this.typedSchema;  }
+
+    public boolean tagDictionary() { return this.tagDictionary;  }
+
+    /**
+     * @return minutes between checkpoints of copy import, 0: no checkpoints
+     */
+    public int getCheckpointInterval() { return this.checkpointInterval;  }
+
+    /**
+     * @return rows per batch of prepared inserts (connectionType insert), 0: no batches
+     */
+    public int getBatchSize() { return this.batchSize;  }
+
+    /**
+     * @return true if usePSQL writes sql files and runs psql (util.ManagedFileSQLStatementQueue)
+     * instead of executing them on a jdbc connection pool (util.PooledSQLStatementQueue)
+     */
+    public boolean spoolSQLFiles() { return this.spoolSQLFiles;  }
+
+    /**
+     * @return rows per round trip of SQLStatementQueue.executeStreaming
+     */
+    public int getFetchSize() { return this.fetchSize;  }
+
+    /**
+     * @return statements per transaction, 0: no limit (see util.CommitInterval)
+     */
+    public int getCommitInterval() { return this.commitInterval;  }
+
+    /**
+     * @return milliseconds per transaction, 0: no limit (see util.CommitInterval)
+     */
+    public int getCommitIntervalMillis() { return this.commitIntervalMillis;  }
+
+    /**
+     * @return true if a failed statement of a commit interval only rolls
+     * back itself (see util.CommitInterval)
+     */
+    public boolean commitAutosave() { return this.commitAutosave;  }
+
+    /**
+     * @return name=value pairs that are set on each connection, empty if there are none
+     */
+    public String[] getSessionSettings() {
+        if(this.sessionSettings == null || this.sessionSettings.isEmpty()) return new String[0];
+
+        return this.sessionSettings.split("\\|");
+    }
+
+    /**
+     * @return file of util.NodeLocationStore or null if not used
+     */
+    public File getNodeLocationStoreFile() {
+        if(this.nodeLocationStore == null || this.nodeLocationStore.isEmpty()) return null;
+        return new File(this.nodeLocationStore);
+    }
+
+    /**
+     * @return polygon file of a regional import or null
+     */
+    public File getFilterPolygonFile() {
+        if(this.filterPolygon == null || this.filterPolygon.isEmpty()) return null;
+        return new File(this.filterPolygon);
+    }
+
+    /**
+     * @return bounding box of a regional import or null
+     */
+    public String getFilterBBox() {
+        if(this.filterBBox == null || this.filterBBox.isEmpty()) return null;
+        return this.filterBBox;
+    }
+
+    /**
+     * @return tag filter of import or null
+     */
+    public String getFilterTags() {
+        if(this.filterTags == null || this.filterTags.isEmpty()) return null;
+        return this.filterTags;
+    }
+
+    /**
+     * @return copy flush size in byte, at least 1 MByte
+     */
+    public int getCopyFlushSize() { return Math.max(1, this.copyFlushSize) * 1024 * 1024;  }
+
     public PrintStream getOutStream() throws FileNotFoundException {
         if(this.outStream == null) {
             this.outStream = this.getOutStream(this.outFile);
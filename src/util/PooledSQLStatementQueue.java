@@ -0,0 +1,163 @@
+package util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replacement of ManagedFileSQLStatementQueue without sql files and psql
+ * processes. Statements are collected until maxSQLFileSize MByte are
+ * reached and then executed on one of maxPSQLProcesses jdbc connections
+ * while the next statements are collected. A slot is released when its
+ * statements are executed - appending waits only if all connections are
+ * busy.
+ *
+ * Unlike psql, a failing statement is not skipped alone: a block is sent
+ * as one multi-statement string, the driver executes it in one implicit
+ * transaction and the whole block is rolled back. A failed block is fatal
+ * - its error is thrown by next couldExecute, forceExecute or close and
+ * no further blocks are executed.
+ */
+public class PooledSQLStatementQueue extends SQLStatementQueue {
+    private final String name;
+    private final long maxBufferLength;
+    private final int poolSize;
+
+    private final List<Connection> connections = new ArrayList<>();
+    private final BlockingQueue<Connection> freeConnections;
+    private final ExecutorService executor;
+    private final Semaphore slots;
+
+    private final AtomicInteger executed = new AtomicInteger();
+    // first failed block, others are suppressed exceptions of it
+    private SQLException failure = null;
+
+    public PooledSQLStatementQueue(String name, Parameter parameter) throws SQLException {
+        this.name = name;
+        this.maxBufferLength = Math.max(1, parameter.getMaxSQLFileSize()) * 1024L * 1024L;
+        this.poolSize = Math.max(1, parameter.getMaxPSQLProcesses());
+
+        this.freeConnections = new ArrayBlockingQueue<>(this.poolSize);
+        for(int i = 0; i < this.poolSize; i++) {
+            Connection connection = DB.createConnection(parameter);
+            this.connections.add(connection);
+            this.freeConnections.add(connection);
+        }
+
+        this.slots = new Semaphore(this.poolSize);
+        this.executor = Executors.newFixedThreadPool(this.poolSize, r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * hand collected statements over to a free connection
+     */
+    private void submit() throws SQLException {
+        this.throwFailure();
+        if(this.sqlQueue == null || this.sqlQueue.length() < 1) return;
+
+        String sql = this.sqlQueue.toString();
+        this.resetStatement();
+
+        // wait until a connection is done
+        this.slots.acquireUninterruptibly();
+        try {
+            this.executor.execute(() -> this.execute(sql));
+        }
+        catch(RuntimeException e) {
+            this.slots.release();
+            throw e;
+        }
+    }
+
+    private void execute(String sql) {
+        try {
+            Connection connection = this.freeConnections.poll();
+            try {
+                SQLExecute.doExec(connection, sql, null);
+                this.executed.incrementAndGet();
+            }
+            catch(SQLException e) {
+                synchronized(this) {
+                    if(this.failure == null) {
+                        this.failure = e;
+                    } else {
+                        this.failure.addSuppressed(e);
+                    }
+                }
+            }
+            finally {
+                this.freeConnections.add(connection);
+            }
+        }
+        finally {
+            this.slots.release();
+        }
+    }
+
+    /**
+     * @throws SQLException if a block failed - rows of that block are missing
+     */
+    private synchronized void throwFailure() throws SQLException {
+        if(this.failure != null) {
+            throw new SQLException(this.name + ": statement block failed and was rolled back, "
+                    + this.executed.get() + " blocks executed before", this.failure);
+        }
+    }
+
+    @Override
+    public void couldExecute() throws SQLException {
+        if(this.sqlQueue != null && this.sqlQueue.length() > this.maxBufferLength) {
+            this.submit();
+        }
+    }
+
+    /**
+     * statements are executed in parallel - use join() to wait for them
+     */
+    @Override
+    public void forceExecute() throws SQLException {
+        this.submit();
+    }
+
+    @Override
+    public void forceExecute(boolean parallel, String recordEntry) throws SQLException {
+        this.submit();
+    }
+
+    /**
+     * wait until all submitted statements are executed
+     */
+    @Override
+    public void join() {
+        this.slots.acquireUninterruptibly(this.poolSize);
+        this.slots.release(this.poolSize);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            this.submit();
+        }
+        finally {
+            this.join();
+            this.executor.shutdown();
+
+            for(Connection connection : this.connections) {
+                connection.close();
+            }
+            this.connections.clear();
+        }
+        this.throwFailure();
+    }
+}
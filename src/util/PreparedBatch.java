@@ -0,0 +1,78 @@
+package util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Prepared insert statement whose rows are sent in batches. Connections
+ * of DB.createConnection rewrite a batch of inserts into multi-row inserts
+ * (reWriteBatchedInserts) - server parses the statement once per batch,
+ * not once per row. Use it like this:
+ * <pre>
+ * batch.statement().setLong(1, id);
+ * batch.statement().setString(2, name);
+ * batch.addRow();
+ * </pre>
+ */
+public class PreparedBatch implements AutoCloseable {
+    private final PreparedStatement statement;
+    private final int batchSize;
+    private int rows = 0;
+    private long writtenRows = 0;
+    private CommitInterval commitInterval = null;
+
+    public PreparedBatch(Connection connection, String sql, int batchSize) throws SQLException {
+        this.statement = connection.prepareStatement(sql);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * rows of each executed batch count as statements of that interval
+     */
+    public void setCommitInterval(CommitInterval commitInterval) {
+        this.commitInterval = commitInterval;
+    }
+
+    /**
+     * @return statement to set parameters of next row
+     */
+    public PreparedStatement statement() {
+        return this.statement;
+    }
+
+    /**
+     * row parameters are set - batch is executed if it is full
+     */
+    public void addRow() throws SQLException {
+        this.statement.addBatch();
+        if(++this.rows >= this.batchSize) {
+            this.flush();
+        }
+    }
+
+    public void flush() throws SQLException {
+        if(this.rows == 0) return;
+
+        this.statement.executeBatch();
+        if(this.commitInterval != null) {
+            this.commitInterval.executed(this.rows);
+        }
+        this.writtenRows += this.rows;
+        this.rows = 0;
+    }
+
+    public long getWrittenRows() {
+        return this.writtenRows;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            this.flush();
+        }
+        finally {
+            this.statement.close();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+
+import org.postgresql.PGStatement;
+
+/**
+ * Prepared statements of one connection, cached by their sql text. They
+ * are prepared on server with first execution - further executions only
+ * bind parameters, server doesn't parse and plan them again. Use it like
+ * this:
+ * <pre>
+ * PreparedStatement stmt = cache.get("SELECT id FROM t WHERE name = ?");
+ * stmt.setString(1, name);
+ * </pre>
+ * Inserts without result can be collected in batches, see getBatch.
+ */
+public class PreparedStatementCache implements AutoCloseable {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final Connection connection;
+    private final int batchSize;
+    private final HashMap<String, PreparedStatement> statements = new HashMap<>();
+    private final HashMap<String, PreparedBatch> batches = new HashMap<>();
+    private CommitInterval commitInterval = null;
+
+    public PreparedStatementCache(Connection connection) {
+        this(connection, DEFAULT_BATCH_SIZE);
+    }
+
+    public PreparedStatementCache(Connection connection, int batchSize) {
+        this.connection = connection;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * rows of batches count as statements of that interval - statements of
+     * get are counted by caller
+     */
+    public void setCommitInterval(CommitInterval commitInterval) {
+        this.commitInterval = commitInterval;
+        for(PreparedBatch batch : this.batches.values()) {
+            batch.setCommitInterval(commitInterval);
+        }
+    }
+
+    public PreparedStatement get(String sql) throws SQLException {
+        PreparedStatement stmt = this.statements.get(sql);
+        if(stmt == null) {
+            stmt = this.connection.prepareStatement(sql);
+            if(stmt.isWrapperFor(PGStatement.class)) {
+                // default is server side preparation after 5 executions
+                stmt.unwrap(PGStatement.class).setPrepareThreshold(1);
+            }
+            this.statements.put(sql, stmt);
+        }
+
+        return stmt;
+    }
+
+    /**
+     * @return batch of that statement - rows are sent with batchSize rows
+     * or with flush
+     */
+    public PreparedBatch getBatch(String sql) throws SQLException {
+        PreparedBatch batch = this.batches.get(sql);
+        if(batch == null) {
+            batch = new PreparedBatch(this.connection, sql, this.batchSize);
+            batch.setCommitInterval(this.commitInterval);
+            this.batches.put(sql, batch);
+        }
+
+        return batch;
+    }
+
+    /**
+     * send rows of all batches
+     */
+    public void flush() throws SQLException {
+        for(PreparedBatch batch : this.batches.values()) {
+            batch.flush();
+        }
+    }
+
+    /**
+     * flushes batches and closes all statements - connection stays open
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            for(PreparedBatch batch : this.batches.values()) {
+                batch.close();
+            }
+        }
+        finally {
+            for(PreparedStatement stmt : this.statements.values()) {
+                stmt.close();
+            }
+            this.batches.clear();
+            this.statements.clear();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package util;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded ring buffer between one producer and one consumer thread.
+ * put() blocks while buffer is full which slows down the producer
+ * to the speed of the consumer (backpressure). Depth and the time
+ * producer and consumer had to wait are recorded.
+ */
+public class RingBuffer<T> {
+    private final Object[] items;
+    private int head = 0; // next take
+    private int tail = 0; // next put
+    private int count = 0;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = this.lock.newCondition();
+    private final Condition notFull = this.lock.newCondition();
+
+    private boolean closed = false;
+
+    // metrics
+    private int maxDepth = 0;
+    private long fullWaits = 0;
+    private long fullWaitNanos = 0;
+    private long emptyWaits = 0;
+    private long emptyWaitNanos = 0;
+
+    public RingBuffer(int capacity) {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("ring buffer capacity must be positive: " + capacity);
+        }
+        this.items = new Object[capacity];
+    }
+
+    /**
+     * Add item, wait if buffer is full.
+     * @throws IllegalStateException if buffer is already closed
+     */
+    public void put(T item) throws InterruptedException {
+        this.lock.lock();
+        try {
+            if(this.count == this.items.length && !this.closed) {
+                this.fullWaits++;
+                long start = System.nanoTime();
+                while(this.count == this.items.length && !this.closed) {
+                    this.notFull.await();
+                }
+                this.fullWaitNanos += System.nanoTime() - start;
+            }
+
+            if(this.closed) {
+                throw new IllegalStateException("ring buffer is closed");
+            }
+
+            this.items[this.tail] = item;
+            this.tail = (this.tail + 1) % this.items.length;
+            this.count++;
+            if(this.count > this.maxDepth) this.maxDepth = this.count;
+
+            this.notEmpty.signal();
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Move up to max items into target, wait until at least one is available.
+     * @return number of items, 0 if buffer is closed and empty
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(List<T> target, int max) throws InterruptedException {
+        this.lock.lock();
+        try {
+            if(this.count == 0 && !this.closed) {
+                this.emptyWaits++;
+                long start = System.nanoTime();
+                while(this.count == 0 && !this.closed) {
+                    this.notEmpty.await();
+                }
+                this.emptyWaitNanos += System.nanoTime() - start;
+            }
+
+            int n = Math.min(this.count, max);
+            for(int i = 0; i < n; i++) {
+                target.add((T) this.items[this.head]);
+                this.items[this.head] = null;
+                this.head = (this.head + 1) % this.items.length;
+            }
+            this.count -= n;
+
+            if(n > 0) this.notFull.signal();
+            return n;
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * No more puts. Consumer gets remaining items, producers waiting
+     * on a full buffer are released with an exception.
+     */
+    public void close() {
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.notEmpty.signalAll();
+            this.notFull.signalAll();
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    public int depth() {
+        this.lock.lock();
+        try {
+            return this.count;
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    public int capacity() {
+        return this.items.length;
+    }
+
+    public int getMaxDepth() {
+        this.lock.lock();
+        try {
+            return this.maxDepth;
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return how often producer found buffer full
+     */
+    public long getFullWaits() {
+        this.lock.lock();
+        try {
+            return this.fullWaits;
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    public long getFullWaitMillis() {
+        this.lock.lock();
+        try {
+            return TimeUnit.NANOSECONDS.toMillis(this.fullWaitNanos);
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return how often consumer found buffer empty
+     */
+    public long getEmptyWaits() {
+        this.lock.lock();
+        try {
+            return this.emptyWaits;
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    public long getEmptyWaitMillis() {
+        this.lock.lock();
+        try {
+            return TimeUnit.NANOSECONDS.toMillis(this.emptyWaitNanos);
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        this.lock.lock();
+        try {
+            return "depth " + this.count + "/" + this.items.length
+                    + " (max " + this.maxDepth + "), producer waited "
+                    + this.fullWaits + " times for "
+                    + TimeUnit.NANOSECONDS.toMillis(this.fullWaitNanos) + " ms";
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Forward only result of SQLStatementQueue.executeStreaming. Postgres
+ * driver fetches fetchSize rows per round trip instead of the whole result
+ * - that needs a transaction, autocommit is switched off until cursor is
+ * closed. Cursor closes itself after last row, use it like this:
+ * <pre>
+ * try(SQLCursor cursor = sql.executeStreaming(fetchSize)) {
+ *     ResultSet row = cursor.getResultSet();
+ *     while(cursor.next()) {
+ *         row.getString(1);
+ *     }
+ * }
+ * </pre>
+ */
+public class SQLCursor implements AutoCloseable {
+    private final Connection connection;
+    private final boolean autoCommit;
+    private final PreparedStatement statement;
+    private final ResultSet resultSet;
+    private boolean closed = false;
+
+    SQLCursor(Connection connection, String sql, int fetchSize) throws SQLException {
+        this.connection = connection;
+        this.autoCommit = connection.getAutoCommit();
+
+        connection.setAutoCommit(false);
+        PreparedStatement stmt = null;
+        try {
+            stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(fetchSize);
+            this.resultSet = stmt.executeQuery();
+            this.statement = stmt;
+        }
+        catch(SQLException e) {
+            if(stmt != null) stmt.close();
+            this.endTransaction();
+            throw e;
+        }
+    }
+
+    /**
+     * @return false if there is no further row - cursor is closed then
+     */
+    public boolean next() throws SQLException {
+        if(this.closed) return false;
+
+        if(this.resultSet.next()) return true;
+
+        this.close();
+        return false;
+    }
+
+    /**
+     * @return result set positioned at current row
+     */
+    public ResultSet getResultSet() {
+        return this.resultSet;
+    }
+
+    private void endTransaction() throws SQLException {
+        // nested cursors keep transaction of outer one
+        if(this.autoCommit) {
+            this.connection.setAutoCommit(true); // commits
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if(this.closed) return;
+        this.closed = true;
+
+        try {
+            this.resultSet.close();
+            this.statement.close();
+        }
+        finally {
+            this.endTransaction();
+        }
+    }
+}
@@ -4,25 +4,29 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.concurrent.Callable;
 
 /**
+ * Parallel execution of sql statements of a SQLStatementQueue on one of
+ * its worker threads. Connection is taken from queue when task starts.
  *
  * @author thsc
  */
-class SQLExecute extends Thread {
-    private final Connection connection;
+class SQLExecute implements Callable<Void> {
     private String sqlStatement; 
     private String recordEntry;
     private final SQLStatementQueue recordKeeper;
 
-    SQLExecute(Connection connection, String sqlStatement, String recordEntry, SQLStatementQueue recordKeeper) {
-        this.connection = connection;
+    SQLExecute(String sqlStatement, String recordEntry, SQLStatementQueue recordKeeper) {
         this.sqlStatement = sqlStatement;
         this.recordEntry = recordEntry;
         this.recordKeeper = recordKeeper;
     }
     
-    static void doExec(Connection connection, String sqlStatement) throws SQLException {
+    /**
+     * @param commitInterval counts statements of sqlStatement, null: none
+     */
+    static void doExec(Connection connection, String sqlStatement, CommitInterval commitInterval) throws SQLException {
         if(sqlStatement == null) return;
 
         SQLException e = null;
@@ -42,6 +46,9 @@ class SQLExecute extends Thread {
             stmt = connection.prepareStatement(sqlStatement);
             stmt.execute();
             stmt.close();
+            if(commitInterval != null) {
+                commitInterval.executed(CommitInterval.countStatements(sqlStatement));
+            }
         } catch (SQLException ex) {
             e = ex;
         }
@@ -54,35 +61,25 @@ class SQLExecute extends Thread {
         }
     }
     
-    private boolean done = false;
-    boolean isDone() {
-        return this.done;
-    }
-    
     @Override
-    public void run() {
-        // do exec
-//        System.out.println("exec threat issues sql statement " + this.recordEntry);
+    public Void call() throws SQLException {
+        Connection connection = this.recordKeeper.getFreeConnection();
         try {
-            SQLExecute.doExec(connection, sqlStatement);
+            SQLExecute.doExec(connection, sqlStatement, this.recordKeeper.getCommitInterval(connection));
 
             // ok, statement executed
             this.recordKeeper.writeLog(this.recordEntry);
-            this.recordKeeper.done(this);
-//            System.out.print(this.recordEntry + ", ");
-//            System.out.println("exec threat successfully issued sql statement: " + this.recordEntry);
         }
         catch(SQLException e) {
             System.err.println("sql error: (error / statement): \n" + e.getMessage() + "\n" + this.sqlStatement);
+            throw e;
         } catch (IOException ex) {
             System.err.println("cannot write record entry: " + this.recordEntry);
         } 
         finally {
-            this.done = true; // in any case.. we are ready here
+            this.recordKeeper.done(connection);
         }
-    }
-
-    Connection getConnection() {
-        return this.connection;
+        
+        return null;
     }
 }
@@ -10,7 +10,16 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -18,15 +27,24 @@ import java.util.List;
  */
 public class SQLStatementQueue {
     private List<Connection> connections = new ArrayList<>();
-    private List<Boolean> freeConnection = new ArrayList<>();
+    // connections not in use - one permit each
+    private final ArrayList<Connection> freeConnections = new ArrayList<>();
+    private final Semaphore freeConnectionPermits = new Semaphore(0);
+    // transactions of connections, see setCommitInterval
+    private final IdentityHashMap<Connection, CommitInterval> commitIntervals = new IdentityHashMap<>();
     
 //    protected static final long MAX_BUFFER_LENGTH = 1; // 1 Byte Debugging
     protected static final long MAX_BUFFER_LENGTH = 60 * 1024; // 60 kByte
 //    private static final long MAX_BUFFER_LENGTH = 200; // 500 kByte
     
-    private final ArrayList<SQLExecute> execThreads = new ArrayList<>();
     private static final int DEFAULT_MAX_EXEC_THREADS = 1;
     
+    // parallel execution: maxThreads workers, created with first parallel execution
+    private ThreadPoolExecutor executor = null;
+    private Semaphore executionSlots = null;
+    private final ConcurrentLinkedQueue<Future<Void>> pendingExecutions = new ConcurrentLinkedQueue<>();
+    private SQLException executionError = null;
+    
     protected StringBuilder sqlQueue;
     
     private int number = 0;
@@ -38,8 +56,7 @@ public class SQLStatementQueue {
     private PrintStream errStream = null;
     
     public SQLStatementQueue(Connection connection) {
-        this.connections.add(connection);
-        this.freeConnection.add(Boolean.TRUE);
+        this.addConnection(connection);
     }
     
 //    public SQLStatementQueue(Connection connection, MyLogger logger) {
@@ -88,74 +105,129 @@ public class SQLStatementQueue {
         this.logStream = parameter.getLogStream(name);
         
         this.connections.clear();
-        this.freeConnection.clear();
+        this.freeConnections.clear();
+        this.freeConnectionPermits.drainPermits();
         this.maxThreads = maxThreads;
         
         if(parameter.usePSQL() || forceJDBC) {
             // set up connections
             try {
                 // try to create first
-                this.connections.add(DB.createConnection(parameter));
+                this.addConnection(DB.createConnection(parameter));
 
                 // no exception thrown... set up connections
-                this.freeConnection.add(Boolean.TRUE);
 
 //                this.logStream.println(this.hashCode() + ": create " + maxThreads + " connections");
                 // create connections more connection
                 for(int i=1; i < maxThreads; i++) {
-                    this.connections.add(DB.createConnection(parameter));
-                    this.freeConnection.add(Boolean.TRUE);
+                    this.addConnection(DB.createConnection(parameter));
                 }
             }
             catch(SQLException e) {
                 Util.printExceptionMessage(errStream, e, this, "could not create db connection.. probably we work with psql", true);
                 this.connections = null;
-                this.freeConnection = null;
             }
         } else {
             this.connections = null;
-            this.freeConnection = null;
         }
     }
     
+    /**
+     * executes remaining statements, waits for parallel executions and
+     * closes connections
+     * @throws SQLException also if a parallel execution failed
+     */
     public void close() throws SQLException {
-        this.forceExecute();
-        this.join();
-        if(this.connections != null) {
-            for(Connection conn : this.connections) {
-                conn.close();
+        try {
+            this.forceExecute();
+        }
+        finally {
+            this.join();
+            if(this.executor != null) {
+                this.executor.shutdown();
+            }
+            if(this.connections != null) {
+                for(Connection conn : this.connections) {
+                    CommitInterval interval = this.getCommitInterval(conn);
+                    if(interval != null) interval.end();
+                    conn.close();
+                }
+                this.connections.clear();
             }
-            this.connections.clear();
         }
+        this.throwExecutionError();
     }
     
-    private Connection getFreeConnection() {
-        if(this.connections != null) {
-            for(int i = 0; i < this.freeConnection.size(); i++) {
-                if(this.freeConnection.get(i)) {
-                    this.freeConnection.set(i, Boolean.FALSE);
-    //                System.out.println(this.hashCode() + ": connection taken #"+ this.connections.get(i).hashCode());
-                    return this.connections.get(i);
-                }
-            }
-
-            // wait for all threads to end
-            this.join();
-            return this.getFreeConnection();
+    /**
+     * statements on connections of this queue are committed in intervals
+     * of that parameter (see CommitInterval). Use it only with queues that
+     * own their connections - close commits. 
+     */
+    public void setCommitInterval(Parameter parameter) throws SQLException {
+        if(this.connections == null) return;
+        
+        for(Connection conn : this.connections) {
+            CommitInterval interval = CommitInterval.start(conn, parameter);
+            if(interval != null) this.setCommitInterval(interval);
         }
+    }
+    
+    /**
+     * statements on connection of that interval are counted by it - e.g.
+     * if other writers share that connection and its transactions
+     */
+    public void setCommitInterval(CommitInterval interval) {
+        synchronized(this.commitIntervals) {
+            this.commitIntervals.put(interval.getConnection(), interval);
+        }
+    }
+    
+    /**
+     * @return interval of that connection or null if it is in autocommit mode
+     */
+    CommitInterval getCommitInterval(Connection conn) {
+        synchronized(this.commitIntervals) {
+            return this.commitIntervals.get(conn);
+        }
+    }
+    
+    /**
+     * wait for parallel executions and commit open transactions
+     */
+    public void commit() throws SQLException {
+        this.join();
+        if(this.connections == null) return;
         
-        return null;
+        for(Connection conn : this.connections) {
+            CommitInterval interval = this.getCommitInterval(conn);
+            if(interval != null) interval.commit();
+        }
+    }
+    
+    private void addConnection(Connection conn) {
+        this.connections.add(conn);
+        this.setFreeConnection(conn);
+    }
+    
+    /**
+     * blocks until a connection is given back if all are in use
+     */
+    Connection getFreeConnection() {
+        if(this.connections == null) return null;
+        
+        this.freeConnectionPermits.acquireUninterruptibly();
+        synchronized(this.freeConnections) {
+            return this.freeConnections.remove(this.freeConnections.size() - 1);
+        }
     }
     
     private void setFreeConnection(Connection conn) {
-        if(this.connections != null) {
-            for(int i = 0; i < this.connections.size(); i++) {
-                if(this.connections.get(i) == conn) {
-                    this.freeConnection.set(i, Boolean.TRUE);
-    //                System.out.println(this.hashCode() + ": connection free " + conn.hashCode());
-                }
-            }
+        if(this.connections == null) return;
+        
+        synchronized(this.freeConnections) {
+            this.freeConnections.add(conn);
         }
+        this.freeConnectionPermits.release();
     }
     
     /**
@@ -217,6 +289,8 @@ public class SQLStatementQueue {
     public void forceExecute(boolean parallel, String recordEntry) 
             throws SQLException, IOException {
         
+        this.throwExecutionError();
+        
         if(this.sqlQueue == null || this.sqlQueue.length() < 1) {
             return;
         }
@@ -231,78 +305,112 @@ public class SQLStatementQueue {
                 // that point is reached if no sql exception has been thrown. write log
                 this.writeLog(recordEntry);
             } else {
-                // find thread
-                boolean found = false;
-                while(!found) {
-                    if(this.execThreads.size() < this.maxThreads) {
-                        // create new thread
-                        Connection conn = this.getFreeConnection();
-                        SQLExecute se = new SQLExecute(conn, this.sqlQueue.toString(), 
-                                recordEntry, this);
-                        this.execThreads.add(se);
-                        se.start();
-                        found = true;
-                    } else {
-                        try {
-                            // no more thread allowed.. make an educated guess and wait for
-                            // first one to end
-                            Thread jThread = this.execThreads.get(0);
-    //                        System.out.println("sqlQueue: no sql thread found.. wait for first one to die");
-                            if(jThread != null) {
-                                jThread.join();
-                            }
-    //                        System.out.println("sqlQueue: first sql thread died");
-                        } catch (InterruptedException ex) {
-                            // ignore and go ahead
-                        }
-                        catch(IndexOutOfBoundsException e) {
-                            // was to slowly .. list already empty.. go ahead
-                        }
-                    }
-                }
+                this.submit(new SQLExecute(this.sqlQueue.toString(), recordEntry, this));
                 this.resetStatement();
             }
         }
     }
     
     /**
-     * wait until all issued threads are finished
-     * 
+     * hand statement over to a worker. Waits if all workers are busy and
+     * their task queue is full.
      */
-    public void join() {
-        if(!this.useJDBC()) return;
+    private void submit(SQLExecute execution) {
+        if(this.executor == null) {
+            int workers = Math.max(1, this.maxThreads);
+            // running tasks and full task queue - queue can take all of them,
+            // a worker could still be busy after it released its slot
+            this.executionSlots = new Semaphore(2 * workers);
+            this.executor = new ThreadPoolExecutor(workers, workers, 5, TimeUnit.SECONDS, 
+                    new ArrayBlockingQueue<>(2 * workers));
+            // idle workers end - program can end without close
+            this.executor.allowCoreThreadTimeOut(true);
+        }
         
-        boolean done = false;
-        while(!done) {
-            if(this.execThreads.isEmpty()) return;
-                try {
-                    SQLExecute execThread = this.execThreads.get(0);
-                if(execThread != null) {
-                    try {
-                        execThread.join();
-                    } catch (InterruptedException ex) {
-                        // wont happen
-                    }
+        this.removeFinishedExecutions();
+        this.executionSlots.acquireUninterruptibly();
+        try {
+            this.pendingExecutions.add(this.executor.submit(execution));
+        }
+        catch(RejectedExecutionException e) {
+            this.executionSlots.release();
+            throw e;
+        }
+    }
+    
+    /**
+     * called by worker when execution is done - successful or not
+     */
+    void done(Connection conn) {
+        this.setFreeConnection(conn);
+        this.executionSlots.release();
+    }
+    
+    private void removeFinishedExecutions() {
+        Future<Void> execution;
+        while((execution = this.pendingExecutions.peek()) != null && execution.isDone()) {
+            this.pendingExecutions.remove(execution);
+            this.finished(execution);
+        }
+    }
+    
+    /**
+     * wait for execution and remember its error
+     */
+    private void finished(Future<Void> execution) {
+        for(;;) {
+            try {
+                execution.get();
+                return;
+            } catch (InterruptedException ex) {
+                // wait again
+            } catch (ExecutionException ex) {
+                SQLException e = ex.getCause() instanceof SQLException ?
+                        (SQLException) ex.getCause() : 
+                        new SQLException("parallel sql execution failed", ex.getCause());
+                
+                if(this.executionError == null) {
+                    this.executionError = e;
                 } else {
-                    /* it assumed that now other threads are created after this
-                    method was called - it can be assumed that failing a single
-                    thread in the list indicates that all threads are finished
-                    */
-                    done = true;
+                    this.executionError.addSuppressed(e);
                 }
-            }
-            catch(IndexOutOfBoundsException e) {
-                // was to slowly .. empty.. again
+                return;
             }
         }
     }
     
+    /**
+     * @throws SQLException first error of parallel executions since last call 
+     * - others are suppressed exceptions of it
+     */
+    private void throwExecutionError() throws SQLException {
+        this.removeFinishedExecutions();
+        if(this.executionError != null) {
+            SQLException e = this.executionError;
+            this.executionError = null;
+            throw e;
+        }
+    }
+    
+    /**
+     * wait until all parallel executions are finished. Errors are thrown
+     * by next forceExecute, couldExecute or close.
+     */
+    public void join() {
+        Future<Void> execution;
+        while((execution = this.pendingExecutions.poll()) != null) {
+            this.finished(execution);
+        }
+    }
+    
     /**
      * Accumulated sql statements could now be excecuted but don't have to.
      * Use that method as often as possible. Can increase performance dramatically.
      * @throws java.sql.SQLException
      */
     public void couldExecute() throws SQLException {
+        this.throwExecutionError();
+        
         if(this.sqlQueue == null) return;
         
         if(this.alwaysForce) {
@@ -330,6 +438,8 @@ public class SQLStatementQueue {
      * @throws SQLException 
      */
     public void forceExecute() throws SQLException {
+        this.throwExecutionError();
+        
         if(this.sqlQueue == null || this.sqlQueue.length() < 1) {
             return;
         }
@@ -340,7 +450,7 @@ public class SQLStatementQueue {
         } else { // JDBC
             Connection conn = this.getFreeConnection();
             try {
-                SQLExecute.doExec(conn, this.sqlQueue.toString());
+                SQLExecute.doExec(conn, this.sqlQueue.toString(), this.getCommitInterval(conn));
             }
             catch(SQLException e) {
                 Util.printExceptionMessage(errStream, e, this);
@@ -382,6 +492,23 @@ public class SQLStatementQueue {
         }
     }
     
+    /**
+     * Streams result of current statement - rows are fetched in blocks of
+     * fetchSize, see SQLCursor. The connection can be used for further 
+     * statements of this queue while cursor is open, they are part of its
+     * transaction.
+     */
+    public SQLCursor executeStreaming(int fetchSize) throws SQLException {
+        Connection conn = this.getFreeConnection();
+        try {
+            return new SQLCursor(conn, this.sqlQueue.toString(), fetchSize);
+        }
+        finally {
+            this.resetStatement();
+            this.setFreeConnection(conn);
+        }
+    }
+    
     private String debugLastStatement;
     public void resetStatement() {
         if(this.sqlQueue != null) {
@@ -419,27 +546,10 @@ public class SQLStatementQueue {
         return this.sqlQueue.toString();
     }
 
-    synchronized void done(SQLExecute execThread) {
-        this.execThreads.remove(execThread);
-        Connection conn = execThread.getConnection();
-        this.setFreeConnection(conn);
-//        System.out.println("sqlQueue: exec thread removed");
-    }
-    
     /**
      * Wait until all pending threads came to end end.. flushes that queue
      */
     public void flushThreads() {
-//        System.out.println("sqlQueue: flush called... wait for threads to finish");
-        while(!this.execThreads.isEmpty()) {
-            try {
-                // each loop we wait for the first thread to finish until
-                // array is empty
-                this.execThreads.get(0).join();
-            } catch (InterruptedException ex) {
-                // go ahead
-            }
-        }
-//        System.out.println("sqlQueue: flush finished");
+        this.join();
     }
 }
@@ -0,0 +1,321 @@
+package util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Tags of typed intermediate schemas are stored as bytea (see
+ * InterDB.createTables). Layout:
+ * <pre>
+ * version byte (1)
+ * each tag: varint key length, key, varint value length + 1, value
+ * </pre>
+ * Lengths are utf-8 bytes, value length 0 means null value. There is
+ * no limit of 999 chars like in the text format (see UtilCopyImport)
+ * which is still read by decodeLegacy. ' signs are dropped in both formats.
+ * <br>
+ * Version 2 is written with a TagDictionary. Keys and values are references:
+ * varint (code &lt;&lt; 1 | 1) for a dictionary entry or (length &lt;&lt; 1)
+ * followed by the string. Values are stored as reference + 1, 0 is null.
+ */
+public class TagCodec {
+    public static final byte VERSION = 1;
+    public static final byte VERSION_DICTIONARY = 2;
+
+    private byte[] buffer;
+    private int length;
+    private TagDictionary dictionary = null;
+
+    public TagCodec(int initialSize) {
+        this.buffer = new byte[Math.max(initialSize, 16)];
+        this.reset();
+    }
+
+    /**
+     * keys and frequent values are written as codes of that dictionary
+     */
+    public void setDictionary(TagDictionary dictionary) {
+        this.dictionary = dictionary;
+        this.reset();
+    }
+
+    /**
+     * start next tag set
+     */
+    public void reset() {
+        this.buffer[0] = this.dictionary == null ? VERSION : VERSION_DICTIONARY;
+        this.length = 1;
+    }
+
+    /**
+     * empty keys are dropped - they could never be found
+     */
+    public void add(CharSequence key, CharSequence value) {
+        if (key == null || key.length() == 0) return;
+
+        if (this.dictionary == null) {
+            this.addString(key, 0, 0);
+            if (value == null || value.length() == 0) {
+                this.ensureCapacity(1);
+                this.buffer[this.length++] = 0;
+            } else {
+                this.addString(value, 0, 1);
+            }
+            return;
+        }
+
+        this.ensureCapacity(10);
+        int keyCode = this.dictionary.keyCode(key);
+        if (keyCode >= 0) {
+            this.putVarint(keyCode << 1 | 1);
+        } else {
+            this.addString(key, 1, 0);
+        }
+
+        if (value == null || value.length() == 0) {
+            this.ensureCapacity(1);
+            this.buffer[this.length++] = 0;
+            return;
+        }
+        int valueCode = this.dictionary.valueCode(value);
+        if (valueCode >= 0) {
+            this.ensureCapacity(5);
+            this.putVarint((valueCode << 1 | 1) + 1);
+        } else {
+            this.addString(value, 1, 1);
+        }
+    }
+
+    /**
+     * @return buffer - valid up to length()
+     */
+    public byte[] getBuffer() {
+        return this.buffer;
+    }
+
+    public int length() {
+        return this.length;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(this.buffer, this.length);
+    }
+
+    /**
+     * @param lengthShift 1: length is a dictionary reference (see class comment)
+     */
+    private void addString(CharSequence s, int lengthShift, int lengthOffset) {
+        int n = s.length();
+        int utf8Length = 0;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c == '\'') continue;
+            if (c < 0x80) {
+                utf8Length++;
+            } else if (c < 0x800) {
+                utf8Length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                utf8Length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                utf8Length++;
+            } else {
+                utf8Length += 3;
+            }
+        }
+
+        this.ensureCapacity(5 + utf8Length);
+        this.putVarint((utf8Length << lengthShift) + lengthOffset);
+
+        byte[] b = this.buffer;
+        int pos = this.length;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c == '\'') continue;
+            if (c < 0x80) {
+                b[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                b[pos++] = (byte) (0xC0 | (c >> 6));
+                b[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b[pos++] = (byte) (0xF0 | (cp >> 18));
+                b[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                b[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                b[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                b[pos++] = '?'; // like String.getBytes()
+            } else {
+                b[pos++] = (byte) (0xE0 | (c >> 12));
+                b[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                b[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        this.length = pos;
+    }
+
+    private void putVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            this.buffer[this.length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        this.buffer[this.length++] = (byte) value;
+    }
+
+    private void ensureCapacity(int n) {
+        if (this.length + n > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(2 * this.buffer.length, this.length + n));
+        }
+    }
+
+    /**
+     * put tags of binary format into target
+     * @throws IllegalArgumentException unknown version or broken data
+     */
+    public static void decode(byte[] data, Map<String, String> target) {
+        TagCodec.decode(data, target, null);
+    }
+
+    /**
+     * put tags of binary format into target
+     * @param dictionary of the schema, can be null if there is none
+     * @throws IllegalArgumentException unknown version, missing dictionary or broken data
+     */
+    public static void decode(byte[] data, Map<String, String> target, TagDictionary dictionary) {
+        if (data == null || data.length == 0) return;
+
+        if (data[0] == VERSION_DICTIONARY) {
+            if (dictionary == null) {
+                throw new IllegalArgumentException("tags are encoded with a tag dictionary - there is none");
+            }
+            TagCodec.decodeWithDictionary(data, target, dictionary);
+            return;
+        }
+        if (data[0] != VERSION) {
+            throw new IllegalArgumentException("unknown tag encoding version: " + data[0]);
+        }
+
+        int pos = 1;
+        try {
+            while (pos < data.length) {
+                // key
+                int keyLength = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = data[pos++];
+                    keyLength |= (b & 0x7F) << shift;
+                    if (b >= 0) break;
+                }
+                String key = new String(data, pos, keyLength, StandardCharsets.UTF_8);
+                pos += keyLength;
+
+                // value
+                int valueLength = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = data[pos++];
+                    valueLength |= (b & 0x7F) << shift;
+                    if (b >= 0) break;
+                }
+                if (valueLength == 0) {
+                    target.put(key, null);
+                } else {
+                    target.put(key, new String(data, pos, valueLength - 1, StandardCharsets.UTF_8));
+                    pos += valueLength - 1;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("broken tag encoding at byte " + pos + " of " + data.length);
+        }
+    }
+
+    private static void decodeWithDictionary(byte[] data, Map<String, String> target, TagDictionary dictionary) {
+        int pos = 1;
+        try {
+            while (pos < data.length) {
+                // key reference
+                int ref = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = data[pos++];
+                    ref |= (b & 0x7F) << shift;
+                    if (b >= 0) break;
+                }
+                String key;
+                if ((ref & 1) != 0) {
+                    key = dictionary.get(ref >>> 1);
+                } else {
+                    key = new String(data, pos, ref >>> 1, StandardCharsets.UTF_8);
+                    pos += ref >>> 1;
+                }
+
+                // value reference + 1
+                ref = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = data[pos++];
+                    ref |= (b & 0x7F) << shift;
+                    if (b >= 0) break;
+                }
+                if (ref == 0) {
+                    target.put(key, null);
+                } else if (((ref - 1) & 1) != 0) {
+                    target.put(key, dictionary.get((ref - 1) >>> 1));
+                } else {
+                    target.put(key, new String(data, pos, (ref - 1) >>> 1, StandardCharsets.UTF_8));
+                    pos += (ref - 1) >>> 1;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("broken tag encoding at byte " + pos + " of " + data.length);
+        }
+    }
+
+    /**
+     * put tags of text format into target: key and value each with a
+     * three digit length or 0000 for null. Stops at an empty key.
+     */
+    public static void decodeLegacy(String s, Map<String, String> target) {
+        if (s == null) return;
+
+        int index = 0;
+        while (index < s.length()) {
+            if (s.startsWith("0000", index)) {
+                // empty key.. that makes no sense
+                System.err.println("\nTagCodec.decodeLegacy: found empty key (makes no sense), stop parsing attributes:" + s);
+                return;
+            }
+            int keyLength = TagCodec.legacyLength(s, index);
+            if (keyLength < 0) return;
+            index += 3;
+            String key = s.substring(index, index + keyLength);
+            index += keyLength;
+
+            if (s.startsWith("0000", index)) {
+                index += 4;
+                target.put(key, null);
+            } else {
+                int valueLength = TagCodec.legacyLength(s, index);
+                if (valueLength < 0) {
+                    target.put(key, null);
+                    return;
+                }
+                index += 3;
+                target.put(key, s.substring(index, index + valueLength));
+                index += valueLength;
+            }
+        }
+    }
+
+    /**
+     * @return three digit length at index, -1 if there is none or string is too short
+     */
+    private static int legacyLength(String s, int index) {
+        if (index + 3 > s.length()) return -1;
+
+        int length = 0;
+        for (int i = index; i < index + 3; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            length = length * 10 + (c - '0');
+        }
+        return index + 3 + length <= s.length() ? length : -1;
+    }
+}
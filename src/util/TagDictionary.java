@@ -0,0 +1,196 @@
+package util;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tag keys and frequent values mapped to small integer codes. It is
+ * built while importing (shared by all parser threads) and stored in
+ * table tagdictionary of the intermediate schema. TagCodec writes codes
+ * instead of strings if a dictionary is set.
+ *
+ * Each key gets a code. A value gets a code when it is seen the second
+ * time - long values and values with ' are always written as strings.
+ */
+public class TagDictionary {
+    public static final String TABLE = "tagdictionary";
+
+    private static final int MAX_CODES = 1 << 20;
+    private static final int MAX_CANDIDATES = 1 << 20;
+    private static final int MAX_VALUE_LENGTH = 32;
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    // values seen once
+    private final ConcurrentHashMap<String, Boolean> candidates = new ConcurrentHashMap<>();
+    private final List<String> strings;
+
+    public TagDictionary() {
+        this.strings = new ArrayList<>();
+    }
+
+    private TagDictionary(List<String> strings) {
+        this.strings = strings;
+        // a resumed import continues with that dictionary
+        for(int code = 0; code < strings.size(); code++) {
+            this.codes.put(strings.get(code), code);
+        }
+    }
+
+    /**
+     * @return code of key, -1 if key is not in dictionary and cannot be added
+     */
+    public int keyCode(CharSequence key) {
+        if (TagDictionary.hasQuote(key)) return -1;
+
+        String s = key.toString();
+        Integer code = this.codes.get(s);
+        if (code != null) return code;
+
+        return this.add(s);
+    }
+
+    /**
+     * @return code of value, -1 if value is written as string
+     */
+    public int valueCode(CharSequence value) {
+        if (value.length() > MAX_VALUE_LENGTH || TagDictionary.hasQuote(value)) return -1;
+
+        String s = value.toString();
+        Integer code = this.codes.get(s);
+        if (code != null) return code;
+
+        // first time: remember, second time: add
+        if (this.candidates.size() < MAX_CANDIDATES && this.candidates.putIfAbsent(s, Boolean.TRUE) == null) {
+            return -1;
+        }
+        if (!this.candidates.containsKey(s)) return -1;
+
+        return this.add(s);
+    }
+
+    private static boolean hasQuote(CharSequence s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '\'') return true;
+        }
+        return false;
+    }
+
+    private synchronized int add(String s) {
+        Integer code = this.codes.get(s);
+        if (code != null) return code;
+        if (this.strings.size() >= MAX_CODES) return -1;
+
+        int newCode = this.strings.size();
+        this.strings.add(s);
+        this.codes.put(s, newCode);
+        this.candidates.remove(s);
+        return newCode;
+    }
+
+    /**
+     * @throws IllegalArgumentException unknown code
+     */
+    public String get(int code) {
+        if (code < 0 || code >= this.strings.size()) {
+            throw new IllegalArgumentException("unknown tag dictionary code: " + code);
+        }
+        return this.strings.get(code);
+    }
+
+    public synchronized int size() {
+        return this.strings.size();
+    }
+
+    /**
+     * create dictionary table in schema of parameter and fill it
+     */
+    public synchronized void save(Parameter parameter) throws SQLException, IOException {
+        String fullTableName = DB.getFullTableName(parameter.getSchema(), TABLE);
+        SQLStatementQueue sql = new SQLStatementQueue(parameter);
+        sql.append("DROP TABLE IF EXISTS " + fullTableName + ";");
+        sql.append("CREATE TABLE " + fullTableName + " (code integer PRIMARY KEY, value character varying);");
+        sql.forceExecute();
+        sql.close();
+
+        CopyConnector connector = new CopyConnector(parameter, TABLE);
+        for (int code = 0; code < this.strings.size(); code++) {
+            connector.intField(code).field(this.strings.get(code)).endRow();
+        }
+        System.out.println("wrote " + connector.endCopy() + " lines to " + TABLE);
+        connector.close();
+    }
+
+    /**
+     * Append codes which are not yet in dictionary table of schema, table
+     * is created if there is none. Nothing is committed: codes are saved
+     * in the transaction of connection, with the rows that use them.
+     */
+    public synchronized void save(Connection connection, String schema) throws SQLException {
+        String fullTableName = DB.getFullTableName(schema, TABLE);
+        int savedCodes;
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + fullTableName + " (code integer PRIMARY KEY, value character varying)");
+            try (ResultSet result = stmt.executeQuery("SELECT count(*) FROM " + fullTableName)) {
+                result.next();
+                savedCodes = result.getInt(1);
+            }
+        }
+        // codes are only appended - saved ones are the first savedCodes
+        if (savedCodes > this.strings.size()) {
+            throw new SQLException("tag dictionary of " + schema + " has " + savedCodes
+                    + " codes, more than the " + this.strings.size() + " of loaded dictionary");
+        }
+
+        try (PreparedBatch batch = new PreparedBatch(connection,
+                "INSERT INTO " + fullTableName + " (code, value) VALUES (?, ?)", 1000)) {
+            for (int code = savedCodes; code < this.strings.size(); code++) {
+                batch.statement().setInt(1, code);
+                batch.statement().setString(2, this.strings.get(code));
+                batch.addRow();
+            }
+        }
+        System.out.println("appended " + (this.strings.size() - savedCodes) + " codes to " + TABLE);
+    }
+
+    /**
+     * @return dictionary of schema, null if there is none
+     */
+    public static TagDictionary load(Connection connection, String schema) throws SQLException {
+        if (!TagDictionary.exists(connection, schema)) return null;
+
+        List<String> strings = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT code, value FROM " + DB.getFullTableName(schema, TABLE) + " ORDER BY code")) {
+            try (ResultSet result = stmt.executeQuery()) {
+                while (result.next()) {
+                    if (result.getInt(1) != strings.size()) {
+                        throw new SQLException("tag dictionary of " + schema + " has a gap at code " + strings.size());
+                    }
+                    strings.add(result.getString(2));
+                }
+            }
+        }
+        return new TagDictionary(strings);
+    }
+
+    /**
+     * @return true if tags of intermediate tables in schema use a dictionary
+     */
+    public static boolean exists(Connection connection, String schema) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT 1 FROM information_schema.tables WHERE table_schema = ? AND table_name = ?")) {
+            stmt.setString(1, schema);
+            stmt.setString(2, TABLE);
+            try (ResultSet result = stmt.executeQuery()) {
+                return result.next();
+            }
+        }
+    }
+}
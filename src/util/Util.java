@@ -222,6 +222,16 @@ public class Util {
         return t;
     }
     
+    /**
+     * @return t with quotes and backslashes escaped for a hstore key or value
+     * - for bound parameters, not for sql literals
+     */
+    public static String escapeHStoreValue(String t) {
+        if(t == null) return "";
+        
+        return t.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+    
     static String getThreeDigitString(long value) {
         if(value >= 100) return String.valueOf(value);
         
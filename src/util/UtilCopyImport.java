@@ -45,7 +45,7 @@ public class UtilCopyImport {
             System.exit(1);
         }
 	}
-	public static void serializeTags(ManagedStringBuilder target, String key, String value) {
+	public static void serializeTags(ManagedStringBuilder target, CharSequence key, CharSequence value) {
 		try {
 
             if (target != null) {
@@ -93,18 +93,29 @@ public class UtilCopyImport {
 			target.append("0000");
 		}
 	}
-	private static void append(ManagedStringBuilder target, String s) {
-		s = removeStrips(s);
+	private static void append(ManagedStringBuilder target, CharSequence s) {
+		// '-Zeichen werden beim Kopieren entfernt, statt vorher einen neuen String zu bauen
+		int length = 0;
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) != '\'') {
+				length++;
+			}
+		}
 		// if we see it realistic the length of key and value cannot be over 999
 		// so we take size of 3
-		if (s.length() < 1000) {
+		if (length < 1000) {
 			for (int i = 100; i >= 1; i = i / 10) {
-				if (s.length() < i) {
-					target.append("0");
+				if (length < i) {
+					target.append('0');
+				}
+			}
+			target.append(length);
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				if (c != '\'') {
+					target.append(c);
 				}
 			}
-			target.append(s.length());
-			target.append(s);
 		} else {
 			target.append("0000");
 		}
@@ -117,17 +128,20 @@ public class UtilCopyImport {
 	 * @return String str welcher überprüft wurde
 	 */
 	private static String removeStrips(String str) {
-		String tmp = "";
-		for (int i = str.indexOf("'"); i != -1; i = str.indexOf("'")) {
-			tmp = tmp + str.substring(0, i);
-			if (i < str.length() - 1) {
-				tmp = tmp + str.substring(i + 1);
-			}
-			str = tmp;
-			tmp = "";
+		int i = str.indexOf('\'');
+		if (i == -1) {
+			return str;
 		}
-		tmp = null;
-		return str;
+		// ein Durchlauf statt eines neuen Strings je '-Zeichen
+		StringBuilder sb = new StringBuilder(str.length() - 1);
+		int start = 0;
+		while (i != -1) {
+			sb.append(str, start, i);
+			start = i + 1;
+			i = str.indexOf('\'', start);
+		}
+		sb.append(str, start, str.length());
+		return sb.toString();
 	}
 
 	/**
@@ -0,0 +1,99 @@
+package osm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class StringIDTableTest {
+	private static final String[] KEYS = { "highway", "building", "", "a", "natural", "Straße", "北京", "😀" };
+
+	private static StringIDTable table() {
+		StringIDTable table = new StringIDTable(KEYS.length);
+		for (int i = 0; i < KEYS.length; i++) {
+			assertTrue(table.put(KEYS[i], 10 * i));
+		}
+		return table;
+	}
+
+	/**
+	 * key in the middle of a larger array - slices must not read beyond
+	 */
+	private static int getChars(StringIDTable table, String key) {
+		char[] chars = ("xx" + key + "yy").toCharArray();
+		return table.get(chars, 2, key.length());
+	}
+
+	private static int getBytes(StringIDTable table, String key) {
+		byte[] utf8 = ("xx" + key + "yy").getBytes(StandardCharsets.UTF_8);
+		return table.get(utf8, 2, key.getBytes(StandardCharsets.UTF_8).length);
+	}
+
+	@Test
+	void sameIDForAllKeyTypes() {
+		StringIDTable table = table();
+		assertEquals(KEYS.length, table.size());
+		for (int i = 0; i < KEYS.length; i++) {
+			assertEquals(10 * i, table.get(KEYS[i]), KEYS[i]);
+			assertEquals(10 * i, table.get(new StringBuilder(KEYS[i])), KEYS[i]);
+			assertEquals(10 * i, getChars(table, KEYS[i]), KEYS[i]);
+			assertEquals(10 * i, getBytes(table, KEYS[i]), KEYS[i]);
+		}
+	}
+
+	@Test
+	void unknownKeys() {
+		StringIDTable table = table();
+		for (String key : new String[] { "highways", "highwa", "Highway", "Strasse", "ß" }) {
+			assertEquals(-1, table.get(key), key);
+			assertEquals(-1, getChars(table, key), key);
+			assertEquals(-1, getBytes(table, key), key);
+		}
+		assertEquals(-1, table.get((CharSequence) null));
+	}
+
+	@Test
+	void putReplacesAndTableIsFull() {
+		StringIDTable table = new StringIDTable(2);
+		assertTrue(table.put("a", 1));
+		assertTrue(table.put("b", 2));
+		assertTrue(table.put("a", 3));
+		assertEquals(2, table.size());
+		assertEquals(3, table.get("a"));
+
+		// capacity 2 has 4 slots - load factor stays at most 0.5
+		assertFalse(table.put("c", 4));
+		assertEquals(-1, table.get("c"));
+	}
+
+	@Test
+	void writeAndRead() throws IOException {
+		StringIDTable table = table();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			table.write(out);
+		}
+
+		StringIDTable read = StringIDTable.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		assertEquals(table.size(), read.size());
+		for (int i = 0; i < KEYS.length; i++) {
+			assertEquals(10 * i, read.get(KEYS[i]), KEYS[i]);
+			assertEquals(10 * i, getChars(read, KEYS[i]), KEYS[i]);
+			assertEquals(10 * i, getBytes(read, KEYS[i]), KEYS[i]);
+		}
+		assertEquals(-1, read.get("highways"));
+	}
+
+	@Test
+	void brokenImage() {
+		byte[] threeSlots = { 0, 0, 0, 3, 0, 0, 0, 0 };
+		assertThrows(IOException.class,
+				() -> StringIDTable.read(new DataInputStream(new ByteArrayInputStream(threeSlots))));
+	}
+}
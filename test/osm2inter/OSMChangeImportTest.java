@@ -0,0 +1,169 @@
+package osm2inter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.Locator;
+
+class OSMChangeImportTest {
+
+	/**
+	 * keeps what would be staged
+	 */
+	private static class Recorder implements OSMRecordHandler {
+		final List<String> events = new ArrayList<>();
+
+		@Override
+		public void setDocumentLocator(Locator locator) {
+		}
+
+		@Override
+		public void startDocument() {
+		}
+
+		@Override
+		public void startElement(OSMRecord record) {
+			StringBuilder sb = new StringBuilder(OSMRecord.getElementName(record.element));
+			if (record.id != null) sb.append(' ').append(record.id);
+			if (record.lat != null) sb.append(' ').append(record.lat);
+			if (record.ref != null) sb.append(' ').append(record.ref);
+			if (record.k != null) sb.append(' ').append(record.k).append('=').append(record.v);
+			this.events.add(sb.toString());
+		}
+
+		@Override
+		public void endElement(OSMRecord record) {
+			this.events.add("/" + OSMRecord.getElementName(record.element));
+		}
+
+		@Override
+		public void endDocument() {
+		}
+	}
+
+	private static class Handler extends OSMChangeImport.ChangeHandler {
+		final List<String> deletions = new ArrayList<>();
+
+		@Override
+		void writeDeletion(int element, long id) {
+			this.deletions.add(OSMRecord.getElementName(element) + " " + id);
+		}
+	}
+
+	private static final String OSC = "<?xml version='1.0' encoding='UTF-8'?>\n"
+			+ "<osmChange version=\"0.6\">\n"
+			+ "<create>\n"
+			+ " <node id=\"1\" lat=\"1.0\" lon=\"1.0\"><tag k=\"name\" v=\"old\"/></node>\n"
+			+ " <node id=\"2\" lat=\"2.0\" lon=\"2.0\"/>\n"
+			+ " <node id=\"4\" lat=\"4.0\" lon=\"4.0\"/>\n"
+			+ "</create>\n"
+			+ "<modify>\n"
+			+ " <node id=\"1\" lat=\"1.5\" lon=\"1.0\"><tag k=\"name\" v=\"new\"/></node>\n"
+			+ " <way id=\"1\"><nd ref=\"1\"/><nd ref=\"4\"/></way>\n"
+			+ "</modify>\n"
+			+ "<delete>\n"
+			+ " <node id=\"2\"/>\n"
+			+ "</delete>\n"
+			+ "<modify>\n"
+			+ " <node id=\"3\" lat=\"3.0\" lon=\"3.0\"/>\n"
+			+ "</modify>\n"
+			+ "</osmChange>\n";
+
+	private static void parse(OSMChangeImport.ChangeHandler handler) throws Exception {
+		SAXParserFactory.newInstance().newSAXParser()
+				.parse(new ByteArrayInputStream(OSC.getBytes(StandardCharsets.UTF_8)), handler);
+	}
+
+	private static long key(long id, int element) {
+		return id << 2 | element;
+	}
+
+	@Test
+	void lastVersionIsStaged() throws Exception {
+		Handler handler = new Handler();
+		parse(handler);
+
+		// node 1 and way 1 are different elements
+		OSMChangeImport.LongIntMap lastVersions = handler.lastVersions;
+		assertEquals(5, lastVersions.size());
+		assertEquals(3, lastVersions.get(key(1, OSMRecord.NODE)));
+		assertEquals(5, lastVersions.get(key(2, OSMRecord.NODE)));
+		assertEquals(2, lastVersions.get(key(4, OSMRecord.NODE)));
+		assertEquals(4, lastVersions.get(key(1, OSMRecord.WAY)));
+		assertEquals(6, lastVersions.get(key(3, OSMRecord.NODE)));
+		assertEquals(-1, lastVersions.get(key(3, OSMRecord.WAY)));
+
+		// second pass counts positions from start again
+		Recorder recorder = new Recorder();
+		handler.stage(recorder, null);
+		parse(handler);
+
+		assertArrayEquals(new String[] {
+				"node 4 4.0", "/node",
+				"node 1 1.5", "tag name=new", "/node",
+				"way 1", "nd 1", "nd 4", "/way",
+				"node 3 3.0", "/node" }, recorder.events.toArray());
+		assertEquals("[node 2]", handler.deletions.toString());
+
+		assertEquals(1, handler.created);
+		assertEquals(3, handler.modified);
+		assertEquals(1, handler.deleted);
+		assertEquals(2, handler.skipped);
+	}
+
+	@Test
+	void mapGrows() {
+		OSMChangeImport.LongIntMap map = new OSMChangeImport.LongIntMap();
+		int n = 300000;
+		for (int i = 0; i < n; i++) {
+			map.put(3L * i, i);
+		}
+		assertEquals(n, map.size());
+		for (int i = 0; i < n; i++) {
+			assertEquals(i, map.get(3L * i));
+			assertEquals(-1, map.get(3L * i + 1));
+		}
+
+		// put again keeps size
+		map.put(0, 42);
+		map.put(3L * (n - 1), 43);
+		assertEquals(n, map.size());
+		assertEquals(42, map.get(0));
+		assertEquals(43, map.get(3L * (n - 1)));
+		assertEquals(-1, map.get(Long.MAX_VALUE));
+	}
+
+	@Test
+	void collidingKeysAreKept() {
+		// keys with same first slot in initial table - same hash as LongIntMap.slot
+		int mask = (1 << 16) - 1;
+		List<Long> keys = new ArrayList<>();
+		long wanted = -1;
+		for (long key = 0; keys.size() < 5; key++) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			long slot = (int) (h ^ (h >>> 32)) & mask;
+			if (wanted == -1) wanted = slot;
+			if (slot == wanted) keys.add(key);
+		}
+
+		OSMChangeImport.LongIntMap map = new OSMChangeImport.LongIntMap();
+		for (int i = 0; i < keys.size(); i++) {
+			map.put(keys.get(i), i);
+		}
+		assertEquals(keys.size(), map.size());
+		for (int i = 0; i < keys.size(); i++) {
+			assertEquals(i, map.get(keys.get(i)));
+		}
+		map.put(keys.get(2), 22);
+		assertEquals(22, map.get(keys.get(2)));
+		assertEquals(4, map.get(keys.get(4)));
+		assertEquals(keys.size(), map.size());
+	}
+}
@@ -0,0 +1,123 @@
+package osm2inter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import osm.OSMClassification;
+
+class OSMHistoryImportTest {
+
+	private static OSMHistoryImport.Version version(String timestamp, int classCode, String name, byte... geometry) {
+		OSMHistoryImport.Version v = new OSMHistoryImport.Version();
+		v.visible = true;
+		v.timestamp = timestamp;
+		v.time = OSMHistoryImport.Version.timeKey(timestamp);
+		v.addClassCode(classCode);
+		v.name = name;
+		v.geometryType = 2;
+		v.geometry = geometry;
+		return v;
+	}
+
+	@Test
+	void findsVersionValidAtTime() {
+		OSMHistoryImport.NodeHistory history = new OSMHistoryImport.NodeHistory();
+		history.add(1, 20170101000000L, true, 10, 11);
+		history.add(5, 20170101000000L, true, 50, 51);
+		history.add(5, 20170301000000L, true, 52, 53);
+		history.add(5, 20170501000000L, false, 0, 0);
+		history.add(7, 20170101000000L, true, 70, 71);
+
+		assertEquals(0, history.find(1, 20180101000000L));
+		assertEquals(1, history.find(5, 20170201000000L));
+		assertEquals(2, history.find(5, 20170301000000L));
+		assertEquals(52, history.lon(history.find(5, 20170401000000L)));
+		assertEquals(53, history.lat(history.find(5, 20170401000000L)));
+		// deleted then
+		assertEquals(-1, history.find(5, 20170601000000L));
+		// way older than its nodes gets first version
+		assertEquals(1, history.find(5, 20160101000000L));
+		// unknown ids - before, between and after known ones
+		assertEquals(-1, history.find(0, 20170101000000L));
+		assertEquals(-1, history.find(6, 20170101000000L));
+		assertEquals(-1, history.find(8, 20170101000000L));
+	}
+
+	@Test
+	void historyGrows() {
+		OSMHistoryImport.NodeHistory history = new OSMHistoryImport.NodeHistory();
+		int n = 100000;
+		for (int id = 0; id < n; id++) {
+			history.add(id, 20170101000000L, true, id, -id);
+		}
+		assertEquals(n, history.size());
+		assertEquals(n - 1, history.lon(history.find(n - 1, 20170101000000L)));
+		assertEquals(-12345, history.lat(history.find(12345, 20170101000000L)));
+	}
+
+	@Test
+	void unchangedVersionsAreMerged() {
+		List<OSMHistoryImport.Version> versions = new ArrayList<>();
+		versions.add(version("2017-01-01T00:00:00Z", 1, "a", (byte) 1));
+		// only timestamp differs
+		versions.add(version("2017-02-01T00:00:00Z", 1, "a", (byte) 1));
+		versions.add(version("2017-03-01T00:00:00Z", 1, "a", (byte) 1));
+		// geometry, class, name and tags make a new interval
+		versions.add(version("2017-04-01T00:00:00Z", 1, "a", (byte) 2));
+		versions.add(version("2017-05-01T00:00:00Z", 2, "a", (byte) 2));
+		versions.add(version("2017-06-01T00:00:00Z", 2, "b", (byte) 2));
+		versions.add(version("2017-07-01T00:00:00Z", 2, "b", (byte) 2));
+		versions.get(6).addTag("surface", "asphalt");
+
+		assertEquals(2, OSMHistoryImport.lastUnchanged(versions, 0));
+		assertEquals(2, OSMHistoryImport.lastUnchanged(versions, 1));
+		assertEquals(3, OSMHistoryImport.lastUnchanged(versions, 3));
+		assertEquals(4, OSMHistoryImport.lastUnchanged(versions, 4));
+		assertEquals(5, OSMHistoryImport.lastUnchanged(versions, 5));
+		assertEquals(6, OSMHistoryImport.lastUnchanged(versions, 6));
+
+		// a deleted version ends an interval
+		versions.get(6).tagCount = 0;
+		assertEquals(6, OSMHistoryImport.lastUnchanged(versions, 5));
+		versions.get(6).visible = false;
+		assertEquals(5, OSMHistoryImport.lastUnchanged(versions, 5));
+	}
+
+	@Test
+	void timeKeysAreOrdered() {
+		assertEquals(20170301120000L, OSMHistoryImport.Version.timeKey("2017-03-01T12:00:00Z"));
+		assertEquals(20170301000000L, OSMHistoryImport.Version.timeKey("2017-03-01"));
+		assertTrue(OSMHistoryImport.Version.timeKey("2016-12-31T23:59:59Z")
+				< OSMHistoryImport.Version.timeKey("2017-01-01T00:00:00Z"));
+	}
+
+	@Test
+	void closedWaysOfLinearClassesAreNoAreas() {
+		OSMClassification classification = OSMClassification.getOSMClassification();
+		int primary = classification.getOHDMClassID("highway", "primary");
+		int fence = classification.getOHDMClassID("barrier", "fence");
+		int services = classification.getOHDMClassID("highway", "services");
+		int powerLine = classification.getOHDMClassID("power", "line");
+		int park = classification.getOHDMClassID("leisure", "park");
+
+		assertFalse(classification.isArea(new int[] { primary }, 1, null));
+		assertFalse(classification.isArea(new int[] { fence }, 1, null));
+		assertFalse(classification.isArea(new int[] { powerLine }, 1, null));
+		assertTrue(classification.isArea(new int[] { services }, 1, null));
+		assertTrue(classification.isArea(new int[] { park }, 1, null));
+		// any area class makes it an area
+		assertTrue(classification.isArea(new int[] { fence, park }, 2, null));
+		// no class - area as before
+		assertTrue(classification.isArea(new int[0], 0, null));
+		assertTrue(classification.isArea(new int[] { -1 }, 1, null));
+
+		// area tag overrides
+		assertTrue(classification.isArea(new int[] { primary }, 1, "yes"));
+		assertFalse(classification.isArea(new int[] { park }, 1, "no"));
+		assertFalse(classification.isArea(new int[] { primary }, 1, "whatever"));
+	}
+}
@@ -0,0 +1,113 @@
+package osm2inter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.Locator;
+
+class OSMRegionFilterTest {
+
+	/**
+	 * keeps ids of written main elements
+	 */
+	private static class Kept implements OSMRecordHandler {
+		final List<String> elements = new ArrayList<>();
+
+		@Override
+		public void setDocumentLocator(Locator locator) {
+		}
+
+		@Override
+		public void startDocument() {
+		}
+
+		@Override
+		public void startElement(OSMRecord record) {
+			if (record.isMainElement()) {
+				this.elements.add(OSMRecord.getElementName(record.element) + " " + record.id);
+			}
+		}
+
+		@Override
+		public void endElement(OSMRecord record) {
+		}
+
+		@Override
+		public void endDocument() {
+		}
+	}
+
+	private static void scan(String xml, OSMRecordHandler handler) throws IOException {
+		new OSMXMLScanner(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), 64).parse(handler);
+	}
+
+	private static List<String> filter(RegionPolygon region, String tags, String xml) throws IOException {
+		OSMRegionFilter filter = new OSMRegionFilter(region, tags);
+		scan(xml, filter.collector());
+		if (filter.needsCompletion()) {
+			scan(xml, filter.completer());
+		}
+		Kept kept = new Kept();
+		scan(xml, filter.writer(kept));
+		return kept.elements;
+	}
+
+	// ways 10 and 11 are untagged, way 11 lies outside, 12 is a tagged way outside
+	private static final String MULTIPOLYGON = "<osm>\n"
+			+ "<node id=\"1\" lat=\"52.1\" lon=\"13.1\"/>\n"
+			+ "<node id=\"2\" lat=\"52.1\" lon=\"13.2\"/>\n"
+			+ "<node id=\"3\" lat=\"52.2\" lon=\"13.2\"/>\n"
+			+ "<node id=\"4\" lat=\"50.1\" lon=\"10.1\"/>\n"
+			+ "<node id=\"5\" lat=\"50.1\" lon=\"10.2\"/>\n"
+			+ "<node id=\"6\" lat=\"50.2\" lon=\"10.2\"/>\n"
+			+ "<way id=\"10\"><nd ref=\"1\"/><nd ref=\"2\"/><nd ref=\"3\"/><nd ref=\"1\"/></way>\n"
+			+ "<way id=\"11\"><nd ref=\"4\"/><nd ref=\"5\"/><nd ref=\"6\"/><nd ref=\"4\"/></way>\n"
+			+ "<way id=\"12\"><nd ref=\"4\"/><nd ref=\"5\"/><tag k=\"building\" v=\"yes\"/></way>\n"
+			+ "<relation id=\"20\">\n"
+			+ " <member type=\"way\" ref=\"10\" role=\"outer\"/>\n"
+			+ " <member type=\"way\" ref=\"11\" role=\"outer\"/>\n"
+			+ " <tag k=\"type\" v=\"multipolygon\"/>\n"
+			+ " <tag k=\"building\" v=\"yes\"/>\n"
+			+ "</relation>\n"
+			+ "<relation id=\"21\">\n"
+			+ " <member type=\"way\" ref=\"11\" role=\"outer\"/>\n"
+			+ " <tag k=\"type\" v=\"multipolygon\"/>\n"
+			+ " <tag k=\"building\" v=\"yes\"/>\n"
+			+ "</relation>\n"
+			+ "<relation id=\"22\">\n"
+			+ " <member type=\"relation\" ref=\"20\" role=\"\"/>\n"
+			+ " <tag k=\"building\" v=\"yes\"/>\n"
+			+ "</relation>\n"
+			+ "</osm>\n";
+
+	@Test
+	void taggedMultipolygonWithUntaggedWays() throws IOException {
+		RegionPolygon bbox = RegionPolygon.fromBBox("13.0,52.0,14.0,53.0");
+		List<String> kept = filter(bbox, "building", MULTIPOLYGON);
+
+		// relation is inside by its untagged way, completion adds all its ways and their nodes
+		assertEquals("[node 1, node 2, node 3, node 4, node 5, node 6, way 10, way 11, relation 20, relation 22]",
+				kept.toString());
+	}
+
+	@Test
+	void withoutAreaTagsDecide() throws IOException {
+		List<String> kept = filter(null, "building", MULTIPOLYGON);
+		assertEquals("[node 1, node 2, node 3, node 4, node 5, node 6, way 10, way 11, way 12,"
+				+ " relation 20, relation 21, relation 22]", kept.toString());
+	}
+
+	@Test
+	void areaWithoutTags() throws IOException {
+		RegionPolygon bbox = RegionPolygon.fromBBox("13.0,52.0,14.0,53.0");
+		List<String> kept = filter(bbox, null, MULTIPOLYGON);
+		assertEquals("[node 1, node 2, node 3, node 4, node 5, node 6, way 10, way 11, relation 20, relation 22]",
+				kept.toString());
+	}
+}
@@ -0,0 +1,107 @@
+package osm2inter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+class OSMSnapshotDiffTest {
+	private static final File OLD = new File("test/testdata/snapshotOld.osm");
+	private static final File NEW = new File("test/testdata/snapshotNew.osm");
+
+	private static final String OSC = "<?xml version='1.0' encoding='UTF-8'?>\n"
+			+ "<osmChange version=\"0.6\" generator=\"OSMSnapshotDiff\">\n"
+			+ "<modify>\n"
+			+ "  <node id=\"2\" lat=\"52.515\" lon=\"13.41\" timestamp=\"2017-02-01T00:00:00Z\">\n"
+			+ "  </node>\n"
+			+ "</modify>\n"
+			+ "<delete>\n"
+			+ "  <node id=\"3\"/>\n"
+			+ "</delete>\n"
+			+ "<create>\n"
+			+ "  <node id=\"4\" lat=\"52.53\" lon=\"13.43\" timestamp=\"2017-02-01T00:00:00Z\">\n"
+			+ "  </node>\n"
+			+ "</create>\n"
+			+ "<modify>\n"
+			+ "  <way id=\"11\" timestamp=\"2017-02-01T00:00:00Z\">\n"
+			+ "    <tag k=\"highway\" v=\"residential\"/>\n"
+			+ "    <tag k=\"name\" v=\"A &amp; B\"/>\n"
+			+ "    <nd ref=\"2\"/>\n"
+			+ "    <nd ref=\"3\"/>\n"
+			+ "  </way>\n"
+			+ "</modify>\n"
+			+ "<create>\n"
+			+ "  <way id=\"12\" timestamp=\"2017-02-01T00:00:00Z\">\n"
+			+ "    <nd ref=\"2\"/>\n"
+			+ "    <nd ref=\"4\"/>\n"
+			+ "  </way>\n"
+			+ "</create>\n"
+			+ "<modify>\n"
+			+ "  <relation id=\"20\" timestamp=\"2017-02-01T00:00:00Z\">\n"
+			+ "    <tag k=\"type\" v=\"route\"/>\n"
+			+ "    <member type=\"way\" ref=\"10\" role=\"outer\"/>\n"
+			+ "    <member type=\"way\" ref=\"11\" role=\"inner\"/>\n"
+			+ "  </relation>\n"
+			+ "</modify>\n"
+			+ "</osmChange>\n";
+
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int n;
+		while ((n = in.read(buffer)) > 0) {
+			out.write(buffer, 0, n);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	void createModifyDelete() throws IOException {
+		File osc = File.createTempFile("snapshotDiff", ".osc");
+		try {
+			OSMSnapshotDiff diff = OSMSnapshotDiff.diff(OLD, NEW, osc);
+			// node 1 and way 10 - other tag order is no change
+			assertEquals("unchanged: 2 | created: 2 | deleted: 1 | tags changed: 1 | geometry changed: 2",
+					diff.toString());
+			assertEquals(OSC, new String(Files.readAllBytes(osc.toPath()), StandardCharsets.UTF_8));
+		} finally {
+			osc.delete();
+		}
+	}
+
+	@Test
+	void gzippedChangeFile() throws IOException {
+		File osc = File.createTempFile("snapshotDiff", ".osc.gz");
+		try {
+			OSMSnapshotDiff.diff(OLD, NEW, osc);
+			try (InputStream in = new GZIPInputStream(new FileInputStream(osc))) {
+				assertEquals(OSC, read(in));
+			}
+		} finally {
+			osc.delete();
+		}
+	}
+
+	@Test
+	void sameSnapshotHasNoChanges() throws IOException {
+		File osc = File.createTempFile("snapshotDiff", ".osc");
+		try {
+			OSMSnapshotDiff diff = OSMSnapshotDiff.diff(NEW, NEW, osc);
+			assertEquals("unchanged: 7 | created: 0 | deleted: 0 | tags changed: 0 | geometry changed: 0",
+					diff.toString());
+			assertEquals("<?xml version='1.0' encoding='UTF-8'?>\n"
+					+ "<osmChange version=\"0.6\" generator=\"OSMSnapshotDiff\">\n"
+					+ "</osmChange>\n", new String(Files.readAllBytes(osc.toPath()), StandardCharsets.UTF_8));
+		} finally {
+			osc.delete();
+		}
+	}
+}
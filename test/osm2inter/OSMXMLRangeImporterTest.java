@@ -0,0 +1,113 @@
+package osm2inter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+
+class OSMXMLRangeImporterTest {
+
+	private static File write(String content) throws IOException {
+		File file = File.createTempFile("range", ".osm");
+		file.deleteOnExit();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.US_ASCII));
+		return file;
+	}
+
+	private static long next(File file, long offset) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			return OSMXMLRangeImporter.nextMainElement(raf, offset, file.length());
+		}
+	}
+
+	private static String osm(int nodes) {
+		StringBuilder sb = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?>\n<osm version=\"0.6\">\n");
+		for (int i = 1; i <= nodes; i++) {
+			sb.append(" <node id=\"").append(i).append("\" lat=\"52.5\" lon=\"13.4\">\n");
+			sb.append("  <tag k=\"name\" v=\"node ").append(i).append("\"/>\n");
+			sb.append(" </node>\n");
+		}
+		sb.append(" <way id=\"1\">\n  <nd ref=\"1\"/>\n  <nd ref=\"2\"/>\n </way>\n");
+		sb.append(" <relation id=\"1\">\n  <member type=\"way\" ref=\"1\" role=\"\"/>\n </relation>\n");
+		sb.append("</osm>\n");
+		return sb.toString();
+	}
+
+	@Test
+	void rangeStartingInsideElement() throws IOException {
+		String content = osm(3);
+		File file = write(content);
+
+		int second = content.indexOf("<node id=\"2\"");
+		// inside the first node and its tag: next node
+		assertEquals(second, next(file, content.indexOf("lat=\"52.5\"")));
+		assertEquals(second, next(file, content.indexOf("<tag")));
+		// at the opening bracket itself
+		assertEquals(second, next(file, second));
+		// one byte later the name is cut - next element
+		assertEquals(content.indexOf("<node id=\"3\""), next(file, second + 1));
+		// end tags and nd are no main elements
+		assertEquals(content.indexOf("<way"), next(file, content.indexOf("</node>", content.indexOf("<node id=\"3\""))));
+		assertEquals(content.indexOf("<relation"), next(file, content.indexOf("<nd")));
+		assertEquals(content.length(), next(file, content.indexOf("</relation>")));
+	}
+
+	@Test
+	void namesNeedDelimiter() throws IOException {
+		String content = "<osm><nodes/><wayside/><relations><node/><way>";
+		File file = write(content);
+		assertEquals(content.indexOf("<node/>"), next(file, 0));
+		assertEquals(content.indexOf("<way>"), next(file, content.indexOf("<node/>") + 1));
+	}
+
+	@Test
+	void elementAcrossSearchBuffer() throws IOException {
+		// search reads 64 KiB blocks - place element name across first block end
+		int block = 64 * 1024;
+		for (int shift = 1; shift <= 10; shift++) {
+			StringBuilder sb = new StringBuilder("<osm>");
+			while (sb.length() < block - shift) {
+				sb.append(' ');
+			}
+			int relation = sb.length();
+			sb.append("<relation id=\"1\"/></osm>");
+			assertEquals(relation, next(write(sb.toString()), 1), "shift " + shift);
+		}
+	}
+
+	@Test
+	void splitAtMainElements() throws IOException {
+		String content = osm(2000);
+		File file = write(content);
+
+		for (int n = 1; n <= 8; n++) {
+			long[] borders = OSMXMLRangeImporter.split(file, n);
+			assertEquals(n + 1, borders.length);
+			assertEquals(0, borders[0]);
+			assertEquals(content.length(), borders[n]);
+			for (int i = 1; i < n; i++) {
+				assertTrue(borders[i] > borders[i - 1]);
+				assertTrue(content.startsWith("<node ", (int) borders[i]), "border " + borders[i]);
+			}
+		}
+	}
+
+	@Test
+	void smallFileHasFewerRanges() throws IOException {
+		String content = osm(1);
+		File file = write(content);
+
+		// header and three main elements - borders are not repeated
+		long[] borders = OSMXMLRangeImporter.split(file, 50);
+		assertEquals(5, borders.length);
+		for (int i = 1; i < borders.length; i++) {
+			assertTrue(borders[i] > borders[i - 1]);
+		}
+		assertEquals(content.length(), borders[borders.length - 1]);
+	}
+}
@@ -0,0 +1,219 @@
+package osm2inter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.Locator;
+
+class OSMXMLScannerTest {
+
+	/**
+	 * keeps each call as text - record values are only valid during the call
+	 */
+	private static class Recorder implements OSMRecordHandler {
+		final List<String> events = new ArrayList<>();
+		final List<Integer> lines = new ArrayList<>();
+		final List<String> keys = new ArrayList<>();
+		Locator locator;
+
+		@Override
+		public void setDocumentLocator(Locator locator) {
+			this.locator = locator;
+		}
+
+		@Override
+		public void startDocument() {
+			this.events.add("startDocument");
+		}
+
+		@Override
+		public void startElement(OSMRecord record) {
+			StringBuilder sb = new StringBuilder(OSMRecord.getElementName(record.element));
+			append(sb, "id", record.id);
+			append(sb, "lat", record.lat);
+			append(sb, "lon", record.lon);
+			append(sb, "user", record.user);
+			append(sb, "k", record.k);
+			append(sb, "v", record.v);
+			append(sb, "ref", record.ref);
+			append(sb, "type", record.type);
+			append(sb, "role", record.role);
+			this.events.add(sb.toString());
+			this.lines.add(this.locator.getLineNumber());
+			if (record.k != null) {
+				this.keys.add((String) record.k);
+			}
+		}
+
+		@Override
+		public void endElement(OSMRecord record) {
+			this.events.add("/" + OSMRecord.getElementName(record.element));
+		}
+
+		@Override
+		public void endDocument() {
+			this.events.add("endDocument");
+		}
+
+		private static void append(StringBuilder sb, String name, CharSequence value) {
+			if (value != null) {
+				sb.append(' ').append(name).append('=').append(value.toString());
+			}
+		}
+	}
+
+	private static Recorder scan(String xml, int bufferSize) throws IOException {
+		Recorder recorder = new Recorder();
+		new OSMXMLScanner(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), bufferSize).parse(recorder);
+		return recorder;
+	}
+
+	private static String value(String attribute) throws IOException {
+		Recorder recorder = scan("<osm><node id=\"1\"><tag k=\"k\" v=\"" + attribute + "\"/></node></osm>", 64);
+		String tag = recorder.events.get(2);
+		return tag.substring(tag.indexOf(" v=") + 3);
+	}
+
+	private static final String OSM = "<?xml version='1.0' encoding='UTF-8'?>\n"
+			+ "<osm version=\"0.6\" generator=\"test\">\n"
+			+ " <bounds minlat=\"52\" minlon=\"13\" maxlat=\"53\" maxlon=\"14\"/>\n"
+			+ " <!-- a comment with > and \" inside -->\n"
+			+ " <node id=\"1\" lat=\"52.5\" lon=\"13.4\" user=\"alice\"/>\n"
+			+ " <node id='2' lat='-33.8' lon='151.2'>\n"
+			+ "  <tag k=\"amenity\" v=\"cafe\"/>\n"
+			+ "  <tag k=\"name\" v=\"a > b\"/>\n"
+			+ " </node>\n"
+			+ " <way id=\"3\">\n"
+			+ "  <nd ref=\"1\"/>\n"
+			+ "  <nd ref=\"2\"/>\n"
+			+ "  <tag k=\"amenity\" v=\"parking\"/>\n"
+			+ " </way>\n"
+			+ " <relation id=\"4\">\n"
+			+ "  <member type=\"way\" ref=\"3\" role=\"outer\"/>\n"
+			+ "  <member type=\"node\" ref=\"1\" role=\"\"/>\n"
+			+ " </relation>\n"
+			+ "</osm>\n";
+
+	private static final String[] OSM_EVENTS = {
+			"startDocument",
+			"node id=1 lat=52.5 lon=13.4 user=alice", "/node",
+			"node id=2 lat=-33.8 lon=151.2", "tag k=amenity v=cafe", "tag k=name v=a > b", "/node",
+			"way id=3", "nd ref=1", "nd ref=2", "tag k=amenity v=parking", "/way",
+			"relation id=4", "member ref=3 type=way role=outer", "member ref=1 type=node role=", "/relation",
+			"endDocument"
+	};
+
+	@Test
+	void elementsAndAttributes() throws IOException {
+		Recorder recorder = scan(OSM, 1024 * 1024);
+		assertArrayEquals(OSM_EVENTS, recorder.events.toArray());
+		// line of each start element
+		assertEquals(5, recorder.lines.get(0).intValue());
+		assertEquals(6, recorder.lines.get(1).intValue());
+		assertEquals(17, recorder.lines.get(recorder.lines.size() - 1).intValue());
+	}
+
+	@Test
+	void smallBuffer() throws IOException {
+		// elements cross buffer ends, long values make buffer grow
+		String longValue = new String(new char[300]).replace('\0', 'x');
+		String osm = OSM.replace("parking", longValue);
+		Recorder recorder = scan(osm, 16);
+
+		String[] expected = OSM_EVENTS.clone();
+		expected[10] = "tag k=amenity v=" + longValue;
+		assertArrayEquals(expected, recorder.events.toArray());
+	}
+
+	@Test
+	void keysAreCached() throws IOException {
+		Recorder recorder = scan(OSM, 32);
+		assertSame(recorder.keys.get(0), recorder.keys.get(2));
+		assertEquals("name", recorder.keys.get(1));
+	}
+
+	@Test
+	void predefinedEntities() throws IOException {
+		assertEquals("<>&\"'", value("&lt;&gt;&amp;&quot;&apos;"));
+		assertEquals("Tom &amp; Jerry", value("Tom &amp;amp; Jerry"));
+	}
+
+	@Test
+	void numericCharacterReferences() throws IOException {
+		assertEquals("A", value("&#65;"));
+		assertEquals("ß", value("&#xDF;"));
+		assertEquals("€", value("&#8364;"));
+		assertEquals("😀", value("&#x1F600;"));
+		assertEquals("😀", value("&#128512;"));
+		assertEquals("line break", value("line&#10;break").replace('\n', ' '));
+	}
+
+	@Test
+	void unknownEntitiesStayText() throws IOException {
+		assertEquals("&nbsp;", value("&nbsp;"));
+		assertEquals("a & b", value("a & b"));
+		assertEquals("&#x;", value("&#x;"));
+		assertEquals("&#12a;", value("&#12a;"));
+		// beyond unicode
+		assertEquals("&#x110000;", value("&#x110000;"));
+		assertEquals("&", value("&"));
+	}
+
+	@Test
+	void whiteSpaceIsNormalized() throws IOException {
+		assertEquals("a b c d", value("a\tb\nc\rd"));
+	}
+
+	@Test
+	void utf8() throws IOException {
+		assertEquals("Straße 北京 😀", value("Straße 北京 😀"));
+
+		// broken sequences become replacement characters
+		byte[] xml = "<osm><node id=\"1\"><tag k=\"k\" v=\"a__b\"/></node></osm>".getBytes(StandardCharsets.UTF_8);
+		int v = new String(xml, StandardCharsets.US_ASCII).indexOf("a__b");
+		xml[v + 1] = (byte) 0xC3;
+		xml[v + 2] = (byte) 'x';
+		Recorder recorder = new Recorder();
+		new OSMXMLScanner(new ByteArrayInputStream(xml)).parse(recorder);
+		assertEquals("tag k=k v=a�xb", recorder.events.get(2));
+	}
+
+	@Test
+	void cdataAndCommentsAreSkipped() throws IOException {
+		String osm = "<osm>\n"
+				+ "<![CDATA[ it's <node id=\"9\"/> ]]>\n"
+				+ "<!-- <node id=\"8\"/> -->\n"
+				+ "<![CDATA[]]><!---->\n"
+				+ "<node id=\"1\"/>\n"
+				+ "</osm>\n";
+		Recorder recorder = scan(osm, 8);
+		assertArrayEquals(new String[] { "startDocument", "node id=1", "/node", "endDocument" },
+				recorder.events.toArray());
+	}
+
+	@Test
+	void positionOfElement() throws IOException {
+		String osm = "<osm>\n <node id=\"1\"/>\n</osm>";
+		long[] positions = new long[1];
+		OSMXMLScanner scanner = new OSMXMLScanner(new ByteArrayInputStream(osm.getBytes(StandardCharsets.UTF_8)), 4);
+		scanner.parse(new Recorder() {
+			@Override
+			public void startElement(OSMRecord record) {
+				positions[0] = scanner.getPosition();
+			}
+		});
+		assertEquals(osm.indexOf("<node"), positions[0]);
+	}
+
+	@Test
+	void truncatedFile() {
+		assertThrows(IOException.class, () -> scan("<osm><node id=\"1\" lat=\"5", 1024));
+		assertThrows(IOException.class, () -> scan("<osm><node id=\"1\" lat/>", 1024));
+	}
+}
@@ -0,0 +1,303 @@
+package osm2inter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.Test;
+
+class PBFBlockTest {
+
+	/**
+	 * writes protocol buffers wire format for test blocks
+	 */
+	private static class Writer {
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		Writer varint(long value) {
+			while ((value & ~0x7FL) != 0) {
+				this.out.write((int) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			this.out.write((int) value);
+			return this;
+		}
+
+		Writer varint(int field, long value) {
+			return this.varint(field << 3).varint(value);
+		}
+
+		Writer bytes(int field, byte[] value) {
+			this.varint(field << 3 | 2).varint(value.length);
+			this.out.write(value, 0, value.length);
+			return this;
+		}
+
+		Writer string(int field, String value) {
+			return this.bytes(field, value.getBytes(StandardCharsets.UTF_8));
+		}
+
+		Writer message(int field, Writer message) {
+			return this.bytes(field, message.toByteArray());
+		}
+
+		Writer packed(int field, long... values) {
+			Writer packed = new Writer();
+			for (long value : values) {
+				packed.varint(value);
+			}
+			return this.message(field, packed);
+		}
+
+		/**
+		 * delta and zigzag coded like ids and coordinates of dense nodes
+		 */
+		Writer packedDeltas(int field, long... values) {
+			long[] deltas = new long[values.length];
+			long last = 0;
+			for (int i = 0; i < values.length; i++) {
+				deltas[i] = zigzag(values[i] - last);
+				last = values[i];
+			}
+			return this.packed(field, deltas);
+		}
+
+		byte[] toByteArray() {
+			return this.out.toByteArray();
+		}
+
+		static long zigzag(long n) {
+			return (n << 1) ^ (n >> 63);
+		}
+	}
+
+	private static Writer stringTable(String... strings) {
+		Writer table = new Writer();
+		for (String s : strings) {
+			table.string(1, s);
+		}
+		return table;
+	}
+
+	private static byte[] rawBlob(Writer block) {
+		return new Writer().bytes(1, block.toByteArray()).toByteArray();
+	}
+
+	private static PBFBlock.ProtobufReader reader(byte[] data) {
+		return new PBFBlock.ProtobufReader(data, 0, data.length);
+	}
+
+	@Test
+	void varintBoundaries() throws IOException {
+		long[] values = { 0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, 1L << 35, Long.MAX_VALUE, -1 };
+		int[] lengths = { 1, 1, 1, 2, 2, 3, 5, 6, 9, 10 };
+		for (int i = 0; i < values.length; i++) {
+			byte[] data = new Writer().varint(values[i]).toByteArray();
+			assertEquals(lengths[i], data.length, "length of " + values[i]);
+
+			PBFBlock.ProtobufReader r = reader(data);
+			assertEquals(values[i], r.readVarint());
+			assertFalse(r.hasMore());
+		}
+
+		assertThrows(IOException.class, () -> reader(new byte[] { (byte) 0x80 }).readVarint());
+		byte[] tooLong = new byte[11];
+		Arrays.fill(tooLong, (byte) 0x80);
+		assertThrows(IOException.class, () -> reader(tooLong).readVarint());
+	}
+
+	@Test
+	void zigzag() {
+		long[] values = { 0, -1, 1, -2, 2, Long.MAX_VALUE, Long.MIN_VALUE, -1000000 };
+		for (long value : values) {
+			assertEquals(value, PBFBlock.ProtobufReader.zigzag(Writer.zigzag(value)));
+		}
+		assertEquals(-1, PBFBlock.ProtobufReader.zigzag(1));
+		assertEquals(1, PBFBlock.ProtobufReader.zigzag(2));
+	}
+
+	@Test
+	void packedAndUnpackedVarints() throws IOException {
+		PBFBlock.ProtobufReader r = reader(new Writer().packed(8, 1, 300, 1L << 40).varint(8, 5).toByteArray());
+		assertArrayEquals(new long[] { 1, 300, 1L << 40 }, r.readPackedVarints(r.readTag()));
+		assertArrayEquals(new long[] { 5 }, r.readPackedVarints(r.readTag()));
+		assertFalse(r.hasMore());
+
+		// length beyond message
+		assertThrows(IOException.class, () -> reader(new byte[] { 0x42, 5, 1 }).readBytes());
+	}
+
+	@Test
+	void formatNanoDegrees() {
+		assertEquals("0", PBFBlock.formatNanoDegrees(0));
+		assertEquals("52.5170365", PBFBlock.formatNanoDegrees(52517036500L));
+		assertEquals("13", PBFBlock.formatNanoDegrees(13000000000L));
+		assertEquals("-0.0000001", PBFBlock.formatNanoDegrees(-100));
+		assertEquals("-179.9999999", PBFBlock.formatNanoDegrees(-179999999900L));
+		assertEquals("0.000000001", PBFBlock.formatNanoDegrees(1));
+	}
+
+	@Test
+	void denseNodesWithNegativeDeltas() throws IOException {
+		Writer denseInfo = new Writer()
+				.packed(1, 1, 1, 1)
+				.packedDeltas(2, 1500000000, 1400000000, 1600000000)
+				.packedDeltas(4, 42, 7, 42)
+				.packedDeltas(5, 3, 4, 3);
+		Writer dense = new Writer()
+				.packedDeltas(1, 100, 99, 5000000000L)
+				.message(5, denseInfo)
+				.packedDeltas(8, 525170365, -338000000, 0)
+				.packedDeltas(9, 134, -700000000, -1)
+				// first node two tags, second none, third one
+				.packed(10, 1, 2, 5, 6, 0, 0, 1, 6, 0);
+		Writer block = new Writer()
+				.message(1, stringTable("", "highway", "bus_stop", "alice", "bob", "name", "Mitte"))
+				.message(2, new Writer().message(2, dense));
+
+		PBFBlock decoded = PBFBlock.decode(rawBlob(block));
+		assertEquals(3, decoded.elements.size());
+
+		PBFBlock.Element first = decoded.elements.get(0);
+		assertEquals(PBFBlock.NODE, first.type);
+		assertEquals("100", first.id);
+		assertEquals("52.5170365", first.lat);
+		assertEquals("0.0000134", first.lon);
+		assertEquals("2017-07-14T02:40:00Z", first.timestamp);
+		assertEquals("42", first.uid);
+		assertEquals("alice", first.user);
+		assertArrayEquals(new String[] { "highway", "bus_stop", "name", "Mitte" }, first.tags);
+
+		PBFBlock.Element second = decoded.elements.get(1);
+		assertEquals("99", second.id);
+		assertEquals("-33.8", second.lat);
+		assertEquals("-70", second.lon);
+		assertEquals("2014-05-13T16:53:20Z", second.timestamp);
+		assertEquals("7", second.uid);
+		assertEquals("bob", second.user);
+		assertNull(second.tags);
+
+		PBFBlock.Element third = decoded.elements.get(2);
+		assertEquals("5000000000", third.id);
+		assertEquals("0", third.lat);
+		assertEquals("-0.0000001", third.lon);
+		assertEquals("alice", third.user);
+		assertArrayEquals(new String[] { "highway", "Mitte" }, third.tags);
+	}
+
+	@Test
+	void granularityAndOffsets() throws IOException {
+		Writer dense = new Writer().packed(1, 2).packed(8, Writer.zigzag(5)).packed(9, Writer.zigzag(-5));
+		Writer block = new Writer()
+				.message(1, stringTable(""))
+				.message(2, new Writer().message(2, dense))
+				.varint(17, 1000)
+				.varint(19, 1000000000)
+				.varint(20, 2000000000);
+
+		PBFBlock.Element node = PBFBlock.decode(rawBlob(block)).elements.get(0);
+		assertEquals("1", node.id);
+		assertEquals("1.000005", node.lat);
+		assertEquals("1.999995", node.lon);
+		assertNull(node.timestamp);
+	}
+
+	@Test
+	void waysAndRelations() throws IOException {
+		Writer info = new Writer().varint(2, 1500000000).varint(4, 42).varint(5, 1);
+		Writer way = new Writer()
+				.varint(1, 77)
+				.packed(2, 2)
+				.packed(3, 3)
+				.message(4, info)
+				.packedDeltas(8, 1000, 990, 1000, 5);
+		Writer relation = new Writer()
+				.varint(1, 88)
+				.packed(8, 4, 0, 5)
+				.packedDeltas(9, 77, 1000, 88)
+				.packed(10, PBFBlock.WAY, PBFBlock.NODE, PBFBlock.RELATION);
+		Writer block = new Writer()
+				.message(1, stringTable("", "carol", "highway", "path", "outer", "label"))
+				.message(2, new Writer().message(3, way).message(4, relation));
+
+		PBFBlock decoded = PBFBlock.decode(rawBlob(block));
+		assertEquals(2, decoded.elements.size());
+
+		PBFBlock.Element w = decoded.elements.get(0);
+		assertEquals(PBFBlock.WAY, w.type);
+		assertEquals("77", w.id);
+		assertEquals("carol", w.user);
+		assertEquals("42", w.uid);
+		assertEquals("2017-07-14T02:40:00Z", w.timestamp);
+		assertArrayEquals(new String[] { "highway", "path" }, w.tags);
+		assertArrayEquals(new long[] { 1000, 990, 1000, 5 }, w.refs);
+
+		PBFBlock.Element r = decoded.elements.get(1);
+		assertEquals(PBFBlock.RELATION, r.type);
+		assertEquals("88", r.id);
+		assertNull(r.tags);
+		assertArrayEquals(new long[] { 77, 1000, 88 }, r.refs);
+		assertArrayEquals(new int[] { PBFBlock.WAY, PBFBlock.NODE, PBFBlock.RELATION }, r.memberTypes);
+		assertArrayEquals(new String[] { "outer", "", "label" }, r.memberRoles);
+	}
+
+	@Test
+	void malformedRelation() {
+		Writer relation = new Writer().varint(1, 1).packed(8, 0, 0).packedDeltas(9, 1);
+		Writer block = new Writer()
+				.message(1, stringTable(""))
+				.message(2, new Writer().message(4, relation));
+		assertThrows(IOException.class, () -> PBFBlock.decode(rawBlob(block)));
+	}
+
+	@Test
+	void zlibBlob() throws IOException {
+		byte[] data = new byte[100000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i % 251);
+		}
+		Deflater deflater = new Deflater();
+		deflater.setInput(data);
+		deflater.finish();
+		byte[] compressed = new byte[data.length + 1024];
+		int n = deflater.deflate(compressed);
+		deflater.end();
+
+		byte[] blob = new Writer()
+				.varint(2, data.length)
+				.bytes(3, Arrays.copyOf(compressed, n))
+				.toByteArray();
+		assertArrayEquals(data, PBFBlock.unpackBlob(blob));
+
+		byte[] wrongSize = new Writer()
+				.varint(2, data.length + 1)
+				.bytes(3, Arrays.copyOf(compressed, n))
+				.toByteArray();
+		assertThrows(IOException.class, () -> PBFBlock.unpackBlob(wrongSize));
+	}
+
+	@Test
+	void unsupportedBlobs() {
+		assertThrows(IOException.class,
+				() -> PBFBlock.unpackBlob(new Writer().varint(2, 3).bytes(4, new byte[3]).toByteArray()));
+		assertThrows(IOException.class, () -> PBFBlock.unpackBlob(new Writer().varint(2, 3).toByteArray()));
+	}
+
+	@Test
+	void headerFeatures() throws IOException {
+		PBFBlock.checkHeaderBlock(new Writer()
+				.string(4, "OsmSchema-V0.6")
+				.string(4, "DenseNodes")
+				.string(5, "Sort.Type_then_ID")
+				.string(16, "osmium")
+				.toByteArray());
+		assertThrows(IOException.class, () -> PBFBlock.checkHeaderBlock(new Writer()
+				.string(4, "OsmSchema-V0.6")
+				.string(4, "HistoricalInformation")
+				.toByteArray()));
+	}
+}
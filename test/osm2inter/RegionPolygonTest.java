@@ -0,0 +1,112 @@
+package osm2inter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+
+class RegionPolygonTest {
+
+	private static int fixed7(double degree) {
+		return (int) Math.round(degree * 1e7);
+	}
+
+	private static boolean contains(RegionPolygon polygon, double lon, double lat) {
+		return polygon.contains(fixed7(lon), fixed7(lat));
+	}
+
+	private static RegionPolygon read(String content) throws IOException {
+		File file = File.createTempFile("region", ".poly");
+		try {
+			Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+			return RegionPolygon.read(file);
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	void polygonWithHole() throws IOException {
+		RegionPolygon polygon = read("test\n"
+				+ "outer\n"
+				+ "   0.0E+00   0.0E+00\n"
+				+ "   1.0E+01   0.0E+00\n"
+				+ "   1.0E+01   1.0E+01\n"
+				+ "   0.0E+00   1.0E+01\n"
+				+ "END\n"
+				+ "!hole\n"
+				+ "   4.0 4.0\n"
+				+ "   6.0 4.0\n"
+				+ "   6.0 6.0\n"
+				+ "   4.0 6.0\n"
+				+ "END\n"
+				+ "island\n"
+				+ "   20.0 0.0\n"
+				+ "   22.0 0.0\n"
+				+ "   21.0 2.0\n"
+				+ "END\n"
+				+ "END\n");
+
+		assertTrue(contains(polygon, 1, 1));
+		assertTrue(contains(polygon, 9.5, 5));
+		assertFalse(contains(polygon, 5, 5));
+		assertFalse(contains(polygon, 4.5, 5.9));
+		assertTrue(contains(polygon, 3.9, 5));
+		assertTrue(contains(polygon, 21, 1));
+		assertFalse(contains(polygon, 15, 1));
+		assertFalse(contains(polygon, -1, 5));
+		assertFalse(contains(polygon, 5, 11));
+		assertEquals("test (11 edges)", polygon.toString());
+	}
+
+	@Test
+	void boundingBoxEdges() {
+		RegionPolygon bbox = RegionPolygon.fromBBox("13.0,52.0,14.0,53.0");
+
+		// half-open like the crossing rule: minimum edges inside, maximum edges outside
+		assertTrue(contains(bbox, 13.0, 52.5));
+		assertTrue(contains(bbox, 13.5, 52.0));
+		assertTrue(contains(bbox, 13.0, 52.0));
+		assertFalse(contains(bbox, 14.0, 52.5));
+		assertFalse(contains(bbox, 13.5, 53.0));
+
+		assertTrue(contains(bbox, 13.9999999, 52.9999999));
+		assertFalse(contains(bbox, 12.9999999, 52.5));
+		assertFalse(contains(bbox, 13.5, 51.9999999));
+	}
+
+	@Test
+	void manyEdgesUseStripes() throws IOException {
+		// circle of radius 1 around 10,50 with 1000 edges
+		StringBuilder poly = new StringBuilder("circle\n1\n");
+		for (int i = 0; i < 1000; i++) {
+			double angle = 2 * Math.PI * i / 1000;
+			poly.append(10 + Math.cos(angle)).append(' ').append(50 + Math.sin(angle)).append('\n');
+		}
+		poly.append("END\nEND\n");
+		RegionPolygon circle = read(poly.toString());
+
+		for (double lon = 8.75; lon <= 11.25; lon += 0.05) {
+			for (double lat = 48.75; lat <= 51.25; lat += 0.05) {
+				double distance = Math.hypot(lon - 10, lat - 50);
+				if (Math.abs(distance - 1) < 0.001) continue;
+				assertEquals(distance < 1, contains(circle, lon, lat), lon + " " + lat);
+			}
+		}
+	}
+
+	@Test
+	void malformedInput() {
+		assertThrows(IllegalArgumentException.class, () -> RegionPolygon.fromBBox("13,52,14"));
+		assertThrows(IllegalArgumentException.class, () -> RegionPolygon.fromBBox("14,52,13,53"));
+		assertThrows(IOException.class, () -> read(""));
+		assertThrows(IOException.class, () -> read("open\n1\n0 0\n1 0\n1 1\n"));
+		assertThrows(IOException.class, () -> read("words\n1\n0 0\nnorth east\nEND\nEND\n"));
+		// rings need three points
+		assertThrows(IOException.class, () -> read("line\n1\n0 0\n1 1\nEND\nEND\n"));
+	}
+}
@@ -0,0 +1,27 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class CommitIntervalTest {
+
+	@Test
+	void countStatements() {
+		assertEquals(0, CommitInterval.countStatements(""));
+		assertEquals(0, CommitInterval.countStatements(" ;\n; "));
+		assertEquals(1, CommitInterval.countStatements("SELECT 1"));
+		assertEquals(1, CommitInterval.countStatements("SELECT 1;"));
+		assertEquals(3, CommitInterval.countStatements("INSERT INTO a VALUES (1); INSERT INTO a VALUES (2);\nUPDATE a SET x = 1"));
+	}
+
+	@Test
+	void semicolonsInQuotesAndComments() {
+		assertEquals(1, CommitInterval.countStatements("INSERT INTO a (name) VALUES ('a;b');"));
+		assertEquals(1, CommitInterval.countStatements("INSERT INTO a (name) VALUES ('it''s; here');"));
+		assertEquals(1, CommitInterval.countStatements("UPDATE \"odd;name\" SET x = 1;"));
+		assertEquals(2, CommitInterval.countStatements("-- first; one\nSELECT 1; SELECT 2; -- done;"));
+		// unterminated quote ends the text
+		assertEquals(1, CommitInterval.countStatements("SELECT 'a;"));
+	}
+}
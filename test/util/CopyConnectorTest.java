@@ -0,0 +1,235 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class CopyConnectorTest {
+	private static final long POSTGRES_EPOCH_DAY = LocalDate.of(2000, 1, 1).toEpochDay();
+
+	/**
+	 * keeps what would go to COPY
+	 */
+	private static class Captured extends CopyConnector {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int writes = 0;
+
+		Captured(boolean binary, String delimiter, int flushSize) throws IOException {
+			super("nodes", delimiter, binary, flushSize);
+		}
+
+		@Override
+		protected void writeToCopy(byte[] data, int length) {
+			this.out.write(data, 0, length);
+			this.writes++;
+		}
+
+		byte[] end() throws SQLException {
+			this.endData();
+			this.flushBuffer();
+			return this.out.toByteArray();
+		}
+
+		String text() throws SQLException {
+			return new String(this.end(), StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * reads fields of binary COPY rows
+	 */
+	private static class BinaryRows {
+		private final DataInputStream in;
+
+		BinaryRows(byte[] data) {
+			this.in = new DataInputStream(new ByteArrayInputStream(data));
+		}
+
+		/**
+		 * @return number of fields, -1 at trailer
+		 */
+		int row() throws IOException {
+			return this.in.readShort();
+		}
+
+		/**
+		 * @return field bytes, null for NULL
+		 */
+		byte[] field() throws IOException {
+			int length = this.in.readInt();
+			if (length < 0) return null;
+			byte[] bytes = new byte[length];
+			this.in.readFully(bytes);
+			return bytes;
+		}
+
+		DataInputStream data() throws IOException {
+			return new DataInputStream(new ByteArrayInputStream(this.field()));
+		}
+
+		boolean atEnd() throws IOException {
+			return this.in.available() == 0;
+		}
+	}
+
+	@Test
+	void textFields() throws IOException, SQLException {
+		Captured copy = new Captured(false, "\t", 1024);
+		copy.field(42).field(-7).field(Long.MIN_VALUE).intField(0).intField(Integer.MIN_VALUE).endRow();
+		copy.field("a\tb\\c\nd\re").nullField().field(true).field(false).endRow();
+		copy.field("Straße 😀").dateField("2017-03-01T12:00:00Z").endRow();
+
+		assertEquals("42\t-7\t-9223372036854775808\t0\t-2147483648\n"
+				+ "a\\\tb\\\\c\\nd\\re\tNULL\tt\tf\n"
+				+ "Straße 😀\t2017-03-01T12:00:00Z\n", copy.text());
+		assertEquals(3, copy.getWrittenLines());
+	}
+
+	@Test
+	void textArraysAndBytes() throws IOException, SQLException {
+		Captured copy = new Captured(false, "\t", 1024);
+		copy.field(new long[] { 1, -2, 3 }, 2).field(new long[0], 0)
+				.field(new byte[] { 0x0a, (byte) 0xff, 0 }, 3)
+				.geometryField(new byte[] { 1, (byte) 0xab }, 2)
+				.endRow();
+		assertEquals("{1,-2}\t{}\t\\\\x0aff00\t01ab\n", copy.text());
+
+		// comma delimiter is escaped inside arrays
+		copy = new Captured(false, ",", 1024);
+		copy.field(new long[] { 1, 2 }, 2).field("a,b").endRow();
+		assertEquals("{1\\,2},a\\,b\n", copy.text());
+	}
+
+	@Test
+	void textHstore() throws IOException, SQLException {
+		Captured copy = new Captured(false, "\t", 1024);
+		copy.hstoreField(new String[] { "name", "say \"hi\"", "path", "a\\b", "unused", "" }, 2).endRow();
+		// quotes and backslashes escaped for hstore, backslashes then for COPY
+		assertEquals("\"name\"=>\"say \\\\\"hi\\\\\"\", \"path\"=>\"a\\\\\\\\b\"\n", copy.text());
+	}
+
+	@Test
+	void binaryRoundTrip() throws IOException, SQLException {
+		Captured copy = new Captured(true, "\t", 1024);
+		copy.field(Long.MIN_VALUE).field(-1L).intField(-2).field(true).field(false)
+				.dateField("2017-03-01T12:00:00Z").dateField("1999-12-31").dateField("yesterday")
+				.field("Straße 😀").nullField()
+				.endRow();
+		copy.field(new long[] { 5, -6 }, 2).field(new long[0], 0)
+				.field(new byte[] { 1, 2, 3, 4 }, 3).geometryField(new byte[] { 9, 8 }, 2)
+				.hstoreField(new String[] { "k", "v", "name", "Straße" }, 2)
+				.endRow();
+		copy.endRow();
+
+		BinaryRows rows = new BinaryRows(copy.end());
+		assertEquals(10, rows.row());
+		assertEquals(Long.MIN_VALUE, rows.data().readLong());
+		assertEquals(-1L, rows.data().readLong());
+		assertEquals(-2, rows.data().readInt());
+		assertArrayEquals(new byte[] { 1 }, rows.field());
+		assertArrayEquals(new byte[] { 0 }, rows.field());
+		assertEquals(LocalDate.of(2017, 3, 1).toEpochDay() - POSTGRES_EPOCH_DAY, rows.data().readInt());
+		assertEquals(-1, rows.data().readInt());
+		assertNull(rows.field());
+		assertEquals("Straße 😀", new String(rows.field(), StandardCharsets.UTF_8));
+		assertNull(rows.field());
+
+		assertEquals(5, rows.row());
+		// bigint[]: dimensions, has nulls, element type, size, lower bound, elements
+		DataInputStream array = rows.data();
+		assertEquals(1, array.readInt());
+		assertEquals(0, array.readInt());
+		assertEquals(20, array.readInt());
+		assertEquals(2, array.readInt());
+		assertEquals(1, array.readInt());
+		assertEquals(8, array.readInt());
+		assertEquals(5, array.readLong());
+		assertEquals(8, array.readInt());
+		assertEquals(-6, array.readLong());
+		assertEquals(0, array.available());
+
+		DataInputStream empty = rows.data();
+		assertEquals(0, empty.readInt());
+		assertEquals(0, empty.readInt());
+		assertEquals(20, empty.readInt());
+		assertEquals(0, empty.available());
+
+		assertArrayEquals(new byte[] { 1, 2, 3 }, rows.field());
+		assertArrayEquals(new byte[] { 9, 8 }, rows.field());
+
+		DataInputStream hstore = rows.data();
+		assertEquals(2, hstore.readInt());
+		String[] kv = new String[4];
+		for (int i = 0; i < kv.length; i++) {
+			byte[] s = new byte[hstore.readInt()];
+			hstore.readFully(s);
+			kv[i] = new String(s, StandardCharsets.UTF_8);
+		}
+		assertArrayEquals(new String[] { "k", "v", "name", "Straße" }, kv);
+		assertEquals(0, hstore.available());
+
+		// empty row, then trailer
+		assertEquals(0, rows.row());
+		assertEquals(-1, rows.row());
+		assertTrue(rows.atEnd());
+		assertEquals(3, copy.getWrittenLines());
+	}
+
+	@Test
+	void binaryRejectsTextLines() throws IOException {
+		Captured copy = new Captured(true, "\t", 1024);
+		assertThrows(SQLException.class, () -> copy.write("1\t2"));
+	}
+
+	@Test
+	void epochDays() {
+		String[] dates = { "1970-01-01", "1969-12-31", "2000-01-01", "2000-02-29", "2000-03-01",
+				"1900-03-01", "2100-02-28", "1600-02-29", "0001-01-01", "2017-03-01T12:00:00Z" };
+		for (String date : dates) {
+			assertEquals(LocalDate.parse(date.substring(0, 10)).toEpochDay(), CopyConnector.parseEpochDay(date), date);
+		}
+
+		String[] broken = { "2017-13-01", "2017-00-10", "2017-01-32", "2017/03/01", "17-03-01", "2017-0a-01" };
+		for (String date : broken) {
+			assertThrows(NumberFormatException.class, () -> CopyConnector.parseEpochDay(date), date);
+		}
+		assertThrows(NumberFormatException.class, () -> CopyConnector.parseEpochDay(null));
+	}
+
+	@Test
+	void flushesFullBuffers() throws IOException, SQLException {
+		Captured copy = new Captured(false, "\t", 16);
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			copy.field(i).field("row").endRow();
+			expected.append(i).append("\trow\n");
+		}
+		// rows are not split between writes
+		assertTrue(copy.writes > 1);
+		assertTrue(new String(copy.out.toByteArray(), StandardCharsets.UTF_8).endsWith("\n"));
+
+		// a row larger than buffer makes it grow
+		char[] large = new char[200 * 1024];
+		Arrays.fill(large, 'x');
+		copy.field(new String(large)).endRow();
+		expected.append(large).append('\n');
+
+		assertEquals(expected.toString(), copy.text());
+	}
+
+	@Test
+	void delimiterMustBeOneAsciiCharacter() {
+		assertThrows(IOException.class, () -> new Captured(false, "ab", 16));
+		assertThrows(IOException.class, () -> new Captured(false, "ä", 16));
+		assertThrows(IOException.class, () -> new Captured(false, "", 16));
+	}
+}
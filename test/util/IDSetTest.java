@@ -0,0 +1,74 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class IDSetTest {
+	private static final long PAGE = 1L << 18;
+
+	@Test
+	void wordAndPageBoundaries() {
+		IDSet set = new IDSet();
+		long[] ids = { 0, 63, 64, 65, PAGE - 1, PAGE, PAGE + 1, 2 * PAGE - 64, 2 * PAGE };
+		for (long id : ids) {
+			assertTrue(set.add(id), "add " + id);
+		}
+		assertEquals(ids.length, set.size());
+
+		for (long id : ids) {
+			assertTrue(set.contains(id), "contains " + id);
+		}
+		long[] neighbours = { 1, 62, 66, PAGE - 2, PAGE + 2, 2 * PAGE - 63, 2 * PAGE - 65, 2 * PAGE + 1 };
+		for (long id : neighbours) {
+			assertFalse(set.contains(id), "contains " + id);
+		}
+	}
+
+	@Test
+	void duplicatesAndNegativeIds() {
+		IDSet set = new IDSet();
+		assertTrue(set.add(42));
+		assertFalse(set.add(42));
+		assertFalse(set.add(-1));
+		assertFalse(set.add(Long.MIN_VALUE));
+
+		assertEquals(1, set.size());
+		assertFalse(set.contains(-1));
+		assertFalse(set.contains(-42));
+	}
+
+	@Test
+	void growsBeyondInitialPages() {
+		IDSet set = new IDSet();
+		// page table starts with 16 pages
+		long first = 16 * PAGE;
+		long planet = 12_000_000_000L;
+
+		assertFalse(set.contains(first));
+		assertFalse(set.contains(planet));
+		assertTrue(set.add(first));
+		assertTrue(set.add(planet));
+		assertTrue(set.add(7));
+
+		assertTrue(set.contains(first));
+		assertTrue(set.contains(planet));
+		assertTrue(set.contains(7));
+		assertFalse(set.contains(first - 1));
+		assertFalse(set.contains(planet + 1));
+		assertFalse(set.contains(planet + PAGE));
+		assertEquals(3, set.size());
+	}
+
+	@Test
+	void manyIds() {
+		IDSet set = new IDSet();
+		for (long id = 0; id < 3 * PAGE; id += 3) {
+			set.add(id);
+		}
+		assertEquals(PAGE, set.size());
+		for (long id = 0; id < 3 * PAGE; id++) {
+			assertEquals(id % 3 == 0, set.contains(id));
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+class NodeLocationStoreTest {
+	// first id of second mapping, see NodeLocationStore.SEGMENT_BITS
+	private static final long SEGMENT_SLOTS = 1L << 27;
+
+	private static File tempFile() throws IOException {
+		File file = File.createTempFile("nodeLocations", ".bin");
+		file.deleteOnExit();
+		return file;
+	}
+
+	@Test
+	void slotEncoding() throws IOException {
+		File file = tempFile();
+		NodeLocationStore store = NodeLocationStore.create(file);
+		try {
+			int[][] coordinates = { { 134000000, 525000000 }, { -1800000000, -900000000 },
+					{ 1800000000, 900000000 }, { 0, 0 }, { -1, 1 } };
+			for (int i = 0; i < coordinates.length; i++) {
+				assertTrue(store.put(i + 1, coordinates[i][0], coordinates[i][1]));
+			}
+			for (int i = 0; i < coordinates.length; i++) {
+				long slot = store.get(i + 1);
+				// even smallest coordinates are no empty slot
+				assertNotEquals(0, slot);
+				assertEquals(coordinates[i][0], NodeLocationStore.getLongitude(slot));
+				assertEquals(coordinates[i][1], NodeLocationStore.getLatitude(slot));
+				assertFalse(NodeLocationStore.hasIdentity(slot));
+			}
+
+			// unknown and negative ids are empty
+			assertEquals(0, store.get(0));
+			assertEquals(0, store.get(100));
+			assertEquals(0, store.get(-1));
+			assertFalse(store.put(-1, 1, 1));
+		} finally {
+			store.close();
+			file.delete();
+		}
+	}
+
+	@Test
+	void identityFlag() throws IOException {
+		File file = tempFile();
+		NodeLocationStore store = NodeLocationStore.create(file);
+		try {
+			store.put(7, -1800000000, -900000000);
+			store.markIdentity(7);
+			long slot = store.get(7);
+			assertTrue(NodeLocationStore.hasIdentity(slot));
+			// flag does not change coordinates
+			assertEquals(-1800000000, NodeLocationStore.getLongitude(slot));
+			assertEquals(-900000000, NodeLocationStore.getLatitude(slot));
+
+			// moved node keeps its flag
+			store.put(7, 10, 20);
+			slot = store.get(7);
+			assertTrue(NodeLocationStore.hasIdentity(slot));
+			assertEquals(10, NodeLocationStore.getLongitude(slot));
+			assertEquals(20, NodeLocationStore.getLatitude(slot));
+
+			// unknown nodes are not marked
+			store.markIdentity(8);
+			assertEquals(0, store.get(8));
+		} finally {
+			store.close();
+			file.delete();
+		}
+	}
+
+	@Test
+	void segmentBoundary() throws IOException {
+		File file = tempFile();
+		NodeLocationStore store = NodeLocationStore.create(file);
+		try {
+			store.put(SEGMENT_SLOTS - 1, 1, 2);
+			// second segment is not mapped by reading
+			assertEquals(0, store.get(SEGMENT_SLOTS));
+			store.put(SEGMENT_SLOTS, 3, 4);
+			store.put(SEGMENT_SLOTS + 1, 5, 6);
+
+			assertEquals(1, NodeLocationStore.getLongitude(store.get(SEGMENT_SLOTS - 1)));
+			assertEquals(2, NodeLocationStore.getLatitude(store.get(SEGMENT_SLOTS - 1)));
+			assertEquals(3, NodeLocationStore.getLongitude(store.get(SEGMENT_SLOTS)));
+			assertEquals(4, NodeLocationStore.getLatitude(store.get(SEGMENT_SLOTS)));
+			assertEquals(5, NodeLocationStore.getLongitude(store.get(SEGMENT_SLOTS + 1)));
+			// same position in first segment stays empty
+			assertEquals(0, store.get(0));
+			assertEquals(0, store.get(1));
+		} finally {
+			store.close();
+			file.delete();
+		}
+	}
+
+	@Test
+	void openKeepsAndCreateTruncates() throws IOException {
+		File file = tempFile();
+		try {
+			NodeLocationStore store = NodeLocationStore.create(file);
+			store.put(42, 100, 200);
+			store.markIdentity(42);
+			store.close();
+
+			store = NodeLocationStore.open(file);
+			long slot = store.get(42);
+			assertEquals(100, NodeLocationStore.getLongitude(slot));
+			assertEquals(200, NodeLocationStore.getLatitude(slot));
+			assertTrue(NodeLocationStore.hasIdentity(slot));
+			store.close();
+
+			store = NodeLocationStore.create(file);
+			assertEquals(0, store.get(42));
+			assertEquals(0, file.length());
+			store.close();
+		} finally {
+			file.delete();
+		}
+
+		assertThrows(IOException.class, () -> NodeLocationStore.open(file));
+	}
+}
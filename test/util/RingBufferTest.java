@@ -0,0 +1,162 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+class RingBufferTest {
+
+	@Test
+	void keepsOrderOverWraparound() throws InterruptedException {
+		RingBuffer<Integer> ring = new RingBuffer<>(3);
+		List<Integer> drained = new ArrayList<>();
+
+		// head and tail pass the end of the array several times
+		int next = 0;
+		for (int round = 0; round < 5; round++) {
+			ring.put(next++);
+			ring.put(next++);
+			assertEquals(2, ring.drainTo(drained, 2));
+		}
+		ring.put(next++);
+		ring.put(next++);
+		ring.put(next++);
+		assertEquals(3, ring.depth());
+		assertEquals(3, ring.drainTo(drained, 10));
+
+		assertEquals(13, drained.size());
+		for (int i = 0; i < drained.size(); i++) {
+			assertEquals(i, drained.get(i).intValue());
+		}
+		assertEquals(0, ring.depth());
+		assertEquals(3, ring.getMaxDepth());
+	}
+
+	@Test
+	void drainsAtMostMax() throws InterruptedException {
+		RingBuffer<String> ring = new RingBuffer<>(4);
+		ring.put("a");
+		ring.put("b");
+		ring.put("c");
+
+		List<String> drained = new ArrayList<>();
+		assertEquals(2, ring.drainTo(drained, 2));
+		assertEquals(1, ring.depth());
+		assertEquals(1, ring.drainTo(drained, 2));
+		assertEquals("[a, b, c]", drained.toString());
+	}
+
+	@Test
+	void closeHandsOutRemainingItems() throws InterruptedException {
+		RingBuffer<String> ring = new RingBuffer<>(2);
+		ring.put("a");
+		ring.close();
+
+		assertThrows(IllegalStateException.class, () -> ring.put("b"));
+
+		List<String> drained = new ArrayList<>();
+		assertEquals(1, ring.drainTo(drained, 5));
+		assertEquals(0, ring.drainTo(drained, 5));
+		assertEquals("[a]", drained.toString());
+	}
+
+	@Test
+	void fullBufferBlocksProducer() throws InterruptedException {
+		RingBuffer<Integer> ring = new RingBuffer<>(1);
+		ring.put(0);
+
+		CountDownLatch started = new CountDownLatch(1);
+		Thread producer = new Thread(() -> {
+			try {
+				started.countDown();
+				ring.put(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		producer.start();
+		started.await();
+
+		// producer waits until consumer took first item
+		List<Integer> drained = new ArrayList<>();
+		while (drained.size() < 2) {
+			ring.drainTo(drained, 1);
+		}
+		producer.join(10000);
+		assertFalse(producer.isAlive());
+		assertEquals("[0, 1]", drained.toString());
+		assertEquals(1, ring.getMaxDepth());
+	}
+
+	@Test
+	void closeReleasesWaitingConsumer() throws InterruptedException {
+		RingBuffer<Integer> ring = new RingBuffer<>(2);
+		int[] result = { -1 };
+		Thread consumer = new Thread(() -> {
+			try {
+				result[0] = ring.drainTo(new ArrayList<>(), 1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		consumer.start();
+		ring.close();
+		consumer.join(10000);
+
+		assertFalse(consumer.isAlive());
+		assertEquals(0, result[0]);
+	}
+
+	@Test
+	void waitsAreCounted() throws InterruptedException {
+		RingBuffer<Integer> ring = new RingBuffer<>(1);
+		List<Integer> drained = new ArrayList<>();
+		ring.put(0);
+		ring.drainTo(drained, 1);
+		assertEquals(0, ring.getFullWaits());
+		assertEquals(0, ring.getEmptyWaits());
+
+		// consumer finds buffer empty
+		Thread producer = new Thread(() -> {
+			try {
+				Thread.sleep(50);
+				ring.put(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		producer.start();
+		ring.drainTo(drained, 1);
+		producer.join(10000);
+		assertEquals(1, ring.getEmptyWaits());
+		assertTrue(ring.getEmptyWaitMillis() > 0);
+
+		// producer finds buffer full
+		ring.put(2);
+		Thread consumer = new Thread(() -> {
+			try {
+				Thread.sleep(50);
+				ring.drainTo(drained, 1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		consumer.start();
+		ring.put(3);
+		consumer.join(10000);
+		assertEquals(1, ring.getFullWaits());
+		assertTrue(ring.getFullWaitMillis() > 0);
+
+		ring.drainTo(drained, 1);
+		assertEquals("[0, 1, 2, 3]", drained.toString());
+	}
+
+	@Test
+	void rejectsEmptyCapacity() {
+		assertThrows(IllegalArgumentException.class, () -> new RingBuffer<Integer>(0));
+	}
+}
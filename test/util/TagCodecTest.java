@@ -0,0 +1,188 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class TagCodecTest {
+
+	private static String repeat(char c, int n) {
+		StringBuilder sb = new StringBuilder(n);
+		for (int i = 0; i < n; i++) {
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	private static Map<String, String> roundTrip(TagCodec codec, Map<String, String> tags, TagDictionary dictionary) {
+		codec.reset();
+		for (Map.Entry<String, String> tag : tags.entrySet()) {
+			codec.add(tag.getKey(), tag.getValue());
+		}
+		Map<String, String> decoded = new HashMap<>();
+		TagCodec.decode(codec.toByteArray(), decoded, dictionary);
+		return decoded;
+	}
+
+	@Test
+	void roundTrip() {
+		Map<String, String> tags = new LinkedHashMap<>();
+		tags.put("highway", "residential");
+		tags.put("name", "Straße am Fluß");
+		tags.put("name:zh", "北京");
+		tags.put("note", "😀 smiley");
+		tags.put("fixme", null);
+
+		assertEquals(tags, TagCodecTest.roundTrip(new TagCodec(4), tags, null));
+	}
+
+	@Test
+	void dropsQuotesAndEmptyKeys() {
+		TagCodec codec = new TagCodec(16);
+		codec.add("it's", "o'clock");
+		codec.add("", "lost");
+		codec.add("empty", "");
+
+		Map<String, String> decoded = new HashMap<>();
+		TagCodec.decode(codec.toByteArray(), decoded);
+		assertEquals(2, decoded.size());
+		assertEquals("oclock", decoded.get("its"));
+		assertTrue(decoded.containsKey("empty"));
+		assertNull(decoded.get("empty"));
+	}
+
+	@Test
+	void varintLengthBoundaries() {
+		TagCodec codec = new TagCodec(16);
+
+		// key length 127 fits into one byte, value length 126 + 1 too
+		codec.add(repeat('k', 127), repeat('v', 126));
+		byte[] data = codec.toByteArray();
+		assertEquals(TagCodec.VERSION, data[0]);
+		assertEquals(127, data[1]);
+		assertEquals(127, data[1 + 1 + 127]);
+		assertEquals(1 + 1 + 127 + 1 + 126, data.length);
+
+		// 128 needs a second byte
+		codec.reset();
+		codec.add(repeat('k', 128), repeat('v', 127));
+		data = codec.toByteArray();
+		assertEquals((byte) 0x80, data[1]);
+		assertEquals(1, data[2]);
+		assertEquals((byte) 0x80, data[3 + 128]);
+		assertEquals(1, data[4 + 128]);
+		assertEquals(1 + 2 + 128 + 2 + 127, data.length);
+
+		Map<String, String> decoded = new HashMap<>();
+		TagCodec.decode(data, decoded);
+		assertEquals(repeat('v', 127), decoded.get(repeat('k', 128)));
+
+		// three bytes
+		codec.reset();
+		codec.add("long", repeat('x', 20000));
+		decoded.clear();
+		TagCodec.decode(codec.toByteArray(), decoded);
+		assertEquals(20000, decoded.get("long").length());
+	}
+
+	@Test
+	void dictionaryReferences() {
+		TagDictionary dictionary = new TagDictionary();
+		TagCodec codec = new TagCodec(16);
+		codec.setDictionary(dictionary);
+
+		Map<String, String> tags = new LinkedHashMap<>();
+		tags.put("highway", "primary");
+		tags.put("name", "Hauptstraße");
+		tags.put("oneway", null);
+
+		// first tag set: keys get codes, values are only candidates
+		assertEquals(tags, TagCodecTest.roundTrip(codec, tags, dictionary));
+		assertEquals(0, dictionary.keyCode("highway"));
+		byte[] first = codec.toByteArray();
+		assertEquals(TagCodec.VERSION_DICTIONARY, first[0]);
+		assertEquals(0 << 1 | 1, first[1]);
+		assertEquals(("primary".length() << 1) + 1, first[2]);
+
+		// second time values are written as codes
+		assertEquals(tags, TagCodecTest.roundTrip(codec, tags, dictionary));
+		byte[] second = codec.toByteArray();
+		assertTrue(second.length < first.length);
+		int primary = dictionary.valueCode("primary");
+		assertEquals("primary", dictionary.get(primary));
+		assertEquals((primary << 1 | 1) + 1, second[2]);
+	}
+
+	@Test
+	void dictionaryKeepsLongAndQuotedValuesAsStrings() {
+		TagDictionary dictionary = new TagDictionary();
+		String longValue = repeat('a', 33);
+		assertEquals(-1, dictionary.valueCode(longValue));
+		assertEquals(-1, dictionary.valueCode(longValue));
+		assertEquals(-1, dictionary.valueCode("it's"));
+		assertEquals(-1, dictionary.valueCode("it's"));
+		assertEquals(-1, dictionary.keyCode("it's"));
+		assertEquals(0, dictionary.size());
+	}
+
+	@Test
+	void dictionaryEncodingNeedsDictionary() {
+		TagCodec codec = new TagCodec(16);
+		codec.setDictionary(new TagDictionary());
+		codec.add("highway", "primary");
+
+		assertThrows(IllegalArgumentException.class,
+				() -> TagCodec.decode(codec.toByteArray(), new HashMap<>()));
+		assertThrows(IllegalArgumentException.class,
+				() -> TagCodec.decode(codec.toByteArray(), new HashMap<>(), new TagDictionary()));
+	}
+
+	@Test
+	void brokenData() {
+		assertThrows(IllegalArgumentException.class,
+				() -> TagCodec.decode(new byte[] { 7, 1, 'a' }, new HashMap<>()));
+		// key length 5 but only one byte follows
+		assertThrows(IllegalArgumentException.class,
+				() -> TagCodec.decode(new byte[] { TagCodec.VERSION, 5, 'a' }, new HashMap<>()));
+
+		Map<String, String> decoded = new HashMap<>();
+		TagCodec.decode(null, decoded);
+		TagCodec.decode(new byte[0], decoded);
+		assertTrue(decoded.isEmpty());
+	}
+
+	@Test
+	void legacyDecode() {
+		Map<String, String> decoded = new HashMap<>();
+		TagCodec.decodeLegacy("007highway007primary004name0000003ref003B 1", decoded);
+
+		assertEquals(3, decoded.size());
+		assertEquals("primary", decoded.get("highway"));
+		assertTrue(decoded.containsKey("name"));
+		assertNull(decoded.get("name"));
+		assertEquals("B 1", decoded.get("ref"));
+	}
+
+	@Test
+	void legacyDecodeStopsAtBrokenInput() {
+		Map<String, String> decoded = new HashMap<>();
+		// empty key
+		TagCodec.decodeLegacy("003abc003def0000", decoded);
+		assertEquals(1, decoded.size());
+
+		// length longer than string
+		decoded.clear();
+		TagCodec.decodeLegacy("003abc009def", decoded);
+		assertEquals(1, decoded.size());
+		assertNull(decoded.get("abc"));
+
+		decoded.clear();
+		TagCodec.decodeLegacy("x03abc", decoded);
+		TagCodec.decodeLegacy(null, decoded);
+		assertTrue(decoded.isEmpty());
+	}
+}
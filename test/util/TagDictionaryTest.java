@@ -0,0 +1,216 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+class TagDictionaryTest {
+
+	/**
+	 * dictionary table in memory - answers the statements of save, load and exists
+	 */
+	private static class Table {
+		final TreeMap<Integer, String> rows = new TreeMap<>();
+		boolean exists = false;
+		int inserts = 0;
+
+		Connection connection() {
+			return proxy(Connection.class, (method, args) -> {
+				switch (method) {
+				case "createStatement":
+					return this.statement(null);
+				case "prepareStatement":
+					return this.statement((String) args[0]);
+				default:
+					return null;
+				}
+			});
+		}
+
+		private Object statement(String preparedSQL) {
+			Object[] row = new Object[2];
+			List<Object[]> batch = new ArrayList<>();
+			return proxy(PreparedStatement.class, (method, args) -> {
+				String sql = preparedSQL != null ? preparedSQL : args != null ? (String) args[0] : null;
+				switch (method) {
+				case "execute":
+					if (sql.startsWith("CREATE TABLE IF NOT EXISTS")) this.exists = true;
+					return false;
+				case "setString":
+				case "setInt":
+					row[(Integer) args[0] - 1] = args[1];
+					return null;
+				case "addBatch":
+					batch.add(row.clone());
+					return null;
+				case "executeBatch":
+					for (Object[] r : batch) {
+						if (this.rows.put((Integer) r[0], (String) r[1]) != null) {
+							throw new SQLException("duplicate key " + r[0]);
+						}
+						this.inserts++;
+					}
+					int[] counts = new int[batch.size()];
+					batch.clear();
+					return counts;
+				case "executeQuery":
+					if (sql.startsWith("SELECT count(*)")) {
+						return this.result(new Object[][] { { this.rows.size() } });
+					}
+					if (sql.contains("information_schema")) {
+						return this.result(this.exists ? new Object[][] { { 1 } } : new Object[0][]);
+					}
+					List<Object[]> all = new ArrayList<>();
+					for (Map.Entry<Integer, String> e : this.rows.entrySet()) {
+						all.add(new Object[] { e.getKey(), e.getValue() });
+					}
+					return this.result(all.toArray(new Object[0][]));
+				default:
+					return null;
+				}
+			});
+		}
+
+		private ResultSet result(Object[][] values) {
+			int[] next = { -1 };
+			return proxy(ResultSet.class, (method, args) -> {
+				switch (method) {
+				case "next":
+					return ++next[0] < values.length;
+				case "getInt":
+					return ((Number) values[next[0]][(Integer) args[0] - 1]).intValue();
+				case "getString":
+					return values[next[0]][(Integer) args[0] - 1];
+				default:
+					return null;
+				}
+			});
+		}
+	}
+
+	private interface Answer {
+		Object answer(String method, Object[] args) throws Exception;
+	}
+
+	private static <T> T proxy(Class<T> type, Answer answer) {
+		return type.cast(Proxy.newProxyInstance(TagDictionaryTest.class.getClassLoader(),
+				new Class<?>[] { type },
+				(p, method, args) -> answer.answer(method.getName(), args)));
+	}
+
+	private static byte[] encode(TagDictionary dictionary, String... kv) {
+		TagCodec codec = new TagCodec(16);
+		codec.setDictionary(dictionary);
+		for (int i = 0; i < kv.length; i += 2) {
+			codec.add(kv[i], kv[i + 1]);
+		}
+		return codec.toByteArray();
+	}
+
+	@Test
+	void valueIsPromotedOnSecondOccurrence() {
+		TagDictionary dictionary = new TagDictionary();
+		assertEquals(0, dictionary.keyCode("highway"));
+		assertEquals(-1, dictionary.valueCode("residential"));
+		assertEquals(1, dictionary.size());
+
+		// second time it becomes a code and keeps it
+		assertEquals(1, dictionary.valueCode("residential"));
+		assertEquals(1, dictionary.valueCode("residential"));
+		assertEquals("residential", dictionary.get(1));
+
+		// keys and values share codes
+		assertEquals(1, dictionary.keyCode("residential"));
+		assertEquals(0, dictionary.valueCode("highway"));
+		assertEquals(2, dictionary.size());
+		assertThrows(IllegalArgumentException.class, () -> dictionary.get(2));
+	}
+
+	@Test
+	void saveAppendsOnlyNewCodes() throws SQLException {
+		Table table = new Table();
+		Connection connection = table.connection();
+
+		TagDictionary dictionary = new TagDictionary();
+		dictionary.keyCode("highway");
+		dictionary.keyCode("name");
+		dictionary.save(connection, "inter");
+		assertTrue(table.exists);
+		assertEquals(2, table.inserts);
+
+		// nothing new - nothing written
+		dictionary.save(connection, "inter");
+		assertEquals(2, table.inserts);
+
+		dictionary.keyCode("building");
+		dictionary.valueCode("yes");
+		dictionary.valueCode("yes");
+		dictionary.save(connection, "inter");
+		assertEquals(4, table.inserts);
+		assertEquals("{0=highway, 1=name, 2=building, 3=yes}", table.rows.toString());
+	}
+
+	@Test
+	void reloadedDictionaryKeepsCodes() throws SQLException {
+		Table table = new Table();
+		Connection connection = table.connection();
+		assertNull(TagDictionary.load(connection, "inter"));
+
+		TagDictionary dictionary = new TagDictionary();
+		byte[] first = encode(dictionary, "highway", "primary", "name", "Hauptstraße");
+		byte[] second = encode(dictionary, "highway", "primary", "surface", "asphalt");
+		dictionary.save(connection, "inter");
+
+		TagDictionary loaded = TagDictionary.load(connection, "inter");
+		assertEquals(dictionary.size(), loaded.size());
+		for (int code = 0; code < dictionary.size(); code++) {
+			assertEquals(dictionary.get(code), loaded.get(code));
+		}
+
+		// rows written before decode with loaded dictionary
+		Map<String, String> tags = new HashMap<>();
+		TagCodec.decode(first, tags, loaded);
+		assertEquals("primary", tags.get("highway"));
+		assertEquals("Hauptstraße", tags.get("name"));
+		tags.clear();
+		TagCodec.decode(second, tags, loaded);
+		assertEquals("primary", tags.get("highway"));
+		assertEquals("asphalt", tags.get("surface"));
+
+		// loaded dictionary goes on with same codes and appends new ones
+		assertEquals(dictionary.keyCode("surface"), loaded.keyCode("surface"));
+		assertEquals(dictionary.valueCode("primary"), loaded.valueCode("primary"));
+		int next = loaded.size();
+		assertEquals(next, loaded.keyCode("oneway"));
+		loaded.save(connection, "inter");
+		assertEquals("oneway", table.rows.get(next));
+		assertEquals(next + 1, table.rows.size());
+	}
+
+	@Test
+	void smallerDictionaryIsNotSaved() throws SQLException {
+		Table table = new Table();
+		Connection connection = table.connection();
+		TagDictionary dictionary = new TagDictionary();
+		dictionary.keyCode("a");
+		dictionary.keyCode("b");
+		dictionary.save(connection, "inter");
+
+		// another import's dictionary would mix up codes
+		TagDictionary other = new TagDictionary();
+		other.keyCode("c");
+		assertThrows(SQLException.class, () -> other.save(connection, "inter"));
+		assertEquals(2, table.rows.size());
+	}
+}